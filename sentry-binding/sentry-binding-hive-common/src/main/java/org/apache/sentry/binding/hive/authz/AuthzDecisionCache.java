@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.binding.hive.authz;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sentry.api.service.thrift.PermChangeIdTracker;
+import org.apache.sentry.binding.hive.conf.HiveAuthzConf;
+import org.apache.sentry.binding.hive.conf.HiveAuthzConf.AuthzConfVars;
+import org.apache.sentry.core.common.ActiveRoleSet;
+import org.apache.sentry.core.common.Subject;
+import org.apache.sentry.core.model.db.DBModelAction;
+import org.apache.sentry.core.model.db.DBModelAuthorizable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Granted authorization decisions of the process, shared by the bindings of all the
+ * sessions and compiles. Each decision is tagged with the perm change ID it was made at,
+ * and is only served while that is still the last ID the Sentry servers returned to the
+ * process, as tracked by {@link PermChangeIdTracker} from the responses of the privilege
+ * reads and writes. A decision is tagged with the lowest ID of the responses it was made
+ * with, so that a grant returned by a server which has not caught up with a revoke yet is
+ * never served once the ID of the revoke was seen. No call is made to learn the ID: when
+ * no response confirmed it for
+ * the configured interval, decisions are not served, so the next checks read the
+ * privileges and learn it again. A TTL bounds the staleness of the changes that do not
+ * advance the ID, such as group membership.
+ */
+final class AuthzDecisionCache {
+
+  private static final long UNKNOWN_PERM_CHANGE_ID = -1;
+
+  // Guarded by the class
+  private static AuthzDecisionCache instance;
+
+  private final Cache<Key, Long> decisions;
+  private final long maxPermChangeIdAgeMs;
+  // Decisions served, for testing
+  private final AtomicLong hits = new AtomicLong();
+
+  private AuthzDecisionCache(long size, long ttlMs, long maxPermChangeIdAgeMs) {
+    this.decisions = CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .build();
+    this.maxPermChangeIdAgeMs = maxPermChangeIdAgeMs;
+  }
+
+  /**
+   * @return the cache of the process, created with the configuration of the first
+   * binding using it, or null if disabled
+   */
+  static synchronized AuthzDecisionCache get(HiveAuthzConf authzConf) {
+    long size = Long.parseLong(authzConf.get(AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE.getVar(),
+        AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE.getDefault()));
+    if (size <= 0) {
+      return null;
+    }
+    if (instance == null) {
+      long ttlMs = Long.parseLong(authzConf.get(
+          AuthzConfVars.AUTHZ_DECISION_CACHE_TTL_MS.getVar(),
+          AuthzConfVars.AUTHZ_DECISION_CACHE_TTL_MS.getDefault()));
+      long maxPermChangeIdAgeMs = Long.parseLong(authzConf.get(
+          AuthzConfVars.AUTHZ_DECISION_CACHE_MAX_CHANGE_ID_AGE_MS.getVar(),
+          AuthzConfVars.AUTHZ_DECISION_CACHE_MAX_CHANGE_ID_AGE_MS.getDefault()));
+      instance = new AuthzDecisionCache(size, ttlMs, maxPermChangeIdAgeMs);
+    }
+    return instance;
+  }
+
+  @VisibleForTesting
+  static synchronized void reset() {
+    instance = null;
+  }
+
+  /**
+   * @return the perm change ID to tag and check decisions with, or -1 if decisions must
+   * be neither served nor cached. Read it before checking the access, so that a decision
+   * is never tagged with changes it was not made with.
+   */
+  long getPermChangeId() {
+    return PermChangeIdTracker.getLastPermChangeId(maxPermChangeIdAgeMs);
+  }
+
+  /**
+   * @param permChangeId the ID read before checking the access
+   * @return the ID to tag a decision made since {@link PermChangeIdTracker#beginResponses()}
+   * with, the lowest of the given one and the ones of the responses received, or -1 if the
+   * decision must not be cached
+   */
+  static long getDecisionPermChangeId(long permChangeId) {
+    long responsesPermChangeId = PermChangeIdTracker.getResponsesPermChangeId();
+    if (!isKnown(responsesPermChangeId)) {
+      return UNKNOWN_PERM_CHANGE_ID;
+    }
+    return Math.min(permChangeId, responsesPermChangeId);
+  }
+
+  boolean isGranted(Key key, long permChangeId) {
+    Long decisionChangeId = decisions.getIfPresent(key);
+    if (decisionChangeId == null || decisionChangeId != permChangeId) {
+      return false;
+    }
+    hits.incrementAndGet();
+    return true;
+  }
+
+  void putGranted(Key key, long permChangeId) {
+    decisions.put(key, permChangeId);
+  }
+
+  static boolean isKnown(long permChangeId) {
+    return permChangeId != UNKNOWN_PERM_CHANGE_ID;
+  }
+
+  @VisibleForTesting
+  long size() {
+    return decisions.size();
+  }
+
+  @VisibleForTesting
+  long hitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Key of an authorization decision.
+   */
+  static final class Key {
+    private final String subject;
+    private final List<String> hierarchy;
+    private final EnumSet<DBModelAction> actions;
+    private final boolean grantOption;
+    private final boolean allRoles;
+    private final Set<String> roles;
+
+    Key(Subject subject, List<DBModelAuthorizable> hierarchy,
+        EnumSet<DBModelAction> actions, boolean grantOption, ActiveRoleSet activeRoleSet) {
+      this.subject = subject.getName();
+      this.hierarchy = new ArrayList<>(hierarchy.size());
+      for (DBModelAuthorizable authorizable : hierarchy) {
+        this.hierarchy.add(authorizable.getTypeName() + "=" + authorizable.getName());
+      }
+      this.actions = EnumSet.copyOf(actions);
+      this.grantOption = grantOption;
+      this.allRoles = activeRoleSet.isAll();
+      this.roles = activeRoleSet.getRoles();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return grantOption == other.grantOption && allRoles == other.allRoles &&
+          subject.equals(other.subject) && hierarchy.equals(other.hierarchy) &&
+          actions.equals(other.actions) && roles.equals(other.roles);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(subject, hierarchy, actions, grantOption, allRoles, roles);
+    }
+  }
+}
@@ -17,7 +17,10 @@
 package org.apache.sentry.binding.hive.authz;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -29,11 +32,14 @@ import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hadoop.hive.ql.metadata.AuthorizationException;
 import org.apache.hadoop.hive.ql.plan.HiveOperation;
+import org.apache.sentry.core.common.exception.SentryGroupNotFoundException;
 import org.apache.sentry.core.common.exception.SentryUserException;
+import org.apache.sentry.api.service.thrift.PermChangeIdTracker;
 import org.apache.sentry.binding.hive.conf.HiveAuthzConf;
 import org.apache.sentry.binding.hive.conf.HiveAuthzConf.AuthzConfVars;
 import org.apache.sentry.binding.hive.conf.InvalidConfigurationException;
 import org.apache.sentry.core.common.ActiveRoleSet;
+import org.apache.sentry.core.common.Authorizable;
 import org.apache.sentry.core.common.Model;
 import org.apache.sentry.core.common.Subject;
 import org.apache.sentry.core.model.db.AccessConstants;
@@ -45,6 +51,7 @@ import org.apache.sentry.core.model.db.Server;
 import org.apache.sentry.policy.common.PolicyEngine;
 import org.apache.sentry.provider.cache.PrivilegeCache;
 import org.apache.sentry.provider.cache.SimpleCacheProviderBackend;
+import org.apache.sentry.provider.cache.SimplePrivilegeCache;
 import org.apache.sentry.provider.common.AuthorizationProvider;
 import org.apache.sentry.provider.common.ProviderBackend;
 import org.apache.sentry.provider.common.ProviderBackendContext;
@@ -52,6 +59,7 @@ import org.apache.sentry.api.service.thrift.TSentryRole;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
@@ -70,6 +78,10 @@ public class HiveAuthzBinding implements AutoCloseable {
   private volatile boolean open;
   private ActiveRoleSet activeRoleSet;
   private HiveAuthzConf authzConf;
+  private final boolean prefetchPrivileges;
+  private final int prefetchMinHierarchies;
+  // Granted decisions of the process, null if disabled
+  private final AuthzDecisionCache decisionCache;
 
   public static enum HiveHook {
     HiveServer2,
@@ -87,6 +99,13 @@ public class HiveAuthzBinding implements AutoCloseable {
     this.authzConf = authzConf;
     this.authServer = new Server(authzConf.get(AuthzConfVars.AUTHZ_SERVER_NAME.getVar()));
     this.authProvider = getAuthProvider(hiveConf, authzConf, authServer.getName());
+    this.prefetchPrivileges = Boolean.parseBoolean(authzConf.get(
+        AuthzConfVars.AUTHZ_PREFETCH_PRIVILEGES.getVar(),
+        AuthzConfVars.AUTHZ_PREFETCH_PRIVILEGES.getDefault()));
+    this.prefetchMinHierarchies = Integer.parseInt(authzConf.get(
+        AuthzConfVars.AUTHZ_PREFETCH_MIN_HIERARCHIES.getVar(),
+        AuthzConfVars.AUTHZ_PREFETCH_MIN_HIERARCHIES.getDefault()));
+    this.decisionCache = AuthzDecisionCache.get(authzConf);
     this.open = true;
     this.activeRoleSet = parseActiveRoleSet(hiveConf.get(HiveAuthzConf.SENTRY_ACTIVE_ROLE_SET,
         authzConf.get(HiveAuthzConf.SENTRY_ACTIVE_ROLE_SET, "")).trim());
@@ -99,6 +118,10 @@ public class HiveAuthzBinding implements AutoCloseable {
     this.authzConf = authzConf;
     this.authServer = new Server(authzConf.get(AuthzConfVars.AUTHZ_SERVER_NAME.getVar()));
     this.authProvider = getAuthProviderWithPrivilegeCache(authzConf, authServer.getName(), privilegeCache);
+    // The privileges are already local
+    this.prefetchPrivileges = false;
+    this.prefetchMinHierarchies = 0;
+    this.decisionCache = null;
     this.open = true;
     this.activeRoleSet = parseActiveRoleSet(hiveConf.get(HiveAuthzConf.SENTRY_ACTIVE_ROLE_SET,
             authzConf.get(HiveAuthzConf.SENTRY_ACTIVE_ROLE_SET, "")).trim());
@@ -334,14 +357,41 @@ public class HiveAuthzBinding implements AutoCloseable {
       LOG.debug("outputHierarchyList = " + outputHierarchyList);
     }
 
+    if (decisionCache != null) {
+      // Decisions are tagged with the change IDs of the privileges they were made with
+      PermChangeIdTracker.beginResponses();
+    }
+    PrefetchedPrivileges prefetched = null;
+    try {
+      if (prefetchPrivileges) {
+        prefetched = prefetchPrivileges(subject, inputHierarchyList, outputHierarchyList);
+      }
+      authorize(hiveOp, stmtAuthPrivileges, subject, inputHierarchyList, outputHierarchyList,
+          requiredInputPrivileges, requiredOutputPrivileges, prefetched);
+    } finally {
+      if (prefetched != null) {
+        prefetched.close();
+      }
+      if (decisionCache != null) {
+        PermChangeIdTracker.endResponses();
+      }
+    }
+  }
+
+  private void authorize(HiveOperation hiveOp, HiveAuthzPrivileges stmtAuthPrivileges,
+      Subject subject, Set<List<DBModelAuthorizable>> inputHierarchyList,
+      Set<List<DBModelAuthorizable>> outputHierarchyList,
+      Map<AuthorizableType, EnumSet<DBModelAction>> requiredInputPrivileges,
+      Map<AuthorizableType, EnumSet<DBModelAction>> requiredOutputPrivileges,
+      PrefetchedPrivileges prefetched) throws AuthorizationException {
     boolean found = false;
     for (Map.Entry<AuthorizableType, EnumSet<DBModelAction>> entry : requiredInputPrivileges.entrySet()) {
       AuthorizableType key = entry.getKey();
       for (List<DBModelAuthorizable> inputHierarchy : inputHierarchyList) {
         if (getAuthzType(inputHierarchy).equals(key)) {
           found = true;
-          if (!authProvider.hasAccess(subject, inputHierarchy, entry.getValue(),
-              stmtAuthPrivileges.getGrantOption(), activeRoleSet)) {
+          if (!hasAccess(prefetched, subject, inputHierarchy, entry.getValue(),
+              stmtAuthPrivileges.getGrantOption())) {
             throw new AuthorizationException("User " + subject.getName() +
                 " does not have privileges for " + hiveOp.name());
           }
@@ -365,8 +415,8 @@ public class HiveAuthzBinding implements AutoCloseable {
       for (List<DBModelAuthorizable> outputHierarchy : outputHierarchyList) {
         if (getAuthzType(outputHierarchy).equals(key)) {
           found = true;
-          if (!authProvider.hasAccess(subject, outputHierarchy, entry.getValue(),
-              stmtAuthPrivileges.getGrantOption(), activeRoleSet)) {
+          if (!hasAccess(prefetched, subject, outputHierarchy, entry.getValue(),
+              stmtAuthPrivileges.getGrantOption())) {
             throw new AuthorizationException("User " + subject.getName() +
                 " does not have privileges for " + hiveOp.name());
           }
@@ -385,6 +435,161 @@ public class HiveAuthzBinding implements AutoCloseable {
 
   }
 
+  private boolean hasAccess(PrefetchedPrivileges prefetched, Subject subject,
+      List<DBModelAuthorizable> hierarchy, EnumSet<DBModelAction> actions, boolean grantOption) {
+    if (decisionCache == null) {
+      return checkAccess(prefetched, subject, hierarchy, actions, grantOption);
+    }
+    long changeId = decisionCache.getPermChangeId();
+    if (!AuthzDecisionCache.isKnown(changeId)) {
+      return checkAccess(prefetched, subject, hierarchy, actions, grantOption);
+    }
+    AuthzDecisionCache.Key key =
+        new AuthzDecisionCache.Key(subject, hierarchy, actions, grantOption, activeRoleSet);
+    if (decisionCache.isGranted(key, changeId)) {
+      return true;
+    }
+    // Denials are not cached, they have to set the failed privileges of the provider
+    boolean access = checkAccess(prefetched, subject, hierarchy, actions, grantOption);
+    if (access) {
+      long decisionChangeId = AuthzDecisionCache.getDecisionPermChangeId(changeId);
+      if (AuthzDecisionCache.isKnown(decisionChangeId)) {
+        decisionCache.putGranted(key, decisionChangeId);
+      }
+    }
+    return access;
+  }
+
+  private boolean checkAccess(PrefetchedPrivileges prefetched, Subject subject,
+      List<DBModelAuthorizable> hierarchy, EnumSet<DBModelAction> actions, boolean grantOption) {
+    if (prefetched != null && prefetched.covers(hierarchy) &&
+        prefetched.provider.hasAccess(subject, hierarchy, actions, grantOption, activeRoleSet)) {
+      return true;
+    }
+    // Denials are confirmed by the configured provider, the prefetched privileges are
+    // only looked up by authorizable name and may miss some that still apply.
+    return authProvider.hasAccess(subject, hierarchy, actions, grantOption, activeRoleSet);
+  }
+
+  @VisibleForTesting
+  public long getDecisionCacheSize() {
+    return decisionCache == null ? 0 : decisionCache.size();
+  }
+
+  @VisibleForTesting
+  public long getDecisionCacheHitCount() {
+    return decisionCache == null ? 0 : decisionCache.hitCount();
+  }
+
+  @VisibleForTesting
+  public static void resetDecisionCache() {
+    AuthzDecisionCache.reset();
+  }
+
+  /**
+   * Column level queries have one hierarchy per accessed column, each of which costs
+   * a call to the policy backend, one RPC with the Sentry service. Fetch instead the
+   * privileges of the subject once per table with at least prefetchMinHierarchies
+   * table or column hierarchies in the statement, and check those hierarchies
+   * against the fetched privileges.
+   *
+   * @return the fetched privileges, or null if no table has enough hierarchies or the
+   * privileges could not be fetched
+   */
+  private PrefetchedPrivileges prefetchPrivileges(Subject subject,
+      Set<List<DBModelAuthorizable>> inputHierarchyList,
+      Set<List<DBModelAuthorizable>> outputHierarchyList) {
+    Map<List<DBModelAuthorizable>, Integer> tableCounts = new HashMap<>();
+    countTableHierarchies(inputHierarchyList, tableCounts);
+    countTableHierarchies(outputHierarchyList, tableCounts);
+    Set<List<DBModelAuthorizable>> tables = new HashSet<>();
+    for (Map.Entry<List<DBModelAuthorizable>, Integer> entry : tableCounts.entrySet()) {
+      if (entry.getValue() >= prefetchMinHierarchies) {
+        tables.add(entry.getKey());
+      }
+    }
+    if (tables.isEmpty()) {
+      return null;
+    }
+
+    Set<String> groups;
+    try {
+      groups = authProvider.getGroupMapping().getGroups(subject.getName());
+    } catch (SentryGroupNotFoundException e) {
+      groups = Collections.emptySet();
+      LOG.debug("Could not find groups for user: " + subject.getName());
+    }
+    Set<String> users = Sets.newHashSet(subject.getName());
+    Set<String> privileges = new HashSet<>();
+    try {
+      for (List<DBModelAuthorizable> table : tables) {
+        privileges.addAll(authProvider.getPolicyEngine().getPrivileges(groups, users,
+            activeRoleSet, table.toArray(new Authorizable[0])));
+      }
+      AuthorizationProvider provider = getAuthProviderWithPrivilegeCache(authzConf,
+          authServer.getName(), new SimplePrivilegeCache(privileges));
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Prefetched " + privileges.size() + " privileges of " + subject.getName() +
+            " for tables " + tables);
+      }
+      return new PrefetchedPrivileges(tables, provider);
+    } catch (Exception e) {
+      LOG.warn("Unable to prefetch privileges of " + subject.getName() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static void countTableHierarchies(Set<List<DBModelAuthorizable>> hierarchyList,
+      Map<List<DBModelAuthorizable>, Integer> tableCounts) {
+    for (List<DBModelAuthorizable> hierarchy : hierarchyList) {
+      List<DBModelAuthorizable> table = getTable(hierarchy);
+      if (table != null) {
+        Integer count = tableCounts.get(table);
+        tableCounts.put(table, count == null ? 1 : count + 1);
+      }
+    }
+  }
+
+  /**
+   * @return the server, db and table prefix of a table or column hierarchy, or null
+   * for other hierarchies
+   */
+  private static List<DBModelAuthorizable> getTable(List<DBModelAuthorizable> hierarchy) {
+    if (hierarchy.size() < 3 || hierarchy.size() > 4 ||
+        hierarchy.get(0).getAuthzType() != AuthorizableType.Server ||
+        hierarchy.get(1).getAuthzType() != AuthorizableType.Db ||
+        hierarchy.get(2).getAuthzType() != AuthorizableType.Table) {
+      return null;
+    }
+    if (hierarchy.size() == 4 && hierarchy.get(3).getAuthzType() != AuthorizableType.Column) {
+      return null;
+    }
+    return new ArrayList<>(hierarchy.subList(0, 3));
+  }
+
+  /**
+   * Privileges of a subject fetched for the tables of a statement.
+   */
+  private static final class PrefetchedPrivileges implements AutoCloseable {
+    private final Set<List<DBModelAuthorizable>> tables;
+    private final AuthorizationProvider provider;
+
+    PrefetchedPrivileges(Set<List<DBModelAuthorizable>> tables, AuthorizationProvider provider) {
+      this.tables = tables;
+      this.provider = provider;
+    }
+
+    boolean covers(List<DBModelAuthorizable> hierarchy) {
+      List<DBModelAuthorizable> table = getTable(hierarchy);
+      return table != null && tables.contains(table);
+    }
+
+    @Override
+    public void close() {
+      provider.close();
+    }
+  }
+
   public void setActiveRoleSet(String activeRoleSet,
       Set<TSentryRole> allowedRoles) throws SentryUserException {
     this.activeRoleSet = parseActiveRoleSet(activeRoleSet, allowedRoles);
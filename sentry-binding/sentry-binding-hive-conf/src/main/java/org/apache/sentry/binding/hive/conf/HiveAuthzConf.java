@@ -109,6 +109,12 @@ public class HiveAuthzConf extends Configuration {
         AUTHZ_SYNC_ALTER_WITH_POLICY_STORE("sentry.hive.sync.alter", "true"),
         AUTHZ_SYNC_CREATE_WITH_POLICY_STORE("sentry.hive.sync.create", "false"),
         AUTHZ_SYNC_DROP_WITH_POLICY_STORE("sentry.hive.sync.drop", "true"),
+        AUTHZ_PREFETCH_PRIVILEGES("sentry.hive.authz.prefetch.privileges", "false"),
+        AUTHZ_PREFETCH_MIN_HIERARCHIES("sentry.hive.authz.prefetch.min.hierarchies", "2"),
+        AUTHZ_DECISION_CACHE_SIZE("sentry.hive.authz.decision.cache.size", "0"),
+        AUTHZ_DECISION_CACHE_TTL_MS("sentry.hive.authz.decision.cache.ttl.ms", "60000"),
+        AUTHZ_DECISION_CACHE_MAX_CHANGE_ID_AGE_MS(
+                "sentry.hive.authz.decision.cache.max.change.id.age.ms", "5000"),
 
         AUTHZ_PROVIDER_DEPRECATED("hive.sentry.provider",
                 "org.apache.sentry.provider.file.ResourceAuthorizationProvider"),
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.binding.hive;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.service.thrift.PermChangeIdTracker;
+import org.apache.sentry.core.common.ActiveRoleSet;
+import org.apache.sentry.core.common.Authorizable;
+import org.apache.sentry.provider.file.SimpleFileProviderBackend;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Policy file backend which counts the privilege lookups, and reports a perm change ID
+ * for each of them, as the Sentry service client does for its responses
+ */
+public class CountingProviderBackend extends SimpleFileProviderBackend {
+  static final AtomicInteger lookups = new AtomicInteger();
+  // Perm change ID of the lookups, none if negative
+  static volatile long permChangeId = -1;
+
+  public CountingProviderBackend(Configuration conf, String resourcePath) throws IOException {
+    super(conf, resourcePath);
+  }
+
+  static void reset() {
+    lookups.set(0);
+    permChangeId = -1;
+  }
+
+  @Override
+  public ImmutableSet<String> getPrivileges(Set<String> groups, ActiveRoleSet roleSet,
+      Authorizable... authorizableHierarchy) {
+    lookups.incrementAndGet();
+    if (permChangeId >= 0) {
+      PermChangeIdTracker.update(permChangeId);
+    } else {
+      PermChangeIdTracker.updateUnknown();
+    }
+    return super.getPrivileges(groups, roleSet, authorizableHierarchy);
+  }
+}
@@ -30,6 +30,7 @@ import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hadoop.hive.ql.metadata.AuthorizationException;
 import org.apache.hadoop.hive.ql.plan.HiveOperation;
+import org.apache.sentry.api.service.thrift.PermChangeIdTracker;
 import org.apache.sentry.binding.hive.authz.HiveAuthzBinding;
 import org.apache.sentry.binding.hive.authz.HiveAuthzPrivileges;
 import org.apache.sentry.binding.hive.authz.HiveAuthzPrivilegesMap;
@@ -118,6 +119,8 @@ public class TestHiveAuthzBindings {
         new File(baseDir, RESOURCE_PATH).getPath());
     authzConf.set(AuthzConfVars.AUTHZ_SERVER_NAME.getVar(), SERVER1);
     authzConf.set(AuthzConfVars.SENTRY_TESTING_MODE.getVar(), "true");
+    authzConf.set(AuthzConfVars.AUTHZ_PROVIDER_BACKEND.getVar(),
+        CountingProviderBackend.class.getName());
     testAuth = new HiveAuthzBinding(hiveConf, authzConf);
   }
 
@@ -126,6 +129,9 @@ public class TestHiveAuthzBindings {
     if(baseDir != null) {
       FileUtils.deleteQuietly(baseDir);
     }
+    HiveAuthzBinding.resetDecisionCache();
+    PermChangeIdTracker.reset();
+    CountingProviderBackend.reset();
   }
 
   /**
@@ -158,6 +164,130 @@ public class TestHiveAuthzBindings {
         inputTabHierarcyList, outputTabHierarcyList);
   }
 
+  /**
+   * validate column level read permissions checked against the privileges
+   * prefetched for customer:purchase
+   */
+  @Test
+  public void testValidateColumnSelectPrivilegesWithPrefetch() throws Exception {
+    for (String column : Arrays.asList(AGE_COL, "name", "price")) {
+      inputTabHierarcyList.add(buildObjectHierarchy(SERVER1, CUSTOMER_DB, PURCHASES_TAB, column));
+    }
+    // Without prefetching, each column is looked up
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(3, CountingProviderBackend.lookups.getAndSet(0));
+
+    authzConf.set(AuthzConfVars.AUTHZ_PREFETCH_PRIVILEGES.getVar(), "true");
+    testAuth = new HiveAuthzBinding(hiveConf, authzConf);
+    // The table is looked up once, and the prefetched privileges grant all the columns
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ADMIN_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(1, CountingProviderBackend.lookups.getAndSet(0));
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(1, CountingProviderBackend.lookups.getAndSet(0));
+    try {
+      testAuth.authorize(HiveOperation.QUERY, queryPrivileges, JUNIOR_ANALYST_SUBJECT,
+          inputTabHierarcyList, outputTabHierarcyList);
+      Assert.fail("Expected AuthorizationException");
+    } catch (AuthorizationException e) {
+      // expected
+    }
+  }
+
+  /**
+   * validate that granted decisions are cached until the perm change ID advances,
+   * and that denials are not cached
+   */
+  @Test
+  public void testDecisionCacheInvalidatedOnPermChange() throws Exception {
+    authzConf.set(AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE.getVar(), "100");
+    testAuth = new HiveAuthzBinding(hiveConf, authzConf);
+    inputTabHierarcyList.add(buildObjectHierarchy(SERVER1, CUSTOMER_DB, PURCHASES_TAB));
+    // Nothing is cached until a server returned the perm change ID
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(0, testAuth.getDecisionCacheSize());
+
+    CountingProviderBackend.permChangeId = 1;
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    // The ID was only learnt from the response of that check
+    Assert.assertEquals(0, testAuth.getDecisionCacheSize());
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(1, testAuth.getDecisionCacheSize());
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(1, testAuth.getDecisionCacheHitCount());
+    try {
+      testAuth.authorize(HiveOperation.QUERY, queryPrivileges, JUNIOR_ANALYST_SUBJECT,
+          inputTabHierarcyList, outputTabHierarcyList);
+      Assert.fail("Expected AuthorizationException");
+    } catch (AuthorizationException e) {
+      // expected
+    }
+    Assert.assertEquals(1, testAuth.getDecisionCacheSize());
+
+    // The decision made at the previous ID is not served
+    PermChangeIdTracker.update(2);
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(1, testAuth.getDecisionCacheHitCount());
+  }
+
+  /**
+   * validate that the decisions of a binding are served to the bindings of the
+   * following compiles
+   */
+  @Test
+  public void testDecisionCacheSharedAcrossBindings() throws Exception {
+    authzConf.set(AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE.getVar(), "100");
+    PermChangeIdTracker.update(1);
+    CountingProviderBackend.permChangeId = 1;
+    inputTabHierarcyList.add(buildObjectHierarchy(SERVER1, CUSTOMER_DB, PURCHASES_TAB));
+    try (HiveAuthzBinding first = new HiveAuthzBinding(hiveConf, authzConf)) {
+      first.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+          inputTabHierarcyList, outputTabHierarcyList);
+      Assert.assertEquals(0, first.getDecisionCacheHitCount());
+    }
+    try (HiveAuthzBinding second = new HiveAuthzBinding(hiveConf, authzConf)) {
+      Assert.assertEquals(1, second.getDecisionCacheSize());
+      second.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+          inputTabHierarcyList, outputTabHierarcyList);
+      Assert.assertEquals(1, second.getDecisionCacheHitCount());
+    }
+  }
+
+  /**
+   * validate that a grant returned by a server which has not caught up with the last
+   * change is not served, as it may predate a revoke
+   */
+  @Test
+  public void testDecisionCacheTagsDecisionsWithTheirResponse() throws Exception {
+    authzConf.set(AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE.getVar(), "100");
+    testAuth = new HiveAuthzBinding(hiveConf, authzConf);
+    inputTabHierarcyList.add(buildObjectHierarchy(SERVER1, CUSTOMER_DB, PURCHASES_TAB));
+    PermChangeIdTracker.update(2);
+    CountingProviderBackend.permChangeId = 1;
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(0, testAuth.getDecisionCacheHitCount());
+
+    // Once the server caught up, its grants are served without a lookup
+    CountingProviderBackend.permChangeId = 2;
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    int lookups = CountingProviderBackend.lookups.get();
+    testAuth.authorize(HiveOperation.QUERY, queryPrivileges, ANALYST_SUBJECT,
+        inputTabHierarcyList, outputTabHierarcyList);
+    Assert.assertEquals(1, testAuth.getDecisionCacheHitCount());
+    Assert.assertEquals(lookups, CountingProviderBackend.lookups.get());
+  }
+
   /**
    * validate create table permissions for admin in customer db
    */
@@ -19,10 +19,12 @@ package org.apache.sentry.kafka.binding;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 
 import kafka.security.auth.Acl;
 import kafka.security.auth.Allow;
@@ -31,6 +33,7 @@ import kafka.security.auth.Operation$;
 import kafka.security.auth.ResourceType$;
 import org.apache.hadoop.conf.Configuration;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
 import kafka.network.RequestChannel;
 import kafka.security.auth.Operation;
@@ -53,6 +56,7 @@ import org.apache.sentry.kafka.conf.KafkaAuthConf.AuthzConfVars;
 import org.apache.sentry.policy.common.PolicyEngine;
 import org.apache.sentry.provider.common.AuthorizationComponent;
 import org.apache.sentry.provider.common.AuthorizationProvider;
+import org.apache.sentry.provider.common.CacheProvider;
 import org.apache.sentry.provider.common.ProviderBackend;
 import org.apache.sentry.provider.common.ProviderBackendContext;
 import org.apache.sentry.provider.db.generic.SentryGenericProviderBackend;
@@ -60,13 +64,13 @@ import org.apache.sentry.api.generic.thrift.SentryGenericServiceClient;
 import org.apache.sentry.api.generic.thrift.SentryGenericServiceClientFactory;
 import org.apache.sentry.api.generic.thrift.TAuthorizable;
 import org.apache.sentry.api.generic.thrift.TSentryPrivilege;
+import org.apache.sentry.api.generic.thrift.TSentryPrivilegeMap;
 import org.apache.sentry.api.generic.thrift.TSentryRole;
 import org.apache.sentry.api.common.ApiConstants;
 import org.apache.sentry.api.tools.GenericPrivilegeConverter;
 import org.apache.sentry.service.common.ServiceConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import scala.Option;
 import scala.Predef;
 import scala.Tuple2;
 import scala.collection.Iterator;
@@ -80,6 +84,8 @@ public class KafkaAuthBinding {
   private static final Logger LOG = LoggerFactory.getLogger(KafkaAuthBinding.class);
   private static final String COMPONENT_TYPE = AuthorizationComponent.KAFKA;
   private static final String COMPONENT_NAME = COMPONENT_TYPE;
+  // Authorizable requesting all the privileges of the service
+  private static final String ALL_AUTHORIZABLES = "";
 
   private static Boolean kerberosInit;
 
@@ -92,6 +98,13 @@ public class KafkaAuthBinding {
   private String requestorName;
   private java.util.Map<String, ?> kafkaConfigs;
 
+  private final long aclIndexTtlMs;
+  private final Object aclIndexLock = new Object();
+  private volatile AclIndex aclIndex;
+
+  private final KafkaDecisionCache decisionCache;
+  // Table of the privilege cache the decisions were made with
+  private volatile Object privilegeTable;
 
   public KafkaAuthBinding(String instanceName, String requestorName, Configuration authConf, java.util.Map<String, ?> kafkaConfigs) throws Exception {
     this.instanceName = instanceName;
@@ -99,6 +112,11 @@ public class KafkaAuthBinding {
     this.authConf = authConf;
     this.kafkaConfigs = kafkaConfigs;
     this.authProvider = createAuthProvider();
+    this.aclIndexTtlMs = Long.parseLong(getKafkaConfig(AuthzConfVars.AUTHZ_ACL_INDEX_TTL_MS_NAME));
+    int decisionCacheSize =
+        Integer.parseInt(getKafkaConfig(AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE_NAME));
+    this.decisionCache = decisionCacheSize <= 0 ? null : new KafkaDecisionCache(decisionCacheSize,
+        Long.parseLong(getKafkaConfig(AuthzConfVars.AUTHZ_DECISION_CACHE_TTL_MS_NAME)));
   }
 
   /**
@@ -217,10 +235,41 @@ public class KafkaAuthBinding {
         policyEngine, KafkaPrivilegeModel.getInstance()});
   }
 
+  private String getKafkaConfig(AuthzConfVars var) {
+    final Object config = kafkaConfigs == null ? null : kafkaConfigs.get(var.getVar());
+    return config != null ? config.toString() : var.getDefault();
+  }
+
   /**
-   * Authorize access to a Kafka privilege
+   * Authorize access to a Kafka privilege. Decisions are served from the decision cache
+   * when it is enabled, which is cleared whenever the privilege cache is reloaded.
    */
   public boolean authorize(RequestChannel.Session session, Operation operation, Resource resource) {
+    if (decisionCache == null) {
+      return hasAccess(session, operation, resource);
+    }
+    if (providerBackend instanceof CacheProvider) {
+      final Object table = ((CacheProvider) providerBackend).getCachedTable();
+      if (table != privilegeTable) {
+        decisionCache.invalidateAll();
+        privilegeTable = table;
+      }
+    }
+    // Read before the decision is made, so that it is not cached if the privileges
+    // change meanwhile
+    final long generation = decisionCache.getGeneration();
+    final Boolean allowed = decisionCache.get(session.principal(), session.clientAddress(),
+        resource, operation);
+    if (allowed != null) {
+      return allowed;
+    }
+    final boolean access = hasAccess(session, operation, resource);
+    decisionCache.put(session.principal(), session.clientAddress(), resource, operation, access,
+        generation);
+    return access;
+  }
+
+  private boolean hasAccess(RequestChannel.Session session, Operation operation, Resource resource) {
       List<Authorizable> authorizables = ConvertUtil.convertResourceToAuthorizable(session.clientAddress().getHostAddress(), resource);
       Set<KafkaAction> actions = Sets.newHashSet(actionFactory.getActionByName(operation.name()));
       return authProvider.hasAccess(new Subject(getName(session)), authorizables, actions, ActiveRoleSet.ALL);
@@ -230,44 +279,58 @@ public class KafkaAuthBinding {
     verifyAcls(acls);
     LOG.info("Adding Acl: acl->" + acls + " resource->" + resource);
 
+    final Set<String> roles = new HashSet<>();
     final Iterator<Acl> iterator = acls.iterator();
-    while (iterator.hasNext()) {
-      final Acl acl = iterator.next();
-      final String role = getRole(acl);
-      if (!roleExists(role)) {
-        throw new KafkaException("Can not add Acl for non-existent Role: " + role);
-      }
-      execute(new Command<Void>() {
-        @Override
-        public Void run(SentryGenericServiceClient client) throws Exception {
-          client.grantPrivilege(
-              requestorName, role, COMPONENT_NAME, toTSentryPrivilege(acl, resource));
-          return null;
+    try {
+      while (iterator.hasNext()) {
+        final Acl acl = iterator.next();
+        final String role = getRole(acl);
+        if (!roleExists(role)) {
+          throw new KafkaException("Can not add Acl for non-existent Role: " + role);
         }
-      });
+        execute(new Command<Void>() {
+          @Override
+          public Void run(SentryGenericServiceClient client) throws Exception {
+            client.grantPrivilege(
+                requestorName, role, COMPONENT_NAME, toTSentryPrivilege(acl, resource));
+            return null;
+          }
+        });
+        roles.add(role);
+      }
+    } finally {
+      refreshAclIndex(roles);
+      invalidateDecisions();
     }
   }
 
   public boolean removeAcls(scala.collection.immutable.Set<Acl> acls, final Resource resource) {
     verifyAcls(acls);
     LOG.info("Removing Acl: acl->" + acls + " resource->" + resource);
+    final Set<String> roles = new HashSet<>();
     final Iterator<Acl> iterator = acls.iterator();
-    while (iterator.hasNext()) {
-      final Acl acl = iterator.next();
-      final String role = getRole(acl);
-      try {
-        execute(new Command<Void>() {
-          @Override
-          public Void run(SentryGenericServiceClient client) throws Exception {
-            client.dropPrivilege(
-                    requestorName, role, toTSentryPrivilege(acl, resource));
-            return null;
-          }
-        });
-      } catch (KafkaException kex) {
-        LOG.error("Failed to remove acls.", kex);
-        return false;
+    try {
+      while (iterator.hasNext()) {
+        final Acl acl = iterator.next();
+        final String role = getRole(acl);
+        try {
+          execute(new Command<Void>() {
+            @Override
+            public Void run(SentryGenericServiceClient client) throws Exception {
+              client.dropPrivilege(
+                      requestorName, role, toTSentryPrivilege(acl, resource));
+              return null;
+            }
+          });
+        } catch (KafkaException kex) {
+          LOG.error("Failed to remove acls.", kex);
+          return false;
+        }
+        roles.add(role);
       }
+    } finally {
+      refreshAclIndex(roles);
+      invalidateDecisions();
     }
 
     return true;
@@ -297,19 +360,25 @@ public class KafkaAuthBinding {
         return null;
       }
     });
+    invalidateDecisions();
   }
 
   public void dropAllRoles() {
     final List<String> roles = getAllRoles();
-    execute(new Command<Void>() {
-      @Override
-      public Void run(SentryGenericServiceClient client) throws Exception {
-        for (String role : roles) {
-          client.dropRole(requestorName, role, COMPONENT_NAME);
+    try {
+      execute(new Command<Void>() {
+        @Override
+        public Void run(SentryGenericServiceClient client) throws Exception {
+          for (String role : roles) {
+            client.dropRole(requestorName, role, COMPONENT_NAME);
+          }
+          return null;
         }
-        return null;
-      }
-    });
+      });
+    } finally {
+      aclIndex = null;
+      invalidateDecisions();
+    }
   }
 
   private List<String> getRolesforGroup(final String groupName) {
@@ -327,14 +396,17 @@ public class KafkaAuthBinding {
     return roles;
   }
 
-  private SentryGenericServiceClient getClient() throws Exception {
+  @VisibleForTesting
+  SentryGenericServiceClient getClient() throws Exception {
     return SentryGenericServiceClientFactory.create(this.authConf);
   }
 
   public boolean removeAcls(final Resource resource) {
     LOG.info("Removing Acls for Resource: resource->" + resource);
-    List<String> roles = getAllRoles();
-    final List<TSentryPrivilege> tSentryPrivileges = getAllPrivileges(roles);
+    final List<TSentryPrivilege> tSentryPrivileges = new ArrayList<>();
+    for (Set<TSentryPrivilege> rolePrivileges : getRoleToPrivileges().values()) {
+      tSentryPrivileges.addAll(rolePrivileges);
+    }
     try {
       execute(new Command<Void>() {
         @Override
@@ -351,15 +423,18 @@ public class KafkaAuthBinding {
     } catch (KafkaException kex) {
       LOG.error("Failed to remove acls.", kex);
       return false;
+    } finally {
+      aclIndex = null;
+      invalidateDecisions();
     }
 
     return true;
   }
 
   public scala.collection.immutable.Set<Acl> getAcls(final Resource resource) {
-    final Option<scala.collection.immutable.Set<Acl>> acls = getAcls().get(resource);
-    if (acls.nonEmpty()) {
-      return acls.get();
+    final scala.collection.immutable.Set<Acl> acls = getAclIndex().resourceAcls.get(resource);
+    if (acls != null) {
+      return acls;
     }
     return new scala.collection.immutable.HashSet<Acl>();
   }
@@ -367,7 +442,16 @@ public class KafkaAuthBinding {
   public Map<Resource, scala.collection.immutable.Set<Acl>> getAcls(KafkaPrincipal principal) {
     if (principal.getPrincipalType().toLowerCase().equals("group")) {
       List<String> roles = getRolesforGroup(principal.getName());
-      return getAclsForRoles(roles);
+      final java.util.Map<String, Set<TSentryPrivilege>> rolePrivileges =
+          getAclIndex().rolePrivileges;
+      final java.util.Map<String, Set<TSentryPrivilege>> groupRolePrivileges = new HashMap<>();
+      for (String role : roles) {
+        final Set<TSentryPrivilege> privileges = rolePrivileges.get(role);
+        if (privileges != null) {
+          groupRolePrivileges.put(role, privileges);
+        }
+      }
+      return toScalaMap(rolePrivilegesToResourceAcls(groupRolePrivileges));
     } else {
       LOG.info("Did not recognize Principal type: " + principal.getPrincipalType() + ". Returning Acls for all principals.");
       return getAcls();
@@ -375,8 +459,59 @@ public class KafkaAuthBinding {
   }
 
   public Map<Resource, scala.collection.immutable.Set<Acl>> getAcls() {
-    final List<String> roles = getAllRoles();
-    return getAclsForRoles(roles);
+    return toScalaMap(getAclIndex().resourceAcls);
+  }
+
+  /**
+   * Returns the privileges of all roles indexed by resource. The index is reused for
+   * up to aclIndexTtlMs, and the roles whose Acls are changed through this binding
+   * are refreshed on the spot. Changes made through other brokers show up once the
+   * index expires.
+   */
+  private AclIndex getAclIndex() {
+    if (aclIndexTtlMs <= 0) {
+      return new AclIndex(getRoleToPrivileges(), 0);
+    }
+    AclIndex index = aclIndex;
+    if (index != null && !index.isExpired(aclIndexTtlMs)) {
+      return index;
+    }
+    synchronized (aclIndexLock) {
+      index = aclIndex;
+      if (index == null || index.isExpired(aclIndexTtlMs)) {
+        index = new AclIndex(getRoleToPrivileges(), System.currentTimeMillis());
+        aclIndex = index;
+      }
+      return index;
+    }
+  }
+
+  @VisibleForTesting
+  KafkaDecisionCache getDecisionCache() {
+    return decisionCache;
+  }
+
+  private void invalidateDecisions() {
+    if (decisionCache != null) {
+      decisionCache.invalidateAll();
+    }
+  }
+
+  private void refreshAclIndex(Set<String> roles) {
+    if (roles.isEmpty() || aclIndex == null) {
+      return;
+    }
+    synchronized (aclIndexLock) {
+      try {
+        AclIndex index = aclIndex;
+        if (index != null) {
+          aclIndex = index.withRolePrivileges(getRoleToPrivileges(new ArrayList<>(roles)));
+        }
+      } catch (KafkaException kex) {
+        LOG.warn("Failed to refresh Acls of roles " + roles + ", dropping the Acl index", kex);
+        aclIndex = null;
+      }
+    }
   }
 
   /**
@@ -427,22 +562,6 @@ public class KafkaAuthBinding {
     return false;
   }
 
-  private List<TSentryPrivilege> getAllPrivileges(final List<String> roles) {
-    final List<TSentryPrivilege> tSentryPrivileges = new ArrayList<>();
-    execute(new Command<Void>() {
-      @Override
-      public Void run(SentryGenericServiceClient client) throws Exception {
-        for (String role : roles) {
-          tSentryPrivileges.addAll(client.listAllPrivilegesByRoleName(
-                requestorName, role, COMPONENT_NAME, instanceName));
-        }
-        return null;
-      }
-    });
-
-    return tSentryPrivileges;
-  }
-
   private List<String> getAllRoles() {
     final List<String> roles = new ArrayList<>();
     execute(new Command<Void>() {
@@ -458,19 +577,16 @@ public class KafkaAuthBinding {
     return roles;
   }
 
-  private Map<Resource, scala.collection.immutable.Set<Acl>> getAclsForRoles(final List<String> roles) {
-    return scala.collection.JavaConverters.mapAsScalaMapConverter(
-              rolePrivilegesToResourceAcls(getRoleToPrivileges(roles)))
+  private static Map<Resource, scala.collection.immutable.Set<Acl>> toScalaMap(
+      java.util.Map<Resource, scala.collection.immutable.Set<Acl>> resourceAcls) {
+    return scala.collection.JavaConverters.mapAsScalaMapConverter(resourceAcls)
               .asScala().toMap(Predef.<Tuple2<Resource, scala.collection.immutable.Set<Acl>>>conforms());
   }
 
-  private java.util.Map<Resource, scala.collection.immutable.Set<Acl>> rolePrivilegesToResourceAcls(java.util.Map<String, scala.collection.immutable.Set<TSentryPrivilege>> rolePrivilegesMap) {
-    final java.util.Map<Resource, scala.collection.immutable.Set<Acl>> resourceAclsMap = new HashMap<>();
-    for (java.util.Map.Entry<String, scala.collection.immutable.Set<TSentryPrivilege>> rolePrivilege : rolePrivilegesMap.entrySet()) {
-      scala.collection.immutable.Set<TSentryPrivilege> privileges = rolePrivilege.getValue();
-      final Iterator<TSentryPrivilege> iterator = privileges.iterator();
-      while (iterator.hasNext()) {
-        TSentryPrivilege privilege = iterator.next();
+  private static java.util.Map<Resource, scala.collection.immutable.Set<Acl>> rolePrivilegesToResourceAcls(java.util.Map<String, Set<TSentryPrivilege>> rolePrivilegesMap) {
+    final java.util.Map<Resource, Set<Acl>> resourceAclsJava = new HashMap<>();
+    for (java.util.Map.Entry<String, Set<TSentryPrivilege>> rolePrivilege : rolePrivilegesMap.entrySet()) {
+      for (TSentryPrivilege privilege : rolePrivilege.getValue()) {
         final List<TAuthorizable> authorizables = privilege.getAuthorizables();
         String host = null;
         String operation = privilege.getAction();
@@ -483,30 +599,64 @@ public class KafkaAuthBinding {
               operation = "All";
             }
             Acl acl = new Acl(new KafkaPrincipal("role", rolePrivilege.getKey()), Allow$.MODULE$, host, Operation$.MODULE$.fromString(operation));
-            Set<Acl> newAclsJava = new HashSet<Acl>();
-            newAclsJava.add(acl);
-            addExistingAclsForResource(resourceAclsMap, resource, newAclsJava);
-            final scala.collection.mutable.Set<Acl> aclScala = JavaConversions.asScalaSet(newAclsJava);
-            resourceAclsMap.put(resource, aclScala.<Acl>toSet());
+            Set<Acl> acls = resourceAclsJava.get(resource);
+            if (acls == null) {
+              acls = new HashSet<>();
+              resourceAclsJava.put(resource, acls);
+            }
+            acls.add(acl);
           }
         }
       }
     }
 
+    final java.util.Map<Resource, scala.collection.immutable.Set<Acl>> resourceAclsMap = new HashMap<>();
+    for (java.util.Map.Entry<Resource, Set<Acl>> resourceAcls : resourceAclsJava.entrySet()) {
+      resourceAclsMap.put(resourceAcls.getKey(),
+          JavaConversions.asScalaSet(resourceAcls.getValue()).<Acl>toSet());
+    }
     return resourceAclsMap;
   }
 
-  private java.util.Map<String, scala.collection.immutable.Set<TSentryPrivilege>> getRoleToPrivileges(final List<String> roles) {
-    final java.util.Map<String, scala.collection.immutable.Set<TSentryPrivilege>> rolePrivilegesMap = new HashMap<>();
+  /**
+   * Fetches the privileges of all the roles with a single request. Servers that do not
+   * support listing all the privileges of a service reject the empty authorizable, the
+   * privileges are then fetched role by role.
+   */
+  private java.util.Map<String, Set<TSentryPrivilege>> getRoleToPrivileges() {
+    try {
+      return execute(new Command<java.util.Map<String, Set<TSentryPrivilege>>>() {
+        @Override
+        public java.util.Map<String, Set<TSentryPrivilege>> run(SentryGenericServiceClient client)
+            throws Exception {
+          final java.util.Map<String, TSentryPrivilegeMap> privilegesByAuth =
+              client.listPrivilegesbyAuthorizable(COMPONENT_NAME, instanceName, requestorName,
+                  Collections.singleton(ALL_AUTHORIZABLES), null, ActiveRoleSet.ALL);
+          final java.util.Map<String, Set<TSentryPrivilege>> rolePrivilegesMap =
+              new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+          final TSentryPrivilegeMap privilegeMap =
+              privilegesByAuth == null ? null : privilegesByAuth.get(ALL_AUTHORIZABLES);
+          if (privilegeMap != null) {
+            rolePrivilegesMap.putAll(privilegeMap.getPrivilegeMap());
+          }
+          return rolePrivilegesMap;
+        }
+      });
+    } catch (KafkaException kex) {
+      LOG.warn("Failed to fetch the privileges of all roles at once, fetching them by role", kex);
+      return getRoleToPrivileges(getAllRoles());
+    }
+  }
+
+  private java.util.Map<String, Set<TSentryPrivilege>> getRoleToPrivileges(final List<String> roles) {
+    final java.util.Map<String, Set<TSentryPrivilege>> rolePrivilegesMap =
+        new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
     execute(new Command<Void>() {
       @Override
       public Void run(SentryGenericServiceClient client) throws Exception {
         for (String role : roles) {
-          final Set<TSentryPrivilege> rolePrivileges = client.listAllPrivilegesByRoleName(
-              requestorName, role, COMPONENT_NAME, instanceName);
-          final scala.collection.immutable.Set<TSentryPrivilege> rolePrivilegesScala =
-              scala.collection.JavaConverters.asScalaSetConverter(rolePrivileges).asScala().toSet();
-          rolePrivilegesMap.put(role, rolePrivilegesScala);
+          rolePrivilegesMap.put(role, client.listAllPrivilegesByRoleName(
+              requestorName, role, COMPONENT_NAME, instanceName));
         }
         return null;
       }
@@ -515,17 +665,6 @@ public class KafkaAuthBinding {
     return rolePrivilegesMap;
   }
 
-  private void addExistingAclsForResource(java.util.Map<Resource, scala.collection.immutable.Set<Acl>> resourceAclsMap, Resource resource, Set<Acl> newAclsJava) {
-    final scala.collection.immutable.Set<Acl> existingAcls = resourceAclsMap.get(resource);
-    if (existingAcls != null) {
-      final Iterator<Acl> aclsIter = existingAcls.iterator();
-      while (aclsIter.hasNext()) {
-        Acl curAcl = aclsIter.next();
-        newAclsJava.add(curAcl);
-      }
-    }
-  }
-
   private boolean roleExists(String role) {
       return getAllRoles().contains(role);
   }
@@ -592,4 +731,40 @@ public class KafkaAuthBinding {
       }
     }
   }
+
+  /**
+   * Immutable view of the privileges of the roles, by role and as Acls by resource.
+   */
+  private static final class AclIndex {
+    private final java.util.Map<String, Set<TSentryPrivilege>> rolePrivileges;
+    private final java.util.Map<Resource, scala.collection.immutable.Set<Acl>> resourceAcls;
+    private final long loadTimeMs;
+
+    AclIndex(java.util.Map<String, Set<TSentryPrivilege>> rolePrivileges, long loadTimeMs) {
+      this.rolePrivileges = rolePrivileges;
+      this.resourceAcls = rolePrivilegesToResourceAcls(rolePrivileges);
+      this.loadTimeMs = loadTimeMs;
+    }
+
+    boolean isExpired(long ttlMs) {
+      return System.currentTimeMillis() - loadTimeMs >= ttlMs;
+    }
+
+    /**
+     * @return a new index with the privileges of the given roles replaced
+     */
+    AclIndex withRolePrivileges(java.util.Map<String, Set<TSentryPrivilege>> changed) {
+      final java.util.Map<String, Set<TSentryPrivilege>> merged =
+          new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      merged.putAll(rolePrivileges);
+      for (java.util.Map.Entry<String, Set<TSentryPrivilege>> entry : changed.entrySet()) {
+        if (entry.getValue() == null || entry.getValue().isEmpty()) {
+          merged.remove(entry.getKey());
+        } else {
+          merged.put(entry.getKey(), entry.getValue());
+        }
+      }
+      return new AclIndex(merged, loadTimeMs);
+    }
+  }
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.kafka.binding;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import kafka.security.auth.Operation;
+import kafka.security.auth.Resource;
+import org.apache.kafka.common.security.auth.KafkaPrincipal;
+
+/**
+ * Cache of the authorization decisions of a broker, keyed by principal, client host,
+ * resource and operation.
+ * <p>
+ * The keys are the objects of the Kafka session and request, looked up through nested
+ * maps, so that a hit allocates nothing. Decisions expire after a short TTL. When the
+ * cache holds maxSize decisions it is cleared before adding a new one, which bounds
+ * its size without the bookkeeping of an LRU on the hit path.
+ * <p>
+ * Each invalidation starts a new generation. A decision is only added if no
+ * invalidation happened since the generation its caller read before making it, so
+ * that a decision made with the privileges before a change is not cached after it.
+ */
+class KafkaDecisionCache {
+
+  private final int maxSize;
+  private final long ttlNs;
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicReference<ConcurrentMap<KafkaPrincipal,
+      ConcurrentMap<InetAddress, ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>>>>>
+      decisions = new AtomicReference<>(newDecisions());
+
+  KafkaDecisionCache(int maxSize, long ttlMs) {
+    this.maxSize = maxSize;
+    this.ttlNs = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+  }
+
+  /**
+   * @return the cached decision, or null if there is none or it has expired
+   */
+  Boolean get(KafkaPrincipal principal, InetAddress host, Resource resource,
+      Operation operation) {
+    ConcurrentMap<InetAddress, ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>>>
+        hostDecisions = decisions.get().get(principal);
+    if (hostDecisions == null) {
+      return null;
+    }
+    ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>> resourceDecisions =
+        hostDecisions.get(host);
+    if (resourceDecisions == null) {
+      return null;
+    }
+    ConcurrentMap<Operation, Decision> operationDecisions = resourceDecisions.get(resource);
+    if (operationDecisions == null) {
+      return null;
+    }
+    Decision decision = operationDecisions.get(operation);
+    if (decision == null || System.nanoTime() - decision.expiresNs > 0) {
+      return null;
+    }
+    return decision.allowed ? Boolean.TRUE : Boolean.FALSE;
+  }
+
+  /**
+   * @return the current generation, to read before making a decision to {@link #put}
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Adds a decision, unless the cache was invalidated since the given generation.
+   */
+  void put(KafkaPrincipal principal, InetAddress host, Resource resource,
+      Operation operation, boolean allowed, long decisionGeneration) {
+    // The decisions are read before the generation, and invalidateAll() changes them
+    // in the opposite order, so a decision either fails the check or is added to
+    // decisions that invalidateAll() drops.
+    ConcurrentMap<KafkaPrincipal,
+        ConcurrentMap<InetAddress, ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>>>>
+        current = decisions.get();
+    if (generation.get() != decisionGeneration) {
+      return;
+    }
+    if (size.incrementAndGet() > maxSize) {
+      // Clearing the decisions bounds the size without starting a new generation
+      ConcurrentMap<KafkaPrincipal,
+          ConcurrentMap<InetAddress, ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>>>>
+          cleared = newDecisions();
+      if (!decisions.compareAndSet(current, cleared)) {
+        // Invalidated or cleared meanwhile
+        return;
+      }
+      size.set(1);
+      current = cleared;
+    }
+    ConcurrentMap<InetAddress, ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>>>
+        hostDecisions = getOrCreate(current, principal);
+    ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>> resourceDecisions =
+        getOrCreate(hostDecisions, host);
+    ConcurrentMap<Operation, Decision> operationDecisions =
+        getOrCreate(resourceDecisions, resource);
+    if (operationDecisions.put(operation, new Decision(allowed, System.nanoTime() + ttlNs))
+        != null) {
+      // Replaced an expired decision
+      size.decrementAndGet();
+    }
+  }
+
+  void invalidateAll() {
+    generation.incrementAndGet();
+    decisions.set(newDecisions());
+    size.set(0);
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  private static ConcurrentMap<KafkaPrincipal,
+      ConcurrentMap<InetAddress, ConcurrentMap<Resource, ConcurrentMap<Operation, Decision>>>>
+      newDecisions() {
+    return new ConcurrentHashMap<>();
+  }
+
+  private static <K, K2, V2> ConcurrentMap<K2, V2> getOrCreate(
+      ConcurrentMap<K, ConcurrentMap<K2, V2>> map, K key) {
+    ConcurrentMap<K2, V2> value = map.get(key);
+    if (value == null) {
+      value = new ConcurrentHashMap<>();
+      ConcurrentMap<K2, V2> existing = map.putIfAbsent(key, value);
+      if (existing != null) {
+        value = existing;
+      }
+    }
+    return value;
+  }
+
+  private static final class Decision {
+    private final boolean allowed;
+    private final long expiresNs;
+
+    Decision(boolean allowed, long expiresNs) {
+      this.allowed = allowed;
+      this.expiresNs = expiresNs;
+    }
+  }
+}
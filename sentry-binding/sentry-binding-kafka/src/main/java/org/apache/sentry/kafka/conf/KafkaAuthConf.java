@@ -36,6 +36,9 @@ public class KafkaAuthConf extends Configuration {
   public static final String SENTRY_KAFKA_CACHING_ENABLE_NAME = "sentry.kafka.caching.enable";
   public static final String SENTRY_KAFKA_CACHING_TTL_MS_NAME = "sentry.kafka.caching.ttl.ms";
   public static final String SENTRY_KAFKA_CACHING_UPDATE_FAILURES_COUNT_NAME = "sentry.kafka.caching.update.failures.count";
+  public static final String SENTRY_KAFKA_ACL_INDEX_TTL_MS_NAME = "sentry.kafka.acl.index.ttl.ms";
+  public static final String SENTRY_KAFKA_DECISION_CACHE_SIZE_NAME = "sentry.kafka.decision.cache.size";
+  public static final String SENTRY_KAFKA_DECISION_CACHE_TTL_MS_NAME = "sentry.kafka.decision.cache.ttl.ms";
 
   /**
    * Config setting definitions
@@ -52,7 +55,10 @@ public class KafkaAuthConf extends Configuration {
     AUTHZ_KEYTAB_FILE_NAME(KAFKA_KEYTAB_FILE_NAME, null),
     AUTHZ_CACHING_ENABLE_NAME(SENTRY_KAFKA_CACHING_ENABLE_NAME, "false"),
     AUTHZ_CACHING_TTL_MS_NAME(SENTRY_KAFKA_CACHING_TTL_MS_NAME, "30000"),
-    AUTHZ_CACHING_UPDATE_FAILURES_COUNT_NAME(SENTRY_KAFKA_CACHING_UPDATE_FAILURES_COUNT_NAME, "3");
+    AUTHZ_CACHING_UPDATE_FAILURES_COUNT_NAME(SENTRY_KAFKA_CACHING_UPDATE_FAILURES_COUNT_NAME, "3"),
+    AUTHZ_ACL_INDEX_TTL_MS_NAME(SENTRY_KAFKA_ACL_INDEX_TTL_MS_NAME, "0"),
+    AUTHZ_DECISION_CACHE_SIZE_NAME(SENTRY_KAFKA_DECISION_CACHE_SIZE_NAME, "0"),
+    AUTHZ_DECISION_CACHE_TTL_MS_NAME(SENTRY_KAFKA_DECISION_CACHE_TTL_MS_NAME, "1000");
 
     private final String varName;
     private final String defaultVal;
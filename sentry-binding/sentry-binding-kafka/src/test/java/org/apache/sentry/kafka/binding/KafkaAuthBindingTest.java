@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.kafka.binding;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import kafka.network.RequestChannel;
+import kafka.security.auth.Acl;
+import kafka.security.auth.Allow$;
+import kafka.security.auth.Operation;
+import kafka.security.auth.Operation$;
+import kafka.security.auth.Resource;
+import kafka.security.auth.ResourceType$;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.kafka.common.security.auth.KafkaPrincipal;
+import org.apache.sentry.api.generic.thrift.SentryGenericServiceClient;
+import org.apache.sentry.api.generic.thrift.TAuthorizable;
+import org.apache.sentry.api.generic.thrift.TSentryPrivilege;
+import org.apache.sentry.api.generic.thrift.TSentryPrivilegeMap;
+import org.apache.sentry.api.generic.thrift.TSentryRole;
+import org.apache.sentry.core.common.ActiveRoleSet;
+import org.apache.sentry.core.common.exception.SentryUserException;
+import org.apache.sentry.kafka.conf.KafkaAuthConf.AuthzConfVars;
+import org.apache.sentry.provider.file.SimpleFileProviderBackend;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import scala.collection.JavaConversions;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the caches of {@link KafkaAuthBinding}, with a policy file for the authorization
+ * decisions and a mocked Sentry client for the Acls.
+ */
+public class KafkaAuthBindingTest {
+
+  private static final String ROLE = "consumer_t1";
+  private static final String PRODUCER_ROLE = "producer_t2";
+
+  private final Resource topic1 = new Resource(ResourceType$.MODULE$.fromString("topic"), "t1");
+  private final Resource topic2 = new Resource(ResourceType$.MODULE$.fromString("topic"), "t2");
+  private final Operation read = Operation$.MODULE$.fromString("Read");
+  private final Operation write = Operation$.MODULE$.fromString("Write");
+  private final Map<String, Object> kafkaConfigs = new HashMap<>();
+  private File policyFile;
+  private SentryGenericServiceClient client;
+  private RequestChannel.Session session;
+
+  @Before
+  public void setUp() throws Exception {
+    File policyDir = Files.createTempDir();
+    policyDir.deleteOnExit();
+    policyFile = new File(policyDir, "kafka-policy.ini");
+    policyFile.deleteOnExit();
+    writePolicy("host=*->topic=t1->action=read");
+
+    client = Mockito.mock(SentryGenericServiceClient.class);
+    Mockito.when(client.listAllRoles(Mockito.anyString(), Mockito.anyString()))
+        .thenReturn(Sets.newHashSet(new TSentryRole(ROLE, Sets.newHashSet("consumer1")),
+            new TSentryRole(PRODUCER_ROLE, Sets.newHashSet("producer2"))));
+    session = new RequestChannel.Session(
+        new KafkaPrincipal(KafkaPrincipal.USER_TYPE, "consumer1"),
+        InetAddress.getByAddress("host1", new byte[] {1, 2, 3, 4}));
+    kafkaConfigs.put(AuthzConfVars.AUTHZ_DECISION_CACHE_SIZE_NAME.getVar(), "100");
+    kafkaConfigs.put(AuthzConfVars.AUTHZ_DECISION_CACHE_TTL_MS_NAME.getVar(), "60000");
+  }
+
+  @Test
+  public void testAclChangesInvalidateDecisions() throws Exception {
+    KafkaAuthBinding binding = newBinding(0);
+    KafkaDecisionCache decisionCache = binding.getDecisionCache();
+    Assert.assertTrue(binding.authorize(session, read, topic1));
+    Assert.assertEquals(1, decisionCache.size());
+
+    binding.addAcls(acls(ROLE, read), topic1);
+    Mockito.verify(client).grantPrivilege(Mockito.anyString(), Mockito.eq(ROLE),
+        Mockito.anyString(), Mockito.any(TSentryPrivilege.class));
+    Assert.assertEquals(0, decisionCache.size());
+
+    Assert.assertTrue(binding.authorize(session, read, topic1));
+    Assert.assertEquals(1, decisionCache.size());
+    Assert.assertTrue(binding.removeAcls(acls(ROLE, read), topic1));
+    Assert.assertEquals(0, decisionCache.size());
+
+    Assert.assertTrue(binding.authorize(session, read, topic1));
+    binding.addRoleToGroups(ROLE, Sets.newHashSet("consumer2"));
+    Assert.assertEquals(0, decisionCache.size());
+  }
+
+  @Test
+  public void testPolicyReloadsInvalidateDecisions() throws Exception {
+    KafkaAuthBinding binding = newBinding(10);
+    Assert.assertTrue(binding.authorize(session, read, topic1));
+    Assert.assertTrue(binding.authorize(session, read, topic1));
+
+    // The read privilege is revoked, the cached decision must not outlive the reload
+    writePolicy("host=*->topic=t2->action=write");
+    long deadlineNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (binding.authorize(session, read, topic1) && System.nanoTime() < deadlineNs) {
+      Thread.sleep(10);
+    }
+    Assert.assertFalse(binding.authorize(session, read, topic1));
+  }
+
+  @Test
+  public void testAclIndexIsBuiltWithOneRequest() throws Exception {
+    kafkaConfigs.put(AuthzConfVars.AUTHZ_ACL_INDEX_TTL_MS_NAME.getVar(), "60000");
+    mockAllPrivileges(privileges(ROLE, privilege("t1", "read")),
+        privileges(PRODUCER_ROLE, privilege("t2", "write")));
+    KafkaAuthBinding binding = newBinding(0);
+
+    Assert.assertEquals(Sets.newHashSet(acl(ROLE, read)),
+        JavaConversions.setAsJavaSet(binding.getAcls(topic1)));
+    Assert.assertEquals(Sets.newHashSet(acl(PRODUCER_ROLE, write)),
+        JavaConversions.setAsJavaSet(binding.getAcls(topic2)));
+    Assert.assertEquals(2, binding.getAcls().size());
+
+    // The index is reused until it expires
+    Mockito.verify(client, Mockito.times(1)).listPrivilegesbyAuthorizable(Mockito.anyString(),
+        Mockito.anyString(), Mockito.anyString(), Mockito.anySet(), Mockito.anySet(),
+        Mockito.any(ActiveRoleSet.class));
+    Mockito.verify(client, Mockito.never()).listAllPrivilegesByRoleName(Mockito.anyString(),
+        Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+  }
+
+  @Test
+  public void testAclIndexRefreshesTheChangedRoles() throws Exception {
+    kafkaConfigs.put(AuthzConfVars.AUTHZ_ACL_INDEX_TTL_MS_NAME.getVar(), "60000");
+    mockAllPrivileges(privileges(ROLE, privilege("t1", "read")),
+        privileges(PRODUCER_ROLE, privilege("t2", "write")));
+    KafkaAuthBinding binding = newBinding(0);
+    Assert.assertEquals(1, binding.getAcls(topic1).size());
+
+    mockRolePrivileges(ROLE, privilege("t1", "read"), privilege("t1", "write"));
+    binding.addAcls(acls(ROLE, write), topic1);
+    Assert.assertEquals(Sets.newHashSet(acl(ROLE, read), acl(ROLE, write)),
+        JavaConversions.setAsJavaSet(binding.getAcls(topic1)));
+
+    // A role left without privileges is removed from the index
+    mockRolePrivileges(PRODUCER_ROLE);
+    Assert.assertTrue(binding.removeAcls(acls(PRODUCER_ROLE, write), topic2));
+    Assert.assertTrue(binding.getAcls(topic2).isEmpty());
+
+    // Only the changed roles were read again
+    Mockito.verify(client, Mockito.times(1)).listPrivilegesbyAuthorizable(Mockito.anyString(),
+        Mockito.anyString(), Mockito.anyString(), Mockito.anySet(), Mockito.anySet(),
+        Mockito.any(ActiveRoleSet.class));
+    Mockito.verify(client, Mockito.times(1)).listAllPrivilegesByRoleName(Mockito.anyString(),
+        Mockito.eq(ROLE), Mockito.anyString(), Mockito.anyString());
+    Mockito.verify(client, Mockito.times(1)).listAllPrivilegesByRoleName(Mockito.anyString(),
+        Mockito.eq(PRODUCER_ROLE), Mockito.anyString(), Mockito.anyString());
+  }
+
+  @Test
+  public void testAclIndexIsBuiltRoleByRoleWithoutTheAllPrivilegesRequest() throws Exception {
+    kafkaConfigs.put(AuthzConfVars.AUTHZ_ACL_INDEX_TTL_MS_NAME.getVar(), "60000");
+    // Servers before the request for all the privileges reject the empty authorizable
+    Mockito.when(client.listPrivilegesbyAuthorizable(Mockito.anyString(), Mockito.anyString(),
+        Mockito.anyString(), Mockito.anySet(), Mockito.anySet(),
+        Mockito.any(ActiveRoleSet.class)))
+        .thenThrow(new SentryUserException("Invalid authorizable"));
+    mockRolePrivileges(ROLE, privilege("t1", "read"));
+    mockRolePrivileges(PRODUCER_ROLE, privilege("t2", "write"));
+    KafkaAuthBinding binding = newBinding(0);
+
+    Assert.assertEquals(Sets.newHashSet(acl(ROLE, read)),
+        JavaConversions.setAsJavaSet(binding.getAcls(topic1)));
+    Assert.assertEquals(Sets.newHashSet(acl(PRODUCER_ROLE, write)),
+        JavaConversions.setAsJavaSet(binding.getAcls(topic2)));
+  }
+
+  @Test
+  public void testAclIndexIsReloadedWhenARoleCannotBeRefreshed() throws Exception {
+    kafkaConfigs.put(AuthzConfVars.AUTHZ_ACL_INDEX_TTL_MS_NAME.getVar(), "60000");
+    mockAllPrivileges(privileges(ROLE, privilege("t1", "read")),
+        privileges(PRODUCER_ROLE, privilege("t2", "write")));
+    KafkaAuthBinding binding = newBinding(0);
+    Assert.assertEquals(1, binding.getAcls(topic1).size());
+
+    Mockito.when(client.listAllPrivilegesByRoleName(Mockito.anyString(), Mockito.eq(ROLE),
+        Mockito.anyString(), Mockito.anyString()))
+        .thenThrow(new SentryUserException("Connection reset"));
+    mockAllPrivileges(privileges(ROLE, privilege("t1", "read"), privilege("t1", "write")),
+        privileges(PRODUCER_ROLE, privilege("t2", "write")));
+    binding.addAcls(acls(ROLE, write), topic1);
+
+    // The index was dropped, and is read again in full
+    Assert.assertEquals(Sets.newHashSet(acl(ROLE, read), acl(ROLE, write)),
+        JavaConversions.setAsJavaSet(binding.getAcls(topic1)));
+    Mockito.verify(client, Mockito.times(2)).listPrivilegesbyAuthorizable(Mockito.anyString(),
+        Mockito.anyString(), Mockito.anyString(), Mockito.anySet(), Mockito.anySet(),
+        Mockito.any(ActiveRoleSet.class));
+  }
+
+  private KafkaAuthBinding newBinding(long reloadIntervalMs) throws Exception {
+    Configuration authConf = new Configuration();
+    authConf.set(AuthzConfVars.AUTHZ_PROVIDER_RESOURCE.getVar(), policyFile.getPath());
+    authConf.set(AuthzConfVars.AUTHZ_PROVIDER_BACKEND.getVar(),
+        SimpleFileProviderBackend.class.getName());
+    authConf.setLong(SimpleFileProviderBackend.RELOAD_INTERVAL_MS, reloadIntervalMs);
+    return new KafkaAuthBinding("kafka", "kafka", authConf, kafkaConfigs) {
+      @Override
+      SentryGenericServiceClient getClient() {
+        return client;
+      }
+    };
+  }
+
+  private void writePolicy(String privilege) throws Exception {
+    Files.write("[groups]\nconsumer1 = " + ROLE + "\n\n[roles]\n" + ROLE + " = " + privilege
+        + "\n", policyFile, StandardCharsets.UTF_8);
+  }
+
+  private void mockAllPrivileges(Map<String, Set<TSentryPrivilege>>... rolePrivileges)
+      throws Exception {
+    Map<String, Set<TSentryPrivilege>> privilegeMap = new HashMap<>();
+    for (Map<String, Set<TSentryPrivilege>> privileges : rolePrivileges) {
+      privilegeMap.putAll(privileges);
+    }
+    Map<String, TSentryPrivilegeMap> privilegesByAuth = new HashMap<>();
+    // All the privileges are listed under the empty authorizable
+    privilegesByAuth.put("", new TSentryPrivilegeMap(privilegeMap));
+    Mockito.when(client.listPrivilegesbyAuthorizable(Mockito.anyString(), Mockito.anyString(),
+        Mockito.anyString(), Mockito.anySet(), Mockito.anySet(),
+        Mockito.any(ActiveRoleSet.class))).thenReturn(privilegesByAuth);
+  }
+
+  private void mockRolePrivileges(String role, TSentryPrivilege... privileges)
+      throws Exception {
+    Mockito.when(client.listAllPrivilegesByRoleName(Mockito.anyString(), Mockito.eq(role),
+        Mockito.anyString(), Mockito.anyString())).thenReturn(Sets.newHashSet(privileges));
+  }
+
+  private static Map<String, Set<TSentryPrivilege>> privileges(String role,
+      TSentryPrivilege... privileges) {
+    return Collections.<String, Set<TSentryPrivilege>>singletonMap(role,
+        Sets.newHashSet(privileges));
+  }
+
+  private static TSentryPrivilege privilege(String topic, String action) {
+    return new TSentryPrivilege("kafka", "kafka", Lists.newArrayList(
+        new TAuthorizable("HOST", "*"), new TAuthorizable("TOPIC", topic)), action);
+  }
+
+  private static Acl acl(String role, Operation operation) {
+    return new Acl(new KafkaPrincipal("role", role), Allow$.MODULE$, "*", operation);
+  }
+
+  private static scala.collection.immutable.Set<Acl> acls(String role, Operation operation) {
+    return JavaConversions.asScalaSet(Sets.newHashSet(acl(role, operation))).<Acl>toSet();
+  }
+}
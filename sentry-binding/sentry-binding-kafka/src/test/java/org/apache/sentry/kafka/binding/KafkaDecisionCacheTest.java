@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.kafka.binding;
+
+import kafka.security.auth.Operation;
+import kafka.security.auth.Operation$;
+import kafka.security.auth.Resource;
+import kafka.security.auth.ResourceType$;
+import org.apache.kafka.common.security.auth.KafkaPrincipal;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+public class KafkaDecisionCacheTest {
+
+  private final KafkaPrincipal user1 = new KafkaPrincipal(KafkaPrincipal.USER_TYPE, "user1");
+  private final KafkaPrincipal user2 = new KafkaPrincipal(KafkaPrincipal.USER_TYPE, "user2");
+  private final InetAddress host1;
+  private final Resource topic1 = new Resource(ResourceType$.MODULE$.fromString("topic"), "t1");
+  private final Resource topic2 = new Resource(ResourceType$.MODULE$.fromString("topic"), "t2");
+  private final Operation read = Operation$.MODULE$.fromString("Read");
+  private final Operation write = Operation$.MODULE$.fromString("Write");
+
+  public KafkaDecisionCacheTest() throws UnknownHostException {
+    host1 = InetAddress.getByAddress("host1", new byte[] {1, 2, 3, 4});
+  }
+
+  @Test
+  public void testDecisionsAreKeyedByRequest() throws Exception {
+    KafkaDecisionCache cache = new KafkaDecisionCache(100, 60000);
+    cache.put(user1, host1, topic1, read, true, cache.getGeneration());
+    cache.put(user1, host1, topic1, write, false, cache.getGeneration());
+
+    Assert.assertEquals(Boolean.TRUE, cache.get(user1, host1, topic1, read));
+    Assert.assertEquals(Boolean.FALSE, cache.get(user1, host1, topic1, write));
+    // Equal keys built from new objects hit the same decisions
+    Assert.assertEquals(Boolean.TRUE, cache.get(new KafkaPrincipal(KafkaPrincipal.USER_TYPE, "user1"),
+        InetAddress.getByAddress("host1", new byte[] {1, 2, 3, 4}),
+        new Resource(ResourceType$.MODULE$.fromString("topic"), "t1"), read));
+    Assert.assertNull(cache.get(user2, host1, topic1, read));
+    Assert.assertNull(cache.get(user1, InetAddress.getByAddress("host2", new byte[] {2, 3, 4, 5}),
+        topic1, read));
+    Assert.assertNull(cache.get(user1, host1, topic2, read));
+    Assert.assertEquals(2, cache.size());
+
+    cache.invalidateAll();
+    Assert.assertNull(cache.get(user1, host1, topic1, read));
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testDecisionsExpire() throws Exception {
+    KafkaDecisionCache cache = new KafkaDecisionCache(100, 1);
+    cache.put(user1, host1, topic1, read, true, cache.getGeneration());
+    Thread.sleep(10);
+    Assert.assertNull(cache.get(user1, host1, topic1, read));
+    cache.put(user1, host1, topic1, read, false, cache.getGeneration());
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testDecisionsMadeBeforeAnInvalidationAreNotAdded() {
+    KafkaDecisionCache cache = new KafkaDecisionCache(100, 60000);
+    long generation = cache.getGeneration();
+    // The privileges change while the decision is made
+    cache.invalidateAll();
+    cache.put(user1, host1, topic1, read, true, generation);
+    Assert.assertNull(cache.get(user1, host1, topic1, read));
+    Assert.assertEquals(0, cache.size());
+
+    cache.put(user1, host1, topic1, read, false, cache.getGeneration());
+    Assert.assertEquals(Boolean.FALSE, cache.get(user1, host1, topic1, read));
+  }
+
+  @Test
+  public void testSizeIsBounded() {
+    KafkaDecisionCache cache = new KafkaDecisionCache(2, 60000);
+    cache.put(user1, host1, topic1, read, true, cache.getGeneration());
+    cache.put(user1, host1, topic2, read, true, cache.getGeneration());
+    cache.put(user2, host1, topic1, read, true, cache.getGeneration());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertNull(cache.get(user1, host1, topic1, read));
+    Assert.assertEquals(Boolean.TRUE, cache.get(user2, host1, topic1, read));
+  }
+}
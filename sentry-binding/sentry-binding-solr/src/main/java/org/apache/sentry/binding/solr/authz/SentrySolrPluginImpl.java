@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -185,12 +186,13 @@ public class SentrySolrPluginImpl implements AuthorizationPlugin {
         case UPDATE_PERM: {
           AuthorizationResponse resp = AuthorizationResponse.FORBIDDEN;
           Set<SolrModelAction> actions = (perm == Name.READ_PERM) ? QUERY : UPDATE;
+          // The collections of an alias are authorized in one pass, each of them once
+          Map<String, Collection> collections = new LinkedHashMap<>();
           for (CollectionRequest req : authCtx.getCollectionRequests()) {
-            resp = binding.authorizeCollection(userName,
-                new Collection(req.collectionName), actions);
-            if (!AuthorizationResponse.OK.equals(resp)) {
-              break;
-            }
+            collections.putIfAbsent(req.collectionName, new Collection(req.collectionName));
+          }
+          if (!collections.isEmpty()) {
+            resp = binding.authorize(userName, collections.values(), actions);
           }
 
           audit (perm, authCtx, resp);
@@ -26,6 +26,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.sentry.binding.solr.conf.SolrAuthzConf;
@@ -43,6 +46,7 @@ import org.apache.sentry.core.model.solr.SolrModelAuthorizable;
 import org.apache.sentry.policy.common.PolicyEngine;
 import org.apache.sentry.provider.common.AuthorizationComponent;
 import org.apache.sentry.provider.common.AuthorizationProvider;
+import org.apache.sentry.provider.common.CacheProvider;
 import org.apache.sentry.provider.common.HadoopGroupResourceAuthorizationProvider;
 import org.apache.sentry.provider.common.ProviderBackend;
 import org.apache.sentry.provider.common.ProviderBackendContext;
@@ -56,6 +60,10 @@ import org.apache.solr.security.AuthorizationResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * This class provides functionality to initialize the Sentry (specifically
  * {@linkplain AuthorizationProvider} and {@linkplain ProviderBackend}) as
@@ -68,11 +76,16 @@ public class SolrAuthzBinding implements Closeable {
 
   static final Set<SolrModelAction> QUERY = new HashSet<>(Arrays.asList(SolrModelAction.QUERY));
   static final Set<SolrModelAction> UPDATE = new HashSet<>(Arrays.asList(SolrModelAction.UPDATE));
+  // Bounds the decisions of a user, e.g. one per collection and action
+  private static final int MAX_DECISIONS_PER_USER = 1024;
 
   private final SolrAuthzConf authzConf;
   public final AuthorizationProvider authProvider;
   private final GroupMappingService groupMapping;
   public ProviderBackend providerBackend;
+  private final Cache<String, UserSnapshot> userCache;
+  // Table of the privilege cache the user snapshots were built with
+  private volatile Object privilegeTable;
 
   /**
    * The constructor.
@@ -84,6 +97,22 @@ public class SolrAuthzBinding implements Closeable {
     this.authzConf = authzConf;
     this.authProvider = getAuthProvider();
     this.groupMapping = authProvider.getGroupMapping();
+    this.userCache = createUserCache(authzConf);
+  }
+
+  /**
+   * @return a cache of user snapshots, or null if disabled
+   */
+  private static Cache<String, UserSnapshot> createUserCache(SolrAuthzConf authzConf) {
+    long size = Long.parseLong(authzConf.get(AuthzConfVars.AUTHZ_USER_CACHE_SIZE.getVar()));
+    if (size <= 0) {
+      return null;
+    }
+    long ttlMs = Long.parseLong(authzConf.get(AuthzConfVars.AUTHZ_USER_CACHE_TTL_MS.getVar()));
+    return CacheBuilder.newBuilder()
+        .maximumSize(size)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .build();
   }
 
   @Override
@@ -172,9 +201,10 @@ public class SolrAuthzBinding implements Closeable {
       LOG.debug("Actions: " + actions);
     }
 
+    // All the authorizables, e.g. the collections of an alias, are checked against one snapshot
+    UserSnapshot snapshot = getUserSnapshot(subject.getName());
     for (SolrModelAuthorizable a : authorizables) {
-      if (!authProvider.hasAccess(subject, Arrays.asList(new Authorizable[] { a }),
-          actions, ActiveRoleSet.ALL)) {
+      if (!hasAccess(snapshot, subject, a, actions)) {
         return AuthorizationResponse.FORBIDDEN;
       }
     }
@@ -182,6 +212,51 @@ public class SolrAuthzBinding implements Closeable {
     return AuthorizationResponse.OK;
   }
 
+  private boolean hasAccess(UserSnapshot snapshot, Subject subject, SolrModelAuthorizable a,
+      Set<SolrModelAction> actions) {
+    if (snapshot == null) {
+      return authProvider.hasAccess(subject, Arrays.asList(new Authorizable[] { a }),
+          actions, ActiveRoleSet.ALL);
+    }
+    DecisionKey key = new DecisionKey(a, actions);
+    Boolean decision = snapshot.decisions.get(key);
+    if (decision == null) {
+      decision = authProvider.hasAccess(subject, Arrays.asList(new Authorizable[] { a }),
+          actions, ActiveRoleSet.ALL);
+      if (snapshot.decisions.size() >= MAX_DECISIONS_PER_USER) {
+        snapshot.decisions.clear();
+      }
+      snapshot.decisions.put(key, decision);
+    }
+    return decision;
+  }
+
+  /**
+   * @return the cached snapshot of the user, or null if the user cache is disabled. The
+   * snapshots are dropped when the privilege cache of the provider backend is reloaded.
+   */
+  private UserSnapshot getUserSnapshot(String user) {
+    if (userCache == null) {
+      return null;
+    }
+    if (providerBackend instanceof CacheProvider) {
+      Object table = ((CacheProvider) providerBackend).getCachedTable();
+      if (table != privilegeTable) {
+        userCache.invalidateAll();
+        privilegeTable = table;
+      }
+    }
+    UserSnapshot snapshot = userCache.getIfPresent(user);
+    if (snapshot == null) {
+      snapshot = new UserSnapshot();
+      UserSnapshot existing = userCache.asMap().putIfAbsent(user, snapshot);
+      if (existing != null) {
+        snapshot = existing;
+      }
+    }
+    return snapshot;
+  }
+
   /**
    * Authorize access to an index/collection
    * @param subject The user invoking the SOLR collection related operation
@@ -226,10 +301,56 @@ public class SolrAuthzBinding implements Closeable {
    * @throws SentryUserException
    */
   public Set<String> getRoles(String user) throws SentryUserException {
-    return providerBackend.getRoles(getGroups(user), ActiveRoleSet.ALL);
+    UserSnapshot snapshot = getUserSnapshot(user);
+    if (snapshot == null) {
+      return providerBackend.getRoles(getGroups(user), ActiveRoleSet.ALL);
+    }
+    Set<String> roles = snapshot.roles;
+    if (roles == null) {
+      roles = providerBackend.getRoles(getGroups(user), ActiveRoleSet.ALL);
+      snapshot.roles = roles;
+    }
+    return roles;
   }
 
   public SentryGenericServiceClient getClient() throws Exception {
     return SentryGenericServiceClientFactory.create(authzConf);
   }
+
+  /**
+   * The roles and authorization decisions of a user, cached for the user cache TTL.
+   */
+  private static final class UserSnapshot {
+    private volatile Set<String> roles;
+    private final ConcurrentMap<DecisionKey, Boolean> decisions = new ConcurrentHashMap<>();
+  }
+
+  private static final class DecisionKey {
+    private final String type;
+    private final String name;
+    private final Set<SolrModelAction> actions;
+
+    DecisionKey(SolrModelAuthorizable authorizable, Set<SolrModelAction> actions) {
+      this.type = authorizable.getTypeName();
+      this.name = authorizable.getName();
+      this.actions = new HashSet<>(actions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof DecisionKey)) {
+        return false;
+      }
+      DecisionKey other = (DecisionKey) o;
+      return type.equals(other.type) && name.equals(other.name) && actions.equals(other.actions);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(type, name, actions);
+    }
+  }
 }
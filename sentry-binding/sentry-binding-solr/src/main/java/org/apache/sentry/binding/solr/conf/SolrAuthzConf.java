@@ -37,6 +37,8 @@ public class SolrAuthzConf extends Configuration {
     AUTHZ_PROVIDER_RESOURCE("sentry.solr.provider.resource", ""),
     AUTHZ_PROVIDER_BACKEND("sentry.solr.provider.backend", "org.apache.sentry.provider.file.SimpleFileProviderBackend"),
     AUTHZ_POLICY_ENGINE("sentry.solr.policy.engine", "org.apache.sentry.policy.engine.common.CommonPolicyEngine"),
+    AUTHZ_USER_CACHE_SIZE("sentry.solr.authz.user.cache.size", "0"),
+    AUTHZ_USER_CACHE_TTL_MS("sentry.solr.authz.user.cache.ttl.ms", "30000"),
 
     AUTHZ_PROVIDER_DEPRECATED("sentry.provider",
       "org.apache.sentry.provider.common.HadoopGroupResourceAuthorizationProvider");
@@ -392,6 +392,32 @@ public class TestSolrAuthzBinding {
     }
   }
 
+  /**
+   * Test that decisions and roles served from the user cache match the policy,
+   * including the authorization of several collections at once
+   */
+  @Test
+  public void testUserCache() throws Exception {
+    SolrAuthzConf solrAuthzConf =
+        new SolrAuthzConf(Collections.singletonList(Resources.getResource("sentry-site.xml")));
+    setUsableAuthzConf(solrAuthzConf);
+    solrAuthzConf.set(AuthzConfVars.AUTHZ_USER_CACHE_SIZE.getVar(), "10");
+    List<Collection> collections = Arrays.asList(infoCollection, generalInfoCollection);
+    try (SolrAuthzBinding binding = new SolrAuthzBinding(solrAuthzConf)) {
+      for (int i = 0; i < 2; i++) {
+        assertEquals(AuthorizationResponse.OK,
+            binding.authorize(general1, collections, querySet));
+        assertEquals(AuthorizationResponse.FORBIDDEN,
+            binding.authorize(sergeant1, collections, querySet));
+        assertEquals(AuthorizationResponse.OK,
+            binding.authorizeCollection(sergeant1, infoCollection, updateSet));
+        expectAuthException(binding, corporal1, infoCollection, updateSet);
+        assertEquals(Sets.newHashSet("corporal_role", "sergeant_role"),
+            binding.getRoles("sergeant1"));
+      }
+    }
+  }
+
   /**
    * Test that when the resource is put on  HDFS and the scheme of the resource is not set,
    * the resouce can be found if fs.defaultFS is specified
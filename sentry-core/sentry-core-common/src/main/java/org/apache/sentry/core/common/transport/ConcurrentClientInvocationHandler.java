@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.core.common.transport;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ConcurrentClientInvocationHandler is a proxy class for handling thrift calls of
+ * clients shared between threads.
+ * <p>
+ * Unlike {@link RetryClientInvocationHandler}, it does not hold a connection. Every rpc
+ * call creates its own connection, which borrows a transport from the transport pool,
+ * retries on connection problems the same way, and returns the transport to the pool
+ * when the call is done. The retry state lives on the stack of the call, so concurrent
+ * calls never wait for each other, including during connection retry delays.
+ * <p>
+ * This handler is meant to be used with the transport pool enabled, otherwise every
+ * call opens a new transport.
+ * <p>
+ * When hedging is enabled, a call of one of the configured idempotent read methods
+ * which did not complete within the recent 95th percentile of response times is sent
+ * again on another connection, and the first successful response is returned. With
+ * latency-aware load balancing the hedged request goes to the least loaded server,
+ * which is not the one still processing the first request.
+ */
+public final class ConcurrentClientInvocationHandler extends SentryClientInvocationHandler {
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(ConcurrentClientInvocationHandler.class);
+
+  private static final double HEDGE_PERCENTILE = 95;
+
+  // Runs hedged calls. Losing calls complete in the background and return
+  // their transports to the pool.
+  private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sentry-client-hedge-%d").build());
+
+  private final SentryConnectionFactory connectionFactory;
+  private final SentryTransportPool transportPool;
+  private final int maxRetryCount;
+  private final long connRetryDelayInMs;
+  // Methods which may be hedged, empty if hedging is disabled
+  private final Set<String> hedgedMethods;
+  private final long hedgeMinDelayMs;
+
+  public ConcurrentClientInvocationHandler(Configuration conf,
+                                           SentryConnectionFactory connectionFactory,
+                                           SentryTransportPool transportPool,
+                                           SentryClientTransportConfigInterface transportConfig) {
+    Preconditions.checkNotNull(conf, "Configuration object cannot be null");
+    Preconditions.checkNotNull(connectionFactory, "Connection factory cannot be null");
+    this.connectionFactory = connectionFactory;
+    this.transportPool = transportPool;
+    maxRetryCount = transportConfig.getSentryRpcRetryTotal(conf);
+    connRetryDelayInMs = transportConfig.getSentryRpcConnRetryDelayInMs(conf);
+    // Hedging to the only server does not help
+    if (transportConfig.isHedgingEnabled(conf) && transportPool.getNumEndpoints() > 1) {
+      hedgedMethods = transportConfig.getHedgedMethods(conf);
+    } else {
+      hedgedMethods = Collections.emptySet();
+    }
+    hedgeMinDelayMs = transportConfig.getHedgeMinDelayMs(conf);
+  }
+
+  @Override
+  public Object invokeImpl(Object proxy, Method method, Object[] args) throws Exception {
+    if ("toString".equals(method.getName())) {
+      return "ConcurrentClientInvocationHandler[" + connectionFactory + "]";
+    }
+
+    if (hedgedMethods.contains(method.getName())) {
+      return invokeHedged(method, args);
+    }
+    return invoke(method, args);
+  }
+
+  private Object invoke(Method method, Object[] args) throws Exception {
+    SentryConnection client = connectionFactory.create();
+    try {
+      // The connection is only used by this call, locking it is never contended
+      return RetryClientInvocationHandler.invokeWithRetry(client, client, method, args,
+          maxRetryCount, connRetryDelayInMs);
+    } finally {
+      // Returns the transport to the pool, unless it was invalidated
+      client.done();
+    }
+  }
+
+  /**
+   * Calls the method, and calls it again if the first call is not done after the
+   * hedge delay. Returns the result of the first successful call, or throws the
+   * failure of the last one.
+   */
+  private Object invokeHedged(final Method method, final Object[] args) throws Exception {
+    CompletionService<Object> calls = new ExecutorCompletionService<>(HEDGE_EXECUTOR);
+    Callable<Object> call = () -> invoke(method, args);
+    calls.submit(call);
+    int pending = 1;
+    long hedgeDelayMs = Math.max(hedgeMinDelayMs,
+        transportPool.getLatencyPercentileMs(HEDGE_PERCENTILE));
+    Future<Object> done = calls.poll(hedgeDelayMs, TimeUnit.MILLISECONDS);
+    if (done == null) {
+      LOGGER.debug("Hedging {} after {} ms", method.getName(), hedgeDelayMs);
+      calls.submit(call);
+      pending++;
+      done = calls.take();
+    }
+    while (true) {
+      pending--;
+      try {
+        return done.get();
+      } catch (ExecutionException e) {
+        if (pending == 0) {
+          Throwables.propagateIfPossible(e.getCause(), Exception.class);
+          throw e;
+        }
+        LOGGER.debug("{} failed, waiting for hedged call", method.getName(), e.getCause());
+        done = calls.take();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    // Connections are released at the end of every call
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.core.common.transport;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response time and load statistics of a single Sentry server, used to prefer
+ * fast and lightly loaded servers when load balancing.
+ * <p>
+ * The response time is an exponentially weighted moving average of the time
+ * between sending a request and receiving the first bytes of its response. It
+ * decays with the age of the last sample, so that a server which was slow once
+ * gets tried again after a while instead of being avoided forever.
+ */
+@ThreadSafe
+final class EndpointStats {
+  // Weight of a new sample in the moving average
+  private static final double ALPHA = 0.3;
+  // The average halves every HALF_LIFE_NS without new samples
+  private static final double HALF_LIFE_NS = TimeUnit.SECONDS.toNanos(10);
+
+  private double ewmaNs;
+  private long lastSampleNs;
+  private int inFlight;
+
+  synchronized void requestSent() {
+    inFlight++;
+  }
+
+  synchronized void responseReceived(long latencyNs) {
+    inFlight--;
+    ewmaNs = lastSampleNs == 0 ? latencyNs : ALPHA * latencyNs + (1 - ALPHA) * ewmaNs;
+    lastSampleNs = System.nanoTime();
+  }
+
+  synchronized void requestFailed() {
+    inFlight--;
+  }
+
+  /**
+   * Record the response of a request the server held on purpose, e.g. a long poll.
+   * Its response time says nothing about the speed of the server.
+   */
+  synchronized void heldResponseReceived() {
+    inFlight--;
+  }
+
+  /**
+   * @param nowNs current time, as returned by {@link System#nanoTime()}
+   * @return expected cost of sending a request to the server: its decayed average
+   * response time, scaled by the number of requests in flight
+   */
+  synchronized double getScore(long nowNs) {
+    double latencyNs = 0;
+    if (lastSampleNs != 0) {
+      latencyNs = ewmaNs * Math.pow(0.5, (nowNs - lastSampleNs) / HALF_LIFE_NS);
+    }
+    return (latencyNs + 1) * (inFlight + 1);
+  }
+
+  synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("ewma=%.1fms inFlight=%d", ewmaNs / 1000000.0, inFlight);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.core.common.transport;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * Transport which measures the response time of the requests sent through it.
+ * <p>
+ * Thrift clients write a request, flush it and then read the response, so the
+ * time from a flush to the first read that follows it is the time the server
+ * took to respond. The times are reported to the {@link EndpointStats} of the
+ * server and to the {@link SentryTransportPool}, unless the request was sent while
+ * requests were marked as held by {@link SentryTransportPool#setRequestsHeld(boolean)}.
+ * <p>
+ * Like any transport, it is only used by one thread at a time.
+ */
+final class MeteredTransport extends TTransport {
+  private final TTransport transport;
+  private final EndpointStats stats;
+  private final SentryTransportPool pool;
+  // Time the pending request was sent at, or 0 if there is none
+  private long sentNs;
+  // True if the server may hold the pending request
+  private boolean held;
+
+  MeteredTransport(TTransport transport, EndpointStats stats, SentryTransportPool pool) {
+    this.transport = transport;
+    this.stats = stats;
+    this.pool = pool;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return transport.isOpen();
+  }
+
+  @Override
+  public boolean peek() {
+    return transport.peek();
+  }
+
+  @Override
+  public void open() throws TTransportException {
+    transport.open();
+  }
+
+  @Override
+  public void close() {
+    if (sentNs != 0) {
+      sentNs = 0;
+      stats.requestFailed();
+    }
+    transport.close();
+  }
+
+  @Override
+  public int read(byte[] buf, int off, int len) throws TTransportException {
+    int n;
+    try {
+      n = transport.read(buf, off, len);
+    } catch (TTransportException e) {
+      if (sentNs != 0) {
+        sentNs = 0;
+        stats.requestFailed();
+      }
+      throw e;
+    }
+    if (sentNs != 0) {
+      long latencyNs = System.nanoTime() - sentNs;
+      sentNs = 0;
+      if (held) {
+        stats.heldResponseReceived();
+      } else {
+        stats.responseReceived(latencyNs);
+        pool.recordLatency(latencyNs);
+      }
+    }
+    return n;
+  }
+
+  @Override
+  public void write(byte[] buf, int off, int len) throws TTransportException {
+    transport.write(buf, off, len);
+  }
+
+  @Override
+  public void flush() throws TTransportException {
+    if (sentNs == 0) {
+      sentNs = System.nanoTime();
+      held = SentryTransportPool.isRequestHeld();
+      stats.requestSent();
+    }
+    transport.flush();
+  }
+
+  @Override
+  public byte[] getBuffer() {
+    return transport.getBuffer();
+  }
+
+  @Override
+  public int getBufferPosition() {
+    return transport.getBufferPosition();
+  }
+
+  @Override
+  public int getBytesRemainingInBuffer() {
+    return transport.getBytesRemainingInBuffer();
+  }
+
+  @Override
+  public void consumeBuffer(int len) {
+    transport.consumeBuffer(len);
+  }
+
+  @Override
+  public String toString() {
+    return transport.toString();
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.sentry.core.common.transport;
 
 import com.google.common.base.Preconditions;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.core.common.exception.SentryServerBusyException;
 import org.apache.sentry.core.common.exception.SentryUserException;
 import org.apache.sentry.core.common.exception.SentryHdfsServiceException;
 import org.apache.thrift.transport.TTransportException;
@@ -43,6 +44,10 @@ import java.lang.reflect.Method;
  * then retry the whole server list no more than connectionFullRetryTotal times. In this
  * case, it won't introduce more latency when some server fails.
  * <p>
+ * Calls are serialized on the single connection. Clients shared between threads should use
+ * {@link ConcurrentClientInvocationHandler} instead. A call rejected by a busy server
+ * releases the connection and waits for its retry without holding it, so the other
+ * calls can go to another server meanwhile.
  */
 
 public final class RetryClientInvocationHandler extends SentryClientInvocationHandler {
@@ -75,7 +80,7 @@ public final class RetryClientInvocationHandler extends SentryClientInvocationHa
    * if it is failed with other exception, method would just re-throw the exception.
    */
   @Override
-  public synchronized Object invokeImpl(Object proxy, Method method, Object[] args) throws Exception {
+  public Object invokeImpl(Object proxy, Method method, Object[] args) throws Exception {
     String methodName = method.getName();
 
     // This is an interesting special case. When we running a debugging session, it may try to
@@ -85,42 +90,48 @@ public final class RetryClientInvocationHandler extends SentryClientInvocationHa
       return method.invoke(client, args);
     }
 
+    return invokeWithRetry(client, this, method, args, maxRetryCount, connRetryDelayInMs);
+  }
+
+  /**
+   * Calls the method on the client, connecting it first and retrying no more than
+   * maxRetryCount times on connection problems, and after connRetryDelayInMs when the
+   * server was too busy to run the request. The client is only used while holding the
+   * given lock, the delay before retrying a request rejected by a busy server is waited
+   * without it.
+   */
+  static Object invokeWithRetry(SentryConnection client, Object lock, Method method,
+      Object[] args, int maxRetryCount, long connRetryDelayInMs) throws Exception {
+    String methodName = method.getName();
     Exception lastExc = null;
     for (int retryCount = 0; retryCount < maxRetryCount; retryCount++) {
-      connect();
+      synchronized (lock) {
+        connect(client, maxRetryCount, connRetryDelayInMs);
 
-      // do the thrift call
-      try {
-        LOGGER.debug("Calling {}", methodName);
-        return method.invoke(client, args);
-      } catch (InvocationTargetException e) {
-        // Get the target exception, check if SentryUserException or TTransportException is wrapped.
-        // TTransportException means there is a connection problem.
-        LOGGER.error("failed to execute {}", method.getName(), e);
-        Throwable targetException = e.getCause();
-        if (!((targetException instanceof SentryUserException) ||
-            (targetException instanceof SentryHdfsServiceException))) {
-          throw e;
-        }
-        Throwable sentryTargetException = targetException.getCause();
-        // If there has connection problem, eg, invalid connection if the service restarted,
-        // sentryTargetException instanceof TTransportException will be true.
-        if (sentryTargetException instanceof TTransportException) {
-          // Retry when the exception is caused by connection problem.
-          lastExc = new TTransportException(sentryTargetException);
-          LOGGER.error("Thrift call failed", lastExc);
-          // The connection to the server is bad, inform the client of the problem
-          client.invalidate();
-        } else {
-          // Semantic exception which does not indicate the connection failure.
-          // Do not need to reconnect to the sentry server.
-          if (targetException instanceof SentryUserException) {
-            throw (SentryUserException) targetException;
+        // do the thrift call
+        try {
+          LOGGER.debug("Calling {}", methodName);
+          return method.invoke(client, args);
+        } catch (InvocationTargetException e) {
+          // Get the target exception, check if SentryUserException or TTransportException is wrapped.
+          // TTransportException means there is a connection problem.
+          Throwable targetException = e.getCause();
+          if (targetException instanceof SentryServerBusyException) {
+            // The server did not run the request. Release the connection, so that the retry
+            // goes to another server if there is one, and the busy server gets some time.
+            lastExc = (SentryServerBusyException) targetException;
+            LOGGER.warn("Server too busy to run {}: {}", methodName, targetException.getMessage());
+            // Other servers are preferred at least until the request was retried
+            client.serverBusy(2 * connRetryDelayInMs);
           } else {
-            throw (SentryHdfsServiceException) targetException;
+            lastExc = handleFailure(client, method, e);
           }
         }
       }
+
+      if ((lastExc instanceof SentryServerBusyException) && (retryCount + 1 < maxRetryCount)) {
+        Thread.sleep(connRetryDelayInMs);
+      }
     }
 
     // Throw the exception as reaching the max rpc retry num.
@@ -128,11 +139,45 @@ public final class RetryClientInvocationHandler extends SentryClientInvocationHa
     throw new SentryUserException(error, lastExc);
   }
 
+  /**
+   * Handle a failed thrift call which the server ran.
+   * @return the connection problem to retry the call on, after invalidating the connection
+   * @throws Exception the failure of the call if it was not caused by a connection problem
+   */
+  private static Exception handleFailure(SentryConnection client, Method method,
+      InvocationTargetException e) throws Exception {
+    Throwable targetException = e.getCause();
+    LOGGER.error("failed to execute {}", method.getName(), e);
+    if (!((targetException instanceof SentryUserException) ||
+        (targetException instanceof SentryHdfsServiceException))) {
+      throw e;
+    }
+    Throwable sentryTargetException = targetException.getCause();
+    // If there has connection problem, eg, invalid connection if the service restarted,
+    // sentryTargetException instanceof TTransportException will be true.
+    if (sentryTargetException instanceof TTransportException) {
+      // Retry when the exception is caused by connection problem.
+      Exception lastExc = new TTransportException(sentryTargetException);
+      LOGGER.error("Thrift call failed", lastExc);
+      // The connection to the server is bad, inform the client of the problem
+      client.invalidate();
+      return lastExc;
+    }
+    // Semantic exception which does not indicate the connection failure.
+    // Do not need to reconnect to the sentry server.
+    if (targetException instanceof SentryUserException) {
+      throw (SentryUserException) targetException;
+    } else {
+      throw (SentryHdfsServiceException) targetException;
+    }
+  }
+
   /**
    * Connect the client, retry multiple times
    * @throws Exception
    */
-  private void connect() throws Exception {
+  private static void connect(SentryConnection client, int maxRetryCount,
+      long connRetryDelayInMs) throws Exception {
     Throwable lastExc = null;
     for (int retryCount = 0;  retryCount < maxRetryCount; retryCount++) {
       try {
@@ -20,6 +20,8 @@ package org.apache.sentry.core.common.transport;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.apache.hadoop.conf.Configuration;
 
+import java.util.Set;
+
 /**
  * Configuration interface for Sentry Thrift Clients
  * <p>
@@ -141,4 +143,36 @@ interface SentryClientTransportConfigInterface {
    * @return true if transport pools are enabled
    */
   boolean isTransportPoolEnabled(Configuration conf);
+
+  /**
+   * @param conf configuration
+   * @return true if clients shared between threads should borrow a transport per call
+   * instead of serializing all calls
+   */
+  boolean isConcurrentClientEnabled(Configuration conf);
+
+  /**
+   * @param conf configuration
+   * @return true if load balancing should prefer servers with lower response times
+   * and fewer requests in flight
+   */
+  boolean isLatencyAwareEnabled(Configuration conf);
+
+  /**
+   * @param conf configuration
+   * @return true if slow read requests should be hedged with a second request
+   */
+  boolean isHedgingEnabled(Configuration conf);
+
+  /**
+   * @param conf configuration
+   * @return names of the idempotent client methods which may be hedged
+   */
+  Set<String> getHedgedMethods(Configuration conf);
+
+  /**
+   * @param conf configuration
+   * @return minimum delay in milliseconds before sending a hedged request
+   */
+  long getHedgeMinDelayMs(Configuration conf);
 }
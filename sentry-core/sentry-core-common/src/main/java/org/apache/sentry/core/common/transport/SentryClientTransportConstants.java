@@ -58,6 +58,19 @@ public final class SentryClientTransportConstants {
           "sentry.service.client.connection.loadbalance";
   static final boolean SENTRY_CLIENT_LOAD_BALANCING_DEFAULT = true;
 
+  /**
+   * Prefer servers with lower response times and fewer requests in flight when
+   * load balancing
+   */
+  static final String SENTRY_CLIENT_LATENCY_AWARE =
+          "sentry.service.client.connection.loadbalance.latency-aware";
+  static final boolean SENTRY_CLIENT_LATENCY_AWARE_DEFAULT = false;
+
+  // Lower bound of the delay before sending a hedged request
+  static final String SENTRY_CLIENT_HEDGE_MIN_DELAY_MS =
+          "sentry.service.client.hedged-reads.min-delay.msec";
+  static final long SENTRY_CLIENT_HEDGE_MIN_DELAY_MS_DEFAULT = 50L;
+
   static final int RPC_PORT_DEFAULT = 8038;
 
   private SentryClientTransportConstants() {
@@ -137,6 +150,36 @@ public final class SentryClientTransportConstants {
             SentryClientTransportConstants.SENTRY_CLIENT_LOAD_BALANCING;
     static final boolean SENTRY_CLIENT_LOAD_BALANCING_DEFAULT =
             SentryClientTransportConstants.SENTRY_CLIENT_LOAD_BALANCING_DEFAULT;
+
+    /**
+     * Borrow a transport per call instead of serializing all calls of a client
+     * {link ConcurrentClientInvocationHandler}
+     */
+    static final String SENTRY_CLIENT_CONCURRENT = "sentry.service.client.concurrent";
+    static final boolean SENTRY_CLIENT_CONCURRENT_DEFAULT = false;
+
+    static final String SENTRY_CLIENT_LATENCY_AWARE =
+            SentryClientTransportConstants.SENTRY_CLIENT_LATENCY_AWARE;
+    static final boolean SENTRY_CLIENT_LATENCY_AWARE_DEFAULT =
+            SentryClientTransportConstants.SENTRY_CLIENT_LATENCY_AWARE_DEFAULT;
+
+    /**
+     * Send a second request to another server when a read request takes longer than
+     * the recent 95th percentile of response times. Requires concurrent clients.
+     * {link ConcurrentClientInvocationHandler}
+     */
+    static final String SENTRY_CLIENT_HEDGE_ENABLE =
+            "sentry.service.client.hedged-reads.enabled";
+    static final boolean SENTRY_CLIENT_HEDGE_ENABLE_DEFAULT = false;
+    // Idempotent client methods which may be hedged
+    static final String SENTRY_CLIENT_HEDGE_METHODS =
+            "sentry.service.client.hedged-reads.methods";
+    static final String SENTRY_CLIENT_HEDGE_METHODS_DEFAULT =
+            "listPrivilegesForProvider,listRolesByGroupName";
+    static final String SENTRY_CLIENT_HEDGE_MIN_DELAY_MS =
+            SentryClientTransportConstants.SENTRY_CLIENT_HEDGE_MIN_DELAY_MS;
+    static final long SENTRY_CLIENT_HEDGE_MIN_DELAY_MS_DEFAULT =
+            SentryClientTransportConstants.SENTRY_CLIENT_HEDGE_MIN_DELAY_MS_DEFAULT;
   }
 
   /**
@@ -219,5 +262,35 @@ public final class SentryClientTransportConstants {
             SentryClientTransportConstants.SENTRY_CLIENT_LOAD_BALANCING;
     static final boolean SENTRY_CLIENT_LOAD_BALANCING_DEFAULT =
             SentryClientTransportConstants.SENTRY_CLIENT_LOAD_BALANCING_DEFAULT;
+
+    /**
+     * Borrow a transport per call instead of serializing all calls of a client
+     * {link ConcurrentClientInvocationHandler}
+     */
+    static final String SENTRY_CLIENT_CONCURRENT = "sentry.hdfs.service.client.concurrent";
+    static final boolean SENTRY_CLIENT_CONCURRENT_DEFAULT = false;
+
+    static final String SENTRY_CLIENT_LATENCY_AWARE =
+            SentryClientTransportConstants.SENTRY_CLIENT_LATENCY_AWARE;
+    static final boolean SENTRY_CLIENT_LATENCY_AWARE_DEFAULT =
+            SentryClientTransportConstants.SENTRY_CLIENT_LATENCY_AWARE_DEFAULT;
+
+    /**
+     * Send a second request to another server when a read request takes longer than
+     * the recent 95th percentile of response times. Requires concurrent clients.
+     * {link ConcurrentClientInvocationHandler}
+     */
+    static final String SENTRY_CLIENT_HEDGE_ENABLE =
+            "sentry.hdfs.service.client.hedged-reads.enabled";
+    static final boolean SENTRY_CLIENT_HEDGE_ENABLE_DEFAULT = false;
+    // Idempotent client methods which may be hedged. Long polls must not be listed:
+    // they are held by the server, so every one of them would be sent twice.
+    static final String SENTRY_CLIENT_HEDGE_METHODS =
+            "sentry.hdfs.service.client.hedged-reads.methods";
+    static final String SENTRY_CLIENT_HEDGE_METHODS_DEFAULT = "";
+    static final String SENTRY_CLIENT_HEDGE_MIN_DELAY_MS =
+            SentryClientTransportConstants.SENTRY_CLIENT_HEDGE_MIN_DELAY_MS;
+    static final long SENTRY_CLIENT_HEDGE_MIN_DELAY_MS_DEFAULT =
+            SentryClientTransportConstants.SENTRY_CLIENT_HEDGE_MIN_DELAY_MS_DEFAULT;
   }
 }
@@ -25,6 +25,8 @@ package org.apache.sentry.core.common.transport;
  * deallocate any resources.</li>
  * <li>If the user detected that connection is broken, they should call
  * {@link #invalidate()} method. The connection can not be used after that.</li>
+ * <li>If the server was too busy to run a request, they should call
+ * {@link #serverBusy(long)} before retrying it.</li>
  * </ul>
  */
 public interface SentryConnection {
@@ -51,4 +53,14 @@ public interface SentryConnection {
    * {@link #connect()}.
    */
   void invalidate();
+
+  /**
+   * The server was too busy to run a request, release the connection to it.
+   * Subsequent {@link #connect() call} should prefer another server for the
+   * given time, if there is one.
+   * @param busyMs time for which another server should be preferred
+   */
+  default void serverBusy(long busyMs) {
+    done();
+  }
 }
\ No newline at end of file
@@ -22,6 +22,10 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.sentry.core.common.exception.MissingConfigurationException;
 import org.apache.sentry.core.common.utils.SentryConstants;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.apache.sentry.core.common.transport.SentryClientTransportConstants.PolicyClientConstants.*;
 
 /**
@@ -125,4 +129,31 @@ public final class SentryPolicyClientTransportConfig
   public boolean isTransportPoolEnabled(Configuration conf) {
     return conf.getBoolean(SENTRY_POOL_ENABLE, SENTRY_POOL_ENABLE_DEFAULT);
   }
-}
\ No newline at end of file
+
+  @Override
+  public boolean isConcurrentClientEnabled(Configuration conf) {
+    return conf.getBoolean(SENTRY_CLIENT_CONCURRENT, SENTRY_CLIENT_CONCURRENT_DEFAULT);
+  }
+
+  @Override
+  public boolean isLatencyAwareEnabled(Configuration conf) {
+    return conf.getBoolean(SENTRY_CLIENT_LATENCY_AWARE, SENTRY_CLIENT_LATENCY_AWARE_DEFAULT);
+  }
+
+  @Override
+  public boolean isHedgingEnabled(Configuration conf) {
+    return conf.getBoolean(SENTRY_CLIENT_HEDGE_ENABLE, SENTRY_CLIENT_HEDGE_ENABLE_DEFAULT);
+  }
+
+  @Override
+  public Set<String> getHedgedMethods(Configuration conf) {
+    return new HashSet<>(Arrays.asList(conf.getTrimmedStrings(SENTRY_CLIENT_HEDGE_METHODS,
+        SENTRY_CLIENT_HEDGE_METHODS_DEFAULT.split(","))));
+  }
+
+  @Override
+  public long getHedgeMinDelayMs(Configuration conf) {
+    return conf.getLong(SENTRY_CLIENT_HEDGE_MIN_DELAY_MS,
+        SENTRY_CLIENT_HEDGE_MIN_DELAY_MS_DEFAULT);
+  }
+}
@@ -33,8 +33,16 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -44,6 +52,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *
  * When transport pooling is disabled in configuration,
  * creates transports directly and doesn't cache connections.
+ *
+ * When latency-aware load balancing is enabled, the pool measures the response
+ * time of the requests sent to each server and prefers the servers with the
+ * lowest response time and the fewest requests in flight.
+ *
+ * Servers which were too busy to run a request are tried after the other servers
+ * for a while, so that the retries of the request go elsewhere.
  */
 @ThreadSafe
 public final class SentryTransportPool implements AutoCloseable {
@@ -60,9 +75,33 @@ public final class SentryTransportPool implements AutoCloseable {
   // Load balance between servers if true
   private final boolean doLoadBalancing;
 
+  // Order servers by response time and load when load balancing if true
+  private final boolean isLatencyAware;
+
+  // Number of recent response times kept for percentiles
+  private static final int LATENCY_SAMPLES = 256;
+
+  // True while the current thread sends requests the server may hold
+  private static final ThreadLocal<Boolean> REQUESTS_HELD = new ThreadLocal<Boolean>() {
+    @Override
+    protected Boolean initialValue() {
+      return Boolean.FALSE;
+    }
+  };
+
   // List of all known servers
   private final ArrayList<HostAndPort> endpoints;
 
+  // Response time statistics per server, empty unless transports are metered
+  private final Map<HostAndPort, EndpointStats> endpointStats;
+
+  // Time in nanoseconds until which a server which was too busy is tried last
+  private final ConcurrentMap<HostAndPort, Long> busyUntilNs = new ConcurrentHashMap<>();
+
+  // Recent response times of all servers, in nanoseconds
+  private final long[] recentLatencies = new long[LATENCY_SAMPLES];
+  private long latencyCount;
+
   // Transport pool which keeps connected transports
   private final KeyedObjectPool<HostAndPort, TTransportWrapper> pool;
   // Source of connected transports
@@ -95,8 +134,8 @@ public final class SentryTransportPool implements AutoCloseable {
     poolId++;
     id = poolId;
 
-    this.transportFactory = transportFactory;
     doLoadBalancing = transportConfig.isLoadBalancingEnabled(conf);
+    isLatencyAware = transportConfig.isLatencyAwareEnabled(conf);
     isPoolEnabled = transportConfig.isTransportPoolEnabled(conf);
 
     // Get list of server addresses
@@ -115,6 +154,19 @@ public final class SentryTransportPool implements AutoCloseable {
       endpoints.add(endpoint);
     }
 
+    // Response times are needed for latency-aware load balancing and for the delay of
+    // hedged requests
+    if (isLatencyAware || transportConfig.isHedgingEnabled(conf)) {
+      endpointStats = new HashMap<>(endpoints.size());
+      for (HostAndPort endpoint : endpoints) {
+        endpointStats.put(endpoint, new EndpointStats());
+      }
+      this.transportFactory = new MeteredTransportFactory(transportFactory);
+    } else {
+      endpointStats = Collections.emptyMap();
+      this.transportFactory = transportFactory;
+    }
+
     if (!isPoolEnabled) {
       pool = null;
       LOGGER.info("Connection pooling is disabled");
@@ -161,13 +213,31 @@ public final class SentryTransportPool implements AutoCloseable {
     if (doLoadBalancing && (endpoints.size() > 1)) {
       servers = new ArrayList<>(endpoints);
       Collections.shuffle(servers);
+      if (isLatencyAware) {
+        // Stable sort, so servers with equal scores stay shuffled
+        final Map<HostAndPort, Double> scores = new IdentityHashMap<>(servers.size());
+        long now = System.nanoTime();
+        for (HostAndPort server : servers) {
+          scores.put(server, endpointStats.get(server).getScore(now));
+        }
+        Collections.sort(servers, Comparator.comparingDouble(scores::get));
+        LOGGER.debug("Servers by score: {}", scores);
+      }
     } else {
       servers = endpoints;
     }
+    List<HostAndPort> busyServers = getBusyServers(servers);
+    if (!busyServers.isEmpty()) {
+      servers = new ArrayList<>(servers);
+      servers.removeAll(busyServers);
+      servers.addAll(busyServers);
+    }
 
     // Try to get a connection from one of the pools.
     Exception failure = null;
-    boolean ignoreEmptyPool = true;
+    // Servers ordered by latency or busyness are tried in order, even if they have no
+    // idle connections
+    boolean ignoreEmptyPool = !isLatencyAware && busyServers.isEmpty();
     for (int attempt = 0; attempt < 2; attempt++) {
       // First only attempt to borrow from pools which have some idle connections
       // If this fails, try with all pools
@@ -205,6 +275,84 @@ public final class SentryTransportPool implements AutoCloseable {
     throw failure;
   }
 
+  /**
+   * @return the given servers which are still busy, in the same order, or an empty list
+   * if all of them are, since then there is nowhere else to go
+   */
+  private List<HostAndPort> getBusyServers(List<HostAndPort> servers) {
+    if (busyUntilNs.isEmpty()) {
+      return Collections.emptyList();
+    }
+    long now = System.nanoTime();
+    List<HostAndPort> busyServers = new ArrayList<>();
+    for (HostAndPort server : servers) {
+      Long until = busyUntilNs.get(server);
+      if (until == null) {
+        continue;
+      }
+      if (until - now > 0) {
+        busyServers.add(server);
+      } else {
+        busyUntilNs.remove(server, until);
+      }
+    }
+    return (busyServers.size() < servers.size()) ? busyServers :
+        Collections.<HostAndPort>emptyList();
+  }
+
+  /**
+   * @return number of configured servers
+   */
+  public int getNumEndpoints() {
+    return endpoints.size();
+  }
+
+  /**
+   * Mark the requests the current thread sends as held by the server until it has
+   * something to return, e.g. long polls. Their response times are not recorded, so
+   * they neither make their server look slow nor raise the delay of hedged requests.
+   * @param held true before sending such requests, false after
+   */
+  public static void setRequestsHeld(boolean held) {
+    REQUESTS_HELD.set(held);
+  }
+
+  /**
+   * @return true if the requests the current thread sends may be held by the server
+   */
+  static boolean isRequestHeld() {
+    return REQUESTS_HELD.get();
+  }
+
+  /**
+   * Record the response time of a request.
+   * @param latencyNs time between sending the request and receiving the response
+   */
+  void recordLatency(long latencyNs) {
+    synchronized (recentLatencies) {
+      recentLatencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = latencyNs;
+    }
+  }
+
+  /**
+   * @param percentile percentile between 0 and 100
+   * @return the given percentile of the recent response times of all servers in
+   * milliseconds, or -1 if no response times were recorded
+   */
+  public long getLatencyPercentileMs(double percentile) {
+    long[] latencies;
+    synchronized (recentLatencies) {
+      if (latencyCount == 0) {
+        return -1;
+      }
+      latencies = Arrays.copyOf(recentLatencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+    }
+    Arrays.sort(latencies);
+    int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+    index = Math.max(0, Math.min(index, latencies.length - 1));
+    return TimeUnit.NANOSECONDS.toMillis(latencies[index]);
+  }
+
   /**
    * Return transport to the pool
    * @param transport Open transport
@@ -228,6 +376,21 @@ public final class SentryTransportPool implements AutoCloseable {
     }
   }
 
+  /**
+   * Return the transport of a server which was too busy to run a request to the pool.
+   * The server is tried after the other servers for the given time.
+   * @param transport Open transport
+   * @param busyMs time for which the server is tried last
+   */
+  public void returnBusyTransport(TTransportWrapper transport, long busyMs) {
+    if (endpoints.size() > 1) {
+      LOGGER.debug("[{}] {} is busy for {} ms", id, transport.getAddress(), busyMs);
+      busyUntilNs.put(transport.getAddress(),
+          System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(busyMs));
+    }
+    returnTransport(transport);
+  }
+
   public void invalidateTransport(TTransportWrapper transport) {
     if (closed.get()) {
       LOGGER.debug("invalidated {} for closed pool", transport);
@@ -265,6 +428,25 @@ public final class SentryTransportPool implements AutoCloseable {
     }
   }
 
+  /**
+   * Transport factory which wraps the transports of another factory to measure
+   * the response times of their requests
+   */
+  private final class MeteredTransportFactory implements TransportFactory {
+    private final TransportFactory transportFactory;
+
+    private MeteredTransportFactory(TransportFactory transportFactory) {
+      this.transportFactory = transportFactory;
+    }
+
+    @Override
+    public TTransportWrapper getTransport(HostAndPort endpoint) throws Exception {
+      TTransportWrapper transport = transportFactory.getTransport(endpoint);
+      return new TTransportWrapper(new MeteredTransport(transport.getTTransport(),
+          endpointStats.get(endpoint), SentryTransportPool.this), endpoint);
+    }
+  }
+
   /**
    * Factory that creates and destroys pool objects
    */
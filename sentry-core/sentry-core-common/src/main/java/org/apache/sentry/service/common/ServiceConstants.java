@@ -66,6 +66,50 @@ public class ServiceConstants {
     public static final int RPC_MAX_THREADS_DEFAULT = 500;
     public static final String RPC_MIN_THREADS = "sentry.service.server-min-threads";
     public static final int RPC_MIN_THREADS_DEFAULT = 10;
+    /**
+     * Thrift server implementation. The "selector" server parks idle connections on a
+     * selector instead of dedicating a worker thread to each of them.
+     */
+    public static final String RPC_SERVER_TYPE = "sentry.service.server.rpc-server-type";
+    public static final String RPC_SERVER_TYPE_THREAD_POOL = "thread-pool";
+    public static final String RPC_SERVER_TYPE_SELECTOR = "selector";
+    public static final String RPC_SERVER_TYPE_DEFAULT = RPC_SERVER_TYPE_THREAD_POOL;
+    // Worker threads of the selector server, defaults to the maximum number of threads
+    public static final String RPC_SELECTOR_WORKER_THREADS =
+        "sentry.service.server.selector.worker-threads";
+    // Requests waiting for a worker of the selector server before connections are rejected
+    public static final String RPC_SELECTOR_MAX_QUEUED_REQUESTS =
+        "sentry.service.server.selector.max-queued-requests";
+    public static final int RPC_SELECTOR_MAX_QUEUED_REQUESTS_DEFAULT = 1000;
+    /**
+     * Per-class concurrency limits of the policy service RPCs. The classes are
+     * authorization, hms-sync, admin and bulk; the limits of a class are set with
+     * RPC_ADMISSION_CONTROL_PREFIX + class + one of the suffixes below.
+     */
+    public static final String RPC_ADMISSION_CONTROL_ENABLED =
+        "sentry.service.server.admission-control.enabled";
+    public static final boolean RPC_ADMISSION_CONTROL_ENABLED_DEFAULT = false;
+    public static final String RPC_ADMISSION_CONTROL_PREFIX =
+        "sentry.service.server.admission-control.";
+    // RPCs of the class running at once
+    public static final String RPC_ADMISSION_CONTROL_MAX_CONCURRENT = ".max-concurrent";
+    // RPCs of the class waiting to run before new ones are rejected
+    public static final String RPC_ADMISSION_CONTROL_MAX_QUEUED = ".max-queued";
+    // How long an RPC of the class may wait to run before it is rejected
+    public static final String RPC_ADMISSION_CONTROL_MAX_WAIT_MS = ".max-wait-ms";
+    // Record how long each policy service RPC spends in each phase, such as role resolution,
+    // queries and transaction commits, exported as per-RPC and per-phase histograms
+    public static final String RPC_PHASE_TIMING_ENABLED =
+        "sentry.service.server.phase-timing.enabled";
+    public static final boolean RPC_PHASE_TIMING_ENABLED_DEFAULT = false;
+    // RPCs taking longer are logged with their phases, not positive means none are logged
+    public static final String RPC_SLOW_LOG_THRESHOLD_MS =
+        "sentry.service.server.slow-rpc-log.threshold-ms";
+    public static final long RPC_SLOW_LOG_THRESHOLD_MS_DEFAULT = 1000L;
+    // Fraction of the slow RPCs that are logged
+    public static final String RPC_SLOW_LOG_SAMPLE_RATE =
+        "sentry.service.server.slow-rpc-log.sample-rate";
+    public static final float RPC_SLOW_LOG_SAMPLE_RATE_DEFAULT = 1.0f;
     public static final String ALLOW_CONNECT = "sentry.service.allow.connect";
 
     public static final String SENTRY_POLICY_STORE_PLUGINS = "sentry.policy.store.plugins";
@@ -148,6 +192,53 @@ public class ServiceConstants {
     public static final String SENTRY_NOTIFICATION_SYNC_TIMEOUT_MS = "sentry.notification.sync.timeout.ms";
     public static final int SENTRY_NOTIFICATION_SYNC_TIMEOUT_DEFAULT = 200000;
 
+    // Whether to compress the path and permission deltas persisted for HDFS sync
+    public static final String SENTRY_STORE_DELTA_COMPRESSION = "sentry.store.delta.compression";
+    public static final boolean SENTRY_STORE_DELTA_COMPRESSION_DEFAULT = false;
+
+    // Number of grants or role memberships imported per transaction by import_sentry_mapping_data.
+    // Not positive imports all the mapping data in a single transaction.
+    public static final String SENTRY_STORE_IMPORT_CHUNK_SIZE = "sentry.store.import.chunk-size";
+    public static final int SENTRY_STORE_IMPORT_CHUNK_SIZE_DEFAULT = 0;
+
+    // Rows fetched per database round trip when streaming the full perm and path images.
+    // Not positive leaves the JDBC driver default.
+    public static final String SENTRY_STORE_FULL_IMAGE_FETCH_SIZE =
+        "sentry.store.full-image.fetch-size";
+    public static final int SENTRY_STORE_FULL_IMAGE_FETCH_SIZE_DEFAULT = 10000;
+
+    // Serve provider and role listing reads from an in-memory replica of the policy,
+    // kept current by tailing the perm deltas. Requires HDFS sync, which persists them.
+    // With HDFS sync, the full perm and path images sent to the NameNodes are also kept
+    // in memory unless their caches are configured otherwise.
+    public static final String SENTRY_POLICY_REPLICA_ENABLED =
+        "sentry.service.server.policy-replica.enabled";
+    public static final boolean SENTRY_POLICY_REPLICA_ENABLED_DEFAULT = false;
+    // How often the replica checks for new perm deltas
+    public static final String SENTRY_POLICY_REPLICA_POLL_INTERVAL_MS =
+        "sentry.service.server.policy-replica.poll-interval-ms";
+    public static final long SENTRY_POLICY_REPLICA_POLL_INTERVAL_MS_DEFAULT = 500L;
+    // How often the replica is reloaded in full, which bounds how long it misses the
+    // changes made through servers that do not persist the replica markers
+    public static final String SENTRY_POLICY_REPLICA_FULL_RELOAD_INTERVAL_MS =
+        "sentry.service.server.policy-replica.full-reload-interval-ms";
+    public static final long SENTRY_POLICY_REPLICA_FULL_RELOAD_INTERVAL_MS_DEFAULT = 300000L;
+
+    // Write the audit log from a single background thread, through a bounded queue. When
+    // the queue is full, RPCs either wait for room ("block") or drop the entry ("drop").
+    public static final String SENTRY_AUDIT_LOG_ASYNC = "sentry.service.audit.log.async";
+    public static final boolean SENTRY_AUDIT_LOG_ASYNC_DEFAULT = false;
+    public static final String SENTRY_AUDIT_LOG_ASYNC_QUEUE_SIZE =
+        "sentry.service.audit.log.async.queue-size";
+    public static final int SENTRY_AUDIT_LOG_ASYNC_QUEUE_SIZE_DEFAULT = 10000;
+    public static final String SENTRY_AUDIT_LOG_ASYNC_QUEUE_FULL_POLICY =
+        "sentry.service.audit.log.async.queue-full-policy";
+    public static final String SENTRY_AUDIT_LOG_ASYNC_QUEUE_FULL_POLICY_DEFAULT = "block";
+    // Maximum number of entries written between flushes of the audit log appenders
+    public static final String SENTRY_AUDIT_LOG_ASYNC_BATCH_SIZE =
+        "sentry.service.audit.log.async.batch-size";
+    public static final int SENTRY_AUDIT_LOG_ASYNC_BATCH_SIZE_DEFAULT = 500;
+
     public static final ImmutableMap<String, String> SENTRY_STORE_DEFAULTS =
         ImmutableMap.<String, String>builder()
         .put("datanucleus.connectionPoolingType", "BoneCP")
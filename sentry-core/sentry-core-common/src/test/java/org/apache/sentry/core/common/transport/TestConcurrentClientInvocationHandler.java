@@ -0,0 +1,593 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.core.common.transport;
+
+import com.google.common.net.HostAndPort;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.core.common.exception.SentryServerBusyException;
+import org.apache.sentry.core.common.exception.SentryUserException;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConcurrentClientInvocationHandler {
+
+  private static final long HEDGE_MIN_DELAY_MS = 50;
+  private static final long TIMEOUT_MS = 10000;
+  private static final int CONCURRENT_CALLS = 8;
+
+  private Configuration conf;
+  private SentryTransportPool transportPool;
+  private TestConnectionFactory connectionFactory;
+  private TestTransportFactory transportFactory;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    conf = new Configuration(false);
+    conf.set("sentry.service.client.server.rpc-addresses", "host1:8038,host2:8038");
+    conf.setBoolean("sentry.service.client.connection.pool.enabled", false);
+    conf.setLong("sentry.service.client.rpc.retry.interval.msec", 10);
+    conf.setBoolean("sentry.service.client.hedged-reads.enabled", true);
+    conf.set("sentry.service.client.hedged-reads.methods", "read");
+    conf.setLong("sentry.service.client.hedged-reads.min-delay.msec", HEDGE_MIN_DELAY_MS);
+    transportPool = new SentryTransportPool(conf, new SentryPolicyClientTransportConfig(),
+        endpoint -> {
+          throw new TTransportException("not used");
+        });
+    connectionFactory = new TestConnectionFactory();
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    transportPool.close();
+  }
+
+  /**
+   * Make the connections borrow transports from a pool of the given servers.
+   */
+  private void usePooledTransports(String addresses) throws Exception {
+    conf.set("sentry.service.client.server.rpc-addresses", addresses);
+    conf.setBoolean("sentry.service.client.connection.pool.enabled", true);
+    conf.setInt("sentry.service.client.connection.pool.min-idle", 0);
+    transportPool.close();
+    transportFactory = new TestTransportFactory();
+    transportPool = new SentryTransportPool(conf, new SentryPolicyClientTransportConfig(),
+        transportFactory);
+    connectionFactory.transportPool = transportPool;
+  }
+
+  /**
+   * Call write() on the client from CONCURRENT_CALLS threads at once.
+   */
+  private void writeConcurrently(final TestClient client) throws Exception {
+    List<Future<String>> calls = new ArrayList<>(CONCURRENT_CALLS);
+    for (int i = 0; i < CONCURRENT_CALLS; i++) {
+      calls.add(executor.submit(client::write));
+    }
+    for (Future<String> call : calls) {
+      Assert.assertEquals("written", call.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  /**
+   * @return response which only returns once CONCURRENT_CALLS calls are in progress
+   */
+  private static Response waitForAllCalls() {
+    final CountDownLatch inProgress = new CountDownLatch(CONCURRENT_CALLS);
+    return connection -> {
+      inProgress.countDown();
+      if (!inProgress.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        throw new IllegalStateException("Calls did not run concurrently");
+      }
+      return "written";
+    };
+  }
+
+  private TestClient newClient() {
+    return (TestClient) Proxy.newProxyInstance(TestClient.class.getClassLoader(),
+        new Class<?>[] {TestClient.class},
+        new ConcurrentClientInvocationHandler(conf, connectionFactory, transportPool,
+            new SentryPolicyClientTransportConfig()));
+  }
+
+  /**
+   * Wait until the given number of connections are done, so that calls which lost
+   * to their hedge are checked too.
+   */
+  private void waitForDone(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (connectionFactory.doneCount() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(count, connectionFactory.doneCount());
+  }
+
+  @Test
+  public void testFastReadIsNotHedged() throws Exception {
+    connectionFactory.respond(connection -> "first");
+    Assert.assertEquals("first", newClient().read());
+    Assert.assertEquals(1, connectionFactory.connections.size());
+    waitForDone(1);
+  }
+
+  @Test
+  public void testSlowReadIsHedged() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    connectionFactory.respond(connection -> {
+      release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      return "slow";
+    });
+    connectionFactory.respond(connection -> "hedged");
+    long start = System.currentTimeMillis();
+    Assert.assertEquals("hedged", newClient().read());
+    long elapsedMs = System.currentTimeMillis() - start;
+    Assert.assertTrue(elapsedMs >= HEDGE_MIN_DELAY_MS);
+    Assert.assertTrue(elapsedMs < TIMEOUT_MS);
+    Assert.assertEquals(2, connectionFactory.connections.size());
+
+    // The losing call still completes and releases its connection
+    release.countDown();
+    waitForDone(2);
+  }
+
+  @Test
+  public void testHedgedReadUsedWhenFirstFails() throws Exception {
+    final CountDownLatch hedged = new CountDownLatch(1);
+    final CountDownLatch failed = new CountDownLatch(1);
+    connectionFactory.respond(connection -> {
+      hedged.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      try {
+        throw new SentryUserException("first failed");
+      } finally {
+        failed.countDown();
+      }
+    });
+    connectionFactory.respond(connection -> {
+      hedged.countDown();
+      failed.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      Thread.sleep(50);
+      return "hedged";
+    });
+    Assert.assertEquals("hedged", newClient().read());
+    waitForDone(2);
+  }
+
+  @Test
+  public void testHedgedReadFailsWhenAllFail() throws Exception {
+    final CountDownLatch hedged = new CountDownLatch(1);
+    final CountDownLatch failed = new CountDownLatch(1);
+    connectionFactory.respond(connection -> {
+      hedged.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      try {
+        throw new SentryUserException("first failed");
+      } finally {
+        failed.countDown();
+      }
+    });
+    connectionFactory.respond(connection -> {
+      hedged.countDown();
+      failed.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      throw new SentryUserException("hedged failed");
+    });
+    try {
+      newClient().read();
+      Assert.fail("Read should fail");
+    } catch (SentryUserException e) {
+      Assert.assertEquals("hedged failed", e.getMessage());
+    }
+    waitForDone(2);
+  }
+
+  @Test
+  public void testOtherMethodsAreNotHedged() throws Exception {
+    connectionFactory.respond(connection -> {
+      Thread.sleep(4 * HEDGE_MIN_DELAY_MS);
+      return "written";
+    });
+    Assert.assertEquals("written", newClient().write());
+    Assert.assertEquals(1, connectionFactory.connections.size());
+    waitForDone(1);
+  }
+
+  @Test
+  public void testNoHedgingWithSingleServer() throws Exception {
+    conf.set("sentry.service.client.server.rpc-addresses", "host1:8038");
+    transportPool.close();
+    transportPool = new SentryTransportPool(conf, new SentryPolicyClientTransportConfig(),
+        endpoint -> {
+          throw new TTransportException("not used");
+        });
+    connectionFactory.respond(connection -> {
+      Thread.sleep(4 * HEDGE_MIN_DELAY_MS);
+      return "first";
+    });
+    Assert.assertEquals("first", newClient().read());
+    Assert.assertEquals(1, connectionFactory.connections.size());
+    waitForDone(1);
+  }
+
+  @Test
+  public void testConcurrentCallsDoNotSerialize() throws Exception {
+    connectionFactory.respond(waitForAllCalls());
+    writeConcurrently(newClient());
+    Assert.assertEquals(CONCURRENT_CALLS, connectionFactory.connections.size());
+    waitForDone(CONCURRENT_CALLS);
+  }
+
+  @Test
+  public void testEachCallBorrowsAndReturnsItsOwnTransport() throws Exception {
+    usePooledTransports("host1:8038");
+    connectionFactory.respond(waitForAllCalls());
+    TestClient client = newClient();
+    writeConcurrently(client);
+    waitForDone(CONCURRENT_CALLS);
+    Set<TTransportWrapper> borrowed =
+        Collections.newSetFromMap(new IdentityHashMap<TTransportWrapper, Boolean>());
+    for (TestConnection connection : connectionFactory.connections) {
+      Assert.assertEquals(1, connection.transports.size());
+      Assert.assertNull(connection.transport);
+      borrowed.addAll(connection.transports);
+    }
+    Assert.assertEquals(CONCURRENT_CALLS, borrowed.size());
+    Assert.assertEquals(CONCURRENT_CALLS, transportFactory.transports.size());
+
+    // The transports were returned to the pool, so the next calls reuse them
+    connectionFactory.respond(waitForAllCalls());
+    writeConcurrently(client);
+    waitForDone(2 * CONCURRENT_CALLS);
+    Assert.assertEquals(CONCURRENT_CALLS, transportFactory.transports.size());
+    for (TestTransport transport : transportFactory.transports) {
+      Assert.assertFalse(transport.closed);
+    }
+  }
+
+  @Test
+  public void testRetryStateIsPerCall() throws Exception {
+    final long retryDelayMs = 500;
+    conf.setInt("sentry.service.client.rpc.retry-total", 3);
+    conf.setLong("sentry.service.client.rpc.retry.interval.msec", retryDelayMs);
+    final TestClient client = newClient();
+
+    // The first call can never connect and backs off between its attempts
+    connectionFactory.respond(Integer.MAX_VALUE, connection -> "written");
+    connectionFactory.respond(connection -> "written");
+    Future<String> failing = executor.submit(client::write);
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (connectionFactory.connections.isEmpty() ||
+        connectionFactory.connections.get(0).connects.get() == 0) {
+      Assert.assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+
+    // Another call does not wait for the back-off of the first one
+    long start = System.currentTimeMillis();
+    Assert.assertEquals("written", client.write());
+    Assert.assertTrue(System.currentTimeMillis() - start < retryDelayMs);
+    Assert.assertFalse(failing.isDone());
+    Assert.assertEquals(1, connectionFactory.connections.get(1).connects.get());
+
+    try {
+      failing.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      Assert.fail("Call should fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof SentryUserException);
+    }
+    Assert.assertEquals(3, connectionFactory.connections.get(0).connects.get());
+
+    // The failed attempts of the first call do not count against later calls
+    conf.setLong("sentry.service.client.rpc.retry.interval.msec", 10);
+    connectionFactory.respond(2, connection -> "written");
+    Assert.assertEquals("written", newClient().write());
+    Assert.assertEquals(3, connectionFactory.connections.get(2).connects.get());
+    waitForDone(3);
+  }
+
+  @Test
+  public void testFailedTransportIsInvalidated() throws Exception {
+    usePooledTransports("host1:8038");
+    final AtomicInteger attempts = new AtomicInteger();
+    connectionFactory.respond(connection -> {
+      if (attempts.getAndIncrement() == 0) {
+        throw new SentryUserException("Connection lost", new TTransportException("reset"));
+      }
+      return "written";
+    });
+    TestClient client = newClient();
+    Assert.assertEquals("written", client.write());
+
+    // The call retried on a new transport and the failed one was destroyed
+    TestConnection connection = connectionFactory.connections.get(0);
+    Assert.assertEquals(1, connection.invalidations.get());
+    Assert.assertEquals(2, connection.transports.size());
+    Assert.assertEquals(2, transportFactory.transports.size());
+    Assert.assertTrue(transportFactory.transports.get(0).closed);
+    Assert.assertFalse(transportFactory.transports.get(1).closed);
+
+    // Only the working transport went back to the pool
+    connectionFactory.respond(connection2 -> "written");
+    Assert.assertEquals("written", client.write());
+    Assert.assertEquals(2, transportFactory.transports.size());
+    Assert.assertSame(connection.transports.get(1),
+        connectionFactory.connections.get(1).transports.get(0));
+    waitForDone(2);
+  }
+
+  @Test
+  public void testBusyServerIsRetried() throws Exception {
+    conf.setInt("sentry.service.client.rpc.retry-total", 3);
+    final AtomicInteger attempts = new AtomicInteger();
+    connectionFactory.respond(connection -> {
+      if (attempts.getAndIncrement() < 2) {
+        throw new SentryServerBusyException("Rejected bulk request");
+      }
+      return "written";
+    });
+    Assert.assertEquals("written", newClient().write());
+    Assert.assertEquals(3, attempts.get());
+    // The connection is fine, only the server was busy
+    Assert.assertEquals(0, connectionFactory.connections.get(0).invalidations.get());
+
+    // Requests still rejected once the retries are used up fail
+    attempts.set(0);
+    connectionFactory.respond(connection -> {
+      attempts.incrementAndGet();
+      throw new SentryServerBusyException("Rejected bulk request");
+    });
+    try {
+      newClient().write();
+      Assert.fail("Call should fail");
+    } catch (SentryUserException e) {
+      Assert.assertTrue(e.getCause() instanceof SentryServerBusyException);
+    }
+    Assert.assertEquals(3, attempts.get());
+    waitForDone(2);
+  }
+
+  @Test
+  public void testBusyServerIsFailedOver() throws Exception {
+    usePooledTransports("host1:8038,host2:8038");
+    final List<HostAndPort> servers = new CopyOnWriteArrayList<>();
+    connectionFactory.respond(connection -> {
+      servers.add(connection.transport.getAddress());
+      if (servers.size() == 1) {
+        throw new SentryServerBusyException("Rejected bulk request");
+      }
+      return "written";
+    });
+    Assert.assertEquals("written", newClient().write());
+
+    // The retry went to the other server, the busy one got its transport back
+    Assert.assertEquals(2, servers.size());
+    Assert.assertFalse(servers.get(0).equals(servers.get(1)));
+    TestConnection connection = connectionFactory.connections.get(0);
+    Assert.assertEquals(0, connection.invalidations.get());
+    Assert.assertEquals(2, connection.transports.size());
+    for (TestTransport transport : transportFactory.transports) {
+      Assert.assertFalse(transport.closed);
+    }
+    waitForDone(1);
+  }
+
+  @Test
+  public void testBusyRetryDelayDoesNotHoldTheConnection() throws Exception {
+    final long retryDelayMs = 500;
+    conf.setInt("sentry.service.client.rpc.retry-total", 3);
+    conf.setLong("sentry.service.client.rpc.retry.interval.msec", retryDelayMs);
+    final CountDownLatch rejected = new CountDownLatch(1);
+    final AtomicInteger attempts = new AtomicInteger();
+    TestConnection connection = new TestConnection(conn -> {
+      if (attempts.getAndIncrement() == 0) {
+        rejected.countDown();
+        throw new SentryServerBusyException("Rejected bulk request");
+      }
+      return "written";
+    }, 0, null);
+    final TestClient client = (TestClient) Proxy.newProxyInstance(
+        TestClient.class.getClassLoader(), new Class<?>[] {TestClient.class},
+        new RetryClientInvocationHandler(conf, connection,
+            new SentryPolicyClientTransportConfig()));
+
+    Future<String> rejectedCall = executor.submit(client::write);
+    Assert.assertTrue(rejected.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+    // Another call on the same client does not wait for the retry delay of the first one
+    long start = System.currentTimeMillis();
+    Assert.assertEquals("written", client.write());
+    Assert.assertTrue(System.currentTimeMillis() - start < retryDelayMs);
+    Assert.assertFalse(rejectedCall.isDone());
+    Assert.assertEquals("written", rejectedCall.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(3, attempts.get());
+  }
+
+  /**
+   * Client interface the proxies implement.
+   */
+  public interface TestClient {
+    String read() throws Exception;
+
+    String write() throws Exception;
+  }
+
+  /**
+   * Answer to the calls of a connection.
+   */
+  private interface Response {
+    String call(TestConnection connection) throws Exception;
+  }
+
+  /**
+   * Connection which answers each call with the response it was created with. Like the
+   * real clients, it borrows a transport from the pool when connecting, if it has one,
+   * returns it when done and invalidates it when told to.
+   */
+  private static final class TestConnection implements SentryConnection, TestClient {
+    private final Response response;
+    private final SentryTransportPool transportPool;
+    // Number of connection attempts which fail before one succeeds
+    private int connectFailures;
+    private final AtomicInteger connects = new AtomicInteger();
+    private final AtomicInteger invalidations = new AtomicInteger();
+    // Transport in use and all transports borrowed
+    private volatile TTransportWrapper transport;
+    private final List<TTransportWrapper> transports = new CopyOnWriteArrayList<>();
+    private volatile boolean done;
+
+    private TestConnection(Response response, int connectFailures,
+                           SentryTransportPool transportPool) {
+      this.response = response;
+      this.connectFailures = connectFailures;
+      this.transportPool = transportPool;
+    }
+
+    @Override
+    public void connect() throws Exception {
+      connects.incrementAndGet();
+      if (connectFailures > 0) {
+        connectFailures--;
+        throw new TTransportException("Connection refused");
+      }
+      if (transport == null && transportPool != null) {
+        transport = transportPool.getTransport();
+        transports.add(transport);
+      }
+    }
+
+    @Override
+    public void done() {
+      if (transport != null) {
+        transportPool.returnTransport(transport);
+        transport = null;
+      }
+      done = true;
+    }
+
+    @Override
+    public void invalidate() {
+      invalidations.incrementAndGet();
+      if (transport != null) {
+        transportPool.invalidateTransport(transport);
+        transport = null;
+      }
+    }
+
+    @Override
+    public void serverBusy(long busyMs) {
+      if (transport != null) {
+        transportPool.returnBusyTransport(transport, busyMs);
+        transport = null;
+      }
+    }
+
+    @Override
+    public String read() throws Exception {
+      return response.call(this);
+    }
+
+    @Override
+    public String write() throws Exception {
+      return response.call(this);
+    }
+  }
+
+  /**
+   * Creates connections answering with the queued responses, in order. Once all were
+   * used, the last one answers the calls of the further connections.
+   */
+  private static final class TestConnectionFactory implements SentryConnectionFactory {
+    private final List<Response> responses = new CopyOnWriteArrayList<>();
+    private final List<Integer> connectFailures = new CopyOnWriteArrayList<>();
+    private final List<TestConnection> connections = new CopyOnWriteArrayList<>();
+    // Pool the connections borrow transports from, if any
+    private volatile SentryTransportPool transportPool;
+
+    void respond(Response response) {
+      respond(0, response);
+    }
+
+    void respond(int connectFailures, Response response) {
+      this.connectFailures.add(connectFailures);
+      responses.add(response);
+    }
+
+    @Override
+    public synchronized SentryConnection create() {
+      int index = Math.min(connections.size(), responses.size() - 1);
+      TestConnection connection = new TestConnection(responses.get(index),
+          connectFailures.get(index), transportPool);
+      connections.add(connection);
+      return connection;
+    }
+
+    int doneCount() {
+      int count = 0;
+      for (TestConnection connection : connections) {
+        if (connection.done) {
+          count++;
+        }
+      }
+      return count;
+    }
+  }
+
+  private static final class TestTransport extends TMemoryBuffer {
+    private volatile boolean closed;
+
+    private TestTransport() {
+      super(16);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  /**
+   * Creates transports and keeps track of them.
+   */
+  private static final class TestTransportFactory implements TransportFactory {
+    private final List<TestTransport> transports = new CopyOnWriteArrayList<>();
+
+    @Override
+    public TTransportWrapper getTransport(HostAndPort endpoint) {
+      TestTransport transport = new TestTransport();
+      transports.add(transport);
+      return new TTransportWrapper(transport, endpoint);
+    }
+  }
+}
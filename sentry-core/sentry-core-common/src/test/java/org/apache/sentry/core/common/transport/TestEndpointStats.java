@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.core.common.transport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEndpointStats {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testFasterServerScoresLower() {
+    EndpointStats fast = new EndpointStats();
+    EndpointStats slow = new EndpointStats();
+    EndpointStats unknown = new EndpointStats();
+    for (int i = 0; i < 5; i++) {
+      fast.requestSent();
+      fast.responseReceived(2 * MS);
+      slow.requestSent();
+      slow.responseReceived(200 * MS);
+    }
+    long now = System.nanoTime();
+    Assert.assertTrue(fast.getScore(now) < slow.getScore(now));
+    // Servers without samples are tried first
+    Assert.assertTrue(unknown.getScore(now) < fast.getScore(now));
+  }
+
+  @Test
+  public void testRequestsInFlightRaiseScore() {
+    EndpointStats stats = new EndpointStats();
+    stats.requestSent();
+    stats.responseReceived(10 * MS);
+    long now = System.nanoTime();
+    double idle = stats.getScore(now);
+    stats.requestSent();
+    stats.requestSent();
+    Assert.assertEquals(2, stats.getInFlight());
+    Assert.assertEquals(3 * idle, stats.getScore(now), idle / 1000);
+    stats.requestFailed();
+    stats.responseReceived(10 * MS);
+    Assert.assertEquals(0, stats.getInFlight());
+  }
+
+  @Test
+  public void testScoreDecays() {
+    EndpointStats stats = new EndpointStats();
+    stats.requestSent();
+    stats.responseReceived(1000 * MS);
+    long now = System.nanoTime();
+    double score = stats.getScore(now);
+    double decayed = stats.getScore(now + TimeUnit.SECONDS.toNanos(10));
+    Assert.assertEquals(score / 2, decayed, score / 100);
+  }
+}
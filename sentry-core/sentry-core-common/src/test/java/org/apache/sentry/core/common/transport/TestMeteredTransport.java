@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.core.common.transport;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMeteredTransport {
+
+  private SentryTransportPool pool;
+  private EndpointStats stats;
+  private FakeTransport fake;
+  private MeteredTransport transport;
+
+  @Before
+  public void setUp() {
+    Configuration conf = new Configuration(false);
+    conf.set("sentry.service.client.server.rpc-addresses", "localhost:8038");
+    conf.setBoolean("sentry.service.client.connection.pool.enabled", false);
+    conf.setBoolean("sentry.service.client.connection.loadbalance.latency-aware", true);
+    pool = new SentryTransportPool(conf, new SentryPolicyClientTransportConfig(),
+        endpoint -> {
+          throw new TTransportException("not used");
+        });
+    stats = new EndpointStats();
+    fake = new FakeTransport();
+    transport = new MeteredTransport(fake, stats, pool);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    SentryTransportPool.setRequestsHeld(false);
+    pool.close();
+  }
+
+  @Test
+  public void testResponseTimeRecorded() throws Exception {
+    byte[] buf = new byte[4];
+    transport.write(buf, 0, buf.length);
+    transport.flush();
+    Assert.assertEquals(1, stats.getInFlight());
+    Thread.sleep(20);
+    transport.read(buf, 0, buf.length);
+    Assert.assertEquals(0, stats.getInFlight());
+    Assert.assertTrue(pool.getLatencyPercentileMs(50) >= 20);
+
+    // Reading the rest of the response does not record another sample
+    transport.read(buf, 0, buf.length);
+    Assert.assertEquals(0, stats.getInFlight());
+    Assert.assertTrue(pool.getLatencyPercentileMs(0) >= 20);
+  }
+
+  @Test
+  public void testFailedReadIsNotRecorded() throws Exception {
+    transport.flush();
+    fake.fail = true;
+    try {
+      transport.read(new byte[4], 0, 4);
+      Assert.fail("Read should fail");
+    } catch (TTransportException e) {
+      // Expected
+    }
+    Assert.assertEquals(0, stats.getInFlight());
+    Assert.assertEquals(-1, pool.getLatencyPercentileMs(50));
+  }
+
+  @Test
+  public void testCloseWithPendingRequest() throws Exception {
+    transport.flush();
+    Assert.assertEquals(1, stats.getInFlight());
+    transport.close();
+    Assert.assertEquals(0, stats.getInFlight());
+    Assert.assertFalse(fake.isOpen());
+    Assert.assertEquals(-1, pool.getLatencyPercentileMs(50));
+  }
+
+  @Test
+  public void testHeldRequestIsNotRecorded() throws Exception {
+    SentryTransportPool.setRequestsHeld(true);
+    transport.flush();
+    SentryTransportPool.setRequestsHeld(false);
+    Assert.assertEquals(1, stats.getInFlight());
+    transport.read(new byte[4], 0, 4);
+    Assert.assertEquals(0, stats.getInFlight());
+    Assert.assertEquals(-1, pool.getLatencyPercentileMs(50));
+    long now = System.nanoTime();
+    Assert.assertEquals(new EndpointStats().getScore(now), stats.getScore(now), 0);
+
+    // The next request is not held
+    transport.flush();
+    transport.read(new byte[4], 0, 4);
+    Assert.assertTrue(pool.getLatencyPercentileMs(50) >= 0);
+  }
+
+  /**
+   * Transport which returns as many bytes as asked for, or fails reads when told to.
+   */
+  private static final class FakeTransport extends TTransport {
+    private boolean open = true;
+    private boolean fail;
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void open() {
+      open = true;
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+      if (fail) {
+        throw new TTransportException("read failed");
+      }
+      return len;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.core.common.transport;
+
+import com.google.common.net.HostAndPort;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSentryTransportPool {
+
+  private static final HostAndPort FAST = HostAndPort.fromParts("fast", 8038);
+  private static final HostAndPort SLOW = HostAndPort.fromParts("slow", 8038);
+  private static final long FAST_RESPONSE_MS = 1;
+  private static final long SLOW_RESPONSE_MS = 50;
+
+  private static Configuration newConf(boolean latencyAware) {
+    Configuration conf = new Configuration(false);
+    conf.set("sentry.service.client.server.rpc-addresses", FAST + "," + SLOW);
+    conf.setBoolean("sentry.service.client.connection.pool.enabled", false);
+    conf.setBoolean("sentry.service.client.connection.loadbalance.latency-aware", latencyAware);
+    return conf;
+  }
+
+  /**
+   * Send a request through the transport and read its response.
+   */
+  private static void call(TTransportWrapper transport) throws TTransportException {
+    TTransport tTransport = transport.getTTransport();
+    tTransport.write(new byte[1], 0, 1);
+    tTransport.flush();
+    tTransport.read(new byte[1], 0, 1);
+  }
+
+  @Test
+  public void testLatencyAwarePrefersFastServer() throws Exception {
+    try (SentryTransportPool pool = new SentryTransportPool(newConf(true),
+        new SentryPolicyClientTransportConfig(), new DelayingTransportFactory())) {
+      // Servers without response times are tried first, so both get sampled
+      for (int i = 0; i < 2; i++) {
+        TTransportWrapper transport = pool.getTransport();
+        call(transport);
+        pool.returnTransport(transport);
+      }
+      for (int i = 0; i < 20; i++) {
+        TTransportWrapper transport = pool.getTransport();
+        Assert.assertEquals(FAST, transport.getAddress());
+        call(transport);
+        pool.returnTransport(transport);
+      }
+    }
+  }
+
+  @Test
+  public void testLatencyAwarePrefersServerWithFewerRequestsInFlight() throws Exception {
+    try (SentryTransportPool pool = new SentryTransportPool(newConf(true),
+        new SentryPolicyClientTransportConfig(), new DelayingTransportFactory())) {
+      for (int i = 0; i < 2; i++) {
+        TTransportWrapper transport = pool.getTransport();
+        call(transport);
+        pool.returnTransport(transport);
+      }
+      // Requests the fast server has not responded to yet make it the slower choice
+      // once their number exceeds the ratio of the response times
+      int pending = 0;
+      TTransportWrapper transport = pool.getTransport();
+      while (FAST.equals(transport.getAddress())) {
+        transport.getTTransport().flush();
+        pending++;
+        Assert.assertTrue(pending < 1000);
+        transport = pool.getTransport();
+      }
+      Assert.assertEquals(SLOW, transport.getAddress());
+      Assert.assertTrue(pending > 0);
+    }
+  }
+
+  @Test
+  public void testServersAreNotOrderedWithoutLatencyAwareness() throws Exception {
+    try (SentryTransportPool pool = new SentryTransportPool(newConf(false),
+        new SentryPolicyClientTransportConfig(), new DelayingTransportFactory())) {
+      boolean usedSlow = false;
+      for (int i = 0; i < 100 && !usedSlow; i++) {
+        TTransportWrapper transport = pool.getTransport();
+        // Transports are not metered
+        Assert.assertTrue(transport.getTTransport() instanceof DelayingTransport);
+        usedSlow = SLOW.equals(transport.getAddress());
+        pool.returnTransport(transport);
+      }
+      Assert.assertTrue(usedSlow);
+      Assert.assertEquals(-1, pool.getLatencyPercentileMs(95));
+    }
+  }
+
+  @Test
+  public void testBusyServerIsTriedLast() throws Exception {
+    try (SentryTransportPool pool = new SentryTransportPool(newConf(true),
+        new SentryPolicyClientTransportConfig(), new DelayingTransportFactory())) {
+      for (int i = 0; i < 2; i++) {
+        TTransportWrapper transport = pool.getTransport();
+        call(transport);
+        pool.returnTransport(transport);
+      }
+      // The fast server is preferred, unless it is busy
+      TTransportWrapper transport = pool.getTransport();
+      Assert.assertEquals(FAST, transport.getAddress());
+      pool.returnBusyTransport(transport, 200);
+      for (int i = 0; i < 20; i++) {
+        transport = pool.getTransport();
+        Assert.assertEquals(SLOW, transport.getAddress());
+        pool.returnTransport(transport);
+      }
+
+      // Until it had some time
+      Thread.sleep(200);
+      transport = pool.getTransport();
+      Assert.assertEquals(FAST, transport.getAddress());
+      pool.returnTransport(transport);
+    }
+  }
+
+  @Test
+  public void testLatencyPercentile() throws Exception {
+    try (SentryTransportPool pool = new SentryTransportPool(newConf(true),
+        new SentryPolicyClientTransportConfig(), new DelayingTransportFactory())) {
+      Assert.assertEquals(-1, pool.getLatencyPercentileMs(95));
+      for (int ms = 100; ms > 0; ms--) {
+        pool.recordLatency(ms * 1000000L);
+      }
+      Assert.assertEquals(95, pool.getLatencyPercentileMs(95));
+      Assert.assertEquals(50, pool.getLatencyPercentileMs(50));
+      Assert.assertEquals(100, pool.getLatencyPercentileMs(100));
+      Assert.assertEquals(1, pool.getLatencyPercentileMs(0));
+
+      // Only the recent response times count
+      for (int i = 0; i < 1000; i++) {
+        pool.recordLatency(1000000L);
+      }
+      Assert.assertEquals(1, pool.getLatencyPercentileMs(95));
+    }
+  }
+
+  /**
+   * Transport whose responses take a while to arrive.
+   */
+  private static final class DelayingTransport extends TMemoryBuffer {
+    private final long responseMs;
+
+    private DelayingTransport(long responseMs) {
+      super(16);
+      this.responseMs = responseMs;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) {
+      try {
+        Thread.sleep(responseMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.read(buf, off, len);
+    }
+  }
+
+  private static final class DelayingTransportFactory implements TransportFactory {
+    @Override
+    public TTransportWrapper getTransport(HostAndPort endpoint) {
+      return new TTransportWrapper(
+          new DelayingTransport(SLOW.equals(endpoint) ? SLOW_RESPONSE_MS : FAST_RESPONSE_MS),
+          endpoint);
+    }
+  }
+}
@@ -40,6 +40,7 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
 
   private static final org.apache.thrift.protocol.TField AUTHZ_PATH_UPDATE_FIELD_DESC = new org.apache.thrift.protocol.TField("authzPathUpdate", org.apache.thrift.protocol.TType.LIST, (short)1);
   private static final org.apache.thrift.protocol.TField AUTHZ_PERM_UPDATE_FIELD_DESC = new org.apache.thrift.protocol.TField("authzPermUpdate", org.apache.thrift.protocol.TType.LIST, (short)2);
+  private static final org.apache.thrift.protocol.TField MORE_UPDATES_AVAILABLE_FIELD_DESC = new org.apache.thrift.protocol.TField("moreUpdatesAvailable", org.apache.thrift.protocol.TType.BOOL, (short)3);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -49,11 +50,13 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
 
   private List<TPathsUpdate> authzPathUpdate; // optional
   private List<TPermissionsUpdate> authzPermUpdate; // optional
+  private boolean moreUpdatesAvailable; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     AUTHZ_PATH_UPDATE((short)1, "authzPathUpdate"),
-    AUTHZ_PERM_UPDATE((short)2, "authzPermUpdate");
+    AUTHZ_PERM_UPDATE((short)2, "authzPermUpdate"),
+    MORE_UPDATES_AVAILABLE((short)3, "moreUpdatesAvailable");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -72,6 +75,8 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
           return AUTHZ_PATH_UPDATE;
         case 2: // AUTHZ_PERM_UPDATE
           return AUTHZ_PERM_UPDATE;
+        case 3: // MORE_UPDATES_AVAILABLE
+          return MORE_UPDATES_AVAILABLE;
         default:
           return null;
       }
@@ -112,7 +117,9 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
   }
 
   // isset id assignments
-  private static final _Fields optionals[] = {_Fields.AUTHZ_PATH_UPDATE,_Fields.AUTHZ_PERM_UPDATE};
+  private static final int __MOREUPDATESAVAILABLE_ISSET_ID = 0;
+  private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.AUTHZ_PATH_UPDATE,_Fields.AUTHZ_PERM_UPDATE,_Fields.MORE_UPDATES_AVAILABLE};
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -122,6 +129,8 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
     tmpMap.put(_Fields.AUTHZ_PERM_UPDATE, new org.apache.thrift.meta_data.FieldMetaData("authzPermUpdate", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
         new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
             new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, TPermissionsUpdate.class))));
+    tmpMap.put(_Fields.MORE_UPDATES_AVAILABLE, new org.apache.thrift.meta_data.FieldMetaData("moreUpdatesAvailable", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(TAuthzUpdateResponse.class, metaDataMap);
   }
@@ -133,6 +142,7 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
    * Performs a deep copy on <i>other</i>.
    */
   public TAuthzUpdateResponse(TAuthzUpdateResponse other) {
+    __isset_bitfield = other.__isset_bitfield;
     if (other.isSetAuthzPathUpdate()) {
       List<TPathsUpdate> __this__authzPathUpdate = new ArrayList<TPathsUpdate>(other.authzPathUpdate.size());
       for (TPathsUpdate other_element : other.authzPathUpdate) {
@@ -147,6 +157,7 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
       }
       this.authzPermUpdate = __this__authzPermUpdate;
     }
+    this.moreUpdatesAvailable = other.moreUpdatesAvailable;
   }
 
   public TAuthzUpdateResponse deepCopy() {
@@ -157,6 +168,8 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
   public void clear() {
     this.authzPathUpdate = null;
     this.authzPermUpdate = null;
+    setMoreUpdatesAvailableIsSet(false);
+    this.moreUpdatesAvailable = false;
   }
 
   public int getAuthzPathUpdateSize() {
@@ -235,6 +248,28 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
     }
   }
 
+  public boolean isMoreUpdatesAvailable() {
+    return this.moreUpdatesAvailable;
+  }
+
+  public void setMoreUpdatesAvailable(boolean moreUpdatesAvailable) {
+    this.moreUpdatesAvailable = moreUpdatesAvailable;
+    setMoreUpdatesAvailableIsSet(true);
+  }
+
+  public void unsetMoreUpdatesAvailable() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __MOREUPDATESAVAILABLE_ISSET_ID);
+  }
+
+  /** Returns true if field moreUpdatesAvailable is set (has been assigned a value) and false otherwise */
+  public boolean isSetMoreUpdatesAvailable() {
+    return EncodingUtils.testBit(__isset_bitfield, __MOREUPDATESAVAILABLE_ISSET_ID);
+  }
+
+  public void setMoreUpdatesAvailableIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __MOREUPDATESAVAILABLE_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case AUTHZ_PATH_UPDATE:
@@ -253,6 +288,14 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
       }
       break;
 
+    case MORE_UPDATES_AVAILABLE:
+      if (value == null) {
+        unsetMoreUpdatesAvailable();
+      } else {
+        setMoreUpdatesAvailable((Boolean)value);
+      }
+      break;
+
     }
   }
 
@@ -264,6 +307,9 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
     case AUTHZ_PERM_UPDATE:
       return getAuthzPermUpdate();
 
+    case MORE_UPDATES_AVAILABLE:
+      return isMoreUpdatesAvailable();
+
     }
     throw new IllegalStateException();
   }
@@ -279,6 +325,8 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
       return isSetAuthzPathUpdate();
     case AUTHZ_PERM_UPDATE:
       return isSetAuthzPermUpdate();
+    case MORE_UPDATES_AVAILABLE:
+      return isSetMoreUpdatesAvailable();
     }
     throw new IllegalStateException();
   }
@@ -314,6 +362,15 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
         return false;
     }
 
+    boolean this_present_moreUpdatesAvailable = true && this.isSetMoreUpdatesAvailable();
+    boolean that_present_moreUpdatesAvailable = true && that.isSetMoreUpdatesAvailable();
+    if (this_present_moreUpdatesAvailable || that_present_moreUpdatesAvailable) {
+      if (!(this_present_moreUpdatesAvailable && that_present_moreUpdatesAvailable))
+        return false;
+      if (this.moreUpdatesAvailable != that.moreUpdatesAvailable)
+        return false;
+    }
+
     return true;
   }
 
@@ -331,6 +388,11 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
     if (present_authzPermUpdate)
       list.add(authzPermUpdate);
 
+    boolean present_moreUpdatesAvailable = true && (isSetMoreUpdatesAvailable());
+    list.add(present_moreUpdatesAvailable);
+    if (present_moreUpdatesAvailable)
+      list.add(moreUpdatesAvailable);
+
     return list.hashCode();
   }
 
@@ -362,6 +424,16 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetMoreUpdatesAvailable()).compareTo(other.isSetMoreUpdatesAvailable());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetMoreUpdatesAvailable()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.moreUpdatesAvailable, other.moreUpdatesAvailable);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -401,6 +473,12 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
       }
       first = false;
     }
+    if (isSetMoreUpdatesAvailable()) {
+      if (!first) sb.append(", ");
+      sb.append("moreUpdatesAvailable:");
+      sb.append(this.moreUpdatesAvailable);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -420,6 +498,8 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
 
   private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
     try {
+      // it doesn't seem like you should have to do this, but java serialization is wacky, and doesn't call the default constructor.
+      __isset_bitfield = 0;
       read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
     } catch (org.apache.thrift.TException te) {
       throw new java.io.IOException(te);
@@ -482,6 +562,14 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 3: // MORE_UPDATES_AVAILABLE
+            if (schemeField.type == org.apache.thrift.protocol.TType.BOOL) {
+              struct.moreUpdatesAvailable = iprot.readBool();
+              struct.setMoreUpdatesAvailableIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -523,6 +611,11 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
           oprot.writeFieldEnd();
         }
       }
+      if (struct.isSetMoreUpdatesAvailable()) {
+        oprot.writeFieldBegin(MORE_UPDATES_AVAILABLE_FIELD_DESC);
+        oprot.writeBool(struct.moreUpdatesAvailable);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -547,7 +640,10 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
       if (struct.isSetAuthzPermUpdate()) {
         optionals.set(1);
       }
-      oprot.writeBitSet(optionals, 2);
+      if (struct.isSetMoreUpdatesAvailable()) {
+        optionals.set(2);
+      }
+      oprot.writeBitSet(optionals, 3);
       if (struct.isSetAuthzPathUpdate()) {
         {
           oprot.writeI32(struct.authzPathUpdate.size());
@@ -566,12 +662,15 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
           }
         }
       }
+      if (struct.isSetMoreUpdatesAvailable()) {
+        oprot.writeBool(struct.moreUpdatesAvailable);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, TAuthzUpdateResponse struct) throws org.apache.thrift.TException {
       TTupleProtocol iprot = (TTupleProtocol) prot;
-      BitSet incoming = iprot.readBitSet(2);
+      BitSet incoming = iprot.readBitSet(3);
       if (incoming.get(0)) {
         {
           org.apache.thrift.protocol.TList _list140 = new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRUCT, iprot.readI32());
@@ -600,6 +699,10 @@ public class TAuthzUpdateResponse implements org.apache.thrift.TBase<TAuthzUpdat
         }
         struct.setAuthzPermUpdateIsSet(true);
       }
+      if (incoming.get(2)) {
+        struct.moreUpdatesAvailable = iprot.readBool();
+        struct.setMoreUpdatesAvailableIsSet(true);
+      }
     }
   }
 
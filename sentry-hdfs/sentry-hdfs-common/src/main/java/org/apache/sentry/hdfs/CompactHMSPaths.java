@@ -0,0 +1,1201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.sentry.hdfs.HMSPaths.EntryType;
+import org.apache.sentry.hdfs.service.thrift.TPathEntry;
+import org.apache.sentry.hdfs.service.thrift.TPathsDump;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+
+/**
+ * A memory compact, non thread-safe implementation of {@link AuthzPaths} that behaves
+ * like {@link HMSPaths}, and uses the same {@link TPathsDump} format.
+ * <p>
+ * Instead of a tree of {@link HMSPaths.Entry} objects, each with its own children map
+ * and authz object set, the tree is kept in parallel primitive arrays indexed by int
+ * node IDs:
+ * <ul>
+ *   <li>the path element of a node is the ID of the string in a table of distinct path
+ *   elements, so that repeated path elements such as partition names are stored once,
+ *   without interning them in the JVM string pool;</li>
+ *   <li>the children of a node are an array of node IDs sorted by path element ID, and
+ *   are looked up with a binary search;</li>
+ *   <li>authz objects are IDs in a second, case insensitive, string table. A node with
+ *   a single authz object, by far the most common case, keeps the ID inline.</li>
+ * </ul>
+ * IDs of deleted nodes and of strings no longer used are reused.
+ */
+public class CompactHMSPaths extends MutableAuthzPaths {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CompactHMSPaths.class);
+
+  private static final int NONE = -1;
+  // Marks a node with several authz objects, kept in multiAuthzObjs
+  private static final int MULTIPLE = -2;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int[] NO_IDS = new int[0];
+
+  private static final byte FREE = 0;
+  private static final byte DIR = EntryType.DIR.getByte();
+  private static final byte PREFIX = EntryType.PREFIX.getByte();
+  private static final byte AUTHZ_OBJECT = EntryType.AUTHZ_OBJECT.getByte();
+
+  private final String[] prefixes;
+
+  private final StringTable pathElements = new StringTable(false);
+  private final StringTable authzObjNames = new StringTable(true);
+
+  // Node arrays, all indexed by node ID
+  private int[] parents;
+  private int[] names;
+  private byte[] types;
+  // NONE, the ID of the only authz object of the node, or MULTIPLE
+  private int[] authzObjs;
+  // Children sorted by path element ID, null if the node has none
+  private int[][] children;
+  private int[] numChildren;
+
+  private int numNodes;
+  private int numLiveNodes;
+  // Head of the list of free node IDs, linked through parents
+  private int freeNode = NONE;
+
+  // Sorted authz object IDs of the nodes with several authz objects
+  private final Map<Integer, int[]> multiAuthzObjs = new HashMap<>();
+
+  // The hive authorized objects to path entries mapping, indexed by authz object ID.
+  // Each authz object maps to the sorted IDs of its nodes, null if it is not mapped.
+  private int[][] authzObjNodes = new int[INITIAL_CAPACITY][];
+  private int[] authzObjNumNodes = new int[INITIAL_CAPACITY];
+
+  private final int root;
+
+  // While loading a dump children are appended, and sorted once the load is done
+  private boolean bulkLoad;
+
+  public CompactHMSPaths(String[] pathPrefixes) {
+    boolean rootPrefix = false;
+    // Copy the array to avoid external modification
+    this.prefixes = Arrays.copyOf(pathPrefixes, pathPrefixes.length);
+    for (String pathPrefix : pathPrefixes) {
+      rootPrefix = rootPrefix || pathPrefix.equals(Path.SEPARATOR);
+    }
+    if (rootPrefix && pathPrefixes.length > 1) {
+      throw new IllegalArgumentException(
+          "Root is a path prefix, there cannot be other path prefixes");
+    }
+
+    parents = new int[INITIAL_CAPACITY];
+    names = new int[INITIAL_CAPACITY];
+    types = new byte[INITIAL_CAPACITY];
+    authzObjs = new int[INITIAL_CAPACITY];
+    children = new int[INITIAL_CAPACITY][];
+    numChildren = new int[INITIAL_CAPACITY];
+
+    root = newNode(NONE, Path.SEPARATOR, rootPrefix ? PREFIX : DIR);
+    if (!rootPrefix) {
+      for (String pathPrefix : pathPrefixes) {
+        createPrefix(HMSPaths.getPathElements(pathPrefix));
+      }
+    }
+    LOG.info(toString() + " Initialized");
+  }
+
+  // Node management
+
+  private int newNode(int parent, String pathElement, byte type) {
+    int node;
+    if (freeNode != NONE) {
+      node = freeNode;
+      freeNode = parents[node];
+    } else {
+      if (numNodes == types.length) {
+        growNodes();
+      }
+      node = numNodes++;
+    }
+    parents[node] = parent;
+    names[node] = pathElements.acquire(pathElement);
+    types[node] = type;
+    authzObjs[node] = NONE;
+    children[node] = null;
+    numChildren[node] = 0;
+    numLiveNodes++;
+    return node;
+  }
+
+  private void growNodes() {
+    int capacity = grow(types.length);
+    parents = Arrays.copyOf(parents, capacity);
+    names = Arrays.copyOf(names, capacity);
+    types = Arrays.copyOf(types, capacity);
+    authzObjs = Arrays.copyOf(authzObjs, capacity);
+    children = Arrays.copyOf(children, capacity);
+    numChildren = Arrays.copyOf(numChildren, capacity);
+  }
+
+  private static int grow(int capacity) {
+    return capacity + (capacity >> 1) + 1;
+  }
+
+  private void freeNode(int node) {
+    clearAuthzObjs(node);
+    pathElements.release(names[node]);
+    types[node] = FREE;
+    children[node] = null;
+    numChildren[node] = 0;
+    parents[node] = freeNode;
+    freeNode = node;
+    numLiveNodes--;
+  }
+
+  private boolean isLive(int node) {
+    return types[node] != FREE;
+  }
+
+  // Children, sorted by path element ID
+
+  /**
+   * @return the position of the child with the given path element ID, or
+   * (-(insertion point) - 1) if there is none
+   */
+  private int findChild(int node, int nameId) {
+    int[] nodeChildren = children[node];
+    int low = 0;
+    int high = numChildren[node] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midName = names[nodeChildren[mid]];
+      if (midName < nameId) {
+        low = mid + 1;
+      } else if (midName > nameId) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private int getChild(int node, String pathElement) {
+    if (numChildren[node] == 0) {
+      return NONE;
+    }
+    int nameId = pathElements.find(pathElement);
+    if (nameId == NONE) {
+      return NONE;
+    }
+    int pos = findChild(node, nameId);
+    return pos >= 0 ? children[node][pos] : NONE;
+  }
+
+  private void putChild(int node, int child) {
+    int count = numChildren[node];
+    int pos = count;
+    if (!bulkLoad) {
+      pos = findChild(node, names[child]);
+      if (pos >= 0) {
+        children[node][pos] = child;
+        return;
+      }
+      pos = -pos - 1;
+    }
+    int[] nodeChildren = children[node];
+    if (nodeChildren == null) {
+      // Most nodes have few children, start small
+      nodeChildren = children[node] = new int[2];
+    } else if (count == nodeChildren.length) {
+      nodeChildren = children[node] = Arrays.copyOf(nodeChildren, grow(count));
+    }
+    System.arraycopy(nodeChildren, pos, nodeChildren, pos + 1, count - pos);
+    nodeChildren[pos] = child;
+    numChildren[node] = count + 1;
+  }
+
+  private void removeChild(int node, int child) {
+    int pos = findChild(node, names[child]);
+    if (pos < 0 || children[node][pos] != child) {
+      return;
+    }
+    int count = numChildren[node] - 1;
+    if (count == 0) {
+      children[node] = null;
+    } else {
+      System.arraycopy(children[node], pos + 1, children[node], pos, count - pos);
+    }
+    numChildren[node] = count;
+  }
+
+  private void sortChildren(int node) {
+    int count = numChildren[node];
+    int[] nodeChildren = children[node];
+    long[] keys = new long[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = ((long) names[nodeChildren[i]] << 32) | nodeChildren[i];
+    }
+    Arrays.sort(keys);
+    for (int i = 0; i < count; i++) {
+      nodeChildren[i] = (int) keys[i];
+    }
+  }
+
+  // Authz objects of a node
+
+  private boolean hasAuthzObjs(int node) {
+    return authzObjs[node] != NONE;
+  }
+
+  private boolean hasAuthzObj(int node, int authzObjId) {
+    int nodeAuthzObjs = authzObjs[node];
+    if (nodeAuthzObjs == MULTIPLE) {
+      return Arrays.binarySearch(multiAuthzObjs.get(node), authzObjId) >= 0;
+    }
+    return nodeAuthzObjs != NONE && nodeAuthzObjs == authzObjId;
+  }
+
+  private int[] getAuthzObjIds(int node) {
+    int nodeAuthzObjs = authzObjs[node];
+    if (nodeAuthzObjs == NONE) {
+      return NO_IDS;
+    } else if (nodeAuthzObjs == MULTIPLE) {
+      return multiAuthzObjs.get(node);
+    }
+    return new int[] {nodeAuthzObjs};
+  }
+
+  private void addAuthzObj(int node, String authzObj) {
+    if (authzObj == null) {
+      return;
+    }
+    int existing = authzObjNames.find(authzObj);
+    if (existing != NONE && hasAuthzObj(node, existing)) {
+      return;
+    }
+    int authzObjId = authzObjNames.acquire(authzObj);
+    int nodeAuthzObjs = authzObjs[node];
+    if (nodeAuthzObjs == NONE) {
+      authzObjs[node] = authzObjId;
+    } else if (nodeAuthzObjs == MULTIPLE) {
+      int[] ids = multiAuthzObjs.get(node);
+      int pos = -Arrays.binarySearch(ids, authzObjId) - 1;
+      int[] newIds = new int[ids.length + 1];
+      System.arraycopy(ids, 0, newIds, 0, pos);
+      newIds[pos] = authzObjId;
+      System.arraycopy(ids, pos, newIds, pos + 1, ids.length - pos);
+      multiAuthzObjs.put(node, newIds);
+    } else {
+      multiAuthzObjs.put(node, nodeAuthzObjs < authzObjId ?
+          new int[] {nodeAuthzObjs, authzObjId} : new int[] {authzObjId, nodeAuthzObjs});
+      authzObjs[node] = MULTIPLE;
+    }
+  }
+
+  private void addAuthzObjs(int node, List<String> nodeAuthzObjs) {
+    if (nodeAuthzObjs != null) {
+      for (String authzObj : nodeAuthzObjs) {
+        addAuthzObj(node, authzObj);
+      }
+    }
+  }
+
+  /**
+   * Removes an authz object from a node, and the node from the nodes of the
+   * authz object.
+   */
+  private void removeAuthzObj(int node, int authzObjId) {
+    if (authzObjId == NONE || !hasAuthzObj(node, authzObjId)) {
+      return;
+    }
+    if (authzObjs[node] == MULTIPLE) {
+      int[] ids = multiAuthzObjs.get(node);
+      if (ids.length == 2) {
+        multiAuthzObjs.remove(node);
+        authzObjs[node] = ids[0] == authzObjId ? ids[1] : ids[0];
+      } else {
+        int pos = Arrays.binarySearch(ids, authzObjId);
+        int[] newIds = new int[ids.length - 1];
+        System.arraycopy(ids, 0, newIds, 0, pos);
+        System.arraycopy(ids, pos + 1, newIds, pos, newIds.length - pos);
+        multiAuthzObjs.put(node, newIds);
+      }
+    } else {
+      authzObjs[node] = NONE;
+    }
+    removeMappedNode(authzObjId, node);
+    authzObjNames.release(authzObjId);
+  }
+
+  private void clearAuthzObjs(int node) {
+    for (int authzObjId : getAuthzObjIds(node).clone()) {
+      removeAuthzObj(node, authzObjId);
+    }
+  }
+
+  private Set<String> getAuthzObjs(int node) {
+    Set<String> result = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    for (int authzObjId : getAuthzObjIds(node)) {
+      result.add(authzObjNames.get(authzObjId));
+    }
+    return result;
+  }
+
+  // Authz object to nodes mapping
+
+  private boolean isMapped(int authzObjId) {
+    return authzObjId != NONE && authzObjId < authzObjNodes.length &&
+        authzObjNodes[authzObjId] != null;
+  }
+
+  private int[] getMappedNodes(int authzObjId) {
+    return isMapped(authzObjId) ?
+        Arrays.copyOf(authzObjNodes[authzObjId], authzObjNumNodes[authzObjId]) : null;
+  }
+
+  /**
+   * Maps the authz object to the given nodes, replacing its previous nodes.
+   * @return the authz object ID
+   */
+  private int map(String authzObj, int[] nodes) {
+    int authzObjId = authzObjNames.find(authzObj);
+    if (!isMapped(authzObjId)) {
+      // The mapping holds a reference to the authz object name
+      authzObjId = authzObjNames.acquire(authzObj);
+      if (authzObjId >= authzObjNodes.length) {
+        int capacity = Math.max(grow(authzObjNodes.length), authzObjId + 1);
+        authzObjNodes = Arrays.copyOf(authzObjNodes, capacity);
+        authzObjNumNodes = Arrays.copyOf(authzObjNumNodes, capacity);
+      }
+    }
+    int[] sorted = nodes.clone();
+    Arrays.sort(sorted);
+    authzObjNodes[authzObjId] = sorted;
+    authzObjNumNodes[authzObjId] = sorted.length;
+    return authzObjId;
+  }
+
+  private void unmap(int authzObjId) {
+    if (isMapped(authzObjId)) {
+      authzObjNodes[authzObjId] = null;
+      authzObjNumNodes[authzObjId] = 0;
+      authzObjNames.release(authzObjId);
+    }
+  }
+
+  private void addMappedNode(int authzObjId, int node) {
+    if (!isMapped(authzObjId)) {
+      map(authzObjNames.get(authzObjId), new int[] {node});
+      return;
+    }
+    int[] nodes = authzObjNodes[authzObjId];
+    int count = authzObjNumNodes[authzObjId];
+    int pos = Arrays.binarySearch(nodes, 0, count, node);
+    if (pos >= 0) {
+      return;
+    }
+    pos = -pos - 1;
+    if (count == nodes.length) {
+      nodes = authzObjNodes[authzObjId] = Arrays.copyOf(nodes, grow(count));
+    }
+    System.arraycopy(nodes, pos, nodes, pos + 1, count - pos);
+    nodes[pos] = node;
+    authzObjNumNodes[authzObjId] = count + 1;
+  }
+
+  private void removeMappedNode(int authzObjId, int node) {
+    if (!isMapped(authzObjId)) {
+      return;
+    }
+    int[] nodes = authzObjNodes[authzObjId];
+    int count = authzObjNumNodes[authzObjId];
+    int pos = Arrays.binarySearch(nodes, 0, count, node);
+    if (pos >= 0) {
+      System.arraycopy(nodes, pos + 1, nodes, pos, count - pos - 1);
+      authzObjNumNodes[authzObjId] = count - 1;
+    }
+  }
+
+  // Tree operations, following the ones of HMSPaths.Entry
+
+  private int findPrefixEntry(String[] pathElements) {
+    Preconditions.checkArgument(pathElements != null,
+        "pathElements cannot be NULL");
+    if (types[root] == PREFIX) {
+      return root;
+    }
+    int node = root;
+    for (String pathElement : pathElements) {
+      node = getChild(node, pathElement);
+      if (node == NONE || types[node] == PREFIX) {
+        return node;
+      }
+    }
+    return NONE;
+  }
+
+  private int find(String[] pathElements, boolean isPartialMatchOk) {
+    Preconditions.checkArgument(
+        pathElements != null && pathElements.length > 0,
+        "pathElements cannot be NULL or empty");
+    int node = root;
+    int lastAuthzObjNode = NONE;
+    for (String pathElement : pathElements) {
+      node = getChild(node, pathElement);
+      if (node == NONE) {
+        return isPartialMatchOk ? lastAuthzObjNode : NONE;
+      }
+      if (hasAuthzObjs(node)) {
+        lastAuthzObjNode = node;
+      }
+    }
+    return lastAuthzObjNode;
+  }
+
+  /**
+   * Creates all missing parent entries of the given path and returns its direct parent.
+   */
+  private int createParent(List<String> pathElements) {
+    int parent = root;
+    for (int i = 0; i < pathElements.size() - 1; i++) {
+      String pathElement = pathElements.get(i);
+      int child = getChild(parent, pathElement);
+      if (child == NONE) {
+        child = newNode(parent, pathElement, DIR);
+        putChild(parent, child);
+      }
+      parent = child;
+    }
+    return parent;
+  }
+
+  private int createChild(List<String> pathElements, byte type, String authzObj) {
+    int parent = createParent(pathElements);
+    String lastPathElement = pathElements.get(pathElements.size() - 1);
+    int child = getChild(parent, lastPathElement);
+
+    // Same as HMSPaths: a dir entry becomes an authz object entry when
+    // an authz object is added to it
+    if (child == NONE) {
+      child = newNode(parent, lastPathElement, type);
+      addAuthzObj(child, authzObj);
+      putChild(parent, child);
+    } else if (type == AUTHZ_OBJECT &&
+        (types[child] == PREFIX || types[child] == AUTHZ_OBJECT)) {
+      addAuthzObj(child, authzObj);
+    } else if (type == AUTHZ_OBJECT && types[child] == DIR) {
+      addAuthzObj(child, authzObj);
+      types[child] = AUTHZ_OBJECT;
+    }
+    return child;
+  }
+
+  private void createPrefix(List<String> pathElements) {
+    int prefix = findPrefixEntry(pathElements.toArray(new String[0]));
+    if (prefix != NONE) {
+      throw new IllegalArgumentException(String.format(
+          "%s: createPrefix(%s): cannot add prefix under an existing prefix '%s'",
+          this, pathElements, getFullPath(prefix)));
+    }
+    createChild(pathElements, PREFIX, null);
+  }
+
+  private int createAuthzObjPath(List<String> pathElements, String authzObj) {
+    if (findPrefixEntry(pathElements.toArray(new String[0])) == NONE) {
+      // we only create the entry if is under a prefix, else we ignore it
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("%s: createAuthzObjPath(%s, %s): outside of prefix, skipping",
+            this, authzObj, pathElements));
+      }
+      return NONE;
+    }
+    return createChild(pathElements, AUTHZ_OBJECT, authzObj);
+  }
+
+  /**
+   * Deletes a node without children from its parent, and the parent if it
+   * is left dangling.
+   */
+  private void deleteFromParent(int node) {
+    int parent = parents[node];
+    removeChild(parent, node);
+    freeNode(node);
+    deleteIfDangling(parent);
+  }
+
+  private void deleteIfDangling(int node) {
+    if (numChildren[node] == 0 && types[node] == DIR) {
+      delete(node);
+    }
+  }
+
+  private void delete(int node) {
+    if (parents[node] == NONE) {
+      return;
+    }
+    if (numChildren[node] == 0) {
+      deleteFromParent(node);
+    } else if (types[node] == AUTHZ_OBJECT) {
+      // if the entry was for an authz object and has children, we
+      // change it to be a dir entry.
+      types[node] = DIR;
+      clearAuthzObjs(node);
+    }
+  }
+
+  private void deleteAuthzObject(int node, String authzObj) {
+    if (parents[node] == NONE) {
+      return;
+    }
+    int authzObjId = authzObjNames.find(authzObj);
+    if (numChildren[node] == 0) {
+      // Remove the authzObj on the path entry. If the path
+      // entry no longer maps to any authzObj, removes the
+      // entry recursively.
+      removeAuthzObj(node, authzObjId);
+      if (!hasAuthzObjs(node)) {
+        deleteFromParent(node);
+      }
+    } else if (types[node] == AUTHZ_OBJECT) {
+      types[node] = DIR;
+      removeAuthzObj(node, authzObjId);
+    }
+  }
+
+  private void moveTo(int node, int newParent, String pathElement) {
+    Preconditions.checkArgument(!pathElement.isEmpty());
+    if (getChild(newParent, pathElement) != NONE) {
+      LOG.warn(String.format(
+          "Attempt to move %s to %s: entry with the same name %s already exists",
+          toString(node), toString(newParent), pathElement));
+      return;
+    }
+    int oldParent = parents[node];
+    removeChild(oldParent, node);
+    pathElements.release(names[node]);
+    names[node] = pathElements.acquire(pathElement);
+    parents[node] = newParent;
+    putChild(newParent, node);
+    // Only delete the old parent once the node is attached to its new parent,
+    // so that an empty old parent that is also the new parent is kept
+    deleteIfDangling(oldParent);
+  }
+
+  private String getFullPath(int node) {
+    if (parents[node] == NONE) {
+      return Path.SEPARATOR;
+    }
+    List<String> elements = new ArrayList<>();
+    for (int n = node; parents[n] != NONE; n = parents[n]) {
+      elements.add(pathElements.get(names[n]));
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = elements.size() - 1; i >= 0; i--) {
+      sb.append(Path.SEPARATOR).append(elements.get(i));
+    }
+    return sb.toString();
+  }
+
+  private String toString(int node) {
+    return String.format("Entry[%s:%s -> authObj: %s]", EntryType.fromByte(types[node]),
+        getFullPath(node), Joiner.on(",").join(getAuthzObjs(node)));
+  }
+
+  // AuthzPaths operations, following the ones of HMSPaths
+
+  void addAuthzObject(String authzObj, List<List<String>> authzObjPathElements) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s addAuthzObject(%s, %s)",
+          this, authzObj, HMSPaths.assemblePaths(authzObjPathElements)));
+    }
+    int[] previousNodes = getMappedNodes(authzObjNames.find(authzObj));
+    int[] newNodes = new int[authzObjPathElements.size()];
+    int numNewNodes = 0;
+    for (List<String> pathElements : authzObjPathElements) {
+      int node = createAuthzObjPath(pathElements, authzObj);
+      if (node != NONE) {
+        newNodes[numNewNodes++] = node;
+      } else {
+        LOG.warn(String.format("%s addAuthzObject(%s, %s):" +
+            " Ignoring path %s, no prefix",
+            this, authzObj, HMSPaths.assemblePaths(authzObjPathElements), pathElements));
+      }
+    }
+    newNodes = dedup(newNodes, numNewNodes);
+    map(authzObj, newNodes);
+    if (previousNodes != null) {
+      for (int node : previousNodes) {
+        if (Arrays.binarySearch(newNodes, node) < 0 && isLive(node)) {
+          deleteAuthzObject(node, authzObj);
+        }
+      }
+    }
+  }
+
+  private static int[] dedup(int[] ids, int count) {
+    int[] sorted = Arrays.copyOf(ids, count);
+    Arrays.sort(sorted);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[unique++] = sorted[i];
+      }
+    }
+    return unique == count ? sorted : Arrays.copyOf(sorted, unique);
+  }
+
+  void _addAuthzObject(String authzObj, List<String> authzObjPaths) {
+    addAuthzObject(authzObj, HMSPaths.getPathsElements(authzObjPaths));
+  }
+
+  void _addPathsToAuthzObject(String authzObj, List<String> authzObjPaths) {
+    addPathsToAuthzObject(authzObj, HMSPaths.getPathsElements(authzObjPaths), false);
+  }
+
+  @Override
+  void addPathsToAuthzObject(String authzObj,
+      List<List<String>> authzObjPathElements, boolean createNew) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s addPathsToAuthzObject(%s, %s, %b)",
+          this, authzObj, HMSPaths.assemblePaths(authzObjPathElements), createNew));
+    }
+    int authzObjId = authzObjNames.find(authzObj);
+    if (isMapped(authzObjId)) {
+      for (List<String> pathElements : authzObjPathElements) {
+        int node = createAuthzObjPath(pathElements, authzObj);
+        if (node != NONE) {
+          addMappedNode(authzObjId, node);
+        } else if (LOG.isDebugEnabled()) {
+          LOG.debug(String.format("%s addPathsToAuthzObject(%s, %s, %b):" +
+              " Cannot create authz obj for path %s because it is outside of prefix",
+              this, authzObj, HMSPaths.assemblePaths(authzObjPathElements), createNew,
+              pathElements));
+        }
+      }
+    } else if (createNew) {
+      addAuthzObject(authzObj, authzObjPathElements);
+    } else {
+      LOG.warn(String.format("%s addPathsToAuthzObject(%s, %s, %b):" +
+          " Path was not added to AuthzObject, could not find key in authzObjToPath",
+          this, authzObj, HMSPaths.assemblePaths(authzObjPathElements), createNew));
+    }
+  }
+
+  @Override
+  void deletePathsFromAuthzObject(String authzObj,
+      List<List<String>> authzObjPathElements) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s deletePathsFromAuthzObject(%s, %s)",
+          this, authzObj, HMSPaths.assemblePaths(authzObjPathElements)));
+    }
+    int authzObjId = authzObjNames.find(authzObj);
+    if (!isMapped(authzObjId)) {
+      LOG.warn(String.format("%s deletePathsFromAuthzObject(%s, %s):" +
+          " Path was not deleted from AuthzObject, could not find key in authzObjToPath",
+          this, authzObj, HMSPaths.assemblePaths(authzObjPathElements)));
+      return;
+    }
+    for (List<String> pathElements : authzObjPathElements) {
+      int node = find(pathElements.toArray(new String[pathElements.size()]), false);
+      if (node != NONE) {
+        deleteAuthzObject(node, authzObj);
+        removeMappedNode(authzObjId, node);
+      } else {
+        LOG.warn(String.format("%s deletePathsFromAuthzObject(%s, %s):" +
+            " Path %s was not deleted from AuthzObject, path not registered." +
+            " This is possible for implicit partition locations",
+            this, authzObj, HMSPaths.assemblePaths(authzObjPathElements), pathElements));
+      }
+    }
+  }
+
+  @Override
+  void deleteAuthzObject(String authzObj) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s deleteAuthzObject(%s)", this, authzObj));
+    }
+    int authzObjId = authzObjNames.find(authzObj);
+    int[] nodes = getMappedNodes(authzObjId);
+    if (nodes != null) {
+      unmap(authzObjId);
+      for (int node : nodes) {
+        if (isLive(node)) {
+          deleteAuthzObject(node, authzObj);
+        }
+      }
+    }
+  }
+
+  @Override
+  public Set<String> findAuthzObject(String[] pathElements) {
+    return findAuthzObject(pathElements, true);
+  }
+
+  @Override
+  public Set<String> findAuthzObjectExactMatches(String[] pathElements) {
+    return findAuthzObject(pathElements, false);
+  }
+
+  /**
+   * @see HMSPaths#findAuthzObject(String[], boolean)
+   */
+  public Set<String> findAuthzObject(String[] pathElements, boolean isPartialOk) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s findAuthzObject(%s, %b)",
+          this, Arrays.toString(pathElements), isPartialOk));
+    }
+    // Handle '/'
+    if (pathElements == null || pathElements.length == 0) {
+      return null;
+    }
+    int node = find(pathElements, isPartialOk);
+    Set<String> authzObjSet = node != NONE ? getAuthzObjs(node) : null;
+    if ((authzObjSet == null || authzObjSet.isEmpty()) && LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s findAuthzObject(%s, %b) - no authzObject found",
+          this, Arrays.toString(pathElements), isPartialOk));
+    }
+    return authzObjSet;
+  }
+
+  /**
+   * @see HMSPaths#renameAuthzObject(String, List, String, List)
+   */
+  @Override
+  void renameAuthzObject(String oldName, List<List<String>> oldPathElems,
+      String newName, List<List<String>> newPathElems) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("%s renameAuthzObject({%s, %s} -> {%s, %s})",
+          this, oldName, HMSPaths.assemblePaths(oldPathElems), newName,
+          HMSPaths.assemblePaths(newPathElems)));
+    }
+    if (oldPathElems == null || oldPathElems.isEmpty() ||
+        newPathElems == null || newPathElems.isEmpty() ||
+        newName == null || newName.equals(oldName)) {
+      LOG.warn(String.format("%s renameAuthzObject({%s, %s} -> {%s, %s})" +
+          ": invalid inputs, skipping",
+          this, oldName, HMSPaths.assemblePaths(oldPathElems), newName,
+          HMSPaths.assemblePaths(newPathElems)));
+      return;
+    }
+
+    // if oldPath == newPath, that is path has not changed as part of rename and hence new table
+    // needs to have old paths => new_table.add(old_table_partition_paths)
+    List<String> oldPathElements = oldPathElems.get(0);
+    List<String> newPathElements = newPathElems.get(0);
+    if (!oldPathElements.equals(newPathElements)) {
+      int oldNode = find(oldPathElements.toArray(new String[0]), false);
+      int newParent = createParent(newPathElements);
+
+      if (oldNode == NONE) {
+        LOG.warn(String.format("%s Moving old paths for renameAuthzObject({%s, %s} -> {%s, %s})" +
+            " is skipped. Cannot find entry for old name",
+            this, oldName, HMSPaths.assemblePaths(oldPathElems), newName,
+            HMSPaths.assemblePaths(newPathElems)));
+      } else {
+        moveTo(oldNode, newParent, newPathElements.get(newPathElements.size() - 1));
+      }
+    }
+
+    // Re-write authObj from oldName to newName.
+    int oldId = authzObjNames.find(oldName);
+    int[] nodes = getMappedNodes(oldId);
+    if (nodes == null) {
+      LOG.warn(String.format("%s renameAuthzObject({%s, %s} -> {%s, %s}):" +
+          " cannot find oldName %s in authzObjToPath",
+          this, oldName, HMSPaths.assemblePaths(oldPathElems), newName,
+          HMSPaths.assemblePaths(newPathElems), oldName));
+      return;
+    }
+    unmap(oldId);
+    map(newName, nodes);
+    for (int node : nodes) {
+      addAuthzObj(node, newName);
+      int nodeOldId = authzObjNames.find(oldName);
+      if (nodeOldId != NONE && hasAuthzObj(node, nodeOldId)) {
+        removeAuthzObj(node, nodeOldId);
+      } else {
+        LOG.warn(String.format("%s renameAuthzObject({%s, %s} -> {%s, %s}):" +
+            " Unexpected state: authzObjToPath has an " +
+            "entry %s where one of the authz objects does not have oldName",
+            this, oldName, HMSPaths.assemblePaths(oldPathElems), newName,
+            HMSPaths.assemblePaths(newPathElems), toString(node)));
+      }
+    }
+
+    // old_table.dropAllPaths, as HMSPaths does on the entries of the old name
+    for (int node : nodes) {
+      if (isLive(node)) {
+        deleteAuthzObject(node, oldName);
+      }
+    }
+  }
+
+  @Override
+  public boolean isUnderPrefix(String[] pathElements) {
+    return findPrefixEntry(pathElements) != NONE;
+  }
+
+  String[] getPrefixes() {
+    return prefixes;
+  }
+
+  @VisibleForTesting
+  int getNumNodes() {
+    return numLiveNodes;
+  }
+
+  @VisibleForTesting
+  int getNumPathElements() {
+    return pathElements.size();
+  }
+
+  /**
+   * For logging: the description of all path entries.
+   */
+  Collection<String> getAllEntries() {
+    List<String> entries = new ArrayList<>(numLiveNodes);
+    for (int node = 0; node < numNodes; node++) {
+      if (isLive(node)) {
+        entries.add(toString(node));
+      }
+    }
+    return entries;
+  }
+
+  @Override
+  public AuthzPathsDumper<CompactHMSPaths> getPathsDump() {
+    return new Dumper();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s:%s", getClass().getSimpleName(), Arrays.toString(prefixes));
+  }
+
+  @Override
+  public String dumpContent() {
+    return toString() + ": " + getAllEntries();
+  }
+
+  /**
+   * Creates and reads the same {@link TPathsDump} messages as {@link HMSPathsDumper}.
+   */
+  private class Dumper implements AuthzPathsDumper<CompactHMSPaths> {
+    // Same encoding of duplicate path elements as HMSPathsDumper
+    private static final char REPLACEMENT_STRING_PREFIX = ':';
+    private static final int AVG_ID_LENGTH = 4;
+    private static final int MIN_NUM_DUPLICATES = 2;
+
+    @Override
+    public TPathsDump createPathsDump(boolean minimizeSize) {
+      // The path element table already counts the uses of each path element,
+      // so there is no need for a separate pass to detect duplicates
+      int[] dupIndexes = null;
+      List<String> dupStringValues = null;
+      if (minimizeSize) {
+        dupIndexes = new int[pathElements.capacity()];
+        Arrays.fill(dupIndexes, NONE);
+        dupStringValues = new ArrayList<>();
+      }
+
+      Map<Integer, TPathEntry> idMap = new HashMap<>();
+      int[] counter = new int[1];
+      int rootId = createTPathEntry(root, counter, idMap, dupIndexes, dupStringValues);
+      TPathsDump dump = new TPathsDump(rootId, idMap);
+      if (minimizeSize) {
+        dump.setDupStringValues(dupStringValues);
+      }
+      LOG.info("Paths Dump created. {} nodes, {} distinct path elements", idMap.size(),
+          pathElements.size());
+      return dump;
+    }
+
+    private int createTPathEntry(int node, int[] counter, Map<Integer, TPathEntry> idMap,
+        int[] dupIndexes, List<String> dupStringValues) {
+      int myId = ++counter[0];
+      int count = numChildren[node];
+      List<Integer> tChildren = count > 0 ?
+          new ArrayList<Integer>(count) : Collections.<Integer>emptyList();
+      TPathEntry tEntry = new TPathEntry(types[node],
+          getPathElement(names[node], dupIndexes, dupStringValues), tChildren);
+      if (hasAuthzObjs(node)) {
+        tEntry.setAuthzObjs(new ArrayList<>(getAuthzObjs(node)));
+      }
+      idMap.put(myId, tEntry);
+      int[] nodeChildren = children[node];
+      for (int i = 0; i < count; i++) {
+        tChildren.add(createTPathEntry(nodeChildren[i], counter, idMap, dupIndexes,
+            dupStringValues));
+      }
+      return myId;
+    }
+
+    private String getPathElement(int nameId, int[] dupIndexes, List<String> dupStringValues) {
+      String pathElement = pathElements.get(nameId);
+      if (dupIndexes == null || pathElement.length() <= AVG_ID_LENGTH ||
+          pathElements.getRefCount(nameId) < MIN_NUM_DUPLICATES) {
+        return pathElement;
+      }
+      if (dupIndexes[nameId] == NONE) {
+        dupIndexes[nameId] = dupStringValues.size();
+        dupStringValues.add(pathElement);
+      }
+      return REPLACEMENT_STRING_PREFIX + Integer.toHexString(dupIndexes[nameId]);
+    }
+
+    @Override
+    public CompactHMSPaths initializeFromDump(TPathsDump pathDump) {
+      CompactHMSPaths newPaths = new CompactHMSPaths(prefixes);
+      TPathEntry tRootEntry = pathDump.getNodeMap().get(pathDump.getRootId());
+      newPaths.bulkLoad = true;
+      newPaths.cloneToNode(tRootEntry, newPaths.root, pathDump.getNodeMap(),
+          pathDump.getDupStringValues(), newPaths.types[newPaths.root] == PREFIX);
+      newPaths.finishBulkLoad();
+      return newPaths;
+    }
+  }
+
+  private void cloneToNode(TPathEntry tParent, int parent, Map<Integer, TPathEntry> idMap,
+      List<String> dupStringValues, boolean hasCrossedPrefix) {
+    for (Integer id : tParent.getChildren()) {
+      TPathEntry tChild = idMap.get(id);
+
+      String tChildPathElement = tChild.getPathElement();
+      if (!tChildPathElement.isEmpty() &&
+          tChildPathElement.charAt(0) == Dumper.REPLACEMENT_STRING_PREFIX) {
+        int dupStrIdx = Integer.parseInt(tChildPathElement.substring(1), 16);
+        tChildPathElement = dupStringValues.get(dupStrIdx);
+      }
+
+      int child;
+      boolean isChildPrefix = hasCrossedPrefix;
+      if (!hasCrossedPrefix) {
+        child = getChild(parent, tChildPathElement);
+        // If we haven't reached a prefix entry yet, then child should
+        // already exists.. else it is not part of the prefix
+        if (child == NONE) {
+          continue;
+        }
+        isChildPrefix = types[child] == PREFIX;
+        // Handle case when prefix entry has an authzObject
+        // For Eg (default table mapped to /user/hive/warehouse)
+        if (isChildPrefix) {
+          addAuthzObjs(child, tChild.getAuthzObjs());
+        }
+      } else {
+        child = newNode(parent, tChildPathElement, tChild.getType());
+        addAuthzObjs(child, tChild.getAuthzObjs());
+        putChild(parent, child);
+      }
+      for (int authzObjId : getAuthzObjIds(child)) {
+        addMappedNode(authzObjId, child);
+      }
+      cloneToNode(tChild, child, idMap, dupStringValues, isChildPrefix);
+    }
+  }
+
+  private void finishBulkLoad() {
+    bulkLoad = false;
+    for (int node = 0; node < numNodes; node++) {
+      if (isLive(node) && numChildren[node] > 1) {
+        sortChildren(node);
+      }
+    }
+  }
+
+  /**
+   * Table of distinct strings with reference counts, looked up through an open
+   * addressing hash index. The IDs of strings that are no longer referenced are reused.
+   */
+  @VisibleForTesting
+  static final class StringTable {
+    // Index slots hold the string ID + 1, 0 for an empty slot, -1 for a removed one
+    private static final int EMPTY_SLOT = 0;
+    private static final int REMOVED_SLOT = -1;
+
+    private final boolean ignoreCase;
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int[] refCounts = new int[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    // Number of IDs handed out, including the free ones
+    private int numIds;
+    // Number of strings in the table
+    private int size;
+    // Number of non empty index slots, including the removed ones
+    private int usedSlots;
+    private int[] freeIds = new int[8];
+    private int numFreeIds;
+
+    StringTable(boolean ignoreCase) {
+      this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * @return the ID of the string, or -1 if it is not in the table
+     */
+    int find(String value) {
+      int mask = slots.length - 1;
+      for (int i = hash(value) & mask; ; i = (i + 1) & mask) {
+        int slot = slots[i];
+        if (slot == EMPTY_SLOT) {
+          return NONE;
+        }
+        if (slot > 0 && matches(values[slot - 1], value)) {
+          return slot - 1;
+        }
+      }
+    }
+
+    /**
+     * Adds a reference to the string, adding the string to the table if needed.
+     * @return the ID of the string
+     */
+    int acquire(String value) {
+      int id = find(value);
+      if (id == NONE) {
+        id = add(value);
+      }
+      refCounts[id]++;
+      return id;
+    }
+
+    /**
+     * Removes a reference to the string with the given ID, and removes the string
+     * from the table once it is no longer referenced.
+     */
+    void release(int id) {
+      if (--refCounts[id] > 0) {
+        return;
+      }
+      int mask = slots.length - 1;
+      for (int i = hash(values[id]) & mask; ; i = (i + 1) & mask) {
+        if (slots[i] == id + 1) {
+          slots[i] = REMOVED_SLOT;
+          break;
+        }
+      }
+      values[id] = null;
+      if (numFreeIds == freeIds.length) {
+        freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+      }
+      freeIds[numFreeIds++] = id;
+      size--;
+    }
+
+    String get(int id) {
+      return values[id];
+    }
+
+    int getRefCount(int id) {
+      return refCounts[id];
+    }
+
+    int size() {
+      return size;
+    }
+
+    /**
+     * @return an upper bound of the string IDs
+     */
+    int capacity() {
+      return numIds;
+    }
+
+    private int add(String value) {
+      int id;
+      if (numFreeIds > 0) {
+        id = freeIds[--numFreeIds];
+      } else {
+        if (numIds == values.length) {
+          int capacity = grow(values.length);
+          values = Arrays.copyOf(values, capacity);
+          refCounts = Arrays.copyOf(refCounts, capacity);
+        }
+        id = numIds++;
+      }
+      values[id] = value;
+      refCounts[id] = 0;
+      size++;
+
+      int mask = slots.length - 1;
+      int i = hash(value) & mask;
+      while (slots[i] > 0) {
+        i = (i + 1) & mask;
+      }
+      if (slots[i] == EMPTY_SLOT) {
+        usedSlots++;
+      }
+      slots[i] = id + 1;
+      // Keep the index at most half full so that lookups stay short
+      if (usedSlots * 2 > slots.length) {
+        rehash();
+      }
+      return id;
+    }
+
+    private void rehash() {
+      int capacity = slots.length;
+      while (size * 4 > capacity) {
+        capacity *= 2;
+      }
+      slots = new int[capacity];
+      usedSlots = size;
+      int mask = capacity - 1;
+      for (int id = 0; id < numIds; id++) {
+        if (values[id] != null) {
+          int i = hash(values[id]) & mask;
+          while (slots[i] != EMPTY_SLOT) {
+            i = (i + 1) & mask;
+          }
+          slots[i] = id + 1;
+        }
+      }
+    }
+
+    private int hash(String value) {
+      int h;
+      if (ignoreCase) {
+        h = 0;
+        for (int i = 0; i < value.length(); i++) {
+          h = 31 * h + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+        }
+      } else {
+        h = value.hashCode();
+      }
+      return h ^ (h >>> 16);
+    }
+
+    private boolean matches(String tableValue, String value) {
+      return ignoreCase ? tableValue.equalsIgnoreCase(value) : tableValue.equals(value);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.List;
+
+import static org.apache.sentry.hdfs.Updateable.Update;
+
+/**
+ * DeltaCoalescer folds a range of delta updates, as returned by a
+ * {@link DeltaRetriever}, into fewer delta updates that have the same effect
+ * when a consumer, such as HDFS NameNode, applies them in order.
+ * <p>
+ * The sequence number of the last coalesced update is the sequence number of
+ * the last update of the range, so that consumers resume from the same point.
+ */
+public interface DeltaCoalescer<K extends Update> {
+
+  /**
+   * Coalesces delta updates.
+   *
+   * @param updates delta updates ordered by sequence number, not modified
+   * @return the coalesced delta updates ordered by sequence number, or the given
+   *         updates if they cannot be coalesced
+   */
+  List<K> coalesce(List<K> updates);
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.apache.sentry.hdfs.Updateable.Update;
+
+/**
+ * Versioned binary format used to persist delta updates.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ *   byte   format, {@link #FORMAT_COMPACT} or {@link #FORMAT_COMPACT_DEFLATE}
+ *   int    length of the update in the Thrift compact protocol
+ *   bytes  the update in the Thrift compact protocol, deflated for
+ *          {@link #FORMAT_COMPACT_DEFLATE}
+ * </pre>
+ * The uncompressed length is kept in the header so that readers can size their buffers,
+ * and estimate the size of the update on the wire, without decompressing it.
+ */
+public final class DeltaSerializer {
+
+  public static final byte FORMAT_COMPACT = 1;
+  public static final byte FORMAT_COMPACT_DEFLATE = 2;
+
+  private static final int HEADER_SIZE = 5;
+
+  private DeltaSerializer() {
+    // Make constructor private to avoid instantiation
+  }
+
+  /**
+   * Serializes the update.
+   * @param update the update to serialize
+   * @param compress whether to deflate the serialized update
+   * @return the update in the binary delta format
+   */
+  public static byte[] serialize(Update update, boolean compress) throws IOException {
+    byte[] compact = update.serialize();
+    if (!compress) {
+      return ByteBuffer.allocate(HEADER_SIZE + compact.length)
+          .put(FORMAT_COMPACT)
+          .putInt(compact.length)
+          .put(compact)
+          .array();
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + compact.length / 2);
+    out.write(FORMAT_COMPACT_DEFLATE);
+    out.write(ByteBuffer.allocate(4).putInt(compact.length).array());
+    // Deltas are written on the DDL/grant path, favor speed over ratio
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(compact);
+      deflater.finish();
+      byte[] buf = new byte[4096];
+      while (!deflater.finished()) {
+        int len = deflater.deflate(buf);
+        out.write(buf, 0, len);
+      }
+    } finally {
+      deflater.end();
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Deserializes an update in the binary delta format into the given update.
+   * @param update the update to deserialize into
+   * @param data the update in the binary delta format
+   */
+  public static void deserialize(Update update, byte[] data) throws IOException {
+    update.deserialize(getCompactBytes(data));
+  }
+
+  /**
+   * @return the size of the update in the Thrift compact protocol, without
+   * decompressing it
+   */
+  public static int getSerializedSize(byte[] data) throws IOException {
+    checkHeader(data);
+    return ByteBuffer.wrap(data, 1, 4).getInt();
+  }
+
+  private static byte[] getCompactBytes(byte[] data) throws IOException {
+    checkHeader(data);
+    int length = ByteBuffer.wrap(data, 1, 4).getInt();
+    if (length < 0) {
+      throw new IOException("Invalid delta length " + length);
+    }
+    byte[] compact = new byte[length];
+    if (data[0] == FORMAT_COMPACT) {
+      if (data.length - HEADER_SIZE != length) {
+        throw new IOException("Truncated delta, expected " + length + " bytes, got "
+            + (data.length - HEADER_SIZE));
+      }
+      System.arraycopy(data, HEADER_SIZE, compact, 0, length);
+      return compact;
+    }
+
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+      int off = 0;
+      while (off < length && !inflater.finished()) {
+        int len = inflater.inflate(compact, off, length - off);
+        if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        off += len;
+      }
+      if (off != length) {
+        throw new IOException("Corrupted delta, expected " + length
+            + " uncompressed bytes, got " + off);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupted delta", e);
+    } finally {
+      inflater.end();
+    }
+    return compact;
+  }
+
+  private static void checkHeader(byte[] data) throws IOException {
+    if (data == null || data.length < HEADER_SIZE) {
+      throw new IOException("Truncated delta header");
+    }
+    if (data[0] != FORMAT_COMPACT && data[0] != FORMAT_COMPACT_DEFLATE) {
+      throw new IOException("Unknown delta format " + data[0]);
+    }
+  }
+}
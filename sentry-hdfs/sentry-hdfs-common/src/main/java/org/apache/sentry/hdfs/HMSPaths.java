@@ -34,7 +34,7 @@ import org.slf4j.LoggerFactory;
  * the {@link AuthzPaths} paths. All updates to this class is handled by the
  * thread safe {@link UpdateableAuthzPaths} class
  */
-public class HMSPaths implements AuthzPaths {
+public class HMSPaths extends MutableAuthzPaths {
 
   private static final Logger LOG = LoggerFactory.getLogger(HMSPaths.class);
 
@@ -719,6 +719,7 @@ public class HMSPaths implements AuthzPaths {
     }
   }
 
+  @Override
   void addPathsToAuthzObject(String authzObj,
       List<List<String>> authzObjPathElements, boolean createNew) {
     if (LOG.isDebugEnabled()) {
@@ -765,6 +766,7 @@ public class HMSPaths implements AuthzPaths {
   ( which also deletes the entry if no more authObjs to that path and does it recursively upwards)
   2. Removes it from value of authzObjToPath Map for this authzObj key, does not reset entries to null even if entries is empty
    */
+  @Override
   void deletePathsFromAuthzObject(String authzObj,
       List<List<String>> authzObjPathElements) {
     if (LOG.isDebugEnabled()) {
@@ -795,6 +797,7 @@ public class HMSPaths implements AuthzPaths {
     }
   }
 
+  @Override
   void deleteAuthzObject(String authzObj) {
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("%s deleteAuthzObject(%s)", this, authzObj));
@@ -856,6 +859,7 @@ public class HMSPaths implements AuthzPaths {
   If oldPath != newPath, Example: rename managed table (HMS metadata is updated as well as physical files are moved to new location)
     => new_table.add(new_path), old_table.dropAllPaths.
   */
+  @Override
   void renameAuthzObject(String oldName, List<List<String>> oldPathElems,
       String newName, List<List<String>> newPathElems) {
     if (LOG.isDebugEnabled()) {
@@ -967,6 +971,7 @@ public class HMSPaths implements AuthzPaths {
     return String.format("%s:%s", getClass().getSimpleName(), Arrays.toString(prefixes));
   }
 
+  @Override
   public String dumpContent() {
     return toString() + ": " + getAllEntries();
   }
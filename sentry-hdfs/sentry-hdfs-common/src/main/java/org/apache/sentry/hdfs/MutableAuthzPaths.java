@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.List;
+
+/**
+ * The data structures that {@link UpdateableAuthzPaths} applies path updates to.
+ * Implementations are not thread safe, all the updates are serialized by
+ * {@link UpdateableAuthzPaths}.
+ */
+abstract class MutableAuthzPaths implements AuthzPaths {
+
+  /**
+   * Adds paths to an authz object, creating the authz object if it does not
+   * exist and {@code createNew} is set.
+   */
+  abstract void addPathsToAuthzObject(String authzObj,
+      List<List<String>> authzObjPathElements, boolean createNew);
+
+  /**
+   * Removes paths from an authz object.
+   */
+  abstract void deletePathsFromAuthzObject(String authzObj,
+      List<List<String>> authzObjPathElements);
+
+  /**
+   * Removes an authz object from all its paths.
+   */
+  abstract void deleteAuthzObject(String authzObj);
+
+  /**
+   * Renames an authz object, moving its first path if it changed.
+   */
+  abstract void renameAuthzObject(String oldName, List<List<String>> oldPathElems,
+      String newName, List<List<String>> newPathElems);
+
+  @Override
+  public abstract AuthzPathsDumper<? extends MutableAuthzPaths> getPathsDump();
+
+  /**
+   * For logging: all the path entries.
+   */
+  public abstract String dumpContent();
+}
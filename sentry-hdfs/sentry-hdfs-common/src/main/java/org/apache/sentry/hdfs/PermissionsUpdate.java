@@ -36,6 +36,9 @@ public class PermissionsUpdate implements Updateable.Update {
   public static final String ALL_PRIVS = "__ALL_PRIVS__";
   public static final String ALL_ROLES = "__ALL_ROLES__";
   public static final String ALL_GROUPS = "__ALL_GROUPS__";
+  // Authz object no one has privileges on, the principals revoked from it had their
+  // policy changed in a way the other perm deltas do not describe
+  public static final String POLICY_MARKER = "__POLICY_MARKER__";
 
   private final TPermissionsUpdate tPermUpdate;
 
@@ -98,11 +101,11 @@ public class PermissionsUpdate implements Updateable.Update {
     return roleUpdate;
   }
 
-  Collection<TRoleChanges> getRoleUpdates() {
+  public Collection<TRoleChanges> getRoleUpdates() {
     return tPermUpdate.getRoleChanges().values();
   }
 
-  Collection<TPrivilegeChanges> getPrivilegeUpdates() {
+  public Collection<TPrivilegeChanges> getPrivilegeUpdates() {
     return tPermUpdate.getPrivilegeChanges().values();
   }
 
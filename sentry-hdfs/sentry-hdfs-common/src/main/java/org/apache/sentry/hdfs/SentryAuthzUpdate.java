@@ -23,11 +23,18 @@ public class SentryAuthzUpdate {
 
   private final List<PermissionsUpdate> permUpdates;
   private final List<PathsUpdate> pathUpdates;
+  private final boolean moreUpdatesAvailable;
 
   public SentryAuthzUpdate(List<PermissionsUpdate> permUpdates,
       List<PathsUpdate> pathUpdates) {
+    this(permUpdates, pathUpdates, false);
+  }
+
+  public SentryAuthzUpdate(List<PermissionsUpdate> permUpdates,
+      List<PathsUpdate> pathUpdates, boolean moreUpdatesAvailable) {
     this.permUpdates = permUpdates;
     this.pathUpdates = pathUpdates;
+    this.moreUpdatesAvailable = moreUpdatesAvailable;
   }
 
   public List<PermissionsUpdate> getPermUpdates() {
@@ -38,6 +45,13 @@ public class SentryAuthzUpdate {
     return pathUpdates;
   }
 
+  /**
+   * @return true if Sentry bounded the updates and newer ones can be requested right away
+   */
+  public boolean isMoreUpdatesAvailable() {
+    return moreUpdatesAvailable;
+  }
+
   public String dumpContent() {
     StringBuffer sb = new StringBuffer(getClass().getSimpleName());
     if (permUpdates != null && !permUpdates.isEmpty()) {
@@ -43,6 +43,27 @@ public class ServiceConstants {
     public static final int SENTRY_HDFS_SYNC_METASTORE_CACHE_MAX_PART_PER_RPC_DEFAULT = 100;
     public static final String SENTRY_HDFS_SYNC_METASTORE_CACHE_MAX_TABLES_PER_RPC = "sentry.hdfs.sync.metastore.cache.max-tables-per-rpc";
     public static final int SENTRY_HDFS_SYNC_METASTORE_CACHE_MAX_TABLES_PER_RPC_DEFAULT = 100;
+
+    // Read full HMS snapshots with direct SQL queries on the metastore database instead of
+    // per-table Thrift calls. Falls back to Thrift calls if the queries fail.
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL =
+        "sentry.hdfs.sync.metastore.direct-sql.enabled";
+    public static final boolean SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_DEFAULT = false;
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_URL =
+        "sentry.hdfs.sync.metastore.direct-sql.jdbc.url";
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_DRIVER =
+        "sentry.hdfs.sync.metastore.direct-sql.jdbc.driver";
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_USER =
+        "sentry.hdfs.sync.metastore.direct-sql.jdbc.user";
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_PASSWORD =
+        "sentry.hdfs.sync.metastore.direct-sql.jdbc.password";
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_FETCH_SIZE =
+        "sentry.hdfs.sync.metastore.direct-sql.fetch-size";
+    public static final int SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_FETCH_SIZE_DEFAULT = 10000;
+    // Only used with the metastore schema of Hive 3 and later, which has catalogs
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_CATALOG =
+        "sentry.hdfs.sync.metastore.direct-sql.catalog";
+    public static final String SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_CATALOG_DEFAULT = "hive";
     static final String SENTRY_SERVICE_FULL_UPDATE_SIGNAL = "sentry.hdfs.sync.full-update-signal";
     public static final String SENTRY_SERVICE_FULL_UPDATE_PUBSUB = "sentry.hdfs.sync.full-update-pubsub";
 
@@ -52,6 +73,49 @@ public class ServiceConstants {
 
     public static final String SENTRY_HMS_FETCH_SIZE = "sentry.hms.fetch.size";
     public static final int SENTRY_HMS_FETCH_SIZE_DEFAULT = -1;
+
+    // Persist full HMS snapshots taken after an out-of-sync detection as a difference against
+    // the current snapshot, sent to the NameNodes as path deltas instead of a full image.
+    public static final String SENTRY_HDFS_SYNC_DIFFERENTIAL_SNAPSHOT =
+        "sentry.hdfs.sync.full-snapshot.differential";
+    public static final boolean SENTRY_HDFS_SYNC_DIFFERENTIAL_SNAPSHOT_DEFAULT = false;
+
+    // Upper bound for how long a NameNode request for authz updates may wait for new changes
+    public static final String SENTRY_HDFS_UPDATES_MAX_WAIT_MS = "sentry.hdfs.sync.updates.max-wait.ms";
+    public static final long SENTRY_HDFS_UPDATES_MAX_WAIT_MS_DEFAULT = 60 * 1000L;
+
+    // Bounds on the perm or path deltas sent to a NameNode in a single response; the
+    // NameNode fetches the remaining deltas with follow-up requests. Not positive means no bound.
+    public static final String SENTRY_HDFS_UPDATES_MAX_DELTAS = "sentry.hdfs.sync.updates.max-deltas";
+    public static final int SENTRY_HDFS_UPDATES_MAX_DELTAS_DEFAULT = 10000;
+    public static final String SENTRY_HDFS_UPDATES_MAX_DELTA_BYTES = "sentry.hdfs.sync.updates.max-delta-bytes";
+    public static final long SENTRY_HDFS_UPDATES_MAX_DELTA_BYTES_DEFAULT = 32 * 1024 * 1024L;
+
+    // Fold the perm and path deltas sent to a NameNode into fewer equivalent deltas. The
+    // coalesced deltas of the most recently requested ranges are cached for other NameNodes.
+    public static final String SENTRY_HDFS_UPDATES_COALESCE = "sentry.hdfs.sync.updates.coalesce";
+    public static final boolean SENTRY_HDFS_UPDATES_COALESCE_DEFAULT = false;
+    public static final String SENTRY_HDFS_UPDATES_COALESCE_CACHE_SIZE =
+        "sentry.hdfs.sync.updates.coalesce.cache-size";
+    public static final int SENTRY_HDFS_UPDATES_COALESCE_CACHE_SIZE_DEFAULT = 16;
+
+    // Keep the full perm image sent to the NameNodes in memory, updated with the perm deltas.
+    // It is read again from the database when older than the rebuild interval, if positive.
+    public static final String SENTRY_HDFS_PERM_IMAGE_CACHE = "sentry.hdfs.sync.perm-image.cache";
+    public static final boolean SENTRY_HDFS_PERM_IMAGE_CACHE_DEFAULT = false;
+    public static final String SENTRY_HDFS_PERM_IMAGE_CACHE_REBUILD_INTERVAL_MS =
+        "sentry.hdfs.sync.perm-image.cache.rebuild-interval.ms";
+    public static final long SENTRY_HDFS_PERM_IMAGE_CACHE_REBUILD_INTERVAL_MS_DEFAULT =
+        60 * 60 * 1000L;
+
+    // Keep the full path image sent to the NameNodes in memory, updated with the path deltas.
+    // It is read again from the database when older than the rebuild interval, if positive.
+    public static final String SENTRY_HDFS_PATH_IMAGE_CACHE = "sentry.hdfs.sync.path-image.cache";
+    public static final boolean SENTRY_HDFS_PATH_IMAGE_CACHE_DEFAULT = false;
+    public static final String SENTRY_HDFS_PATH_IMAGE_CACHE_REBUILD_INTERVAL_MS =
+        "sentry.hdfs.sync.path-image.cache.rebuild-interval.ms";
+    public static final long SENTRY_HDFS_PATH_IMAGE_CACHE_REBUILD_INTERVAL_MS_DEFAULT =
+        60 * 60 * 1000L;
   }
 
   public static class ClientConfig {
@@ -57,6 +57,10 @@ public class UniquePathsUpdate extends PathsUpdate {
     sb.append(event.getTableName());
     sb.append(event.getMessage());
 
-    return DigestUtils.shaHex(sb.toString());
+    return sha1(sb.toString());
+  }
+
+  public static String sha1(String value) {
+    return DigestUtils.shaHex(value);
   }
 }
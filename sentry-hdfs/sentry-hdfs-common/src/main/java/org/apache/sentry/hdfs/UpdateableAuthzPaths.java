@@ -35,15 +35,24 @@ public class UpdateableAuthzPaths implements AuthzPaths, Updateable<PathsUpdate>
   private static final int MAX_UPDATES_PER_LOCK_USE = 99;
   private static final String UPDATABLE_TYPE_NAME = "path_update";
   private static final Logger LOG = LoggerFactory.getLogger(UpdateableAuthzPaths.class);
-  private volatile HMSPaths paths;
+  private volatile MutableAuthzPaths paths;
   private final AtomicLong seqNum = new AtomicLong(SEQUENCE_NUMBER_UPDATE_UNINITIALIZED);
   private final AtomicLong imgNum = new AtomicLong(IMAGE_NUMBER_UPDATE_UNINITIALIZED);
 
   public UpdateableAuthzPaths(String[] pathPrefixes) {
-    this.paths = new HMSPaths(pathPrefixes);
+    this(pathPrefixes, false);
   }
 
-  UpdateableAuthzPaths(HMSPaths paths) {
+  /**
+   * @param pathPrefixes HDFS path prefixes managed by Sentry
+   * @param compact if true, keep the paths in the array based {@link CompactHMSPaths},
+   *                which uses less memory, instead of {@link HMSPaths}
+   */
+  public UpdateableAuthzPaths(String[] pathPrefixes, boolean compact) {
+    this.paths = compact ? new CompactHMSPaths(pathPrefixes) : new HMSPaths(pathPrefixes);
+  }
+
+  UpdateableAuthzPaths(MutableAuthzPaths paths) {
     this.paths = paths;
   }
 
@@ -123,12 +123,20 @@ struct TPermissionsUpdate {
 struct TAuthzUpdateResponse {
 1: optional list<TPathsUpdate> authzPathUpdate,
 2: optional list<TPermissionsUpdate> authzPermUpdate,
+
+# Set if the number or size of the updates was bounded and newer updates
+# can be requested right away.
+3: optional bool moreUpdatesAvailable,
 }
 
 struct TAuthzUpdateRequest {
 1: required i64 permSeqNum;
 2: required i64 pathSeqNum;
 3: required i64 pathImgNum;
+
+# If set and positive, the server may hold the request for up to this
+# many milliseconds until new updates are available.
+4: optional i64 waitTimeoutMs;
 }
 
 service SentryHDFSService
@@ -0,0 +1,321 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.sentry.hdfs.service.thrift.TPathsDump;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+public class TestCompactHMSPaths {
+  private static final Logger LOG = LoggerFactory.getLogger(TestCompactHMSPaths.class);
+
+  private static final String[] PREFIXES = {"/user/hive/warehouse", "/user/hive/w2"};
+
+  @Test
+  public void testFindAuthzObject() {
+    CompactHMSPaths paths = new CompactHMSPaths(new String[] {"/user/hive/warehouse"});
+    paths._addAuthzObject("default", Lists.newArrayList("/user/hive/warehouse"));
+    paths._addAuthzObject("db1", Lists.newArrayList("/user/hive/warehouse/db1"));
+    paths._addAuthzObject("db1.tbl11", Lists.newArrayList("/user/hive/warehouse/db1/tbl11"));
+    paths._addPathsToAuthzObject("db1.tbl11", Lists.newArrayList(
+        "/user/hive/warehouse/db1/tbl11/part111",
+        "/user/hive/warehouse/db1/tbl11/p1=1/p2=x"));
+    // Outside of the prefix, ignored
+    paths._addAuthzObject("db2", Lists.newArrayList("/user/hive/w2/db2"));
+
+    Assert.assertEquals(set("default"),
+        paths.findAuthzObject(new String[] {"user", "hive", "warehouse"}, false));
+    Assert.assertEquals(set("db1"),
+        paths.findAuthzObject(new String[] {"user", "hive", "warehouse", "db1"}, false));
+    Assert.assertEquals(set("db1.tbl11"), paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "part111"}, false));
+    Assert.assertEquals(set("db1.tbl11"), paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "p1=1"}, false));
+    Assert.assertEquals(set("db1.tbl11"), paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "p1=1", "p2=x", "f"}, true));
+    Assert.assertNull(paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "p1=1", "p2=x", "f"}, false));
+    Assert.assertNull(paths.findAuthzObject(new String[] {"user", "hive", "w2", "db2"}, true));
+    Assert.assertNull(paths.findAuthzObject(new String[] {"user", "hive"}, true));
+
+    Assert.assertTrue(paths.isUnderPrefix(new String[] {"user", "hive", "warehouse", "x"}));
+    Assert.assertFalse(paths.isUnderPrefix(new String[] {"user", "hive", "w2", "db2"}));
+
+    // Authz objects are case insensitive
+    paths._addPathsToAuthzObject("DB1.TBL11",
+        Lists.newArrayList("/user/hive/warehouse/db1/tbl11/part112"));
+    Assert.assertEquals(set("db1.tbl11"), paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "part112"}, false));
+
+    paths.deleteAuthzObject("db1.tbl11");
+    Assert.assertEquals(set("db1"), paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "part111"}, true));
+    Assert.assertNull(paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl11", "part111"}, false));
+    // The table entries are gone, only the prefix, default and db1 entries are left
+    Assert.assertEquals(5, paths.getNumNodes());
+  }
+
+  @Test
+  public void testRootPrefix() {
+    CompactHMSPaths paths = new CompactHMSPaths(new String[] {"/"});
+    paths._addAuthzObject("db1", Lists.newArrayList("/db1"));
+    Assert.assertTrue(paths.isUnderPrefix(new String[] {"any"}));
+    Assert.assertEquals(set("db1"), paths.findAuthzObject(new String[] {"db1", "t"}, true));
+
+    try {
+      new CompactHMSPaths(new String[] {"/", "/a"});
+      Assert.fail("Root prefix with other prefixes should be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMultipleAuthzObjectsOnPath() {
+    CompactHMSPaths paths = new CompactHMSPaths(PREFIXES);
+    paths._addAuthzObject("db1.tbl1", Lists.newArrayList("/user/hive/warehouse/db1/tbl1"));
+    paths._addAuthzObject("db1.tbl2", Lists.newArrayList("/user/hive/warehouse/db1/tbl1"));
+    paths._addAuthzObject("db1.tbl3", Lists.newArrayList("/user/hive/warehouse/db1/tbl1"));
+    String[] tbl1 = {"user", "hive", "warehouse", "db1", "tbl1"};
+    Assert.assertEquals(set("db1.tbl1", "db1.tbl2", "db1.tbl3"), paths.findAuthzObject(tbl1));
+
+    paths.deleteAuthzObject("db1.tbl2");
+    Assert.assertEquals(set("db1.tbl1", "db1.tbl3"), paths.findAuthzObject(tbl1));
+    paths.deleteAuthzObject("db1.tbl1");
+    Assert.assertEquals(set("db1.tbl3"), paths.findAuthzObject(tbl1));
+    paths.deleteAuthzObject("db1.tbl3");
+    Assert.assertNull(paths.findAuthzObject(tbl1));
+  }
+
+  @Test
+  public void testRename() {
+    HMSPaths hmsPaths = new HMSPaths(PREFIXES);
+    CompactHMSPaths compactPaths = new CompactHMSPaths(PREFIXES);
+    for (MutableAuthzPaths paths : new MutableAuthzPaths[] {hmsPaths, compactPaths}) {
+      paths.addPathsToAuthzObject("db1", elements("/user/hive/warehouse/db1"), true);
+      paths.addPathsToAuthzObject("db1.tbl1", elements("/user/hive/warehouse/db1/tbl1"), true);
+      paths.addPathsToAuthzObject("db1.tbl1",
+          elements("/user/hive/warehouse/db1/tbl1/p=1", "/user/hive/warehouse/db1/tbl1/p=2"),
+          false);
+      paths.renameAuthzObject("db1.tbl1", elements("/user/hive/warehouse/db1/tbl1"),
+          "db1.tbl2", elements("/user/hive/warehouse/db1/tbl2"));
+      // Same path
+      paths.renameAuthzObject("db1.tbl2", elements("/user/hive/warehouse/db1/tbl2"),
+          "db1.tbl3", elements("/user/hive/warehouse/db1/tbl2"));
+    }
+    assertSameAuthzObjects(hmsPaths, compactPaths, Arrays.asList(
+        "/user/hive/warehouse/db1/tbl1",
+        "/user/hive/warehouse/db1/tbl1/p=1",
+        "/user/hive/warehouse/db1/tbl2",
+        "/user/hive/warehouse/db1/tbl2/p=1",
+        "/user/hive/warehouse/db1/tbl2/p=2",
+        "/user/hive/warehouse/db1/tbl2/p=3"));
+    Assert.assertEquals(set("db1.tbl3"), compactPaths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl2", "p=2"}, false));
+  }
+
+  @Test
+  public void testDumpCompatibility() {
+    HMSPaths hmsPaths = new HMSPaths(PREFIXES);
+    CompactHMSPaths compactPaths = new CompactHMSPaths(PREFIXES);
+    List<String> allPaths = new ArrayList<>();
+    for (MutableAuthzPaths paths : new MutableAuthzPaths[] {hmsPaths, compactPaths}) {
+      allPaths.clear();
+      paths.addPathsToAuthzObject("default", elements("/user/hive/warehouse"), true);
+      for (int db = 0; db < 3; db++) {
+        String dbPath = "/user/hive/warehouse/db" + db;
+        paths.addPathsToAuthzObject("db" + db, elements(dbPath), true);
+        allPaths.add(dbPath);
+        for (int tbl = 0; tbl < 3; tbl++) {
+          String tblPath = dbPath + "/tbl" + tbl;
+          paths.addPathsToAuthzObject("db" + db + ".tbl" + tbl, elements(tblPath), true);
+          allPaths.add(tblPath);
+          for (int part = 0; part < 3; part++) {
+            String partPath = tblPath + "/partition_" + part;
+            paths.addPathsToAuthzObject("db" + db + ".tbl" + tbl, elements(partPath), false);
+            allPaths.add(partPath);
+            allPaths.add(partPath + "/file");
+          }
+        }
+      }
+      paths.addPathsToAuthzObject("db2.tbl21", elements("/user/hive/w2/db2/tbl21"), true);
+      allPaths.add("/user/hive/w2/db2/tbl21");
+    }
+    assertSameAuthzObjects(hmsPaths, compactPaths, allPaths);
+
+    for (boolean minimizeSize : new boolean[] {false, true}) {
+      TPathsDump hmsDump = hmsPaths.getPathsDump().createPathsDump(minimizeSize);
+      TPathsDump compactDump = compactPaths.getPathsDump().createPathsDump(minimizeSize);
+      Assert.assertEquals(hmsDump.getNodeMapSize(), compactDump.getNodeMapSize());
+      Assert.assertEquals(minimizeSize, compactDump.isSetDupStringValues());
+
+      // Each implementation reads the dumps of the other
+      assertSameAuthzObjects(hmsPaths,
+          new CompactHMSPaths(PREFIXES).getPathsDump().initializeFromDump(hmsDump), allPaths);
+      assertSameAuthzObjects(hmsPaths,
+          new HMSPaths(PREFIXES).getPathsDump().initializeFromDump(compactDump), allPaths);
+      assertSameAuthzObjects(hmsPaths,
+          new CompactHMSPaths(PREFIXES).getPathsDump().initializeFromDump(compactDump),
+          allPaths);
+
+      // The prefixes of the reading side apply
+      CompactHMSPaths narrowed = new CompactHMSPaths(new String[] {"/user/hive/warehouse"})
+          .getPathsDump().initializeFromDump(compactDump);
+      Assert.assertNull(narrowed.findAuthzObject(
+          new String[] {"user", "hive", "w2", "db2", "tbl21"}, false));
+    }
+  }
+
+  @Test
+  public void testUpdateableAuthzPaths() {
+    UpdateableAuthzPaths authzPaths = new UpdateableAuthzPaths(PREFIXES, true);
+    PathsUpdate update = new PathsUpdate(1, false);
+    update.newPathChange("db1").addToAddPaths(
+        HMSPaths.getPathElements("/user/hive/warehouse/db1"));
+    update.newPathChange("db1.tbl1").addToAddPaths(
+        HMSPaths.getPathElements("/user/hive/warehouse/db1/tbl1"));
+    authzPaths.updatePartial(Lists.newArrayList(update), new ReentrantReadWriteLock());
+    Assert.assertEquals(set("db1.tbl1"), authzPaths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl1", "f"}));
+
+    PathsUpdate fullUpdate = new PathsUpdate(2, true);
+    fullUpdate.toThrift().setPathsDump(authzPaths.getPathsDump().createPathsDump(true));
+    UpdateableAuthzPaths copy = authzPaths.updateFull(fullUpdate);
+    Assert.assertEquals(set("db1.tbl1"), copy.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl1", "f"}));
+    Assert.assertEquals(2, copy.getLastUpdatedSeqNum());
+  }
+
+  /**
+   * Applies the same random sequence of table and partition operations to both implementations,
+   * and checks that they resolve every path to the same authz objects.
+   */
+  @Test
+  public void testRandomOperations() {
+    Random random = new Random(42);
+    HMSPaths hmsPaths = new HMSPaths(PREFIXES);
+    CompactHMSPaths compactPaths = new CompactHMSPaths(PREFIXES);
+    List<String> allPaths = new ArrayList<>();
+    int numDbs = 4;
+    for (int db = 0; db < numDbs; db++) {
+      String dbPath = "/user/hive/warehouse/db" + db;
+      hmsPaths.addPathsToAuthzObject("db" + db, elements(dbPath), true);
+      compactPaths.addPathsToAuthzObject("db" + db, elements(dbPath), true);
+    }
+
+    for (int i = 0; i < 2000; i++) {
+      int db = random.nextInt(numDbs);
+      int tbl = random.nextInt(8);
+      String table = "db" + db + ".tbl" + tbl;
+      String tablePath = "/user/hive/warehouse/db" + db + "/tbl" + tbl;
+      String partPath = tablePath + "/p=" + random.nextInt(5);
+      int operation = random.nextInt(10);
+      allPaths.add(tablePath);
+      allPaths.add(partPath);
+      allPaths.add(partPath + "/file");
+      for (MutableAuthzPaths paths : new MutableAuthzPaths[] {hmsPaths, compactPaths}) {
+        if (operation < 3) {
+          paths.addPathsToAuthzObject(table, elements(tablePath), true);
+        } else if (operation < 6) {
+          paths.addPathsToAuthzObject(table, elements(partPath), false);
+        } else if (operation < 9) {
+          paths.deletePathsFromAuthzObject(table, elements(partPath));
+        } else {
+          paths.deleteAuthzObject(table);
+        }
+      }
+    }
+    assertSameAuthzObjects(hmsPaths, compactPaths, allPaths);
+    assertSameAuthzObjects(hmsPaths, new CompactHMSPaths(PREFIXES).getPathsDump()
+        .initializeFromDump(compactPaths.getPathsDump().createPathsDump(true)), allPaths);
+  }
+
+  /**
+   * Logs the heap used by both implementations for a large number of partitions.
+   * Heap measurements are too noisy to assert on, this is for comparison only.
+   */
+  @Test
+  public void testHeapUsage() {
+    int numTables = 100;
+    int numPartitions = 200;
+    long hmsPathsHeap = measureHeap(new HMSPaths(PREFIXES), numTables, numPartitions);
+    long compactPathsHeap = measureHeap(new CompactHMSPaths(PREFIXES), numTables, numPartitions);
+    LOG.info("Heap used for {} tables with {} partitions each: HMSPaths {} bytes," +
+        " CompactHMSPaths {} bytes", numTables, numPartitions, hmsPathsHeap, compactPathsHeap);
+  }
+
+  private static long measureHeap(MutableAuthzPaths paths, int numTables, int numPartitions) {
+    long before = usedHeap();
+    for (int tbl = 0; tbl < numTables; tbl++) {
+      String table = "db1.table_" + tbl;
+      String tablePath = "/user/hive/warehouse/db1/table_" + tbl;
+      paths.addPathsToAuthzObject(table, elements(tablePath), true);
+      List<String> partPaths = new ArrayList<>(numPartitions);
+      for (int part = 0; part < numPartitions; part++) {
+        partPaths.add(tablePath + "/date=2018-01-" + part + "/hour=" + part % 24);
+      }
+      paths.addPathsToAuthzObject(table, HMSPaths.getPathsElements(partPaths), false);
+    }
+    long used = usedHeap() - before;
+    Assert.assertEquals(set("db1.table_0"), paths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "table_0", "date=2018-01-1"}));
+    return used;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void assertSameAuthzObjects(AuthzPaths expected, AuthzPaths actual,
+      List<String> paths) {
+    for (String path : paths) {
+      String[] pathElements = HMSPaths.getPathElements(path).toArray(new String[0]);
+      Assert.assertEquals(path, expected.findAuthzObject(pathElements),
+          actual.findAuthzObject(pathElements));
+      Assert.assertEquals(path, expected.findAuthzObjectExactMatches(pathElements),
+          actual.findAuthzObjectExactMatches(pathElements));
+      Assert.assertEquals(path, expected.isUnderPrefix(pathElements),
+          actual.isUnderPrefix(pathElements));
+    }
+  }
+
+  private static List<List<String>> elements(String... paths) {
+    return HMSPaths.getPathsElements(Arrays.asList(paths));
+  }
+
+  private static Set<String> set(String... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDeltaSerializer {
+
+  private static PathsUpdate createPathsUpdate() {
+    PathsUpdate update = new PathsUpdate(3, 1, false);
+    for (int i = 0; i < 100; i++) {
+      update.newPathChange("db1.tbl" + i).addToAddPaths(
+          Lists.newArrayList("user", "hive", "warehouse", "db1.db", "tbl" + i));
+    }
+    return update;
+  }
+
+  @Test
+  public void testSerializeDeserialize() throws Exception {
+    PathsUpdate update = createPathsUpdate();
+    byte[] data = DeltaSerializer.serialize(update, false);
+    assertEquals(DeltaSerializer.FORMAT_COMPACT, data[0]);
+    assertEquals(update.serialize().length, DeltaSerializer.getSerializedSize(data));
+
+    PathsUpdate deserialized = new PathsUpdate();
+    DeltaSerializer.deserialize(deserialized, data);
+    assertEquals(update.toThrift(), deserialized.toThrift());
+  }
+
+  @Test
+  public void testSerializeDeserializeCompressed() throws Exception {
+    PathsUpdate update = createPathsUpdate();
+    byte[] data = DeltaSerializer.serialize(update, true);
+    assertEquals(DeltaSerializer.FORMAT_COMPACT_DEFLATE, data[0]);
+    int compactSize = update.serialize().length;
+    assertEquals(compactSize, DeltaSerializer.getSerializedSize(data));
+    assertTrue("Compressed size " + data.length + " should be smaller than " + compactSize,
+        data.length < compactSize);
+
+    PathsUpdate deserialized = new PathsUpdate();
+    DeltaSerializer.deserialize(deserialized, data);
+    assertEquals(update.toThrift(), deserialized.toThrift());
+  }
+
+  @Test
+  public void testSerializeDeserializePermissions() throws Exception {
+    PermissionsUpdate update = new PermissionsUpdate(5, false);
+    update.addPrivilegeUpdate("db1.tbl1").putToAddPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role1"), "SELECT");
+    update.addRoleUpdate("role1").addToAddGroups("group1");
+
+    for (boolean compress : new boolean[] {false, true}) {
+      PermissionsUpdate deserialized = new PermissionsUpdate();
+      DeltaSerializer.deserialize(deserialized, DeltaSerializer.serialize(update, compress));
+      assertEquals(update, deserialized);
+    }
+  }
+
+  @Test
+  public void testDeserializeCorrupted() throws Exception {
+    byte[] data = DeltaSerializer.serialize(createPathsUpdate(), true);
+
+    assertCorrupted(Arrays.copyOf(data, data.length / 2));
+    assertCorrupted(Arrays.copyOf(data, 3));
+
+    byte[] unknownFormat = data.clone();
+    unknownFormat[0] = 0x7f;
+    assertCorrupted(unknownFormat);
+  }
+
+  private static void assertCorrupted(byte[] data) {
+    try {
+      DeltaSerializer.deserialize(new PathsUpdate(), data);
+      fail("Corrupted delta should not be deserialized");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -41,6 +41,12 @@ public final class SentryAuthorizationConstants {
       "cache-refresh-interval.ms";
   public static final int CACHE_REFRESH_INTERVAL_DEFAULT = 500;
 
+  // When positive, the NameNode asks Sentry to hold each update request for up
+  // to this long until new updates are available, and re-issues it right away
+  public static final String CACHE_REFRESH_WAIT_TIMEOUT_KEY = CONFIG_PREFIX +
+      "cache-refresh-wait-timeout.ms";
+  public static final int CACHE_REFRESH_WAIT_TIMEOUT_DEFAULT = 0;
+
   public static final String CACHE_STALE_THRESHOLD_KEY = CONFIG_PREFIX +
       "cache-stale-threshold.ms";
   public static final int CACHE_STALE_THRESHOLD_DEFAULT = 60 * 1000;
@@ -49,6 +55,20 @@ public final class SentryAuthorizationConstants {
       "cache-refresh-retry-wait.ms";
   public static final int CACHE_REFRESH_RETRY_WAIT_DEFAULT = 30 * 1000;
 
+  // Local directory to checkpoint the authz paths and permissions in, so a restarted
+  // NameNode only fetches the updates made since the checkpoint. Disabled if empty.
+  public static final String CHECKPOINT_DIR_KEY = CONFIG_PREFIX + "checkpoint.dir";
+  public static final String CHECKPOINT_DIR_DEFAULT = "";
+
+  public static final String CHECKPOINT_INTERVAL_KEY = CONFIG_PREFIX +
+      "checkpoint.interval.ms";
+  public static final long CHECKPOINT_INTERVAL_DEFAULT = 10 * 60 * 1000L;
+
+  // Keep the authz paths in the array based CompactHMSPaths, which needs
+  // less heap for large numbers of tables and partitions
+  public static final String COMPACT_PATHS_KEY = CONFIG_PREFIX + "compact.paths";
+  public static final boolean COMPACT_PATHS_DEFAULT = false;
+
   public static final String INCLUDE_HDFS_AUTHZ_AS_ACL_KEY = CONFIG_PREFIX +
       "include-hdfs-authz-as-acl";
   public static final boolean INCLUDE_HDFS_AUTHZ_AS_ACL_DEFAULT = false;
@@ -18,8 +18,12 @@
 
 package org.apache.sentry.hdfs;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -38,24 +42,37 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+import static org.apache.sentry.hdfs.ServiceConstants.IMAGE_NUMBER_UPDATE_UNINITIALIZED;
+import static org.apache.sentry.hdfs.ServiceConstants.SEQUENCE_NUMBER_UPDATE_UNINITIALIZED;
 
 public class SentryAuthorizationInfo implements Runnable {
   private static final Logger LOG =
       LoggerFactory.getLogger(SentryAuthorizationInfo.class);
 
   private static final String SENTRY_AUTHORIZATION_INFO_THREAD_NAME = "sentry-auth-info-refresher";
+  private static final String SENTRY_AUTHORIZATION_CHECKPOINT_THREAD_NAME =
+      "sentry-auth-info-checkpointer";
+
+  // Delay between two long-poll requests; the next request is issued right away
+  private static final int LONG_POLL_REISSUE_DELAY_MILLISEC = 1;
 
   private SentryUpdater updater;
   private volatile UpdateableAuthzPaths authzPaths;
   private volatile UpdateableAuthzPermissions authzPermissions;
 
   private int refreshIntervalMillisec;
+  private int waitTimeoutMillisec;
   private int staleThresholdMillisec;
   private int retryWaitMillisec;
   private ScheduledExecutorService executor;
   private volatile long lastUpdate;
   private volatile long waitUntil;
   private volatile long lastStaleReport;
+  // Whether the last successful update returned no changes, only used by the refresher thread
+  private boolean lastUpdateEmpty;
   // We don't need a re-entrant lock.. but we do need a ReadWriteLock
   // Unfortunately, the ReentrantReadWriteLick is the only available
   // concrete implementation of a ReadWriteLock.
@@ -63,6 +80,20 @@ public class SentryAuthorizationInfo implements Runnable {
 
   private String[][] pathPrefixes;
 
+  // Local checkpoint of authzPaths and authzPermissions, null if disabled
+  private SentryAuthzCheckpoint checkpoint;
+  private long checkpointIntervalMillisec;
+  // Writes checkpoints, so the refresher thread only takes their images
+  private ExecutorService checkpointExecutor;
+  // Only used by the refresher thread, which is the only one applying updates
+  private long lastCheckpointTime;
+  private Future<?> pendingCheckpoint;
+  // Numbers of the last checkpoint written or being written. Reset by the checkpoint
+  // writer if writing fails, and only read by the refresher thread once it is done.
+  private volatile long lastCheckpointPathsSeqNum = SEQUENCE_NUMBER_UPDATE_UNINITIALIZED;
+  private volatile long lastCheckpointPathsImgNum = IMAGE_NUMBER_UPDATE_UNINITIALIZED;
+  private volatile long lastCheckpointPermsSeqNum = SEQUENCE_NUMBER_UPDATE_UNINITIALIZED;
+
   // For use only for testing !!
   @VisibleForTesting
   SentryAuthorizationInfo(String[] pathPrefixes) {
@@ -87,6 +118,15 @@ public class SentryAuthorizationInfo implements Runnable {
       retryWaitMillisec = conf.getInt(
           SentryAuthorizationConstants.CACHE_REFRESH_RETRY_WAIT_KEY,
           SentryAuthorizationConstants.CACHE_REFRESH_RETRY_WAIT_DEFAULT);
+      waitTimeoutMillisec = conf.getInt(
+          SentryAuthorizationConstants.CACHE_REFRESH_WAIT_TIMEOUT_KEY,
+          SentryAuthorizationConstants.CACHE_REFRESH_WAIT_TIMEOUT_DEFAULT);
+      if (waitTimeoutMillisec > staleThresholdMillisec / 2) {
+        // A request parked on the server must not make the cache look stale
+        LOG.warn("Wait timeout [{}]ms is too large for stale threshold [{}]ms, using [{}]ms",
+            waitTimeoutMillisec, staleThresholdMillisec, staleThresholdMillisec / 2);
+        waitTimeoutMillisec = staleThresholdMillisec / 2;
+      }
 
       LOG.info("Sentry authorization will enforced in the following HDFS locations: [{}]",
             StringUtils.arrayToString(newPathPrefixes));
@@ -95,12 +135,28 @@ public class SentryAuthorizationInfo implements Runnable {
       LOG.info("Refresh interval [{}]ms, retry wait [{}]",
           refreshIntervalMillisec, retryWaitMillisec);
       LOG.info("stale threshold [{}]ms", staleThresholdMillisec);
+      if (waitTimeoutMillisec > 0) {
+        LOG.info("Long-polling Sentry for updates, wait timeout [{}]ms", waitTimeoutMillisec);
+      }
 
-      authzPaths = new UpdateableAuthzPaths(newPathPrefixes);
+      boolean compactPaths = conf.getBoolean(SentryAuthorizationConstants.COMPACT_PATHS_KEY,
+          SentryAuthorizationConstants.COMPACT_PATHS_DEFAULT);
+      authzPaths = new UpdateableAuthzPaths(newPathPrefixes, compactPaths);
       authzPermissions = new UpdateableAuthzPermissions();
       waitUntil = System.currentTimeMillis();
       lastStaleReport = 0;
       updater = new SentryUpdater(conf, this);
+
+      String checkpointDir = conf.getTrimmed(SentryAuthorizationConstants.CHECKPOINT_DIR_KEY,
+          SentryAuthorizationConstants.CHECKPOINT_DIR_DEFAULT);
+      if (!checkpointDir.isEmpty()) {
+        checkpoint = new SentryAuthzCheckpoint(new File(checkpointDir), newPathPrefixes);
+        checkpointIntervalMillisec = conf.getLong(
+            SentryAuthorizationConstants.CHECKPOINT_INTERVAL_KEY,
+            SentryAuthorizationConstants.CHECKPOINT_INTERVAL_DEFAULT);
+        LOG.info("Checkpointing authz info to [{}] every [{}]ms",
+            checkpoint.getFile(), checkpointIntervalMillisec);
+      }
     }
   }
 
@@ -129,10 +185,27 @@ public class SentryAuthorizationInfo implements Runnable {
   }
 
   private boolean update() {
-    //Looks like getting same updates multiple times
-    SentryAuthzUpdate updates = updater.getUpdates();
+    return update(0);
+  }
+
+  private boolean update(long waitTimeout) {
+    SentryAuthzUpdate updates;
+    do {
+      updates = updater.getUpdates(waitTimeout);
+      if (!applyUpdates(updates)) {
+        return false;
+      }
+      // Sentry bounds the number and size of the updates sent at once, fetch the
+      // remaining ones right away. There are updates, so there is nothing to wait for.
+      waitTimeout = 0;
+    } while (updates.isMoreUpdatesAvailable());
+    return true;
+  }
+
+  private boolean applyUpdates(SentryAuthzUpdate updates) {
     // Updates can be null if Sentry Service is un-reachable
     if (updates != null) {
+      lastUpdateEmpty = updates.isEmpty();
       if (updates.isEmpty()) {
         return true; // no updates is a norm, it's still success
       }
@@ -189,6 +262,90 @@ public class SentryAuthorizationInfo implements Runnable {
     return false;
   }
 
+  /**
+   * Replaces the authz paths and permissions with the ones from the local checkpoint,
+   * if there is a usable one, so only newer updates have to be fetched from Sentry.
+   * The checkpointed images are applied as full updates, which rebuild the authz paths
+   * tree the same way as a full image sent by Sentry. A checkpoint that cannot be
+   * applied is deleted, and a full image is fetched from Sentry instead.
+   *
+   * @return whether the checkpoint was loaded
+   */
+  @VisibleForTesting
+  boolean loadCheckpoint() {
+    UpdateableAuthzPaths newAuthzPaths;
+    UpdateableAuthzPermissions newAuthzPerms;
+    try {
+      SentryAuthzCheckpoint.Image image = checkpoint.load();
+      if (image == null) {
+        return false;
+      }
+      long start = System.currentTimeMillis();
+      newAuthzPaths = authzPaths.updateFull(image.getPathsImage());
+      newAuthzPerms = authzPermissions.updateFull(image.getPermsImage());
+      LOG.info("Rebuilt authz paths and permissions from checkpoint in [{}]ms",
+          System.currentTimeMillis() - start);
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to load authz checkpoint [{}], deleting it and fetching a full image "
+          + "from Sentry", checkpoint.getFile(), e);
+      checkpoint.delete();
+      return false;
+    }
+    lock.writeLock().lock();
+    try {
+      authzPaths = newAuthzPaths;
+      authzPermissions = newAuthzPerms;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    lastCheckpointTime = System.currentTimeMillis();
+    lastCheckpointPathsSeqNum = newAuthzPaths.getLastUpdatedSeqNum();
+    lastCheckpointPathsImgNum = newAuthzPaths.getLastUpdatedImgNum();
+    lastCheckpointPermsSeqNum = newAuthzPerms.getLastUpdatedSeqNum();
+    return true;
+  }
+
+  /**
+   * Starts writing a new local checkpoint if the checkpoint interval has passed, there
+   * were updates since the last one, and the last one was written. Must only be called
+   * from the thread applying updates, so the checkpoint is consistent. Only the images
+   * are taken on this thread; they are serialized and written by the checkpoint writer.
+   */
+  private void checkpointIfNeeded() {
+    long now = System.currentTimeMillis();
+    if (checkpoint == null || now - lastCheckpointTime < checkpointIntervalMillisec) {
+      return;
+    }
+    if (pendingCheckpoint != null && !pendingCheckpoint.isDone()) {
+      LOG.debug("Previous authz checkpoint is still being written");
+      return;
+    }
+    UpdateableAuthzPaths paths = authzPaths;
+    UpdateableAuthzPermissions perms = authzPermissions;
+    if (paths.getLastUpdatedSeqNum() == lastCheckpointPathsSeqNum
+        && paths.getLastUpdatedImgNum() == lastCheckpointPathsImgNum
+        && perms.getLastUpdatedSeqNum() == lastCheckpointPermsSeqNum) {
+      return;
+    }
+    lastCheckpointTime = now;
+    final SentryAuthzCheckpoint.Image image = SentryAuthzCheckpoint.createImage(paths, perms);
+    LOG.info("Took authz checkpoint image in [{}]ms", System.currentTimeMillis() - now);
+    lastCheckpointPathsSeqNum = paths.getLastUpdatedSeqNum();
+    lastCheckpointPathsImgNum = paths.getLastUpdatedImgNum();
+    lastCheckpointPermsSeqNum = perms.getLastUpdatedSeqNum();
+    pendingCheckpoint = checkpointExecutor.submit(() -> {
+      try {
+        checkpoint.save(image);
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Failed to save authz checkpoint, will retry in [{}]ms",
+            checkpointIntervalMillisec, e);
+        lastCheckpointPathsSeqNum = SEQUENCE_NUMBER_UPDATE_UNINITIALIZED;
+        lastCheckpointPathsImgNum = IMAGE_NUMBER_UPDATE_UNINITIALIZED;
+        lastCheckpointPermsSeqNum = SEQUENCE_NUMBER_UPDATE_UNINITIALIZED;
+      }
+    });
+  }
+
   private <K extends Update, V extends Updateable<K>> V processUpdates(List<K> updates,
       V updateable) {
     // In a list of Updates, if there is a full Update, it will be the first
@@ -224,6 +381,7 @@ public class SentryAuthorizationInfo implements Runnable {
   @Override
   public void run() {
     boolean success = false;
+    boolean answeredWithoutWaiting = false;
     try {
       // In case of previous preUpdate failure, we sleep for a retry wait 
       // interval we can do this because we are using a singledthreadedexecutor
@@ -231,8 +389,11 @@ public class SentryAuthorizationInfo implements Runnable {
       long currTime = System.currentTimeMillis();
       if (waitUntil > currTime) {
         Thread.sleep(waitUntil - currTime);
+        currTime = System.currentTimeMillis();
       }
-      success = update();
+      success = update(waitTimeoutMillisec);
+      answeredWithoutWaiting = waitTimeoutMillisec > 0 && lastUpdateEmpty &&
+          System.currentTimeMillis() - currTime < refreshIntervalMillisec;
     } catch (Exception ex) {
       success = false;
       LOG.warn("Failed to update, will retry in [{}]ms, error: ", 
@@ -242,14 +403,28 @@ public class SentryAuthorizationInfo implements Runnable {
       // we reset lastUpdate only on successful pulling
       lastUpdate = System.currentTimeMillis();
       waitUntil = lastUpdate;
+      if (answeredWithoutWaiting) {
+        // The server returned no updates without waiting (e.g. it does not support
+        // long-polling), so wait for the refresh interval instead of spinning.
+        waitUntil += refreshIntervalMillisec;
+      }
+      checkpointIfNeeded();
     } else {
       waitUntil = System.currentTimeMillis() + retryWaitMillisec;
     }
   }
 
   public void start() {
-    if (authzPaths != null || authzPermissions != null) {
+    if (authzPaths != null && authzPermissions != null) {
       boolean success = false;
+      if (checkpoint != null) {
+        // With a checkpoint only the updates made since it was taken are fetched below
+        loadCheckpoint();
+        checkpointExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat(SENTRY_AUTHORIZATION_CHECKPOINT_THREAD_NAME)
+            .setDaemon(true)
+            .build());
+      }
       try {
         success = update();
       } catch (Exception ex) {
@@ -265,8 +440,12 @@ public class SentryAuthorizationInfo implements Runnable {
           .setDaemon(true)
           .build();
       executor = Executors.newSingleThreadScheduledExecutor(sentryAuthInfoRefresherThreadFactory);
-      executor.scheduleWithFixedDelay(this, refreshIntervalMillisec, 
-          refreshIntervalMillisec, TimeUnit.MILLISECONDS);
+      // When long-polling, the server holds the request until there are updates,
+      // so the next request is issued right after the previous one returns.
+      int delayMillisec = waitTimeoutMillisec > 0 ?
+          LONG_POLL_REISSUE_DELAY_MILLISEC : refreshIntervalMillisec;
+      executor.scheduleWithFixedDelay(this, refreshIntervalMillisec,
+          delayMillisec, TimeUnit.MILLISECONDS);
     }
   }
 
@@ -274,6 +453,10 @@ public class SentryAuthorizationInfo implements Runnable {
     if (authzPaths != null) {
       LOG.info(getClass().getSimpleName() + ": Stopping");
       executor.shutdownNow();
+      if (checkpointExecutor != null) {
+        // A checkpoint being written is renamed into place only once complete
+        checkpointExecutor.shutdown();
+      }
     }
   }
 
@@ -321,31 +504,122 @@ public class SentryAuthorizationInfo implements Runnable {
     }
   }
 
-  @SuppressWarnings("unchecked")
   public List<AclEntry> getAclEntries(String[] pathElements) {
     lock.readLock().lock();
     try {
-      Set<String> authzObjs = authzPaths.findAuthzObject(pathElements);
-      // Apparently setFAcl throws error if 'group::---' is not present
-      AclEntry noGroup = AclEntry.parseAclEntry("group::---", true);
-
-      Set<AclEntry> retSet = new HashSet<>();
-      retSet.add(noGroup);
+      return getAclEntries(authzPermissions, authzPaths.findAuthzObject(pathElements));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
 
-      if (authzObjs == null) {
-        retSet.addAll(Collections.<AclEntry>emptyList());
-        return new ArrayList<>(retSet);
+  /**
+   * Resolves a path with a single walk of the authz paths under a single read lock,
+   * instead of one walk and one lock per question asked about the path. The ACL
+   * entries of its authz objects are only looked up if they are asked for, as most
+   * permission checks do not read the ACLs of every inode on the path.
+   *
+   * @return the resolution of the path, or null if the path is not Sentry managed
+   */
+  public PathResolution resolve(String[] pathElements) {
+    final Set<String> authzObjs;
+    final UpdateableAuthzPermissions permissions;
+    boolean pathPrefix;
+    lock.readLock().lock();
+    try {
+      if (!authzPaths.isUnderPrefix(pathElements)) {
+        return null;
+      }
+      Set<String> foundAuthzObjs = authzPaths.findAuthzObject(pathElements);
+      if (foundAuthzObjs == null) {
+        return null;
       }
+      authzObjs = new HashSet<>(foundAuthzObjs);
+      permissions = authzPermissions;
+      pathPrefix = isPathPrefix(pathElements);
+    } finally {
+      lock.readLock().unlock();
+    }
+    return new PathResolution(pathPrefix, authzObjs, Suppliers.memoize(() -> {
+      lock.readLock().lock();
+      try {
+        return getAclEntries(permissions, authzObjs);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }));
+  }
 
-      // No duplicate acls should be added.
-      for (String authzObj: authzObjs) {
-        retSet.addAll(authzPermissions.getAcls(authzObj));
+  /**
+   * @return whether the path is one of the path prefixes, and not only under one
+   */
+  boolean isPathPrefix(String[] pathElements) {
+    for (String[] prefixPath : pathPrefixes) {
+      if (Arrays.equals(prefixPath, pathElements)) {
+        return true;
       }
+    }
+    return false;
+  }
+
+  // Must be called with the read lock held
+  private static List<AclEntry> getAclEntries(UpdateableAuthzPermissions permissions,
+      Set<String> authzObjs) {
+    // Apparently setFAcl throws error if 'group::---' is not present
+    AclEntry noGroup = AclEntry.parseAclEntry("group::---", true);
 
+    Set<AclEntry> retSet = new HashSet<>();
+    retSet.add(noGroup);
+
+    if (authzObjs == null) {
       return new ArrayList<>(retSet);
-    } finally {
-      lock.readLock().unlock();
     }
+
+    // No duplicate acls should be added.
+    for (String authzObj: authzObjs) {
+      retSet.addAll(permissions.getAcls(authzObj));
+    }
+
+    return new ArrayList<>(retSet);
   }
 
+  /**
+   * What a Sentry managed path resolved to. It reflects the authz paths at the time the
+   * path was resolved, and the permissions of that time or later: the ACL entries are
+   * looked up the first time they are asked for, then kept.
+   */
+  public static final class PathResolution {
+    private final boolean pathPrefix;
+    private final Set<String> authzObjs;
+    private final Supplier<List<AclEntry>> aclEntries;
+
+    /**
+     * @param authzObjs the authz objects of the path, not modified afterwards
+     * @param aclEntries supplies the ACL entries of the authz objects, called at most once
+     */
+    PathResolution(boolean pathPrefix, Set<String> authzObjs,
+        Supplier<List<AclEntry>> aclEntries) {
+      this.pathPrefix = pathPrefix;
+      this.authzObjs = Collections.unmodifiableSet(authzObjs);
+      this.aclEntries = aclEntries;
+    }
+
+    /**
+     * @return whether the path is one of the path prefixes
+     */
+    public boolean isPathPrefix() {
+      return pathPrefix;
+    }
+
+    public Set<String> getAuthzObjs() {
+      return authzObjs;
+    }
+
+    /**
+     * @return the Sentry ACL entries of the authz objects of the path
+     */
+    public List<AclEntry> getAclEntries() {
+      return Collections.unmodifiableList(aclEntries.get());
+    }
+  }
 }
@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.hdfs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.hadoop.util.StringUtils;
+import org.apache.sentry.hdfs.service.thrift.TPathsUpdate;
+import org.apache.sentry.hdfs.service.thrift.TPermissionsUpdate;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Local on-disk checkpoint of the Sentry authorization image held by the NameNode.
+ * <p>
+ * The checkpoint stores full images of {@link UpdateableAuthzPaths} and
+ * {@link UpdateableAuthzPermissions} together with their sequence and image numbers,
+ * so that after a restart the NameNode only has to ask Sentry for the deltas since
+ * the checkpoint instead of a full image.
+ * <p>
+ * File layout, all numbers big-endian:
+ * <pre>
+ *   int    magic
+ *   int    format version
+ *   long   paths sequence number
+ *   long   paths image number
+ *   long   permissions sequence number
+ *   int    length, bytes   path prefixes (UTF-8, comma separated)
+ *   paths full image (TPathsUpdate, compact protocol)
+ *   permissions full image (TPermissionsUpdate, compact protocol)
+ *   long   CRC32 of all the preceding bytes
+ * </pre>
+ * The images are streamed to and parsed from the file directly, so their size is not
+ * bounded by the maximum Thrift message size and no serialized copy is held in memory.
+ * A checkpoint is written to a temporary file which then atomically replaces the
+ * previous one. A checkpoint with a different format version, different path prefixes
+ * or a bad checksum is ignored.
+ * <p>
+ * Taking the images with {@link #createImage} walks the whole authz paths tree and must
+ * be done on the thread applying updates; {@link #save(Image)} can then run on any
+ * thread. Loading parses the images, which are then applied as full updates, so the
+ * authz paths tree is rebuilt from the paths dump the same way as for a full image
+ * sent by Sentry, and the parsed dump is held in memory until the tree is built. What
+ * a checkpoint saves is Sentry building the image, its transfer, and the deltas made
+ * before the checkpoint. The time to parse the checkpoint and to rebuild the tree are
+ * both logged.
+ */
+class SentryAuthzCheckpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(SentryAuthzCheckpoint.class);
+
+  @VisibleForTesting
+  static final String CHECKPOINT_FILE_NAME = "sentry-authz.checkpoint";
+  private static final String CHECKPOINT_TMP_FILE_NAME = CHECKPOINT_FILE_NAME + ".tmp";
+
+  private static final int MAGIC = 0x53415a43; // "SAZC"
+  @VisibleForTesting
+  static final int FORMAT_VERSION = 2;
+
+  private final File checkpointFile;
+  private final File tmpFile;
+  private final String pathPrefixes;
+
+  /**
+   * @param dir directory to keep the checkpoint in, created if it does not exist
+   * @param pathPrefixes HDFS path prefixes managed by Sentry; a checkpoint taken with
+   *                     other prefixes is not loaded
+   */
+  SentryAuthzCheckpoint(File dir, String[] pathPrefixes) {
+    this.checkpointFile = new File(dir, CHECKPOINT_FILE_NAME);
+    this.tmpFile = new File(dir, CHECKPOINT_TMP_FILE_NAME);
+    this.pathPrefixes = StringUtils.join(",", pathPrefixes);
+  }
+
+  File getFile() {
+    return checkpointFile;
+  }
+
+  /**
+   * Takes full images of the given paths and permissions. The caller must make sure no
+   * updates are applied to them meanwhile; the images do not share state with them.
+   */
+  static Image createImage(UpdateableAuthzPaths authzPaths,
+      UpdateableAuthzPermissions authzPermissions) {
+    PathsUpdate pathsImage = authzPaths.createFullImageUpdate(authzPaths.getLastUpdatedSeqNum());
+    pathsImage.setImgNum(authzPaths.getLastUpdatedImgNum());
+    PermissionsUpdate permsImage =
+        authzPermissions.createFullImageUpdate(authzPermissions.getLastUpdatedSeqNum());
+    return new Image(pathsImage, permsImage);
+  }
+
+  /**
+   * Writes a new checkpoint of the given paths and permissions. The caller must make
+   * sure no updates are applied to them while the checkpoint is taken.
+   */
+  void save(UpdateableAuthzPaths authzPaths, UpdateableAuthzPermissions authzPermissions)
+      throws IOException {
+    save(createImage(authzPaths, authzPermissions));
+  }
+
+  /**
+   * Writes a new checkpoint of the given images.
+   */
+  void save(Image image) throws IOException {
+    long start = System.currentTimeMillis();
+    long pathsSeqNum = image.getPathsImage().getSeqNum();
+    long pathsImgNum = image.getPathsImage().getImgNum();
+    long permsSeqNum = image.getPermsImage().getSeqNum();
+    byte[] prefixBytes = pathPrefixes.getBytes(StandardCharsets.UTF_8);
+
+    File dir = checkpointFile.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create checkpoint directory " + dir);
+    }
+
+    try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+      CRC32 crc = new CRC32();
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+          new BufferedOutputStream(fos), crc));
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(pathsSeqNum);
+      out.writeLong(pathsImgNum);
+      out.writeLong(permsSeqNum);
+      writeBytes(out, prefixBytes);
+      TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(out));
+      image.getPathsImage().toThrift().write(protocol);
+      image.getPermsImage().toThrift().write(protocol);
+      // The checksum itself is not part of the checksum
+      long checksum = crc.getValue();
+      out.writeLong(checksum);
+      out.flush();
+      fos.getFD().sync();
+    } catch (TException e) {
+      throw new IOException("Failed to write checkpoint " + tmpFile, e);
+    }
+    Files.move(tmpFile.toPath(), checkpointFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    LOG.info("Saved authz checkpoint to [{}]: paths seq Num [{}] img Num [{}], "
+        + "perms seq Num [{}], [{}] bytes in [{}]ms", checkpointFile, pathsSeqNum, pathsImgNum,
+        permsSeqNum, checkpointFile.length(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Deletes the checkpoint, if there is one.
+   */
+  void delete() {
+    try {
+      Files.deleteIfExists(checkpointFile.toPath());
+    } catch (IOException e) {
+      LOG.warn("Failed to delete authz checkpoint [{}]", checkpointFile, e);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Loads the checkpoint.
+   * @return the checkpointed images, or null if there is no usable checkpoint
+   */
+  Image load() {
+    if (!checkpointFile.isFile()) {
+      LOG.info("No authz checkpoint found at [{}]", checkpointFile);
+      return null;
+    }
+    long start = System.currentTimeMillis();
+    try (RandomAccessFile raf = new RandomAccessFile(checkpointFile, "r");
+         FileChannel channel = raf.getChannel()) {
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return load(buf, start);
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException
+        | NegativeArraySizeException e) {
+      LOG.warn("Ignoring unreadable authz checkpoint [{}]", checkpointFile, e);
+      return null;
+    }
+  }
+
+  private Image load(MappedByteBuffer buf, long start) throws IOException {
+    if (buf.getInt() != MAGIC) {
+      LOG.warn("Ignoring authz checkpoint [{}], not a checkpoint file", checkpointFile);
+      return null;
+    }
+    int version = buf.getInt();
+    if (version != FORMAT_VERSION) {
+      LOG.warn("Ignoring authz checkpoint [{}] with format version [{}], expected [{}]",
+          checkpointFile, version, FORMAT_VERSION);
+      return null;
+    }
+
+    // Verify the checksum before parsing the rest
+    int checksumPos = buf.limit() - 8;
+    if (checksumPos < buf.position()) {
+      throw new IOException("Truncated checkpoint");
+    }
+    CRC32 crc = new CRC32();
+    buf.position(0);
+    buf.limit(checksumPos);
+    crc.update(buf);
+    buf.limit(checksumPos + 8);
+    if (buf.getLong() != crc.getValue()) {
+      LOG.warn("Ignoring authz checkpoint [{}], checksum mismatch", checkpointFile);
+      return null;
+    }
+
+    buf.position(8);
+    long pathsSeqNum = buf.getLong();
+    long pathsImgNum = buf.getLong();
+    long permsSeqNum = buf.getLong();
+    String prefixes = new String(readBytes(buf), StandardCharsets.UTF_8);
+    if (!pathPrefixes.equals(prefixes)) {
+      LOG.warn("Ignoring authz checkpoint [{}] taken for path prefixes [{}], "
+          + "configured path prefixes are [{}]", checkpointFile, prefixes, pathPrefixes);
+      return null;
+    }
+
+    buf.limit(checksumPos);
+    TPathsUpdate tPathsImage = new TPathsUpdate();
+    TPermissionsUpdate tPermsImage = new TPermissionsUpdate();
+    try {
+      TProtocol protocol = new TCompactProtocol(new ByteBufferTransport(buf));
+      tPathsImage.read(protocol);
+      tPermsImage.read(protocol);
+    } catch (TException e) {
+      throw new IOException("Failed to parse checkpoint", e);
+    }
+    if (buf.hasRemaining()) {
+      throw new IOException("Unexpected data after the checkpoint images");
+    }
+    PathsUpdate pathsImage = new PathsUpdate(tPathsImage);
+    PermissionsUpdate permsImage = new PermissionsUpdate(tPermsImage);
+    if (pathsImage.getSeqNum() != pathsSeqNum || pathsImage.getImgNum() != pathsImgNum
+        || permsImage.getSeqNum() != permsSeqNum) {
+      throw new IOException("Checkpoint header does not match its images");
+    }
+
+    LOG.info("Loaded authz checkpoint from [{}]: paths seq Num [{}] img Num [{}], "
+        + "perms seq Num [{}], in [{}]ms", checkpointFile, pathsSeqNum, pathsImgNum,
+        permsSeqNum, System.currentTimeMillis() - start);
+    return new Image(pathsImage, permsImage);
+  }
+
+  private static byte[] readBytes(MappedByteBuffer buf) {
+    byte[] bytes = new byte[buf.getInt()];
+    buf.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Read-only transport over the remaining bytes of a buffer.
+   */
+  private static final class ByteBufferTransport extends TTransport {
+    private final ByteBuffer buf;
+
+    private ByteBufferTransport(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws TTransportException {
+      if (!buf.hasRemaining()) {
+        throw new TTransportException(TTransportException.END_OF_FILE, "Truncated checkpoint");
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(bytes, off, n);
+      return n;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) {
+      throw new UnsupportedOperationException("Read-only transport");
+    }
+  }
+
+  /**
+   * Full paths and permissions images of a checkpoint.
+   */
+  static final class Image {
+    private final PathsUpdate pathsImage;
+    private final PermissionsUpdate permsImage;
+
+    Image(PathsUpdate pathsImage, PermissionsUpdate permsImage) {
+      this.pathsImage = pathsImage;
+      this.permsImage = permsImage;
+    }
+
+    PathsUpdate getPathsImage() {
+      return pathsImage;
+    }
+
+    PermissionsUpdate getPermsImage() {
+      return permsImage;
+    }
+  }
+}
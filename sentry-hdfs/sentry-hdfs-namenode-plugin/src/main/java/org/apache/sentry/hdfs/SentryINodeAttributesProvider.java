@@ -101,15 +101,23 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
     }
   }
 
+  /**
+   * Attributes of a Sentry managed inode. The path is resolved once, when the
+   * attributes are created, and every accessor reads that resolution.
+   */
   public class SentryINodeAttributes implements INodeAttributes {
 
     private final INodeAttributes defaultAttributes;
     private final String[] pathElements;
+    private final SentryAuthorizationInfo.PathResolution resolution;
+    // Built on first use, the attributes are only used by the thread checking the path
+    private AclFeature aclFeature;
 
     public SentryINodeAttributes(INodeAttributes defaultAttributes, String[]
-            pathElements) {
+            pathElements, SentryAuthorizationInfo.PathResolution resolution) {
       this.defaultAttributes = defaultAttributes;
       this.pathElements = pathElements;
+      this.resolution = resolution;
     }
 
     @Override
@@ -124,38 +132,22 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
 
     @Override
     public String getUserName() {
-      return isSentryManaged(pathElements)?
-          SentryINodeAttributesProvider.this.user : defaultAttributes.getUserName();
+      return SentryINodeAttributesProvider.this.user;
     }
 
     @Override
     public String getGroupName() {
-      return isSentryManaged(pathElements)?
-          SentryINodeAttributesProvider.this.group : defaultAttributes.getGroupName();
+      return SentryINodeAttributesProvider.this.group;
     }
 
     @Override
     public FsPermission getFsPermission() {
-      FsPermission permission;
-
-      if (!isSentryManaged(pathElements)) {
-        permission = defaultAttributes.getFsPermission();
-      } else {
-        FsPermission returnPerm = SentryINodeAttributesProvider.this.permission;
-        // Handle case when prefix directory is itself associated with an
-        // authorizable object (default db directory in hive)
-        // An executable permission needs to be set on the the prefix directory
-        // in this case.. else, subdirectories (which map to other dbs) will
-        // not be travesible.
-        for (String [] prefixPath : authzInfo.getPathPrefixes()) {
-          if (Arrays.equals(prefixPath, pathElements)) {
-            returnPerm = FsPermission.createImmutable((short)(returnPerm.toShort() | 0x01));
-            break;
-          }
-        }
-        permission = returnPerm;
-      }
-      return permission;
+      // Handle case when prefix directory is itself associated with an
+      // authorizable object (default db directory in hive)
+      // An executable permission needs to be set on the the prefix directory
+      // in this case.. else, subdirectories (which map to other dbs) will
+      // not be travesible.
+      return resolution.isPathPrefix() ? prefixPermission : permission;
     }
 
     @Override
@@ -165,11 +157,7 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
 
     @Override
     public long getPermissionLong() {
-      PermissionStatus permissionStatus = new PermissionStatus(getUserName(),
-              getGroupName(), getFsPermission());
-      // No other way to get the long permission currently
-      return new INodeDirectory(0L, null, permissionStatus, 0L)
-              .getPermissionLong();
+      return resolution.isPathPrefix() ? prefixPermissionLong : permissionLong;
     }
 
     /**
@@ -183,53 +171,33 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
      **/
     @Override
     public AclFeature getAclFeature() {
-      AclFeature aclFeature;
-      String p = Arrays.toString(pathElements);
-      boolean isPrefixed = false;
-      boolean isStale = false;
-      boolean hasAuthzObj = false;
-      Map<String, AclEntry> aclMap = null;
-
-      // If path is not under prefix, return hadoop acls.
-      if (!authzInfo.isUnderPrefix(pathElements)) {
-        isPrefixed = false;
-        aclFeature = defaultAttributes.getAclFeature();
-      } else if (!authzInfo.doesBelongToAuthzObject(pathElements)) {
-        // If path is not managed, return hadoop acls.
-        isPrefixed = true;
-        aclFeature = defaultAttributes.getAclFeature();
+      if (aclFeature != null) {
+        return aclFeature;
+      }
+      // The path is managed, add original hadoop permission if originalAuthzAsAcl true.
+      Map<String, AclEntry> aclMap = new HashMap<String, AclEntry>();
+      if (originalAuthzAsAcl) {
+        String user = defaultAttributes.getUserName();
+        String group = defaultAttributes.getGroupName();
+        FsPermission perm = defaultAttributes.getFsPermission();
+        addToACLMap(aclMap, createAclEntries(user, group, perm));
       } else {
-        // If path is managed, add original hadoop permission if originalAuthzAsAcl true.
-        isPrefixed = true;
-        hasAuthzObj = true;
-        aclMap = new HashMap<String, AclEntry>();
-        if (originalAuthzAsAcl) {
-          String user = defaultAttributes.getUserName();
-          String group = defaultAttributes.getGroupName();
-          FsPermission perm = defaultAttributes.getFsPermission();
-          addToACLMap(aclMap, createAclEntries(user, group, perm));
-        } else {
-          // else add hive:hive
-          addToACLMap(aclMap, createAclEntries(user, group, permission));
-        }
-        if (!authzInfo.isStale()) {
-          // if not stale return sentry acls.
-          isStale = false;
-          addToACLMap(aclMap, authzInfo.getAclEntries(pathElements));
-          aclFeature = new SentryAclFeature(ImmutableList.copyOf(aclMap.values()));
-        } else {
-          // if stale return hive:hive
-          isStale = true;
-          aclFeature = new SentryAclFeature(ImmutableList.copyOf(aclMap.values()));
-        }
+        // else add hive:hive
+        addToACLMap(aclMap, managedAclEntries);
+      }
+      boolean isStale = authzInfo.isStale();
+      if (!isStale) {
+        // if not stale return sentry acls.
+        addToACLMap(aclMap, resolution.getAclEntries());
       }
+      // if stale return hive:hive
+      aclFeature = new SentryAclFeature(ImmutableList.copyOf(aclMap.values()));
       if (LOG.isDebugEnabled()) {
-        LOG.debug("### getAclEntry \n[" + (p == null ? "null" : p) + "] : ["
-            + "isPreifxed=" + isPrefixed
-            + ", isStale=" + isStale
-            + ", hasAuthzObj=" + hasAuthzObj
+        LOG.debug("### getAclEntry \n[" + Arrays.toString(pathElements) + "] : ["
+            + "isStale=" + isStale
+            + ", authzObjs=" + resolution.getAuthzObjs()
             + ", origAuthzAsAcl=" + originalAuthzAsAcl + "]\n"
-            + "[" + (aclMap == null ? "null" : aclMap) + "]\n");
+            + "[" + aclMap + "]\n");
       }
       return aclFeature;
     }
@@ -255,16 +223,17 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
   private String user;
   private String group;
   private FsPermission permission;
+  // The permission of managed path prefixes, which must also be traversable
+  private FsPermission prefixPermission;
+  private long permissionLong;
+  private long prefixPermissionLong;
+  private List<AclEntry> managedAclEntries;
   private boolean originalAuthzAsAcl;
   private Configuration conf;
 
   public SentryINodeAttributesProvider() {
   }
 
-  private boolean isSentryManaged(final String[] pathElements) {
-    return authzInfo.isSentryManaged(pathElements);
-  }
-
   @VisibleForTesting
   SentryINodeAttributesProvider(SentryAuthorizationInfo authzInfo) {
     this.authzInfo = authzInfo;
@@ -311,6 +280,11 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
       LOG.info("Config: hdfs-user[{}] hdfs-group[{}] hdfs-permission[{}] " +
               "include-hdfs-authz-as-acl[{}]", new Object[]
               {user, group, permission, originalAuthzAsAcl});
+      prefixPermission = FsPermission.createImmutable(
+              (short) (permission.toShort() | 0x01));
+      permissionLong = toPermissionLong(user, group, permission);
+      prefixPermissionLong = toPermissionLong(user, group, prefixPermission);
+      managedAclEntries = createAclEntries(user, group, permission);
 
       if (authzInfo == null) {
         authzInfo = new SentryAuthorizationInfo(conf);
@@ -339,8 +313,9 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
     pathElements = "".equals(pathElements[0]) && pathElements.length > 1 ?
             Arrays.copyOfRange(pathElements, 1, pathElements.length) :
             pathElements;
-    return isSentryManaged(pathElements) ? new SentryINodeAttributes
-            (inode, pathElements) : inode;
+    SentryAuthorizationInfo.PathResolution resolution = authzInfo.resolve(pathElements);
+    return resolution != null ? new SentryINodeAttributes
+            (inode, pathElements, resolution) : inode;
   }
 
   @Override
@@ -349,6 +324,15 @@ public class SentryINodeAttributesProvider extends INodeAttributeProvider
     return new SentryPermissionEnforcer(defaultEnforcer);
   }
 
+  private static long toPermissionLong(String user, String group,
+                                       FsPermission permission) {
+    PermissionStatus permissionStatus = new PermissionStatus(user, group,
+            permission);
+    // No other way to get the long permission currently
+    return new INodeDirectory(0L, null, permissionStatus, 0L)
+            .getPermissionLong();
+  }
+
   private static void addToACLMap(Map<String, AclEntry> map,
                                   Collection<AclEntry> entries) {
     for (AclEntry ent : entries) {
@@ -35,6 +35,16 @@ class SentryUpdater {
   }
 
   SentryAuthzUpdate getUpdates() {
+    return getUpdates(0);
+  }
+
+  /**
+   * Get the updates since the last ones applied by {@link SentryAuthorizationInfo}.
+   * @param waitTimeoutMillisec if positive, Sentry may hold the request for up to this
+   *                            long until new updates are available
+   * @return the updates, or null if Sentry could not be reached
+   */
+  SentryAuthzUpdate getUpdates(long waitTimeoutMillisec) {
     if (sentryClient == null) {
       try {
         sentryClient = SentryHDFSServiceClientFactory.create(conf);
@@ -49,7 +59,8 @@ class SentryUpdater {
       return sentryClient.getAllUpdatesFrom(
           authzInfo.getAuthzPermissions().getLastUpdatedSeqNum() + 1,
           authzInfo.getAuthzPaths().getLastUpdatedSeqNum() + 1,
-          authzInfo.getAuthzPaths().getLastUpdatedImgNum());
+          authzInfo.getAuthzPaths().getLastUpdatedImgNum(),
+          waitTimeoutMillisec);
     } catch (Exception e)  {
       sentryClient = null;
       LOG.error("Error receiving updates from Sentry", e);
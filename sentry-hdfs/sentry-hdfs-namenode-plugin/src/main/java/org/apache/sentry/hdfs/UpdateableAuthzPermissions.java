@@ -216,6 +216,10 @@ public class UpdateableAuthzPermissions implements AuthzPermissions, Updateable<
     FsAction retVal = FsAction.NONE;
     for (String strPriv : strPrivs) {
       FsAction action = ACTION_MAPPING.get(strPriv.toUpperCase());
+      if (action == null) {
+        // Full images created by createFullImageUpdate() carry FsAction symbols, e.g. "r-x"
+        action = FsAction.getFsAction(strPriv.trim());
+      }
       if (action == null) {
         // Encountered a privilege that is not supported. Since we do not know what
         // to do with it we just drop all access.
@@ -18,6 +18,7 @@
 package org.apache.sentry.hdfs;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.hadoop.fs.permission.AclEntry;
@@ -25,6 +26,8 @@ import org.apache.hadoop.fs.permission.AclEntryScope;
 import org.apache.hadoop.fs.permission.AclEntryType;
 import org.apache.hadoop.fs.permission.FsAction;
 
+import com.google.common.base.Suppliers;
+
 public class SentryAuthorizationInfoX extends SentryAuthorizationInfo {
 
   public SentryAuthorizationInfoX() {
@@ -81,6 +84,12 @@ public class SentryAuthorizationInfoX extends SentryAuthorizationInfo {
     return isUnderPrefix(pathElements) && doesBelongToAuthzObject(pathElements);
   }
 
+  @Override
+  public PathResolution resolve(String[] pathElements) {
+    return isSentryManaged(pathElements) ? new PathResolution(isPathPrefix(pathElements),
+        Collections.singleton("obj"), Suppliers.ofInstance(getAclEntries(pathElements))) : null;
+  }
+
   @Override
   public List<AclEntry> getAclEntries(String[] pathElements) {
     AclEntry acl = new AclEntry.Builder().setType(AclEntryType.USER).
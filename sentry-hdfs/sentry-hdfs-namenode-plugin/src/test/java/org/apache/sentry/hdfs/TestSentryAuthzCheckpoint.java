@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test suite for the NameNode local authz checkpoint.
+ */
+public class TestSentryAuthzCheckpoint {
+  private static final String[] PREFIXES = {"/user/hive/warehouse"};
+
+  private File baseDir;
+  private UpdateableAuthzPaths authzPaths;
+  private UpdateableAuthzPermissions authzPermissions;
+
+  @Before
+  public void setup() {
+    baseDir = Files.createTempDir();
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    authzPaths = new UpdateableAuthzPaths(PREFIXES);
+    PathsUpdate pathsUpdate = new PathsUpdate(5, 2, false);
+    pathsUpdate.newPathChange("db1.tbl1").addToAddPaths(
+        Lists.newArrayList("user", "hive", "warehouse", "db1", "tbl1"));
+    authzPaths.updatePartial(Lists.newArrayList(pathsUpdate), lock);
+
+    authzPermissions = new UpdateableAuthzPermissions();
+    PermissionsUpdate permsUpdate = new PermissionsUpdate(7, false);
+    permsUpdate.addPrivilegeUpdate("db1.tbl1").putToAddPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role1"), "SELECT");
+    permsUpdate.addRoleUpdate("role1").addToAddGroups("group1");
+    authzPermissions.updatePartial(Lists.newArrayList(permsUpdate), lock);
+  }
+
+  @After
+  public void teardown() {
+    FileUtil.fullyDelete(baseDir);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    new SentryAuthzCheckpoint(baseDir, PREFIXES).save(authzPaths, authzPermissions);
+
+    SentryAuthzCheckpoint.Image image = new SentryAuthzCheckpoint(baseDir, PREFIXES).load();
+    assertNotNull(image);
+    UpdateableAuthzPaths loadedPaths =
+        new UpdateableAuthzPaths(PREFIXES).updateFull(image.getPathsImage());
+    UpdateableAuthzPermissions loadedPerms =
+        new UpdateableAuthzPermissions().updateFull(image.getPermsImage());
+
+    assertEquals(5, loadedPaths.getLastUpdatedSeqNum());
+    assertEquals(2, loadedPaths.getLastUpdatedImgNum());
+    assertEquals(7, loadedPerms.getLastUpdatedSeqNum());
+
+    String[] tblPath = {"user", "hive", "warehouse", "db1", "tbl1"};
+    assertTrue(loadedPaths.findAuthzObject(tblPath).contains("db1.tbl1"));
+    assertTrue(loadedPaths.isUnderPrefix(tblPath));
+    assertFalse(authzPermissions.getAcls("db1.tbl1").isEmpty());
+    assertEquals(new HashSet<>(authzPermissions.getAcls("db1.tbl1")),
+        new HashSet<>(loadedPerms.getAcls("db1.tbl1")));
+  }
+
+  @Test
+  public void testSaveImageTakenBeforeLaterUpdates() throws Exception {
+    SentryAuthzCheckpoint checkpoint = new SentryAuthzCheckpoint(baseDir, PREFIXES);
+    SentryAuthzCheckpoint.Image taken =
+        SentryAuthzCheckpoint.createImage(authzPaths, authzPermissions);
+
+    // Updates applied while the image is written do not leak into it
+    PathsUpdate pathsUpdate = new PathsUpdate(6, 2, false);
+    pathsUpdate.newPathChange("db1.tbl2").addToAddPaths(
+        Lists.newArrayList("user", "hive", "warehouse", "db1", "tbl2"));
+    authzPaths.updatePartial(Lists.newArrayList(pathsUpdate), new ReentrantReadWriteLock());
+    checkpoint.save(taken);
+
+    SentryAuthzCheckpoint.Image image = checkpoint.load();
+    assertNotNull(image);
+    UpdateableAuthzPaths loadedPaths =
+        new UpdateableAuthzPaths(PREFIXES).updateFull(image.getPathsImage());
+    assertEquals(5, loadedPaths.getLastUpdatedSeqNum());
+    assertNotNull(loadedPaths.findAuthzObject(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl1"}));
+    Set<String> tbl2Objs = loadedPaths.findAuthzObjectExactMatches(
+        new String[] {"user", "hive", "warehouse", "db1", "tbl2"});
+    assertTrue(tbl2Objs == null || !tbl2Objs.contains("db1.tbl2"));
+  }
+
+  @Test
+  public void testImagesAreNotBoundByMaxMessageSize() throws Exception {
+    long maxMessageSize = ThriftSerializer.maxMessageSize;
+    ThriftSerializer.maxMessageSize = 1;
+    try {
+      SentryAuthzCheckpoint checkpoint = new SentryAuthzCheckpoint(baseDir, PREFIXES);
+      checkpoint.save(authzPaths, authzPermissions);
+      SentryAuthzCheckpoint.Image image = checkpoint.load();
+      assertNotNull(image);
+      assertTrue(new UpdateableAuthzPaths(PREFIXES).updateFull(image.getPathsImage())
+          .findAuthzObject(new String[] {"user", "hive", "warehouse", "db1", "tbl1"})
+          .contains("db1.tbl1"));
+    } finally {
+      ThriftSerializer.maxMessageSize = maxMessageSize;
+    }
+  }
+
+  @Test
+  public void testLoadMissingCheckpoint() {
+    assertNull(new SentryAuthzCheckpoint(baseDir, PREFIXES).load());
+  }
+
+  @Test
+  public void testLoadWithDifferentPrefixes() throws Exception {
+    new SentryAuthzCheckpoint(baseDir, PREFIXES).save(authzPaths, authzPermissions);
+
+    assertNull(new SentryAuthzCheckpoint(baseDir, new String[] {"/data"}).load());
+  }
+
+  @Test
+  public void testLoadCorruptedCheckpoint() throws Exception {
+    SentryAuthzCheckpoint checkpoint = new SentryAuthzCheckpoint(baseDir, PREFIXES);
+    checkpoint.save(authzPaths, authzPermissions);
+
+    try (RandomAccessFile raf = new RandomAccessFile(checkpoint.getFile(), "rw")) {
+      raf.seek(raf.length() / 2);
+      int b = raf.read();
+      raf.seek(raf.length() / 2);
+      raf.write(b ^ 0xff);
+    }
+    assertNull(checkpoint.load());
+  }
+
+  @Test
+  public void testCheckpointThatCannotBeAppliedIsDeleted() throws Exception {
+    // Readable, but the paths image has no paths dump to rebuild the tree from
+    SentryAuthzCheckpoint checkpoint = new SentryAuthzCheckpoint(baseDir, PREFIXES);
+    checkpoint.save(new SentryAuthzCheckpoint.Image(new PathsUpdate(5, 2, true),
+        authzPermissions.createFullImageUpdate(7)));
+    assertNotNull(checkpoint.load());
+
+    Configuration conf = new Configuration(false);
+    conf.setStrings(SentryAuthorizationConstants.HDFS_PATH_PREFIXES_KEY, PREFIXES);
+    conf.set(SentryAuthorizationConstants.CHECKPOINT_DIR_KEY, baseDir.getPath());
+    SentryAuthorizationInfo authzInfo = new SentryAuthorizationInfo(conf);
+    assertFalse(authzInfo.loadCheckpoint());
+    assertFalse(checkpoint.getFile().exists());
+
+    // Nothing was applied, so a full image is requested from Sentry
+    assertNotNull(authzInfo.getAuthzPaths());
+    assertNotNull(authzInfo.getAuthzPermissions());
+    assertEquals(ServiceConstants.SEQUENCE_NUMBER_UPDATE_UNINITIALIZED,
+        authzInfo.getAuthzPaths().getLastUpdatedSeqNum());
+    assertEquals(ServiceConstants.SEQUENCE_NUMBER_UPDATE_UNINITIALIZED,
+        authzInfo.getAuthzPermissions().getLastUpdatedSeqNum());
+  }
+
+  @Test
+  public void testLoadOtherFormatVersion() throws Exception {
+    SentryAuthzCheckpoint checkpoint = new SentryAuthzCheckpoint(baseDir, PREFIXES);
+    checkpoint.save(authzPaths, authzPermissions);
+
+    try (RandomAccessFile raf = new RandomAccessFile(checkpoint.getFile(), "rw")) {
+      raf.seek(4);
+      raf.writeInt(SentryAuthzCheckpoint.FORMAT_VERSION + 1);
+    }
+    assertNull(checkpoint.load());
+  }
+}
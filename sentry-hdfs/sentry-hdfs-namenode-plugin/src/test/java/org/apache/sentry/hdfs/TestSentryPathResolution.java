@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.hdfs;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.AclEntry;
+import org.apache.hadoop.fs.permission.AclEntryScope;
+import org.apache.hadoop.fs.permission.AclEntryType;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.AclStorage;
+import org.apache.hadoop.hdfs.server.namenode.INodeAttributes;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how {@link SentryAuthorizationInfo} resolves Sentry managed paths, and the
+ * inode attributes {@link SentryINodeAttributesProvider} builds from the resolutions.
+ */
+public class TestSentryPathResolution {
+  private static final String[] PREFIXES = {"/user/hive/warehouse"};
+  private static final String[] PREFIX_PATH = {"user", "hive", "warehouse"};
+  private static final String[] TBL_PATH = {"user", "hive", "warehouse", "db1", "tbl1"};
+
+  private ReentrantReadWriteLock lock;
+  private boolean stale;
+  private SentryAuthorizationInfo authzInfo;
+
+  @Before
+  public void setup() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setStrings(SentryAuthorizationConstants.HDFS_PATH_PREFIXES_KEY, PREFIXES);
+    authzInfo = new SentryAuthorizationInfo(conf) {
+      @Override
+      public void start() {
+      }
+
+      @Override
+      public void stop() {
+      }
+
+      @Override
+      public boolean isStale() {
+        return stale;
+      }
+    };
+    lock = new ReentrantReadWriteLock();
+
+    // The default db is at the prefix
+    PathsUpdate pathsUpdate = new PathsUpdate(1, 1, false);
+    pathsUpdate.newPathChange("default").addToAddPaths(Lists.newArrayList(PREFIX_PATH));
+    pathsUpdate.newPathChange("db1.tbl1").addToAddPaths(Lists.newArrayList(TBL_PATH));
+    authzInfo.getAuthzPaths().updatePartial(Lists.newArrayList(pathsUpdate), lock);
+    grant(1, "role1", "group1", "db1.tbl1");
+  }
+
+  private void grant(long seqNum, String roleName, String groupName, String authzObj) {
+    PermissionsUpdate permsUpdate = new PermissionsUpdate(seqNum, false);
+    permsUpdate.addPrivilegeUpdate(authzObj).putToAddPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName), "SELECT");
+    permsUpdate.addRoleUpdate(roleName).addToAddGroups(groupName);
+    authzInfo.getAuthzPermissions().updatePartial(Lists.newArrayList(permsUpdate), lock);
+  }
+
+  @Test
+  public void testResolve() throws Exception {
+    String[] partPath = {"user", "hive", "warehouse", "db1", "tbl1", "part1"};
+    SentryAuthorizationInfo.PathResolution resolution = authzInfo.resolve(partPath);
+    assertFalse(resolution.isPathPrefix());
+    assertEquals(Sets.newHashSet("db1.tbl1"), resolution.getAuthzObjs());
+
+    resolution = authzInfo.resolve(PREFIX_PATH);
+    assertTrue(resolution.isPathPrefix());
+    assertEquals(Sets.newHashSet("default"), resolution.getAuthzObjs());
+
+    assertNull(authzInfo.resolve(new String[] {"user", "hive"}));
+    assertNull(authzInfo.resolve(new String[] {"tmp", "db1"}));
+  }
+
+  @Test
+  public void testAclEntriesAreLookedUpWhenAskedFor() throws Exception {
+    SentryAuthorizationInfo.PathResolution resolution = authzInfo.resolve(TBL_PATH);
+
+    // Granted after the path was resolved, but before its ACL entries are asked for
+    grant(2, "role2", "group2", "db1.tbl1");
+    List<AclEntry> aclEntries = resolution.getAclEntries();
+    assertEquals(new HashSet<>(authzInfo.getAclEntries(TBL_PATH)), new HashSet<>(aclEntries));
+    assertTrue(aclEntries.contains(groupEntry("group1", FsAction.READ_EXECUTE)));
+    assertTrue(aclEntries.contains(groupEntry("group2", FsAction.READ_EXECUTE)));
+
+    // Then kept
+    grant(3, "role3", "group3", "db1.tbl1");
+    assertEquals(new HashSet<>(aclEntries), new HashSet<>(resolution.getAclEntries()));
+  }
+
+  @Test
+  public void testAttributes() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+    conf.setLong(SentryAuthorizationConstants.HDFS_PERMISSION_KEY, 0770);
+    SentryINodeAttributesProvider provider = new SentryINodeAttributesProvider(authzInfo);
+    provider.setConf(conf);
+    provider.start();
+
+    INodeAttributes inode = newINode("tbl1");
+    INodeAttributes attributes = provider.getAttributes(TBL_PATH, inode);
+    assertEquals("hive", attributes.getUserName());
+    assertEquals("hive", attributes.getGroupName());
+    assertEquals(new FsPermission((short) 0770), attributes.getFsPermission());
+    assertEquals(newINode("tbl1", "hive", "hive", (short) 0770).getPermissionLong(),
+        attributes.getPermissionLong());
+    List<AclEntry> aclEntries = AclStorage.readINodeAcl(attributes);
+    assertTrue(aclEntries.contains(groupEntry("group1", FsAction.READ_EXECUTE)));
+    assertSame(attributes.getAclFeature(), attributes.getAclFeature());
+
+    // The prefix must also be traversable
+    attributes = provider.getAttributes(PREFIX_PATH, newINode("warehouse"));
+    assertEquals(new FsPermission((short) 0771), attributes.getFsPermission());
+    assertEquals((short) 0771, attributes.getFsPermissionShort());
+    assertEquals(newINode("warehouse", "hive", "hive", (short) 0771).getPermissionLong(),
+        attributes.getPermissionLong());
+
+    // Stale authz info only gives the hive ACL entries
+    stale = true;
+    aclEntries = AclStorage.readINodeAcl(provider.getAttributes(TBL_PATH, inode));
+    assertFalse(aclEntries.contains(groupEntry("group1", FsAction.READ_EXECUTE)));
+
+    // Paths not managed by Sentry keep their attributes
+    assertSame(inode, provider.getAttributes(new String[] {"tmp", "tbl1"}, inode));
+    provider.stop();
+  }
+
+  private static INodeDirectory newINode(String name) {
+    return newINode(name, "hdfs", "supergroup", (short) 0755);
+  }
+
+  private static INodeDirectory newINode(String name, String user, String group,
+      short permission) {
+    return new INodeDirectory(0L, name.getBytes(),
+        new PermissionStatus(user, group, new FsPermission(permission)), 0L);
+  }
+
+  private static AclEntry groupEntry(String groupName, FsAction action) {
+    return new AclEntry.Builder().setName(groupName).setType(AclEntryType.GROUP)
+        .setScope(AclEntryScope.ACCESS).setPermission(action).build();
+  }
+}
@@ -23,6 +23,8 @@ import static org.apache.sentry.hdfs.ServiceConstants.SEQUENCE_NUMBER_FULL_UPDAT
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.apache.sentry.api.common.SentryServiceUtil;
@@ -33,6 +35,11 @@ import org.apache.sentry.service.thrift.SentryStateBank;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * DBUpdateForwarder propagates a complete snapshot or delta update of either
  * Sentry Permissions ({@code PermissionsUpdate}) or Sentry representation of
@@ -46,6 +53,10 @@ class DBUpdateForwarder<K extends Updateable.Update> {
 
   private final ImageRetriever<K> imageRetriever;
   private final DeltaRetriever<K> deltaRetriever;
+  private final DeltaCoalescer<K> deltaCoalescer;
+  // Coalesced deltas of the recently requested ranges, shared by the NameNodes
+  // requesting the same range
+  private final Cache<DeltaRange, List<K>> coalescedDeltas;
   private static final Logger LOGGER = LoggerFactory.getLogger(DBUpdateForwarder.class);
 
   //For logging purposes
@@ -53,8 +64,24 @@ class DBUpdateForwarder<K extends Updateable.Update> {
 
   DBUpdateForwarder(final ImageRetriever<K> imageRetriever,
       final DeltaRetriever<K> deltaRetriever) {
+    this(imageRetriever, deltaRetriever, null, 0);
+  }
+
+  /**
+   * @param imageRetriever retrieves full images
+   * @param deltaRetriever retrieves deltas
+   * @param deltaCoalescer coalesces the retrieved deltas, null to return them as they are
+   * @param cacheSize the maximum number of ranges of coalesced deltas cached
+   */
+  DBUpdateForwarder(final ImageRetriever<K> imageRetriever,
+      final DeltaRetriever<K> deltaRetriever, final DeltaCoalescer<K> deltaCoalescer,
+      int cacheSize) {
     this.imageRetriever = imageRetriever;
     this.deltaRetriever = deltaRetriever;
+    this.deltaCoalescer = deltaCoalescer;
+    this.coalescedDeltas = deltaCoalescer != null ?
+        CacheBuilder.newBuilder().maximumSize(Math.max(cacheSize, 0))
+            .<DeltaRange, List<K>>build() : null;
     this.retrieverType = imageRetriever.getClass().getName();
   }
 
@@ -126,7 +153,7 @@ class DBUpdateForwarder<K extends Updateable.Update> {
     // Checks if newer deltas exist in the persistent storage.
     // If there are, return the list of delta updates.
     if (seqNum > SEQUENCE_NUMBER_FULL_UPDATE_REQUEST && deltaRetriever.isDeltaAvailable(seqNum)) {
-      List<K> deltas = deltaRetriever.retrieveDelta(seqNum, imgNum);
+      List<K> deltas = retrieveDelta(seqNum, imgNum, curSeqNum);
       if (!deltas.isEmpty()) {
         LOGGER.info("({}) Newer delta updates are found up to sequence number {} and being sent to HDFS", retrieverType, curSeqNum);
         return deltas;
@@ -149,6 +176,53 @@ class DBUpdateForwarder<K extends Updateable.Update> {
     return fullImage;
   }
 
+  /**
+   * Checks if there are deltas newer than the given sequence number, e.g. because
+   * {@link #getAllUpdatesFrom(long, long)} returned a bounded list of deltas.
+   *
+   * @param seqNum the sequence number of the last update returned
+   * @return true if newer deltas exist in the persistent storage
+   */
+  boolean hasUpdatesAfter(long seqNum) throws Exception {
+    return deltaRetriever.getLatestDeltaID() > seqNum;
+  }
+
+  /**
+   * Retrieves the deltas from the given sequence number, coalesced if a coalescer is set.
+   * Deltas are not modified once persisted, so the coalesced deltas of a range, up to
+   * the latest delta ID, are cached and shared by the NameNodes requesting that range.
+   */
+  private List<K> retrieveDelta(final long seqNum, final long imgNum, long curSeqNum)
+      throws Exception {
+    if (deltaCoalescer == null) {
+      return deltaRetriever.retrieveDelta(seqNum, imgNum);
+    }
+    DeltaRange range = new DeltaRange(seqNum, imgNum, curSeqNum);
+    List<K> deltas;
+    try {
+      deltas = coalescedDeltas.get(range, new Callable<List<K>>() {
+        @Override
+        public List<K> call() throws Exception {
+          List<K> retrieved = deltaRetriever.retrieveDelta(seqNum, imgNum);
+          List<K> coalesced = deltaCoalescer.coalesce(retrieved);
+          LOGGER.debug("({}) Coalesced {} delta updates from sequence number {} into {}",
+              retrieverType, retrieved.size(), seqNum, coalesced.size());
+          return Collections.unmodifiableList(coalesced);
+        }
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+    if (deltas.isEmpty()) {
+      // A full update follows, there is nothing to share
+      coalescedDeltas.invalidate(range);
+    }
+    return deltas;
+  }
+
   private List<K> retrieveFullImage() throws Exception {
     if (SentryStateBank.isEnabled(SentryServiceState.COMPONENT, SentryServiceState.FULL_UPDATE_RUNNING)){
       LOGGER.debug("({}) A full update is being loaded. Delaying updating client with full image until its finished.", retrieverType);
@@ -174,4 +248,34 @@ class DBUpdateForwarder<K extends Updateable.Update> {
       }
     }
   }
+
+  /**
+   * A range of deltas requested by a NameNode.
+   */
+  private static final class DeltaRange {
+    private final long seqNum;
+    private final long imgNum;
+    private final long latestSeqNum;
+
+    DeltaRange(long seqNum, long imgNum, long latestSeqNum) {
+      this.seqNum = seqNum;
+      this.imgNum = imgNum;
+      this.latestSeqNum = latestSeqNum;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof DeltaRange)) {
+        return false;
+      }
+      DeltaRange other = (DeltaRange) obj;
+      return seqNum == other.seqNum && imgNum == other.imgNum &&
+          latestSeqNum == other.latestSeqNum;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(seqNum, imgNum, latestSeqNum);
+    }
+  }
 }
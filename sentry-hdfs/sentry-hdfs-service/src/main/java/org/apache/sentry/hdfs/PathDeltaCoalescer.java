@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.sentry.hdfs.service.thrift.TPathChanges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * PathDeltaCoalescer folds consecutive {@link PathsUpdate} deltas into a single
+ * update with at most one {@link TPathChanges} per authz object.
+ * <p>
+ * The NameNode applies the deleted paths of all the changes of an update before
+ * the added paths, see {@code UpdateableAuthzPaths}. The coalesced update keeps
+ * that order valid:
+ * <ul>
+ *   <li>a path added and later deleted is only deleted, as it may have existed
+ *   before the first update;</li>
+ *   <li>deleting all the paths of an authz object, e.g. on drop table, discards
+ *   its earlier changes;</li>
+ *   <li>renames, which the NameNode recognizes by the shape of the update, and
+ *   full images are never coalesced, they end the current batch;</li>
+ *   <li>a batch also ends before a path is deleted under, or above, a path added
+ *   to the same authz object earlier in the batch, since the NameNode resolves
+ *   deleted paths to their closest authz object entry.</li>
+ * </ul>
+ */
+@ThreadSafe
+public class PathDeltaCoalescer implements DeltaCoalescer<PathsUpdate> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PathDeltaCoalescer.class);
+
+  @Override
+  public List<PathsUpdate> coalesce(List<PathsUpdate> updates) {
+    if (updates.size() < 2) {
+      return updates;
+    }
+    List<PathsUpdate> coalesced = new ArrayList<>();
+    Batch batch = new Batch();
+    for (PathsUpdate update : updates) {
+      if (update.hasFullImage() || isRename(update)) {
+        batch.flushTo(coalesced);
+        coalesced.add(update);
+        continue;
+      }
+      if (!batch.canAdd(update)) {
+        batch.flushTo(coalesced);
+      }
+      batch.add(update);
+    }
+    batch.flushTo(coalesced);
+    LOGGER.debug("Coalesced {} path updates into {}", updates.size(), coalesced.size());
+    return coalesced;
+  }
+
+  /**
+   * @return true if the NameNode applies the update as a rename, which happens for
+   * exactly two path changes, one adding a single path and the other deleting a
+   * single path, on different authz objects
+   */
+  static boolean isRename(PathsUpdate update) {
+    List<TPathChanges> pathChanges = update.getPathChanges();
+    if (pathChanges == null || pathChanges.size() != 2) {
+      return false;
+    }
+    TPathChanges newPathInfo = null;
+    TPathChanges oldPathInfo = null;
+    if (pathChanges.get(0).getAddPathsSize() == 1 && pathChanges.get(1).getDelPathsSize() == 1) {
+      newPathInfo = pathChanges.get(0);
+      oldPathInfo = pathChanges.get(1);
+    } else if (pathChanges.get(1).getAddPathsSize() == 1 &&
+        pathChanges.get(0).getDelPathsSize() == 1) {
+      newPathInfo = pathChanges.get(1);
+      oldPathInfo = pathChanges.get(0);
+    }
+    return newPathInfo != null && oldPathInfo != null &&
+        !newPathInfo.getAuthzObj().equalsIgnoreCase(oldPathInfo.getAuthzObj());
+  }
+
+  private static boolean isAllPaths(List<List<String>> paths) {
+    return paths.size() == 1 && paths.get(0).size() == 1 &&
+        paths.get(0).get(0).equals(PathsUpdate.ALL_PATHS);
+  }
+
+  /**
+   * Consecutive updates being coalesced.
+   */
+  private static final class Batch {
+    private final List<PathsUpdate> updates = new ArrayList<>();
+    // Authz objects are case insensitive on the NameNode
+    private final Map<String, ObjectChanges> changes =
+        new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * @return false if a path deleted by the update is related to a path added
+     * to the same authz object earlier in the batch
+     */
+    boolean canAdd(PathsUpdate update) {
+      for (TPathChanges pathChanges : update.getPathChanges()) {
+        ObjectChanges objectChanges = changes.get(pathChanges.getAuthzObj());
+        if (objectChanges == null || pathChanges.getDelPathsSize() == 0 ||
+            isAllPaths(pathChanges.getDelPaths())) {
+          continue;
+        }
+        for (List<String> path : pathChanges.getDelPaths()) {
+          if (objectChanges.isRelatedToAddedPath(path)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    void add(PathsUpdate update) {
+      updates.add(update);
+      // Same order as the NameNode: the deletions of all changes, then the additions
+      for (TPathChanges pathChanges : update.getPathChanges()) {
+        if (pathChanges.getDelPathsSize() > 0) {
+          getObjectChanges(pathChanges.getAuthzObj()).delete(pathChanges.getDelPaths());
+        }
+      }
+      for (TPathChanges pathChanges : update.getPathChanges()) {
+        if (pathChanges.getAddPathsSize() > 0) {
+          getObjectChanges(pathChanges.getAuthzObj()).add(pathChanges.getAddPaths());
+        }
+      }
+    }
+
+    private ObjectChanges getObjectChanges(String authzObj) {
+      ObjectChanges objectChanges = changes.get(authzObj);
+      if (objectChanges == null) {
+        objectChanges = new ObjectChanges(authzObj);
+        changes.put(authzObj, objectChanges);
+      }
+      return objectChanges;
+    }
+
+    void flushTo(List<PathsUpdate> coalesced) {
+      if (updates.size() == 1) {
+        coalesced.add(updates.get(0));
+      } else if (updates.size() > 1) {
+        PathsUpdate last = updates.get(updates.size() - 1);
+        PathsUpdate update = new PathsUpdate(last.getSeqNum(), last.getImgNum(), false);
+        for (ObjectChanges objectChanges : changes.values()) {
+          objectChanges.addTo(update);
+        }
+        if (isRename(update)) {
+          // Would be misread as a rename by the NameNode
+          coalesced.addAll(updates);
+        } else {
+          coalesced.add(update);
+        }
+      }
+      updates.clear();
+      changes.clear();
+    }
+  }
+
+  /**
+   * The net changes to the paths of an authz object.
+   */
+  private static final class ObjectChanges {
+    private final String authzObj;
+    private boolean deleteAll;
+    private final Set<List<String>> delPaths = new LinkedHashSet<>();
+    private final Set<List<String>> addPaths = new LinkedHashSet<>();
+    // Ancestors of the added paths, not updated on deletion
+    private final Set<List<String>> addPathAncestors = new HashSet<>();
+
+    ObjectChanges(String authzObj) {
+      this.authzObj = authzObj;
+    }
+
+    void delete(List<List<String>> paths) {
+      if (isAllPaths(paths)) {
+        deleteAll = true;
+        delPaths.clear();
+        addPaths.clear();
+        addPathAncestors.clear();
+        return;
+      }
+      for (List<String> path : paths) {
+        addPaths.remove(path);
+        if (!deleteAll) {
+          delPaths.add(path);
+        }
+      }
+    }
+
+    void add(List<List<String>> paths) {
+      for (List<String> path : paths) {
+        addPaths.add(path);
+        for (int i = 1; i < path.size(); i++) {
+          addPathAncestors.add(new ArrayList<>(path.subList(0, i)));
+        }
+      }
+    }
+
+    boolean isRelatedToAddedPath(List<String> path) {
+      if (addPathAncestors.contains(path)) {
+        return true;
+      }
+      for (int i = 1; i < path.size(); i++) {
+        if (addPaths.contains(path.subList(0, i))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void addTo(PathsUpdate update) {
+      if (!deleteAll && delPaths.isEmpty() && addPaths.isEmpty()) {
+        return;
+      }
+      TPathChanges pathChanges = update.newPathChange(authzObj);
+      if (deleteAll) {
+        pathChanges.addToDelPaths(Lists.newArrayList(PathsUpdate.ALL_PATHS));
+      } else {
+        for (List<String> path : delPaths) {
+          pathChanges.addToDelPaths(path);
+        }
+      }
+      for (List<String> path : addPaths) {
+        pathChanges.addToAddPaths(path);
+      }
+    }
+  }
+}
@@ -38,16 +38,32 @@ import java.util.List;
 public class PathDeltaRetriever implements DeltaRetriever<PathsUpdate> {
 
   private final SentryStoreInterface sentryStore;
+  // Bounds on the number and the size of the deltas returned at once, unbounded if not positive
+  private final int maxDeltas;
+  private final long maxDeltaBytes;
 
   PathDeltaRetriever(SentryStoreInterface sentryStore) {
+    this(sentryStore, 0, 0);
+  }
+
+  /**
+   * @param sentryStore the store to retrieve the deltas from
+   * @param maxDeltas maximum number of deltas returned at once
+   * @param maxDeltaBytes maximum total size of the deltas returned at once, at least one
+   *                      delta is returned regardless of its size
+   */
+  PathDeltaRetriever(SentryStoreInterface sentryStore, int maxDeltas, long maxDeltaBytes) {
     this.sentryStore = sentryStore;
+    this.maxDeltas = maxDeltas;
+    this.maxDeltaBytes = maxDeltaBytes;
   }
 
   @Override
   public List<PathsUpdate> retrieveDelta(long seqNum, long imgNum) throws Exception {
     try (final Context timerContext =
                  SentryHdfsMetricsUtil.getDeltaPathChangesTimer.time()) {
-      List<MSentryPathChange> mSentryPathChanges =
+      List<MSentryPathChange> mSentryPathChanges = maxDeltas > 0 ?
+              sentryStore.getMSentryPathChanges(seqNum, maxDeltas) :
               sentryStore.getMSentryPathChanges(seqNum);
 
       SentryHdfsMetricsUtil.getDeltaPathChangesHistogram.update(mSentryPathChanges.size());
@@ -57,14 +73,20 @@ public class PathDeltaRetriever implements DeltaRetriever<PathsUpdate> {
       }
 
       List<PathsUpdate> updates = new ArrayList<>(mSentryPathChanges.size());
+      long totalBytes = 0;
       for (MSentryPathChange mSentryPathChange : mSentryPathChanges) {
+        // The size of the change in the Thrift compact protocol, or of its legacy JSON
+        // form which is larger, is a safe estimate of the response size.
+        totalBytes += mSentryPathChange.getPathChangeSize();
+        if (maxDeltaBytes > 0 && totalBytes > maxDeltaBytes && !updates.isEmpty()) {
+          // The remaining deltas are returned by the next request
+          break;
+        }
         // Gets the changeID from the persisted MSentryPathChange.
         long changeID = mSentryPathChange.getChangeID();
-        // Creates a corresponding PathsUpdate and deserialize the
-        // persisted delta update in JSON format to TPathsUpdate with
-        // associated changeID.
-        PathsUpdate pathsUpdate = new PathsUpdate();
-        pathsUpdate.JSONDeserialize(mSentryPathChange.getPathChange());
+        // Deserializes the persisted delta update to a corresponding
+        // PathsUpdate with associated changeID.
+        PathsUpdate pathsUpdate = mSentryPathChange.getPathsUpdate();
         pathsUpdate.setSeqNum(changeID);
         pathsUpdate.setImgNum(imgNum);
         updates.add(pathsUpdate);
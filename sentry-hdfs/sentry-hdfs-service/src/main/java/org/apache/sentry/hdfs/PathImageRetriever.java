@@ -18,27 +18,68 @@
 package org.apache.sentry.hdfs;
 
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.sentry.provider.db.service.persistent.SentryStoreInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * PathImageRetriever obtains a complete snapshot of Hive Paths from a persistent
  * storage and translates it into {@code PathsUpdate} that the consumers, such as
  * HDFS NameNode, can understand.
  * <p>
- * It is a thread safe class, as all the underlying database operation is thread safe.
+ * Optionally, the snapshot is kept in memory, updated with the path deltas persisted
+ * since it was read, so that a full image only reads the new deltas instead of all the
+ * paths. The snapshot is read again when the HMS snapshot it comes from is replaced,
+ * when the deltas it needs are no longer available, or when it is older than the
+ * rebuild interval.
+ * <p>
+ * It is a thread safe class, as all the underlying database operation is thread safe
+ * and the access to the cached snapshot is synchronized.
  */
 @ThreadSafe
 class PathImageRetriever implements ImageRetriever<PathsUpdate> {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(PathImageRetriever.class);
+
+  // Maximum number of deltas applied to the cached snapshot per database read
+  private static final int MAX_DELTAS_PER_READ = 1000;
+
   private final SentryStoreInterface sentryStore;
   /** List of prefixes managed by Sentry */
   private final String[] prefixes;
+  private final PathDeltaRetriever deltaRetriever;
+  private final boolean cacheEnabled;
+  private final long cacheRebuildIntervalNs;
+  // Only guards the updates of the cached snapshot, which the monitor already serializes
+  private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+
+  private UpdateableAuthzPaths cache;
+  private long cacheBuiltNs;
 
   PathImageRetriever(SentryStoreInterface sentryStore, String[] prefixes) {
+    this(sentryStore, prefixes, false, 0);
+  }
+
+  /**
+   * @param sentryStore the store to retrieve the snapshot and the deltas from
+   * @param prefixes path of Sentry managed prefixes
+   * @param cacheEnabled whether to keep the snapshot in memory
+   * @param cacheRebuildIntervalMs maximum age of the snapshot kept in memory, unbounded
+   *                               if not positive
+   */
+  PathImageRetriever(SentryStoreInterface sentryStore, String[] prefixes,
+      boolean cacheEnabled, long cacheRebuildIntervalMs) {
     this.sentryStore = sentryStore;
     this.prefixes = prefixes;
+    this.deltaRetriever = new PathDeltaRetriever(sentryStore, MAX_DELTAS_PER_READ, 0);
+    this.cacheEnabled = cacheEnabled;
+    this.cacheRebuildIntervalNs = TimeUnit.MILLISECONDS.toNanos(cacheRebuildIntervalMs);
   }
 
   @Override
@@ -49,8 +90,69 @@ class PathImageRetriever implements ImageRetriever<PathsUpdate> {
   public PathsUpdate retrieveFullImage() throws Exception {
     try (final Timer.Context timerContext =
         SentryHdfsMetricsUtil.getRetrievePathFullImageTimer.time()) {
-      return sentryStore.retrieveFullPathsImageUpdate(prefixes);
+      if (!cacheEnabled) {
+        return sentryStore.retrieveFullPathsImageUpdate(prefixes);
+      }
+      synchronized (this) {
+        UpdateableAuthzPaths paths = getCache();
+        PathsUpdate pathsUpdate = new PathsUpdate(paths.getLastUpdatedSeqNum(),
+            paths.getLastUpdatedImgNum(), true);
+        pathsUpdate.toThrift().setPathsDump(paths.getPathsDump().createPathsDump(true));
+        return pathsUpdate;
+      }
+    }
+  }
+
+  /**
+   * @return the cached snapshot, updated with the latest deltas
+   */
+  @VisibleForTesting
+  synchronized UpdateableAuthzPaths getCache() throws Exception {
+    if (cache != null && cacheRebuildIntervalNs > 0 &&
+        System.nanoTime() - cacheBuiltNs >= cacheRebuildIntervalNs) {
+      LOGGER.info("Cached path image is older than {} ms, reading it again",
+          TimeUnit.NANOSECONDS.toMillis(cacheRebuildIntervalNs));
+      cache = null;
+    }
+    if (cache != null && cache.getLastUpdatedImgNum() != sentryStore.getLastProcessedImageID()) {
+      LOGGER.info("HMS snapshot {} of the cached path image was replaced, reading it again",
+          cache.getLastUpdatedImgNum());
+      cache = null;
+    }
+    if (cache != null && !catchUp(cache)) {
+      LOGGER.info("Path deltas after change ID {} are missing, reading the path image again",
+          cache.getLastUpdatedSeqNum());
+      cache = null;
+    }
+    if (cache == null) {
+      cacheBuiltNs = System.nanoTime();
+      PathsUpdate fullImage = sentryStore.retrieveFullPathsImageUpdate(prefixes);
+      UpdateableAuthzPaths newCache = new UpdateableAuthzPaths(prefixes).updateFull(fullImage);
+      // Deltas persisted since the snapshot was read
+      catchUp(newCache);
+      LOGGER.info("Cached path image of HMS snapshot {} at change ID {}",
+          newCache.getLastUpdatedImgNum(), newCache.getLastUpdatedSeqNum());
+      cache = newCache;
+    }
+    return cache;
+  }
+
+  /**
+   * Applies the deltas persisted after the ones the cached snapshot includes.
+   *
+   * @return false if some of those deltas are missing
+   */
+  private boolean catchUp(UpdateableAuthzPaths paths) throws Exception {
+    long latestSeqNum = sentryStore.getLastProcessedPathChangeID();
+    while (paths.getLastUpdatedSeqNum() < latestSeqNum) {
+      List<PathsUpdate> updates = deltaRetriever.retrieveDelta(
+          paths.getLastUpdatedSeqNum() + 1, paths.getLastUpdatedImgNum());
+      if (updates.isEmpty()) {
+        return false;
+      }
+      paths.updatePartial(updates, cacheLock);
     }
+    return true;
   }
 
   @Override
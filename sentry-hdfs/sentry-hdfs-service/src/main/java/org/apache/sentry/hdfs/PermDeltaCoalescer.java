@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PermDeltaCoalescer folds consecutive {@link PermissionsUpdate} deltas that only
+ * grant privileges and add groups to roles into a single update with one
+ * {@link TPrivilegeChanges} per authz object and one {@link TRoleChanges} per role.
+ * <p>
+ * Grants and group additions commute: the NameNode ORs granted actions into the
+ * existing ones and adds groups to a set. Revokes do not, as the NameNode applies
+ * them recursively to the child authz objects existing at that time, and neither
+ * do renames and role drops. Updates with any of those are returned as they are,
+ * and end the current batch.
+ */
+@ThreadSafe
+public class PermDeltaCoalescer implements DeltaCoalescer<PermissionsUpdate> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PermDeltaCoalescer.class);
+
+  private static final String ACTION_SEPARATOR = ",";
+
+  @Override
+  public List<PermissionsUpdate> coalesce(List<PermissionsUpdate> updates) {
+    if (updates.size() < 2) {
+      return updates;
+    }
+    List<PermissionsUpdate> coalesced = new ArrayList<>();
+    List<PermissionsUpdate> batch = new ArrayList<>();
+    for (PermissionsUpdate update : updates) {
+      if (isAddOnly(update)) {
+        batch.add(update);
+      } else {
+        flush(batch, coalesced);
+        coalesced.add(update);
+      }
+    }
+    flush(batch, coalesced);
+    LOGGER.debug("Coalesced {} perm updates into {}", updates.size(), coalesced.size());
+    return coalesced;
+  }
+
+  private static boolean isAddOnly(PermissionsUpdate update) {
+    if (update.hasFullImage()) {
+      return false;
+    }
+    for (TPrivilegeChanges privChanges : update.getPrivilegeUpdates()) {
+      if (privChanges.getDelPrivilegesSize() > 0 ||
+          privChanges.getAuthzObj().equals(PermissionsUpdate.RENAME_PRIVS) ||
+          privChanges.getAuthzObj().equals(PermissionsUpdate.ALL_AUTHZ_OBJ)) {
+        return false;
+      }
+    }
+    for (TRoleChanges roleChanges : update.getRoleUpdates()) {
+      if (roleChanges.getDelGroupsSize() > 0 ||
+          roleChanges.getRole().equals(PermissionsUpdate.ALL_ROLES)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void flush(List<PermissionsUpdate> batch, List<PermissionsUpdate> coalesced) {
+    if (batch.size() == 1) {
+      coalesced.add(batch.get(0));
+    } else if (batch.size() > 1) {
+      PermissionsUpdate last = batch.get(batch.size() - 1);
+      PermissionsUpdate update = new PermissionsUpdate(last.getSeqNum(), false);
+      for (PermissionsUpdate batchUpdate : batch) {
+        for (TPrivilegeChanges privChanges : batchUpdate.getPrivilegeUpdates()) {
+          TPrivilegeChanges merged = update.addPrivilegeUpdate(privChanges.getAuthzObj());
+          if (privChanges.getAddPrivilegesSize() == 0) {
+            continue;
+          }
+          for (Map.Entry<TPrivilegePrincipal, String> priv :
+              privChanges.getAddPrivileges().entrySet()) {
+            String actions = merged.getAddPrivileges().get(priv.getKey());
+            merged.putToAddPrivileges(priv.getKey(), mergeActions(actions, priv.getValue()));
+          }
+        }
+        for (TRoleChanges roleChanges : batchUpdate.getRoleUpdates()) {
+          TRoleChanges merged = update.addRoleUpdate(roleChanges.getRole());
+          if (roleChanges.getAddGroupsSize() == 0) {
+            continue;
+          }
+          for (String group : roleChanges.getAddGroups()) {
+            if (!merged.getAddGroups().contains(group)) {
+              merged.addToAddGroups(group);
+            }
+          }
+        }
+      }
+      coalesced.add(update);
+    }
+    batch.clear();
+  }
+
+  /**
+   * @return the union of two comma separated lists of actions, which the NameNode
+   * maps to the OR of their file system actions
+   */
+  static String mergeActions(String actions, String newActions) {
+    if (actions == null) {
+      return newActions;
+    }
+    StringBuilder merged = new StringBuilder(actions);
+    for (String action : newActions.split(ACTION_SEPARATOR)) {
+      boolean found = false;
+      for (String existing : actions.split(ACTION_SEPARATOR)) {
+        if (existing.trim().equalsIgnoreCase(action.trim())) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        merged.append(ACTION_SEPARATOR).append(action);
+      }
+    }
+    return merged.toString();
+  }
+}
@@ -39,16 +39,32 @@ import java.util.List;
 public class PermDeltaRetriever implements DeltaRetriever<PermissionsUpdate> {
 
   private final SentryStoreInterface sentryStore;
+  // Bounds on the number and the size of the deltas returned at once, unbounded if not positive
+  private final int maxDeltas;
+  private final long maxDeltaBytes;
 
   PermDeltaRetriever(SentryStoreInterface sentryStore) {
+    this(sentryStore, 0, 0);
+  }
+
+  /**
+   * @param sentryStore the store to retrieve the deltas from
+   * @param maxDeltas maximum number of deltas returned at once
+   * @param maxDeltaBytes maximum total size of the deltas returned at once, at least one
+   *                      delta is returned regardless of its size
+   */
+  PermDeltaRetriever(SentryStoreInterface sentryStore, int maxDeltas, long maxDeltaBytes) {
     this.sentryStore = sentryStore;
+    this.maxDeltas = maxDeltas;
+    this.maxDeltaBytes = maxDeltaBytes;
   }
 
   @Override
   public List<PermissionsUpdate> retrieveDelta(long seqNum, long imgNum) throws Exception {
     try (final Context timerContext =
                  SentryHdfsMetricsUtil.getDeltaPermChangesTimer.time()) {
-      Collection<MSentryPermChange> mSentryPermChanges =
+      Collection<MSentryPermChange> mSentryPermChanges = maxDeltas > 0 ?
+              sentryStore.getMSentryPermChanges(seqNum, maxDeltas) :
               sentryStore.getMSentryPermChanges(seqNum);
 
       SentryHdfsMetricsUtil.getDeltaPermChangesHistogram.update(mSentryPermChanges.size());
@@ -58,14 +74,20 @@ public class PermDeltaRetriever implements DeltaRetriever<PermissionsUpdate> {
       }
 
       List<PermissionsUpdate> updates = new ArrayList<>(mSentryPermChanges.size());
+      long totalBytes = 0;
       for (MSentryPermChange mSentryPermChange : mSentryPermChanges) {
+        // The size of the change in the Thrift compact protocol, or of its legacy JSON
+        // form which is larger, is a safe estimate of the response size.
+        totalBytes += mSentryPermChange.getPermChangeSize();
+        if (maxDeltaBytes > 0 && totalBytes > maxDeltaBytes && !updates.isEmpty()) {
+          // The remaining deltas are returned by the next request
+          break;
+        }
         // Get the changeID from the persisted MSentryPermChange
         long changeID = mSentryPermChange.getChangeID();
-        // Create a corresponding PermissionsUpdate and deserialize the
-        // persisted delta update in JSON format to TPermissionsUpdate with
-        // associated changeID.
-        PermissionsUpdate permsUpdate = new PermissionsUpdate();
-        permsUpdate.JSONDeserialize(mSentryPermChange.getPermChange());
+        // Deserialize the persisted delta update to a corresponding
+        // PermissionsUpdate with associated changeID.
+        PermissionsUpdate permsUpdate = mSentryPermChange.getPermissionsUpdate();
         permsUpdate.setSeqNum(changeID);
         Collection<TPrivilegeChanges> privChanges = permsUpdate.getPrivilegeUpdates();
         for(TPrivilegeChanges privChange : privChanges) {
@@ -0,0 +1,301 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import org.apache.sentry.core.model.db.AccessConstants;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PermImageCache is an in-memory image of the Sentry permissions synchronized with
+ * the NameNodes: the Sentry actions of each principal on each authz object, and the
+ * groups of each role.
+ * <p>
+ * It is built from a full image and kept current with the perm deltas. A delta only
+ * names the action granted or revoked, so revokes are applied the way the
+ * {@code SentryStore} applies them to the privileges: revoking SELECT or INSERT from
+ * ALL granted as {@code *} leaves the other one, revoking ALL only removes the same
+ * action on the object itself but every action on its tables, and revoking any other
+ * action only removes that action.
+ * A full image produced from it then carries the same Sentry actions as one read from
+ * the store, and is understood by every NameNode plugin version. Producing it takes
+ * time linear in the size of the image.
+ * <p>
+ * It is not thread safe, {@link PermImageRetriever} serializes the access to it.
+ */
+final class PermImageCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PermImageCache.class);
+
+  private static final String ALL = AccessConstants.ACTION_ALL;
+  private static final String ALL_SYMBOL = AccessConstants.ALL;
+  // Actions a revoke of one of them from ALL leaves the others of
+  private static final Set<String> PARTIAL_REVOKE_ACTIONS = ImmutableSet.of(
+      AccessConstants.SELECT.toUpperCase(), AccessConstants.INSERT.toUpperCase());
+
+  // authzObj -> principal -> actions
+  private final Map<String, Map<TPrivilegePrincipal, Set<String>>> privileges = new HashMap<>();
+  // db -> the db and its tables with privileges, which revokes on the db also apply to
+  private final Map<String, Set<String>> children = new HashMap<>();
+  // role -> groups
+  private final Map<String, Set<String>> roles = new HashMap<>();
+  private long seqNum;
+
+  /**
+   * @param fullImage the full image to start from
+   */
+  PermImageCache(PermissionsUpdate fullImage) {
+    apply(fullImage);
+  }
+
+  /**
+   * @return the sequence number of the latest update applied
+   */
+  long getSeqNum() {
+    return seqNum;
+  }
+
+  /**
+   * @return the number of authz objects with privileges
+   */
+  int getAuthzObjCount() {
+    return privileges.size();
+  }
+
+  /**
+   * Applies a perm update, which must follow the ones applied so far.
+   */
+  void apply(PermissionsUpdate update) {
+    for (TPrivilegeChanges privChanges : update.getPrivilegeUpdates()) {
+      applyPrivilegeChanges(privChanges);
+    }
+    for (TRoleChanges roleChanges : update.getRoleUpdates()) {
+      applyRoleChanges(roleChanges);
+    }
+    seqNum = update.getSeqNum();
+  }
+
+  /**
+   * @return a full image of the permissions, with comma separated Sentry actions
+   */
+  PermissionsUpdate toFullImage() {
+    PermissionsUpdate update = new PermissionsUpdate(seqNum, true);
+    for (Map.Entry<String, Map<TPrivilegePrincipal, Set<String>>> privEnt : privileges.entrySet()) {
+      TPrivilegeChanges privChanges = update.addPrivilegeUpdate(privEnt.getKey());
+      for (Map.Entry<TPrivilegePrincipal, Set<String>> actionEnt : privEnt.getValue().entrySet()) {
+        privChanges.putToAddPrivileges(new TPrivilegePrincipal(actionEnt.getKey()),
+            Joiner.on(',').join(actionEnt.getValue()));
+      }
+    }
+    for (Map.Entry<String, Set<String>> roleEnt : roles.entrySet()) {
+      TRoleChanges roleChanges = update.addRoleUpdate(roleEnt.getKey());
+      for (String group : roleEnt.getValue()) {
+        roleChanges.addToAddGroups(group);
+      }
+    }
+    return update;
+  }
+
+  private void applyPrivilegeChanges(TPrivilegeChanges privChanges) {
+    String authzObj = privChanges.getAuthzObj();
+    if (authzObj.equals(PermissionsUpdate.RENAME_PRIVS)) {
+      TPrivilegePrincipal newEntity = privChanges.getAddPrivileges().keySet().iterator().next();
+      TPrivilegePrincipal oldEntity = privChanges.getDelPrivileges().keySet().iterator().next();
+      if (newEntity.getType() != TPrivilegePrincipalType.AUTHZ_OBJ ||
+          oldEntity.getType() != TPrivilegePrincipalType.AUTHZ_OBJ) {
+        LOGGER.warn("Ignoring rename update with wrong principal types {} and {}",
+            newEntity, oldEntity);
+        return;
+      }
+      // Objects without explicit privileges, e.g. a table of a db with privileges, are
+      // not in the image
+      Map<TPrivilegePrincipal, Set<String>> actions = removeAuthzObj(oldEntity.getValue());
+      if (actions != null) {
+        putAuthzObj(newEntity.getValue(), actions);
+      }
+      return;
+    }
+    if (authzObj.equals(PermissionsUpdate.ALL_AUTHZ_OBJ)) {
+      // Removes the principal, a dropped role, from all the objects
+      TPrivilegePrincipal principal = privChanges.getDelPrivileges().keySet().iterator().next();
+      for (Map<TPrivilegePrincipal, Set<String>> actions : privileges.values()) {
+        actions.remove(principal);
+      }
+      return;
+    }
+
+    Map<TPrivilegePrincipal, Set<String>> actions = privileges.get(authzObj);
+    for (Map.Entry<TPrivilegePrincipal, String> addEnt : privChanges.getAddPrivileges().entrySet()) {
+      if (actions == null) {
+        actions = new HashMap<>();
+        putAuthzObj(authzObj, actions);
+      }
+      Set<String> principalActions = actions.get(addEnt.getKey());
+      if (principalActions == null) {
+        principalActions = new HashSet<>();
+        actions.put(addEnt.getKey(), principalActions);
+      }
+      principalActions.addAll(toSentryActions(addEnt.getValue()));
+    }
+    if (actions == null) {
+      return;
+    }
+    for (Map.Entry<TPrivilegePrincipal, String> delEnt : privChanges.getDelPrivileges().entrySet()) {
+      if (delEnt.getKey().getValue().equals(PermissionsUpdate.ALL_PRIVS)) {
+        // The object was dropped, with the privileges of all principals
+        removeAuthzObj(authzObj);
+        return;
+      }
+      // A revoke also applies to the privileges on the child objects
+      Set<String> childObjs = children.get(authzObj);
+      for (String revoked : toSentryActions(delEnt.getValue())) {
+        revoke(actions, delEnt.getKey(), revoked, false);
+        if (childObjs != null) {
+          for (String childObj : childObjs) {
+            if (!childObj.equals(authzObj)) {
+              revoke(privileges.get(childObj), delEnt.getKey(), revoked, true);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Revokes an action from a principal on an object like {@code SentryStore} does.
+   *
+   * @param child whether the action is revoked on a parent of the object
+   */
+  private static void revoke(Map<TPrivilegePrincipal, Set<String>> actions,
+      TPrivilegePrincipal principal, String revoked, boolean child) {
+    Set<String> principalActions = actions.get(principal);
+    if (principalActions == null) {
+      return;
+    }
+    if (child && isAll(revoked)) {
+      principalActions.clear();
+    } else {
+      principalActions.remove(revoked);
+      if (PARTIAL_REVOKE_ACTIONS.contains(revoked) && principalActions.remove(ALL_SYMBOL)) {
+        // ALL is replaced by the actions it still grants
+        for (String action : PARTIAL_REVOKE_ACTIONS) {
+          if (!action.equals(revoked)) {
+            principalActions.add(action);
+          }
+        }
+      }
+    }
+    if (principalActions.isEmpty()) {
+      actions.remove(principal);
+    }
+  }
+
+  private void applyRoleChanges(TRoleChanges roleChanges) {
+    String role = roleChanges.getRole();
+    if (role.equals(PermissionsUpdate.ALL_ROLES)) {
+      // Removes a dropped group from all the roles
+      String group = roleChanges.getDelGroups().iterator().next();
+      for (Set<String> groups : roles.values()) {
+        groups.remove(group);
+      }
+      return;
+    }
+    Set<String> groups = roles.get(role);
+    for (String group : roleChanges.getAddGroups()) {
+      if (groups == null) {
+        groups = new HashSet<>();
+        roles.put(role, groups);
+      }
+      groups.add(group);
+    }
+    if (groups == null) {
+      return;
+    }
+    for (String group : roleChanges.getDelGroups()) {
+      if (group.equals(PermissionsUpdate.ALL_GROUPS)) {
+        // The role was dropped
+        roles.remove(role);
+        return;
+      }
+      groups.remove(group);
+    }
+  }
+
+  private void putAuthzObj(String authzObj, Map<TPrivilegePrincipal, Set<String>> actions) {
+    privileges.put(authzObj, actions);
+    String parent = getParent(authzObj);
+    Set<String> childObjs = children.get(parent);
+    if (childObjs == null) {
+      childObjs = new HashSet<>();
+      children.put(parent, childObjs);
+    }
+    childObjs.add(authzObj);
+  }
+
+  private Map<TPrivilegePrincipal, Set<String>> removeAuthzObj(String authzObj) {
+    Map<TPrivilegePrincipal, Set<String>> actions = privileges.remove(authzObj);
+    if (actions != null) {
+      String parent = getParent(authzObj);
+      Set<String> childObjs = children.get(parent);
+      childObjs.remove(authzObj);
+      if (childObjs.isEmpty()) {
+        children.remove(parent);
+      }
+    }
+    return actions;
+  }
+
+  /**
+   * @return the db of a table, or the db itself
+   */
+  private static String getParent(String authzObj) {
+    int dot = authzObj.indexOf('.');
+    return dot > 0 ? authzObj.substring(0, dot) : authzObj;
+  }
+
+  private static boolean isAll(String action) {
+    return action.equals(ALL) || action.equals(ALL_SYMBOL);
+  }
+
+  /**
+   * @return the upper case actions of a comma separated list, with OWNER as ALL like
+   *         in the images read from the store
+   */
+  private static Set<String> toSentryActions(String sentryActions) {
+    Set<String> actions = new HashSet<>();
+    for (String sentryAction : sentryActions.split(",")) {
+      String action = sentryAction.trim().toUpperCase();
+      if (action.isEmpty()) {
+        continue;
+      }
+      actions.add(action.equals(AccessConstants.OWNER) ? ALL : action);
+    }
+    return actions;
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.sentry.hdfs;
 
 import com.codahale.metrics.Timer.Context;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
 import org.apache.sentry.hdfs.service.thrift.TPermissionsUpdate;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
@@ -25,76 +26,168 @@ import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
 import org.apache.sentry.hdfs.service.thrift.sentry_hdfs_serviceConstants;
 import org.apache.sentry.provider.db.service.persistent.PermissionsImage;
 import org.apache.sentry.provider.db.service.persistent.SentryStoreInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * PermImageRetriever obtains a complete snapshot of Sentry permission from a persistent
  * storage and translates it into {@code PermissionsUpdate} that the consumers, such as
  * HDFS NameNode, can understand.
  * <p>
- * It is a thread safe class, as all the underlying database operation is thread safe.
+ * Optionally, the snapshot is kept in memory by a {@link PermImageCache}, updated with
+ * the perm deltas persisted since it was read. A full image then only reads the new
+ * deltas, instead of all the privileges and roles. The snapshot is read again when the
+ * deltas it needs are no longer available, or when it is older than the rebuild interval.
+ * <p>
+ * It is a thread safe class, as all the underlying database operation is thread safe
+ * and the access to the cached snapshot is synchronized.
  */
 @ThreadSafe
 public class PermImageRetriever implements ImageRetriever<PermissionsUpdate> {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(PermImageRetriever.class);
+
+  // Maximum number of deltas applied to the cached snapshot per database read
+  private static final int MAX_DELTAS_PER_READ = 1000;
+
   private final SentryStoreInterface sentryStore;
+  private final PermDeltaRetriever deltaRetriever;
+  private final boolean cacheEnabled;
+  private final long cacheRebuildIntervalNs;
+
+  private PermImageCache cache;
+  private long cacheBuiltNs;
 
   PermImageRetriever(SentryStoreInterface sentryStore) {
+    this(sentryStore, false, 0);
+  }
+
+  /**
+   * @param sentryStore the store to retrieve the snapshot and the deltas from
+   * @param cacheEnabled whether to keep the snapshot in memory
+   * @param cacheRebuildIntervalMs maximum age of the snapshot kept in memory, unbounded
+   *                               if not positive
+   */
+  PermImageRetriever(SentryStoreInterface sentryStore, boolean cacheEnabled,
+      long cacheRebuildIntervalMs) {
     this.sentryStore = sentryStore;
+    this.deltaRetriever = new PermDeltaRetriever(sentryStore, MAX_DELTAS_PER_READ, 0);
+    this.cacheEnabled = cacheEnabled;
+    this.cacheRebuildIntervalNs = TimeUnit.MILLISECONDS.toNanos(cacheRebuildIntervalMs);
   }
 
   @Override
   public PermissionsUpdate retrieveFullImage() throws Exception {
     try(Context timerContext =
         SentryHdfsMetricsUtil.getRetrievePermFullImageTimer.time()) {
-
-      // Read the most up-to-date snapshot of Sentry perm information,
-      // with a corresponding delta change sequence number.
-      PermissionsImage permImage = sentryStore.retrieveFullPermssionsImage();
-      long curSeqNum = permImage.getCurSeqNum();
-      Map<String, Map<TPrivilegePrincipal, String>> privilegeImage =
-          permImage.getPrivilegeImage();
-      Map<String, List<String>> roleImage =
-          permImage.getRoleImage();
-
-      // Translates the complete Sentry permission snapshot into a PermissionsUpdate.
-      // Adds permission mapping for user/roles <role, groups> mapping
-      // to be included in the permission update.
-      // And label it with the latest delta change sequence number for consumer
-      // to be aware of the next delta change it should continue with.
-      TPermissionsUpdate tPermUpdate = new TPermissionsUpdate(true, curSeqNum,
-          new HashMap<String, TPrivilegeChanges>(),
-          new HashMap<String, TRoleChanges>());
-
-      for (Map.Entry<String, Map<TPrivilegePrincipal, String>> privEnt : privilegeImage.entrySet()) {
-        String authzObj = privEnt.getKey();
-        Map<TPrivilegePrincipal,String> privMap = privEnt.getValue();
-        DBUpdateForwarder.translateOwnerPrivileges(privMap);
-        tPermUpdate.putToPrivilegeChanges(authzObj, new TPrivilegeChanges(
-        authzObj, privMap, new HashMap<TPrivilegePrincipal, String>()));
+      PermissionsUpdate permissionsUpdate;
+      if (cacheEnabled) {
+        synchronized (this) {
+          permissionsUpdate = getCache().toFullImage();
+        }
+      } else {
+        permissionsUpdate = retrieveFullImageFromStore();
       }
-
-      for (Map.Entry<String, List<String>> privEnt : roleImage.entrySet()) {
-        String role = privEnt.getKey();
-        List<String> groups = privEnt.getValue();
-        tPermUpdate.putToRoleChanges(role, new TRoleChanges(role, groups,
-            new ArrayList<String>()));
-      }
-
-      PermissionsUpdate permissionsUpdate = new PermissionsUpdate(tPermUpdate);
       SentryHdfsMetricsUtil.getPrivilegeChangesHistogram.update(
-          tPermUpdate.getPrivilegeChangesSize());
+          permissionsUpdate.getPrivilegeUpdates().size());
       SentryHdfsMetricsUtil.getRoleChangesHistogram.update(
-          tPermUpdate.getRoleChangesSize());
+          permissionsUpdate.getRoleUpdates().size());
       return permissionsUpdate;
     }
   }
 
+  /**
+   * @return the cached snapshot, updated with the latest deltas
+   */
+  @VisibleForTesting
+  synchronized PermImageCache getCache() throws Exception {
+    if (cache != null && cacheRebuildIntervalNs > 0 &&
+        System.nanoTime() - cacheBuiltNs >= cacheRebuildIntervalNs) {
+      LOGGER.info("Cached perm image is older than {} ms, reading it again",
+          TimeUnit.NANOSECONDS.toMillis(cacheRebuildIntervalNs));
+      cache = null;
+    }
+    if (cache != null && !catchUp(cache)) {
+      LOGGER.info("Perm deltas after change ID {} are missing, reading the perm image again",
+          cache.getSeqNum());
+      cache = null;
+    }
+    if (cache == null) {
+      cacheBuiltNs = System.nanoTime();
+      PermImageCache newCache = new PermImageCache(retrieveFullImageFromStore());
+      // Deltas persisted since the snapshot was read
+      catchUp(newCache);
+      LOGGER.info("Cached perm image with {} authz objects at change ID {}",
+          newCache.getAuthzObjCount(), newCache.getSeqNum());
+      cache = newCache;
+    }
+    return cache;
+  }
+
+  /**
+   * Applies the deltas persisted after the ones the cached snapshot includes.
+   *
+   * @return false if some of those deltas are missing
+   */
+  private boolean catchUp(PermImageCache imageCache) throws Exception {
+    long latestSeqNum = sentryStore.getLastProcessedPermChangeID();
+    while (imageCache.getSeqNum() < latestSeqNum) {
+      List<PermissionsUpdate> updates = deltaRetriever.retrieveDelta(
+          imageCache.getSeqNum() + 1, sentry_hdfs_serviceConstants.UNUSED_PATH_UPDATE_IMG_NUM);
+      if (updates.isEmpty()) {
+        return false;
+      }
+      for (PermissionsUpdate update : updates) {
+        imageCache.apply(update);
+      }
+    }
+    return true;
+  }
+
+  private PermissionsUpdate retrieveFullImageFromStore() throws Exception {
+    // Read the most up-to-date snapshot of Sentry perm information,
+    // with a corresponding delta change sequence number.
+    PermissionsImage permImage = sentryStore.retrieveFullPermssionsImage();
+    long curSeqNum = permImage.getCurSeqNum();
+    Map<String, Map<TPrivilegePrincipal, String>> privilegeImage =
+        permImage.getPrivilegeImage();
+    Map<String, List<String>> roleImage =
+        permImage.getRoleImage();
+
+    // Translates the complete Sentry permission snapshot into a PermissionsUpdate.
+    // Adds permission mapping for user/roles <role, groups> mapping
+    // to be included in the permission update.
+    // And label it with the latest delta change sequence number for consumer
+    // to be aware of the next delta change it should continue with.
+    TPermissionsUpdate tPermUpdate = new TPermissionsUpdate(true, curSeqNum,
+        new HashMap<String, TPrivilegeChanges>(),
+        new HashMap<String, TRoleChanges>());
+
+    for (Map.Entry<String, Map<TPrivilegePrincipal, String>> privEnt : privilegeImage.entrySet()) {
+      String authzObj = privEnt.getKey();
+      Map<TPrivilegePrincipal,String> privMap = privEnt.getValue();
+      DBUpdateForwarder.translateOwnerPrivileges(privMap);
+      tPermUpdate.putToPrivilegeChanges(authzObj, new TPrivilegeChanges(
+      authzObj, privMap, new HashMap<TPrivilegePrincipal, String>()));
+    }
+
+    for (Map.Entry<String, List<String>> privEnt : roleImage.entrySet()) {
+      String role = privEnt.getKey();
+      List<String> groups = privEnt.getValue();
+      tPermUpdate.putToRoleChanges(role, new TRoleChanges(role, groups,
+          new ArrayList<String>()));
+    }
+
+    return new PermissionsUpdate(tPermUpdate);
+  }
+
   @Override
   public long getLatestImageID() throws Exception {
     return sentry_hdfs_serviceConstants.UNUSED_PATH_UPDATE_IMG_NUM;
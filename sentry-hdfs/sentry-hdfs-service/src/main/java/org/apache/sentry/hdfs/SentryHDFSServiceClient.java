@@ -50,5 +50,20 @@ public interface SentryHDFSServiceClient extends AutoCloseable {
    */
   SentryAuthzUpdate getAllUpdatesFrom(long permSeqNum, long pathSeqNum, long pathImgNum)
       throws SentryHdfsServiceException;
+
+  /**
+   * Get any permission and path updates accumulated since given sequence numbers.
+   * If there are no updates yet, the server may hold the request until new updates
+   * are available or the wait timeout expires.
+   * May return full update.
+   * @param permSeqNum Last sequence number for permissions update processed by the NameNode plugin
+   * @param pathSeqNum Last sequence number for paths update processed by the NameNode plugin
+   * @param pathImgNum Last image number for paths update processed by the NameNode plugin
+   * @param waitTimeoutMs Maximum time in milliseconds the server may wait for new updates
+   * @return List of permission and path changes which may include a full snapshot.
+   * @throws SentryHdfsServiceException if a connection exception happens
+   */
+  SentryAuthzUpdate getAllUpdatesFrom(long permSeqNum, long pathSeqNum, long pathImgNum,
+      long waitTimeoutMs) throws SentryHdfsServiceException;
 }
 
@@ -100,9 +100,25 @@ public class SentryHDFSServiceClientDefaultImpl
   @Override
   public SentryAuthzUpdate getAllUpdatesFrom(long permSeqNum, long pathSeqNum, long pathImgNum)
           throws SentryHdfsServiceException {
+    return getAllUpdatesFrom(permSeqNum, pathSeqNum, pathImgNum, 0);
+  }
+
+  @Override
+  public SentryAuthzUpdate getAllUpdatesFrom(long permSeqNum, long pathSeqNum, long pathImgNum,
+      long waitTimeoutMs) throws SentryHdfsServiceException {
     try {
       TAuthzUpdateRequest updateRequest = new TAuthzUpdateRequest(permSeqNum, pathSeqNum, pathImgNum);
-      TAuthzUpdateResponse sentryUpdates = client.get_authz_updates(updateRequest);
+      if (waitTimeoutMs > 0) {
+        updateRequest.setWaitTimeoutMs(waitTimeoutMs);
+      }
+      TAuthzUpdateResponse sentryUpdates;
+      // A long poll is held by the server, its response time is not the server's
+      SentryTransportPool.setRequestsHeld(waitTimeoutMs > 0);
+      try {
+        sentryUpdates = client.get_authz_updates(updateRequest);
+      } finally {
+        SentryTransportPool.setRequestsHeld(false);
+      }
 
       List<PathsUpdate> pathsUpdates = Collections.emptyList();
       if (sentryUpdates.getAuthzPathUpdate() != null) {
@@ -133,7 +149,8 @@ public class SentryHDFSServiceClientDefaultImpl
         }
       }
 
-      return new SentryAuthzUpdate(permsUpdates, pathsUpdates);
+      return new SentryAuthzUpdate(permsUpdates, pathsUpdates,
+          sentryUpdates.isMoreUpdatesAvailable());
     } catch (Exception e) {
       throw new SentryHdfsServiceException("Thrift Exception occurred !!", e);
     }
@@ -21,7 +21,9 @@ import java.lang.reflect.Proxy;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.core.common.transport.ConcurrentClientInvocationHandler;
 import org.apache.sentry.core.common.transport.RetryClientInvocationHandler;
+import org.apache.sentry.core.common.transport.SentryClientInvocationHandler;
 import org.apache.sentry.core.common.transport.SentryHDFSClientTransportConfig;
 import org.apache.sentry.core.common.transport.SentryTransportFactory;
 import org.apache.sentry.core.common.transport.SentryTransportPool;
@@ -82,8 +84,17 @@ public final class SentryHDFSServiceClientFactory {
     return (SentryHDFSServiceClient) Proxy
       .newProxyInstance(SentryHDFSServiceClientDefaultImpl.class.getClassLoader(),
         SentryHDFSServiceClientDefaultImpl.class.getInterfaces(),
-        new RetryClientInvocationHandler(conf,
-          new SentryHDFSServiceClientDefaultImpl(conf, transportPool), transportConfig));
+        createHandler());
+  }
+
+  private SentryClientInvocationHandler createHandler() throws Exception {
+    if (transportConfig.isConcurrentClientEnabled(conf)) {
+      return new ConcurrentClientInvocationHandler(conf,
+        () -> new SentryHDFSServiceClientDefaultImpl(conf, transportPool), transportPool,
+        transportConfig);
+    }
+    return new RetryClientInvocationHandler(conf,
+      new SentryHDFSServiceClientDefaultImpl(conf, transportPool), transportConfig);
   }
 
   /**
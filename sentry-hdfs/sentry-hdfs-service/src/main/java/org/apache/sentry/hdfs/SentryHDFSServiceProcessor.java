@@ -64,8 +64,28 @@ public class SentryHDFSServiceProcessor implements SentryHDFSService.Iface {
     }
 
     try (Context timerContext = SentryHdfsMetricsUtil.getAllAuthzUpdatesTimer.time()) {
-      retVal.setAuthzPermUpdate(getPermissionsUpdatesFrom(request));
-      retVal.setAuthzPathUpdate(getPathsUpdatesFrom(request));
+      // Read the change count before querying the updates, so a change committed while
+      // the updates are retrieved ends the wait below right away.
+      long deltaChangeCount = SentryPlugin.instance.getDeltaChangeCount();
+      List<TPermissionsUpdate> permUpdates = getPermissionsUpdatesFrom(request);
+      List<TPathsUpdate> pathUpdates = getPathsUpdatesFrom(request);
+
+      long waitTimeoutMs = request.isSetWaitTimeoutMs() ? request.getWaitTimeoutMs() : 0;
+      if (waitTimeoutMs > 0 && permUpdates.isEmpty() && pathUpdates != null
+          && pathUpdates.isEmpty()) {
+        // Nothing new yet, park the request until a perm or path change is committed
+        // or the wait times out, then check once more.
+        if (SentryPlugin.instance.waitForDeltaChange(deltaChangeCount, waitTimeoutMs)) {
+          permUpdates = getPermissionsUpdatesFrom(request);
+          pathUpdates = getPathsUpdatesFrom(request);
+        }
+      }
+
+      retVal.setAuthzPermUpdate(permUpdates);
+      retVal.setAuthzPathUpdate(pathUpdates != null ? pathUpdates : Collections.<TPathsUpdate>emptyList());
+      if (hasMoreUpdates(permUpdates, pathUpdates)) {
+        retVal.setMoreUpdatesAvailable(true);
+      }
     } catch (Exception e) {
       LOGGER.error("Error Sending updates to downstream Cache", e);
       throw new TException(e);
@@ -74,6 +94,20 @@ public class SentryHDFSServiceProcessor implements SentryHDFSService.Iface {
     return retVal;
   }
 
+  /**
+   * Checks if the number or size of the returned updates was bounded, so the NameNode
+   * can request the remaining ones right away instead of waiting for its next refresh.
+   */
+  private boolean hasMoreUpdates(List<TPermissionsUpdate> permUpdates,
+      List<TPathsUpdate> pathUpdates) throws Exception {
+    if (!permUpdates.isEmpty() && SentryPlugin.instance.hasPermsUpdatesAfter(
+        permUpdates.get(permUpdates.size() - 1).getSeqNum())) {
+      return true;
+    }
+    return pathUpdates != null && !pathUpdates.isEmpty() && SentryPlugin.instance
+        .hasPathsUpdatesAfter(pathUpdates.get(pathUpdates.size() - 1).getSeqNum());
+  }
+
   /**
    * Retrieves and returns new requested permissions updates.
    *
@@ -112,7 +146,7 @@ public class SentryHDFSServiceProcessor implements SentryHDFSService.Iface {
    *
    * @param request The requested thrift object that contains the paths seqNum and imgNum
    * @return A list of delta updates or a full image retrieved. It returns an empty list if there
-   *         are not updates or another request is happening at the same time.
+   *         are not updates, or null if another request is happening at the same time.
    * @throws Exception If an error occurred while retrieving the updates.
    */
   private List<TPathsUpdate> getPathsUpdatesFrom(TAuthzUpdateRequest request) throws Exception {
@@ -123,7 +157,7 @@ public class SentryHDFSServiceProcessor implements SentryHDFSService.Iface {
     // return an empty image for now to avoid a large memory consumption
     if (!pathsRetrieverBusy.compareAndSet(false, true)) {
       LOGGER.debug("PATHS updates are not available because another request is in progress.");
-      return Collections.emptyList();
+      return null;
     }
 
     try {
@@ -21,6 +21,8 @@ package org.apache.sentry.hdfs;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
@@ -35,6 +37,7 @@ import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
 import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
 import org.apache.sentry.provider.db.SentryPolicyStorePlugin;
+import org.apache.sentry.provider.db.service.persistent.CounterWait;
 import org.apache.sentry.provider.db.service.persistent.SentryStoreInterface;
 import org.apache.sentry.api.common.SentryServiceUtil;
 import org.apache.sentry.api.service.thrift.TAlterSentryRoleAddGroupsRequest;
@@ -118,18 +121,53 @@ public class SentryPlugin implements SentryPolicyStorePlugin, SigUtils.SigListen
   private DBUpdateForwarder<PathsUpdate> pathsUpdater;
   private DBUpdateForwarder<PermissionsUpdate> permsUpdater;
 
+  // Counts perm and path changes committed by this server, used by waiting NameNode requests
+  private CounterWait deltaChangeWait;
+  private long maxUpdatesWaitMs;
+
   @Override
   public void initialize(Configuration conf, SentryStoreInterface sentryStore) throws SentryPluginException {
     // List of paths managed by Sentry
     String[] prefixes =
             conf.getStrings(SENTRY_HDFS_INTEGRATION_PATH_PREFIXES,
                     SENTRY_HDFS_INTEGRATION_PATH_PREFIXES_DEFAULT);
-    PermImageRetriever permImageRetriever = new PermImageRetriever(sentryStore);
-    PathImageRetriever pathImageRetriever = new PathImageRetriever(sentryStore, prefixes);
-    PermDeltaRetriever permDeltaRetriever = new PermDeltaRetriever(sentryStore);
-    PathDeltaRetriever pathDeltaRetriever = new PathDeltaRetriever(sentryStore);
-    pathsUpdater = new DBUpdateForwarder<>(pathImageRetriever, pathDeltaRetriever);
-    permsUpdater = new DBUpdateForwarder<>(permImageRetriever, permDeltaRetriever);
+    // A server with a policy replica also answers the NameNodes from memory
+    boolean replicaEnabled = conf.getBoolean(
+        org.apache.sentry.service.common.ServiceConstants.ServerConfig.SENTRY_POLICY_REPLICA_ENABLED,
+        org.apache.sentry.service.common.ServiceConstants.ServerConfig.SENTRY_POLICY_REPLICA_ENABLED_DEFAULT);
+    PermImageRetriever permImageRetriever = new PermImageRetriever(sentryStore,
+        conf.getBoolean(ServerConfig.SENTRY_HDFS_PERM_IMAGE_CACHE,
+            replicaEnabled || ServerConfig.SENTRY_HDFS_PERM_IMAGE_CACHE_DEFAULT),
+        conf.getLong(ServerConfig.SENTRY_HDFS_PERM_IMAGE_CACHE_REBUILD_INTERVAL_MS,
+            ServerConfig.SENTRY_HDFS_PERM_IMAGE_CACHE_REBUILD_INTERVAL_MS_DEFAULT));
+    PathImageRetriever pathImageRetriever = new PathImageRetriever(sentryStore, prefixes,
+        conf.getBoolean(ServerConfig.SENTRY_HDFS_PATH_IMAGE_CACHE,
+            replicaEnabled || ServerConfig.SENTRY_HDFS_PATH_IMAGE_CACHE_DEFAULT),
+        conf.getLong(ServerConfig.SENTRY_HDFS_PATH_IMAGE_CACHE_REBUILD_INTERVAL_MS,
+            ServerConfig.SENTRY_HDFS_PATH_IMAGE_CACHE_REBUILD_INTERVAL_MS_DEFAULT));
+    int maxDeltas = conf.getInt(ServerConfig.SENTRY_HDFS_UPDATES_MAX_DELTAS,
+        ServerConfig.SENTRY_HDFS_UPDATES_MAX_DELTAS_DEFAULT);
+    long maxDeltaBytes = conf.getLong(ServerConfig.SENTRY_HDFS_UPDATES_MAX_DELTA_BYTES,
+        ServerConfig.SENTRY_HDFS_UPDATES_MAX_DELTA_BYTES_DEFAULT);
+    PermDeltaRetriever permDeltaRetriever =
+        new PermDeltaRetriever(sentryStore, maxDeltas, maxDeltaBytes);
+    PathDeltaRetriever pathDeltaRetriever =
+        new PathDeltaRetriever(sentryStore, maxDeltas, maxDeltaBytes);
+    if (conf.getBoolean(ServerConfig.SENTRY_HDFS_UPDATES_COALESCE,
+        ServerConfig.SENTRY_HDFS_UPDATES_COALESCE_DEFAULT)) {
+      int cacheSize = conf.getInt(ServerConfig.SENTRY_HDFS_UPDATES_COALESCE_CACHE_SIZE,
+          ServerConfig.SENTRY_HDFS_UPDATES_COALESCE_CACHE_SIZE_DEFAULT);
+      pathsUpdater = new DBUpdateForwarder<>(pathImageRetriever, pathDeltaRetriever,
+          new PathDeltaCoalescer(), cacheSize);
+      permsUpdater = new DBUpdateForwarder<>(permImageRetriever, permDeltaRetriever,
+          new PermDeltaCoalescer(), cacheSize);
+    } else {
+      pathsUpdater = new DBUpdateForwarder<>(pathImageRetriever, pathDeltaRetriever);
+      permsUpdater = new DBUpdateForwarder<>(permImageRetriever, permDeltaRetriever);
+    }
+    deltaChangeWait = sentryStore.getDeltaChangeWait();
+    maxUpdatesWaitMs = conf.getLong(ServerConfig.SENTRY_HDFS_UPDATES_MAX_WAIT_MS,
+        ServerConfig.SENTRY_HDFS_UPDATES_MAX_WAIT_MS_DEFAULT);
 
     LOGGER.info("Sentry HDFS plugin initialized !!");
     instance = this;
@@ -201,11 +239,57 @@ public class SentryPlugin implements SentryPolicyStorePlugin, SigUtils.SigListen
     return updates;
   }
 
+  /**
+   * @return the number of perm and path changes committed by this server so far
+   */
+  long getDeltaChangeCount() {
+    return deltaChangeWait != null ? deltaChangeWait.getCurrentValue() : 0;
+  }
+
+  /**
+   * Waits until a perm or path change is committed after the given change count was read.
+   * The wait is capped by {@link ServerConfig#SENTRY_HDFS_UPDATES_MAX_WAIT_MS}. Changes
+   * committed by other Sentry servers do not end the wait, they are picked up once it
+   * times out.
+   *
+   * @param deltaChangeCount the change count returned by {@link #getDeltaChangeCount()}
+   * @param waitTimeoutMs the maximum time to wait, as requested by the NameNode
+   * @return true if a change was committed, false if the wait timed out
+   */
+  boolean waitForDeltaChange(long deltaChangeCount, long waitTimeoutMs)
+      throws InterruptedException {
+    long timeoutMs = Math.min(waitTimeoutMs, maxUpdatesWaitMs);
+    if (deltaChangeWait == null || timeoutMs <= 0) {
+      return false;
+    }
+    try {
+      deltaChangeWait.waitFor(deltaChangeCount + 1, timeoutMs, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      LOGGER.debug("No new changes after waiting {} ms", timeoutMs);
+      return false;
+    }
+  }
+
   public List<PermissionsUpdate> getAllPermsUpdatesFrom(long permSeqNum) throws Exception {
     LOGGER.debug("Received request for PERM update from NameNode for permSeqNum {}", permSeqNum);
     return permsUpdater.getAllUpdatesFrom(permSeqNum, UNUSED_PATH_UPDATE_IMG_NUM);
   }
 
+  /**
+   * @return true if there are PERM deltas newer than the given sequence number
+   */
+  boolean hasPermsUpdatesAfter(long permSeqNum) throws Exception {
+    return permsUpdater.hasUpdatesAfter(permSeqNum);
+  }
+
+  /**
+   * @return true if there are PATH deltas newer than the given sequence number
+   */
+  boolean hasPathsUpdatesAfter(long pathSeqNum) throws Exception {
+    return pathsUpdater.hasUpdatesAfter(pathSeqNum);
+  }
+
   @Override
   public Update onAlterSentryRoleAddGroups(
       TAlterSentryRoleAddGroupsRequest request) throws SentryPluginException {
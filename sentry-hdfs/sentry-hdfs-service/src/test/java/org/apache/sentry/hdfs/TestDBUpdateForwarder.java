@@ -185,4 +185,36 @@ public class TestDBUpdateForwarder {
     assertEquals(UNUSED_PATH_UPDATE_IMG_NUM, updates.get(0).getImgNum());
     assertTrue(updates.get(0).hasFullImage());
   }
+
+  @Test
+  public void testCoalescedDeltasAreCachedForTheSameRange() throws Exception {
+    DBUpdateForwarder<PathsUpdate> coalescingUpdater =
+        new DBUpdateForwarder<PathsUpdate>(imageRetriever, deltaRetriever,
+            new PathDeltaCoalescer(), 4);
+    PathsUpdate add = new PathsUpdate(2, 1, false);
+    add.newPathChange("db1.tbl1").addToAddPaths(Arrays.asList("db1", "tbl1"));
+    PathsUpdate drop = new PathsUpdate(3, 1, false);
+    drop.newPathChange("db1.tbl1").addToDelPaths(Arrays.asList(PathsUpdate.ALL_PATHS));
+    Mockito.when(imageRetriever.getLatestImageID()).thenReturn(1L);
+    Mockito.when(deltaRetriever.getLatestDeltaID()).thenReturn(3L);
+    Mockito.when(deltaRetriever.isDeltaAvailable(2L)).thenReturn(true);
+    Mockito.when(deltaRetriever.retrieveDelta(2L, 1L)).thenReturn(Arrays.asList(add, drop));
+
+    List<PathsUpdate> updates = coalescingUpdater.getAllUpdatesFrom(2, 1);
+    assertEquals(1, updates.size());
+    assertEquals(3, updates.get(0).getSeqNum());
+    assertEquals(1, updates.get(0).getPathChanges().size());
+    assertEquals(Arrays.asList(Arrays.asList(PathsUpdate.ALL_PATHS)),
+        updates.get(0).getPathChanges().get(0).getDelPaths());
+    assertTrue(updates.get(0).getPathChanges().get(0).getAddPaths().isEmpty());
+
+    // Another NameNode requesting the same range shares the coalesced deltas
+    assertTrue(updates == coalescingUpdater.getAllUpdatesFrom(2, 1));
+    Mockito.verify(deltaRetriever, Mockito.times(1)).retrieveDelta(2L, 1L);
+
+    // New deltas are a new range
+    Mockito.when(deltaRetriever.getLatestDeltaID()).thenReturn(4L);
+    coalescingUpdater.getAllUpdatesFrom(2, 1);
+    Mockito.verify(deltaRetriever, Mockito.times(2)).retrieveDelta(2L, 1L);
+  }
 }
@@ -83,6 +83,51 @@ public class TestDeltaRetriever {
     assertEquals(3, pathsUpdates.get(1).getImgNum());
   }
 
+  @Test
+  public void testDeltaPathUpdatesRetrievedAreBoundedByCount() throws Exception {
+    List<MSentryPathChange> deltaPathChanges = Arrays.asList(
+        new MSentryPathChange(1, "u1", new PathsUpdate(1, false)),
+        new MSentryPathChange(2, "u2", new PathsUpdate(2, false))
+    );
+
+    Mockito.when(sentryStoreMock.getMSentryPathChanges(1, 2))
+        .thenReturn(deltaPathChanges);
+
+    PathDeltaRetriever deltaRetriever = new PathDeltaRetriever(sentryStoreMock, 2, 0);
+    List<PathsUpdate> pathsUpdates = deltaRetriever.retrieveDelta(1, 3);
+
+    assertEquals(2, pathsUpdates.size());
+    assertEquals(1, pathsUpdates.get(0).getSeqNum());
+    assertEquals(2, pathsUpdates.get(1).getSeqNum());
+    Mockito.verify(sentryStoreMock, Mockito.never()).getMSentryPathChanges(Mockito.anyLong());
+  }
+
+  @Test
+  public void testDeltaPathUpdatesRetrievedAreBoundedBySize() throws Exception {
+    List<MSentryPathChange> deltaPathChanges = Arrays.asList(
+        new MSentryPathChange(1, "u1", new PathsUpdate(1, false)),
+        new MSentryPathChange(2, "u2", new PathsUpdate(2, false)),
+        new MSentryPathChange(3, "u3", new PathsUpdate(3, false))
+    );
+    long firstChangeBytes = deltaPathChanges.get(0).getPathChangeSize();
+
+    Mockito.when(sentryStoreMock.getMSentryPathChanges(Mockito.anyLong()))
+        .thenReturn(deltaPathChanges);
+
+    // Only the first change fits
+    PathDeltaRetriever deltaRetriever =
+        new PathDeltaRetriever(sentryStoreMock, 0, firstChangeBytes + 1);
+    List<PathsUpdate> pathsUpdates = deltaRetriever.retrieveDelta(1, 3);
+    assertEquals(1, pathsUpdates.size());
+    assertEquals(1, pathsUpdates.get(0).getSeqNum());
+
+    // The first change is returned even if it does not fit
+    deltaRetriever = new PathDeltaRetriever(sentryStoreMock, 0, 1);
+    pathsUpdates = deltaRetriever.retrieveDelta(1, 3);
+    assertEquals(1, pathsUpdates.size());
+    assertEquals(1, pathsUpdates.get(0).getSeqNum());
+  }
+
   @Test
   public void testDeltaPermUpdatesRetrievedWhenOwnerPrivileges() throws Exception {
     PermDeltaRetriever deltaRetriever;
@@ -17,6 +17,7 @@
  */
 package org.apache.sentry.hdfs;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import junit.framework.Assert;
 import org.apache.commons.lang.StringUtils;
@@ -25,6 +26,9 @@ import org.apache.sentry.hdfs.service.thrift.TPathChanges;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
+import org.apache.sentry.provider.db.service.model.MSentryPathChange;
+import org.apache.sentry.provider.db.service.model.MSentryPermChange;
 import org.apache.sentry.provider.db.service.persistent.PermissionsImage;
 import org.apache.sentry.provider.db.service.persistent.SentryStore;
 import org.junit.Before;
@@ -34,10 +38,12 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -106,6 +112,138 @@ public class TestImageRetriever {
     }
   }
 
+  @Test
+  public void testFullPermUpdatesRetrievedFromCache() throws Exception {
+    final TPrivilegePrincipal role1 = new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role1");
+    final TPrivilegePrincipal role2 = new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role2");
+    Mockito.when(sentryStoreMock.retrieveFullPermssionsImage()).
+            thenAnswer(new Answer() {
+              @Override
+              public PermissionsImage answer(InvocationOnMock invocation)
+                      throws Throwable {
+                Map<String, Map<TPrivilegePrincipal, String>> privilegeMap = new HashMap<>();
+                Map<TPrivilegePrincipal, String> dbPrivMap = new HashMap<>();
+                dbPrivMap.put(role1, "SELECT");
+                privilegeMap.put("db1", dbPrivMap);
+                Map<TPrivilegePrincipal, String> tblPrivMap = new HashMap<>();
+                tblPrivMap.put(role2, AccessConstants.OWNER);
+                privilegeMap.put("db1.tbl1", tblPrivMap);
+                Map<String, List<String>> roleMap = new HashMap<>();
+                roleMap.put("role1", Lists.newArrayList("group1"));
+                return new PermissionsImage(roleMap, privilegeMap, 1L);
+              }
+            });
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID()).thenReturn(1L);
+
+    PermImageRetriever imageRetriever = new PermImageRetriever(sentryStoreMock, true, 0);
+    PermissionsUpdate permUpdate = imageRetriever.retrieveFullImage();
+    assertEquals(1, permUpdate.getSeqNum());
+    assertTrue(permUpdate.hasFullImage());
+    assertEquals("SELECT", getPrivileges(permUpdate, "db1").get(role1));
+    assertEquals(AccessConstants.ALL, getPrivileges(permUpdate, "db1.tbl1").get(role2));
+
+    // Grant INSERT on db1 and add a group to role1, then revoke ALL on db1, which
+    // applies to db1.tbl1, from role2
+    PermissionsUpdate grant = new PermissionsUpdate(2, false);
+    grant.addPrivilegeUpdate("db1").putToAddPrivileges(role1, "INSERT");
+    grant.addRoleUpdate("role1").addToAddGroups("group2");
+    PermissionsUpdate revoke = new PermissionsUpdate(3, false);
+    revoke.addPrivilegeUpdate("db1").putToDelPrivileges(role2, AccessConstants.ALL);
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID()).thenReturn(3L);
+    Mockito.when(sentryStoreMock.getMSentryPermChanges(2L, 1000)).thenReturn(
+        Lists.newArrayList(new MSentryPermChange(2, grant), new MSentryPermChange(3, revoke)));
+
+    permUpdate = imageRetriever.retrieveFullImage();
+    assertEquals(3, permUpdate.getSeqNum());
+    assertEquals(Sets.newHashSet("SELECT", "INSERT"), getActions(permUpdate, "db1", role1));
+    assertTrue(getPrivileges(permUpdate, "db1.tbl1").isEmpty());
+    for (TRoleChanges roleChanges : permUpdate.getRoleUpdates()) {
+      assertEquals("role1", roleChanges.getRole());
+      assertEquals(Sets.newHashSet("group1", "group2"),
+          Sets.newHashSet(roleChanges.getAddGroups()));
+    }
+    Mockito.verify(sentryStoreMock, Mockito.times(1)).retrieveFullPermssionsImage();
+
+    // Missing deltas cause the image to be read again, and the deltas still available
+    // to be applied to it
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID()).thenReturn(5L);
+    permUpdate = imageRetriever.retrieveFullImage();
+    assertEquals(3, permUpdate.getSeqNum());
+    assertEquals(Sets.newHashSet("SELECT", "INSERT"), getActions(permUpdate, "db1", role1));
+    Mockito.verify(sentryStoreMock, Mockito.times(2)).retrieveFullPermssionsImage();
+  }
+
+  @Test
+  public void testFullPathUpdatesRetrievedFromCache() throws Exception {
+    UpdateableAuthzPaths paths = new UpdateableAuthzPaths(root);
+    paths.applyAddChanges("db1", toPaths("user/db1"));
+    final PathsUpdate fullImage = new PathsUpdate(1, 1, true);
+    fullImage.toThrift().setPathsDump(paths.getPathsDump().createPathsDump(true));
+    Mockito.when(sentryStoreMock.retrieveFullPathsImageUpdate(root)).thenReturn(fullImage);
+    Mockito.when(sentryStoreMock.getLastProcessedImageID()).thenReturn(1L);
+    Mockito.when(sentryStoreMock.getLastProcessedPathChangeID()).thenReturn(1L);
+
+    PathImageRetriever imageRetriever = new PathImageRetriever(sentryStoreMock, root, true, 0);
+    PathsUpdate pathsUpdate = imageRetriever.retrieveFullImage();
+    assertEquals(1, pathsUpdate.getSeqNum());
+    assertEquals(1, pathsUpdate.getImgNum());
+    assertEquals(Sets.newHashSet("db1"), findAuthzObject(pathsUpdate, "user/db1/tbl1"));
+
+    // A table is created, then db1 is moved
+    PathsUpdate createTable = new PathsUpdate(2, false);
+    createTable.newPathChange("db1.tbl1").addToAddPaths(Lists.newArrayList("user", "db1", "tbl1"));
+    PathsUpdate alterDb = new PathsUpdate(3, false);
+    TPathChanges dbPathChanges = alterDb.newPathChange("db1");
+    dbPathChanges.addToDelPaths(Lists.newArrayList("user", "db1"));
+    dbPathChanges.addToAddPaths(Lists.newArrayList("warehouse", "db1"));
+    Mockito.when(sentryStoreMock.getLastProcessedPathChangeID()).thenReturn(3L);
+    Mockito.when(sentryStoreMock.getMSentryPathChanges(2L, 1000)).thenReturn(Lists.newArrayList(
+        new MSentryPathChange(2, "hash2", createTable), new MSentryPathChange(3, "hash3", alterDb)));
+
+    pathsUpdate = imageRetriever.retrieveFullImage();
+    assertEquals(3, pathsUpdate.getSeqNum());
+    assertEquals(1, pathsUpdate.getImgNum());
+    assertEquals(Sets.newHashSet("db1.tbl1"), findAuthzObject(pathsUpdate, "user/db1/tbl1"));
+    assertEquals(Sets.newHashSet("db1"), findAuthzObject(pathsUpdate, "warehouse/db1"));
+    Mockito.verify(sentryStoreMock, Mockito.times(1)).retrieveFullPathsImageUpdate(root);
+
+    // A new HMS snapshot causes the image to be read again
+    Mockito.when(sentryStoreMock.getLastProcessedImageID()).thenReturn(2L);
+    PathsUpdate newImage = new PathsUpdate(3, 2, true);
+    newImage.toThrift().setPathsDump(paths.getPathsDump().createPathsDump(true));
+    Mockito.when(sentryStoreMock.retrieveFullPathsImageUpdate(root)).thenReturn(newImage);
+    pathsUpdate = imageRetriever.retrieveFullImage();
+    assertEquals(3, pathsUpdate.getSeqNum());
+    assertEquals(2, pathsUpdate.getImgNum());
+    assertEquals(Sets.newHashSet("db1"), findAuthzObject(pathsUpdate, "user/db1/tbl1"));
+    Mockito.verify(sentryStoreMock, Mockito.times(2)).retrieveFullPathsImageUpdate(root);
+  }
+
+  private static List<List<String>> toPaths(String path) {
+    List<List<String>> paths = new ArrayList<>();
+    paths.add(Lists.newArrayList(path.split("/")));
+    return paths;
+  }
+
+  private static Set<String> findAuthzObject(PathsUpdate update, String path) {
+    return new UpdateableAuthzPaths(root).updateFull(update).findAuthzObject(path.split("/"));
+  }
+
+  private static Map<TPrivilegePrincipal, String> getPrivileges(PermissionsUpdate update,
+      String authzObj) {
+    for (TPrivilegeChanges privUpdate : update.getPrivilegeUpdates()) {
+      if (privUpdate.getAuthzObj().equals(authzObj)) {
+        return privUpdate.getAddPrivileges();
+      }
+    }
+    return null;
+  }
+
+  private static Set<String> getActions(PermissionsUpdate update, String authzObj,
+      TPrivilegePrincipal principal) {
+    return Sets.newHashSet(getPrivileges(update, authzObj).get(principal).split(","));
+  }
+
   private boolean comparePaths(Map<String, Collection<String>> expected, List<TPathChanges> actual) {
     if (expected.size() != actual.size()) {
       return false;
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.sentry.hdfs.service.thrift.TPathChanges;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPathDeltaCoalescer {
+
+  private static final String[] PREFIXES = {"/user/hive/warehouse"};
+
+  private final PathDeltaCoalescer coalescer = new PathDeltaCoalescer();
+  private long seqNum = 0;
+
+  @Test
+  public void testAddThenDropIsFolded() {
+    List<PathsUpdate> updates = new ArrayList<>();
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1"));
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1/p=1"));
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1/p=2"));
+    updates.add(dropAll("db1.tbl1"));
+    updates.add(addPaths("db1.tbl2", "/user/hive/warehouse/db1/tbl2"));
+    updates.add(addPaths("db1.tbl2", "/user/hive/warehouse/db1/tbl2/p=1"));
+
+    List<PathsUpdate> coalesced = coalescer.coalesce(updates);
+    assertEquals(1, coalesced.size());
+    PathsUpdate update = coalesced.get(0);
+    assertEquals(seqNum, update.getSeqNum());
+    assertEquals(2, update.getPathChanges().size());
+
+    TPathChanges tbl1 = update.getPathChanges().get(0);
+    assertEquals("db1.tbl1", tbl1.getAuthzObj());
+    assertEquals(Arrays.asList(Arrays.asList(PathsUpdate.ALL_PATHS)), tbl1.getDelPaths());
+    assertTrue(tbl1.getAddPaths().isEmpty());
+
+    TPathChanges tbl2 = update.getPathChanges().get(1);
+    assertEquals(Arrays.asList(path("/user/hive/warehouse/db1/tbl2"),
+        path("/user/hive/warehouse/db1/tbl2/p=1")), tbl2.getAddPaths());
+    assertTrue(tbl2.getDelPaths().isEmpty());
+  }
+
+  @Test
+  public void testRepeatedPartitionAltersAreFolded() {
+    List<PathsUpdate> table = new ArrayList<>();
+    table.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1"));
+    table.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1/loc0"));
+    List<PathsUpdate> updates = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      PathsUpdate alter = newUpdate();
+      TPathChanges changes = alter.newPathChange("db1.tbl1");
+      changes.addToDelPaths(path("/user/hive/warehouse/db1/tbl1/loc" + i));
+      changes.addToAddPaths(path("/user/hive/warehouse/db1/tbl1/loc" + (i + 1)));
+      updates.add(alter);
+    }
+
+    List<PathsUpdate> coalesced = coalescer.coalesce(updates);
+    assertEquals(1, coalesced.size());
+    TPathChanges changes = coalesced.get(0).getPathChanges().get(0);
+    assertEquals(Arrays.asList(path("/user/hive/warehouse/db1/tbl1/loc10")),
+        changes.getAddPaths());
+    assertEquals(10, changes.getDelPathsSize());
+    // Applied on top of the table created earlier
+    updates.addAll(0, table);
+    coalesced.addAll(0, table);
+    assertApplySame(updates, coalesced, Arrays.asList(
+        "/user/hive/warehouse/db1/tbl1/loc0", "/user/hive/warehouse/db1/tbl1/loc5",
+        "/user/hive/warehouse/db1/tbl1/loc10"));
+  }
+
+  @Test
+  public void testRenameEndsBatch() {
+    List<PathsUpdate> updates = new ArrayList<>();
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1"));
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1/p=1"));
+    PathsUpdate rename = newUpdate();
+    rename.newPathChange("db1.tbl2").addToAddPaths(path("/user/hive/warehouse/db1/tbl2"));
+    rename.newPathChange("db1.tbl1").addToDelPaths(path("/user/hive/warehouse/db1/tbl1"));
+    updates.add(rename);
+    updates.add(addPaths("db1.tbl2", "/user/hive/warehouse/db1/tbl2/p=2"));
+
+    List<PathsUpdate> coalesced = coalescer.coalesce(updates);
+    assertEquals(3, coalesced.size());
+    assertEquals(2, coalesced.get(0).getSeqNum());
+    assertSame(rename, coalesced.get(1));
+    assertSame(updates.get(3), coalesced.get(2));
+    assertApplySame(updates, coalesced, Arrays.asList(
+        "/user/hive/warehouse/db1/tbl1/p=1", "/user/hive/warehouse/db1/tbl2/p=1",
+        "/user/hive/warehouse/db1/tbl2/p=2"));
+  }
+
+  @Test
+  public void testRenameShapedResultIsNotCoalesced() {
+    List<PathsUpdate> updates = new ArrayList<>();
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1"));
+    updates.add(delPaths("db1.tbl2", "/user/hive/warehouse/db1/tbl2"));
+
+    // A single update with these two changes would be applied as a rename
+    assertEquals(updates, coalescer.coalesce(updates));
+  }
+
+  @Test
+  public void testDeleteUnderAddedPathEndsBatch() {
+    List<PathsUpdate> updates = new ArrayList<>();
+    updates.add(addPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1"));
+    updates.add(addPaths("db1.tbl2", "/user/hive/warehouse/db1/tbl2"));
+    updates.add(delPaths("db1.tbl1", "/user/hive/warehouse/db1/tbl1/p=1"));
+    updates.add(addPaths("db1.tbl3", "/user/hive/warehouse/db1/tbl3"));
+    updates.add(addPaths("db1.tbl3", "/user/hive/warehouse/db1/tbl3/p=1"));
+
+    List<PathsUpdate> coalesced = coalescer.coalesce(updates);
+    assertEquals(2, coalesced.size());
+    assertEquals(2, coalesced.get(0).getSeqNum());
+    assertEquals(seqNum, coalesced.get(1).getSeqNum());
+  }
+
+  /**
+   * Applies random table and partition changes, and checks that the NameNode
+   * ends up with the same paths whether the updates are coalesced or not.
+   */
+  @Test
+  public void testRandomUpdatesApplySame() {
+    Random random = new Random(7);
+    List<PathsUpdate> updates = new ArrayList<>();
+    List<String> allPaths = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      int tbl = random.nextInt(6);
+      String table = "db1.tbl" + tbl;
+      String tablePath = "/user/hive/warehouse/db1/tbl" + tbl;
+      String partPath = tablePath + "/p=" + random.nextInt(4);
+      allPaths.add(tablePath);
+      allPaths.add(partPath);
+      allPaths.add(partPath + "/file");
+      int operation = random.nextInt(10);
+      if (operation < 3) {
+        updates.add(addPaths(table, tablePath));
+      } else if (operation < 6) {
+        updates.add(addPaths(table, partPath));
+      } else if (operation < 8) {
+        updates.add(delPaths(table, partPath));
+      } else if (operation < 9) {
+        updates.add(dropAll(table));
+      } else {
+        PathsUpdate alter = newUpdate();
+        TPathChanges changes = alter.newPathChange(table);
+        changes.addToDelPaths(path(partPath));
+        changes.addToAddPaths(path(tablePath + "/q=" + random.nextInt(4)));
+        updates.add(alter);
+        allPaths.add(tablePath + "/q=0");
+      }
+    }
+    List<PathsUpdate> coalesced = coalescer.coalesce(updates);
+    assertTrue(coalesced.size() < updates.size());
+    assertEquals(seqNum, coalesced.get(coalesced.size() - 1).getSeqNum());
+    assertApplySame(updates, coalesced, allPaths);
+  }
+
+  private void assertApplySame(List<PathsUpdate> updates, List<PathsUpdate> coalesced,
+      List<String> paths) {
+    UpdateableAuthzPaths expected = apply(updates);
+    UpdateableAuthzPaths actual = apply(coalesced);
+    assertEquals(expected.getLastUpdatedSeqNum(), actual.getLastUpdatedSeqNum());
+    for (String path : paths) {
+      String[] pathElements = path(path).toArray(new String[0]);
+      assertEquals(path, expected.findAuthzObject(pathElements),
+          actual.findAuthzObject(pathElements));
+      assertEquals(path, expected.findAuthzObjectExactMatches(pathElements),
+          actual.findAuthzObjectExactMatches(pathElements));
+    }
+  }
+
+  private static UpdateableAuthzPaths apply(List<PathsUpdate> updates) {
+    UpdateableAuthzPaths authzPaths = new UpdateableAuthzPaths(PREFIXES);
+    PathsUpdate db = new PathsUpdate(0, false);
+    db.newPathChange("db1").addToAddPaths(path("/user/hive/warehouse/db1"));
+    authzPaths.updatePartial(Arrays.asList(db), new ReentrantReadWriteLock());
+    authzPaths.updatePartial(updates, new ReentrantReadWriteLock());
+    return authzPaths;
+  }
+
+  private PathsUpdate newUpdate() {
+    return new PathsUpdate(++seqNum, 1, false);
+  }
+
+  private PathsUpdate addPaths(String authzObj, String path) {
+    PathsUpdate update = newUpdate();
+    update.newPathChange(authzObj).addToAddPaths(path(path));
+    return update;
+  }
+
+  private PathsUpdate delPaths(String authzObj, String path) {
+    PathsUpdate update = newUpdate();
+    update.newPathChange(authzObj).addToDelPaths(path(path));
+    return update;
+  }
+
+  private PathsUpdate dropAll(String authzObj) {
+    PathsUpdate update = newUpdate();
+    update.newPathChange(authzObj).addToDelPaths(Arrays.asList(PathsUpdate.ALL_PATHS));
+    return update;
+  }
+
+  private static List<String> path(String path) {
+    return HMSPaths.getPathElements(path);
+  }
+}
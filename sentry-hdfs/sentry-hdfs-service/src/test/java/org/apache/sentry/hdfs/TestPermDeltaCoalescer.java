@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestPermDeltaCoalescer {
+
+  private static final TPrivilegePrincipal ROLE1 =
+      new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role1");
+  private static final TPrivilegePrincipal ROLE2 =
+      new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role2");
+
+  private final PermDeltaCoalescer coalescer = new PermDeltaCoalescer();
+
+  @Test
+  public void testGrantsAreMerged() {
+    List<PermissionsUpdate> updates = new ArrayList<>();
+    updates.add(grant(1, "db1.tbl1", ROLE1, "SELECT"));
+    updates.add(grant(2, "db1.tbl1", ROLE1, "INSERT"));
+    updates.add(grant(3, "db1.tbl1", ROLE2, "SELECT"));
+    updates.add(grant(4, "db1.tbl1", ROLE1, "select"));
+    PermissionsUpdate addGroup = new PermissionsUpdate(5, false);
+    addGroup.addRoleUpdate("role1").addToAddGroups("group1");
+    updates.add(addGroup);
+
+    List<PermissionsUpdate> coalesced = coalescer.coalesce(updates);
+    assertEquals(1, coalesced.size());
+    PermissionsUpdate update = coalesced.get(0);
+    assertEquals(5, update.getSeqNum());
+    TPrivilegeChanges privChanges = update.addPrivilegeUpdate("db1.tbl1");
+    assertEquals("SELECT,INSERT", privChanges.getAddPrivileges().get(ROLE1));
+    assertEquals("SELECT", privChanges.getAddPrivileges().get(ROLE2));
+    TRoleChanges roleChanges = update.addRoleUpdate("role1");
+    assertEquals(Arrays.asList("group1"), roleChanges.getAddGroups());
+  }
+
+  @Test
+  public void testRevokeEndsBatch() {
+    List<PermissionsUpdate> updates = new ArrayList<>();
+    updates.add(grant(1, "db1", ROLE1, "SELECT"));
+    updates.add(grant(2, "db1.tbl1", ROLE1, "INSERT"));
+    PermissionsUpdate revoke = new PermissionsUpdate(3, false);
+    revoke.addPrivilegeUpdate("db1").putToDelPrivileges(ROLE1, "SELECT");
+    updates.add(revoke);
+    updates.add(grant(4, "db1.tbl1", ROLE1, "SELECT"));
+
+    List<PermissionsUpdate> coalesced = coalescer.coalesce(updates);
+    assertEquals(3, coalesced.size());
+    assertEquals(2, coalesced.get(0).getSeqNum());
+    assertSame(revoke, coalesced.get(1));
+    assertSame(updates.get(3), coalesced.get(2));
+  }
+
+  @Test
+  public void testRenameAndRoleDropAreNotMerged() {
+    List<PermissionsUpdate> updates = new ArrayList<>();
+    PermissionsUpdate rename = new PermissionsUpdate(1, false);
+    rename.addPrivilegeUpdate(PermissionsUpdate.RENAME_PRIVS)
+        .putToAddPrivileges(new TPrivilegePrincipal(TPrivilegePrincipalType.AUTHZ_OBJ,
+            "db1.tbl2"), "db1.tbl2");
+    updates.add(rename);
+    PermissionsUpdate dropRole = new PermissionsUpdate(2, false);
+    dropRole.addRoleUpdate("role1").addToDelGroups(PermissionsUpdate.ALL_GROUPS);
+    updates.add(dropRole);
+
+    assertEquals(updates, coalescer.coalesce(updates));
+  }
+
+  @Test
+  public void testMergeActions() {
+    assertEquals("SELECT", PermDeltaCoalescer.mergeActions(null, "SELECT"));
+    assertEquals("SELECT,INSERT", PermDeltaCoalescer.mergeActions("SELECT", "INSERT"));
+    assertEquals("SELECT,INSERT", PermDeltaCoalescer.mergeActions("SELECT,INSERT", "insert"));
+    assertEquals("SELECT,INSERT,ALTER",
+        PermDeltaCoalescer.mergeActions("SELECT", "INSERT,SELECT,ALTER"));
+  }
+
+  private static PermissionsUpdate grant(long seqNum, String authzObj,
+      TPrivilegePrincipal principal, String action) {
+    PermissionsUpdate update = new PermissionsUpdate(seqNum, false);
+    update.addPrivilegeUpdate(authzObj).putToAddPrivileges(principal, action);
+    return update;
+  }
+}
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.hdfs;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.service.thrift.TSentryPrivilege;
+import org.apache.sentry.core.model.db.AccessConstants;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.provider.db.service.persistent.SentryStore;
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the full images produced by a {@link PermImageCache} updated with the
+ * perm deltas are the same as the ones read from the store.
+ */
+public class TestPermImageCache {
+
+  private static final String ROLE = "role1";
+  private static final TPrivilegePrincipal PRINCIPAL =
+      new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, ROLE);
+
+  private static File dataDir;
+  private static SentryStore sentryStore;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    dataDir = new File(Files.createTempDir(), "sentry_policy_db");
+    Configuration conf = new Configuration(true);
+    conf.set(ServerConfig.SENTRY_VERIFY_SCHEM_VERSION, "false");
+    conf.set(ServerConfig.SENTRY_STORE_JDBC_URL,
+        "jdbc:derby:;databaseName=" + dataDir.getPath() + ";create=true");
+    conf.set(ServerConfig.SENTRY_STORE_JDBC_PASS, "dummy");
+    sentryStore = new SentryStore(conf);
+    sentryStore.setPersistUpdateDeltas(true);
+  }
+
+  @After
+  public void after() {
+    sentryStore.clearAllTables();
+  }
+
+  @AfterClass
+  public static void teardown() {
+    if (sentryStore != null) {
+      sentryStore.stop();
+    }
+    if (dataDir != null) {
+      FileUtils.deleteQuietly(dataDir);
+    }
+  }
+
+  @Test
+  public void testPartialRevokesMatchTheStore() throws Exception {
+    sentryStore.createSentryRole(ROLE);
+    grant(newPrivilege("db1", "tbl1", AccessConstants.ALL));
+    grant(newPrivilege("db2", "", AccessConstants.ALL));
+    grant(newPrivilege("db2", "tbl1", AccessConstants.ALL));
+    grant(newPrivilege("db2", "tbl2", AccessConstants.SELECT));
+    grant(newPrivilege("db2", "tbl3", AccessConstants.INSERT));
+    grant(newPrivilege("db3", "tbl1", AccessConstants.ALL));
+    grant(newPrivilege("db3", "tbl1", "create"));
+
+    PermImageRetriever cachingRetriever = new PermImageRetriever(sentryStore, true, 0);
+    assertEquals(getActions(retrieveFullImageFromStore()),
+        getActions(cachingRetriever.retrieveFullImage()));
+
+    // The store revokes ALL and grants the actions it still gives
+    revoke(newPrivilege("db1", "tbl1", AccessConstants.SELECT));
+    revoke(newPrivilege("db2", "", AccessConstants.SELECT));
+    // CREATE is not a partial revoke action, ALL is left
+    revoke(newPrivilege("db3", "tbl1", "create"));
+
+    Map<String, Map<TPrivilegePrincipal, Set<String>>> storeActions =
+        getActions(retrieveFullImageFromStore());
+    assertEquals(Sets.newHashSet("INSERT"), storeActions.get("db1.tbl1").get(PRINCIPAL));
+    assertEquals(Sets.newHashSet("INSERT"), storeActions.get("db2").get(PRINCIPAL));
+    assertEquals(Sets.newHashSet("INSERT"), storeActions.get("db2.tbl1").get(PRINCIPAL));
+    assertEquals(storeActions, getActions(cachingRetriever.retrieveFullImage()));
+
+    // Revoking ALL on a db revokes every action on its tables
+    revoke(newPrivilege("db2", "", AccessConstants.INSERT));
+    grant(newPrivilege("db2", "", AccessConstants.ALL));
+    revoke(newPrivilege("db2", "", AccessConstants.ALL));
+    revoke(newPrivilege("db3", "tbl1", AccessConstants.ALL));
+    assertEquals(getActions(retrieveFullImageFromStore()),
+        getActions(cachingRetriever.retrieveFullImage()));
+  }
+
+  private static PermissionsUpdate retrieveFullImageFromStore() throws Exception {
+    return new PermImageRetriever(sentryStore).retrieveFullImage();
+  }
+
+  private static TSentryPrivilege newPrivilege(String dbName, String tableName,
+      String action) {
+    TSentryPrivilege privilege = new TSentryPrivilege();
+    privilege.setPrivilegeScope(tableName.isEmpty() ? "Database" : "Table");
+    privilege.setServerName("server1");
+    privilege.setDbName(dbName);
+    privilege.setTableName(tableName);
+    privilege.setAction(action);
+    privilege.setCreateTime(System.currentTimeMillis());
+    return privilege;
+  }
+
+  private static String getAuthzObj(TSentryPrivilege privilege) {
+    return privilege.getTableName().isEmpty() ? privilege.getDbName() :
+        privilege.getDbName() + "." + privilege.getTableName();
+  }
+
+  /**
+   * Grants a privilege with the perm delta {@code SentryPlugin} persists for it.
+   */
+  private static void grant(TSentryPrivilege privilege) throws Exception {
+    PermissionsUpdate update = new PermissionsUpdate(0, false);
+    update.addPrivilegeUpdate(getAuthzObj(privilege)).putToAddPrivileges(
+        PRINCIPAL, privilege.getAction().toUpperCase());
+    Map<TSentryPrivilege, Updateable.Update> updates = Maps.newHashMap();
+    updates.put(privilege, update);
+    sentryStore.alterSentryRoleGrantPrivileges(ROLE, Sets.newHashSet(privilege), updates);
+  }
+
+  /**
+   * Revokes a privilege with the perm delta {@code SentryPlugin} persists for it.
+   */
+  private static void revoke(TSentryPrivilege privilege) throws Exception {
+    PermissionsUpdate update = new PermissionsUpdate(0, false);
+    update.addPrivilegeUpdate(getAuthzObj(privilege)).putToDelPrivileges(
+        PRINCIPAL, privilege.getAction().toUpperCase());
+    Map<TSentryPrivilege, Updateable.Update> updates = Maps.newHashMap();
+    updates.put(privilege, update);
+    sentryStore.alterSentryRoleRevokePrivileges(ROLE, Sets.newHashSet(privilege), updates);
+  }
+
+  /**
+   * @return the actions of each principal on each object of a full image, without the
+   *         objects no principal has privileges on
+   */
+  private static Map<String, Map<TPrivilegePrincipal, Set<String>>> getActions(
+      PermissionsUpdate update) {
+    Map<String, Map<TPrivilegePrincipal, Set<String>>> actions = new HashMap<>();
+    for (TPrivilegeChanges privChanges : update.getPrivilegeUpdates()) {
+      if (privChanges.getAddPrivileges().isEmpty()) {
+        continue;
+      }
+      Map<TPrivilegePrincipal, Set<String>> objActions = new HashMap<>();
+      for (Map.Entry<TPrivilegePrincipal, String> privEnt :
+          privChanges.getAddPrivileges().entrySet()) {
+        objActions.put(privEnt.getKey(), Sets.newHashSet(privEnt.getValue().split(",")));
+      }
+      actions.put(privChanges.getAuthzObj(), objActions);
+    }
+    return actions;
+  }
+}
@@ -26,6 +26,7 @@ import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
 import org.apache.sentry.provider.db.SentryPolicyStorePlugin;
 import org.apache.sentry.provider.db.service.model.MSentryPathChange;
 import org.apache.sentry.provider.db.service.model.MSentryPermChange;
+import org.apache.sentry.provider.db.service.persistent.CounterWait;
 import org.apache.sentry.provider.db.service.persistent.PermissionsImage;
 import org.apache.sentry.provider.db.service.persistent.SentryStore;
 import org.junit.BeforeClass;
@@ -40,13 +41,18 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class TestSentryHDFSServiceProcessor {
+  private static final int MAX_DELTAS = ServerConfig.SENTRY_HDFS_UPDATES_MAX_DELTAS_DEFAULT;
+
   private static SentryHDFSServiceProcessor serviceProcessor;
   private static SentryStore sentryStoreMock;
+  private static CounterWait deltaChangeWait;
 
   @BeforeClass
   public static void setUp() throws SentryPolicyStorePlugin.SentryPluginException {
     serviceProcessor = new SentryHDFSServiceProcessor();
     sentryStoreMock = Mockito.mock(SentryStore.class);
+    deltaChangeWait = new CounterWait();
+    Mockito.when(sentryStoreMock.getDeltaChangeWait()).thenReturn(deltaChangeWait);
     Configuration conf = new Configuration();
     // enable full update triger via pub-sub mechanism
     conf.set(ServerConfig.SENTRY_SERVICE_FULL_UPDATE_PUBSUB, "true");
@@ -115,14 +121,14 @@ public class TestSentryHDFSServiceProcessor {
         .thenReturn(3L);
     Mockito.when(sentryStoreMock.pathChangeExists(2))
         .thenReturn(true);
-    Mockito.when(sentryStoreMock.getMSentryPathChanges(2))
+    Mockito.when(sentryStoreMock.getMSentryPathChanges(2, MAX_DELTAS))
         .thenReturn(Arrays.asList(new MSentryPathChange(3, "u3", new PathsUpdate(3, 1, false))));
 
     Mockito.when(sentryStoreMock.getLastProcessedPermChangeID())
         .thenReturn(3L);
     Mockito.when(sentryStoreMock.permChangeExists(2))
         .thenReturn(true);
-    Mockito.when(sentryStoreMock.getMSentryPermChanges(2))
+    Mockito.when(sentryStoreMock.getMSentryPermChanges(2, MAX_DELTAS))
         .thenReturn(Arrays.asList(new MSentryPermChange(3, new PermissionsUpdate(3, false))));
 
     TAuthzUpdateRequest updateRequest = new TAuthzUpdateRequest(2, 2, 1);
@@ -192,4 +198,99 @@ public class TestSentryHDFSServiceProcessor {
     assertEquals(0, sentryUpdates.getAuthzPathUpdateSize());
     assertEquals(0, sentryUpdates.getAuthzPermUpdateSize());
   }
+
+  @Test
+  public void testRequestSyncUpdatesWithWaitTimeoutReturnsEmptyResultsAfterTimeout() throws Exception {
+    Mockito.when(sentryStoreMock.getLastProcessedImageID())
+        .thenReturn(1L);
+    Mockito.when(sentryStoreMock.getLastProcessedPathChangeID())
+        .thenReturn(2L);
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID())
+        .thenReturn(2L);
+
+    TAuthzUpdateRequest updateRequest = new TAuthzUpdateRequest(3, 3, 1);
+    updateRequest.setWaitTimeoutMs(100);
+    long start = System.currentTimeMillis();
+    TAuthzUpdateResponse sentryUpdates= serviceProcessor.get_authz_updates(updateRequest);
+
+    assertTrue(System.currentTimeMillis() - start >= 100);
+    assertEquals(0, sentryUpdates.getAuthzPathUpdateSize());
+    assertEquals(0, sentryUpdates.getAuthzPermUpdateSize());
+  }
+
+  @Test
+  public void testRequestSyncUpdatesWithWaitTimeoutReturnsNewDeltaChanges() throws Exception {
+    Mockito.when(sentryStoreMock.getLastProcessedImageID())
+        .thenReturn(1L);
+    Mockito.when(sentryStoreMock.getLastProcessedPathChangeID())
+        .thenReturn(2L);
+    // No new perm changes on the first check, one after the change is committed
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID())
+        .thenReturn(2L)
+        .thenReturn(3L);
+    Mockito.when(sentryStoreMock.permChangeExists(3))
+        .thenReturn(true);
+    Mockito.when(sentryStoreMock.getMSentryPermChanges(3, MAX_DELTAS))
+        .thenReturn(Arrays.asList(new MSentryPermChange(3, new PermissionsUpdate(3, false))));
+
+    Thread committer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+        deltaChangeWait.increment();
+      }
+    });
+    committer.start();
+
+    long waitTimeoutMs = 30000;
+    TAuthzUpdateRequest updateRequest = new TAuthzUpdateRequest(3, 3, 1);
+    updateRequest.setWaitTimeoutMs(waitTimeoutMs);
+    long start = System.currentTimeMillis();
+    TAuthzUpdateResponse sentryUpdates= serviceProcessor.get_authz_updates(updateRequest);
+    committer.join();
+
+    // The request returns as soon as the change is committed
+    assertTrue(System.currentTimeMillis() - start < waitTimeoutMs);
+    assertEquals(0, sentryUpdates.getAuthzPathUpdateSize());
+    assertEquals(1, sentryUpdates.getAuthzPermUpdateSize());
+    assertEquals(3, sentryUpdates.getAuthzPermUpdate().get(0).getSeqNum());
+    assertFalse(sentryUpdates.getAuthzPermUpdate().get(0).isHasfullImage());
+  }
+
+  @Test
+  public void testRequestSyncUpdatesWhenDeltasAreBoundedReturnsMoreUpdatesAvailable() throws Exception {
+    Mockito.when(sentryStoreMock.getLastProcessedImageID())
+        .thenReturn(1L);
+    Mockito.when(sentryStoreMock.getLastProcessedPathChangeID())
+        .thenReturn(2L);
+    // More perm changes are persisted than returned at once
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID())
+        .thenReturn(MAX_DELTAS + 5L);
+    Mockito.when(sentryStoreMock.permChangeExists(3))
+        .thenReturn(true);
+    List<MSentryPermChange> permChanges = new ArrayList<>(MAX_DELTAS);
+    for (int i = 0; i < MAX_DELTAS; i++) {
+      permChanges.add(new MSentryPermChange(3 + i, new PermissionsUpdate(3 + i, false)));
+    }
+    Mockito.when(sentryStoreMock.getMSentryPermChanges(3, MAX_DELTAS))
+        .thenReturn(permChanges);
+
+    TAuthzUpdateRequest updateRequest = new TAuthzUpdateRequest(3, 3, 1);
+    TAuthzUpdateResponse sentryUpdates= serviceProcessor.get_authz_updates(updateRequest);
+
+    assertEquals(0, sentryUpdates.getAuthzPathUpdateSize());
+    assertEquals(MAX_DELTAS, sentryUpdates.getAuthzPermUpdateSize());
+    assertTrue(sentryUpdates.isMoreUpdatesAvailable());
+
+    // Once the NameNode caught up, no more updates are available
+    Mockito.when(sentryStoreMock.getLastProcessedPermChangeID())
+        .thenReturn(MAX_DELTAS + 2L);
+    sentryUpdates= serviceProcessor.get_authz_updates(updateRequest);
+    assertEquals(MAX_DELTAS, sentryUpdates.getAuthzPermUpdateSize());
+    assertFalse(sentryUpdates.isMoreUpdatesAvailable());
+  }
 }
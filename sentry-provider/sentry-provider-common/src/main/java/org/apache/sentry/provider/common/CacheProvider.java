@@ -13,6 +13,7 @@
 package org.apache.sentry.provider.common;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Table;
 import org.apache.sentry.core.common.ActiveRoleSet;
 import org.apache.sentry.core.common.Authorizable;
 
@@ -31,6 +32,14 @@ public class CacheProvider {
     this.initialized = true;
   }
 
+  /**
+   * @return the cached table, replaced by a new one whenever the cache is reloaded, or
+   * null if the cache is not initialized
+   */
+  public Table<String, String, Set<String>> getCachedTable() {
+    return initialized ? cache.getCache() : null;
+  }
+
   public ImmutableSet<String> getPrivileges(Set<String> groups, ActiveRoleSet roleSet,
                                             Authorizable... authorizableHierarchy) {
     if (!initialized) {
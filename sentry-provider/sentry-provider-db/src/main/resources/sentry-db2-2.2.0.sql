@@ -227,7 +227,8 @@ CREATE TABLE SENTRY_PERM_CHANGE
 (
     CHANGE_ID bigint NOT NULL,
     CREATE_TIME_MS bigint NOT NULL,
-    PERM_CHANGE VARCHAR(4000) NOT NULL
+    PERM_CHANGE VARCHAR(4000),
+    PERM_CHANGE_DATA BLOB
 );
 
 ALTER TABLE SENTRY_PERM_CHANGE ADD CONSTRAINT SENTRY_PERM_CHANGE_PK PRIMARY KEY (CHANGE_ID);
@@ -238,7 +239,8 @@ CREATE TABLE SENTRY_PATH_CHANGE
     CHANGE_ID bigint NOT NULL,
     NOTIFICATION_HASH char(40) NOT NULL,
     CREATE_TIME_MS bigint NOT NULL,
-    PATH_CHANGE CLOB NOT NULL
+    PATH_CHANGE CLOB,
+    PATH_CHANGE_DATA BLOB
 );
 
 -- Constraints for table SENTRY_PATH_CHANGE for class [org.apache.sentry.provider.db.service.model.MSentryPathChange]
@@ -263,7 +263,8 @@ CREATE TABLE `SENTRY_PERM_CHANGE`
 (
     `CHANGE_ID` BIGINT NOT NULL,
     `CREATE_TIME_MS` BIGINT NOT NULL,
-    `PERM_CHANGE` VARCHAR(4000) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+    `PERM_CHANGE` VARCHAR(4000) CHARACTER SET utf8 COLLATE utf8_bin,
+    `PERM_CHANGE_DATA` longblob,
     CONSTRAINT `SENTRY_PERM_CHANGE_PK` PRIMARY KEY (`CHANGE_ID`)
 ) ENGINE=INNODB;
 
@@ -273,7 +274,8 @@ CREATE TABLE `SENTRY_PATH_CHANGE`
     `CHANGE_ID` BIGINT NOT NULL,
     `NOTIFICATION_HASH` CHAR(40) NOT NULL,
     `CREATE_TIME_MS` BIGINT NOT NULL,
-    `PATH_CHANGE` longtext CHARACTER SET utf8 COLLATE utf8_bin NOT NULL,
+    `PATH_CHANGE` longtext CHARACTER SET utf8 COLLATE utf8_bin,
+    `PATH_CHANGE_DATA` longblob,
     CONSTRAINT `SENTRY_PATH_CHANGE_PK` PRIMARY KEY (`CHANGE_ID`)
 ) ENGINE=INNODB;
 
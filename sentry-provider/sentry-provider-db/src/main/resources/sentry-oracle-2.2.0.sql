@@ -242,7 +242,8 @@ CREATE TABLE "SENTRY_PERM_CHANGE"
 (
     "CHANGE_ID" NUMBER NOT NULL,
     "CREATE_TIME_MS" NUMBER NOT NULL,
-    "PERM_CHANGE" VARCHAR2(4000) NOT NULL
+    "PERM_CHANGE" VARCHAR2(4000),
+    "PERM_CHANGE_DATA" BLOB
 );
 
 ALTER TABLE "SENTRY_PERM_CHANGE" ADD CONSTRAINT "SENTRY_PERM_CHANGE_PK" PRIMARY KEY ("CHANGE_ID");
@@ -253,7 +254,8 @@ CREATE TABLE "SENTRY_PATH_CHANGE"
     "CHANGE_ID" NUMBER NOT NULL,
     "NOTIFICATION_HASH" CHAR(40) NOT NULL,
     "CREATE_TIME_MS" NUMBER NOT NULL,
-    "PATH_CHANGE" CLOB NOT NULL
+    "PATH_CHANGE" CLOB,
+    "PATH_CHANGE_DATA" BLOB
 );
 
 -- Constraints for table SENTRY_PATH_CHANGE for class [org.apache.sentry.provider.db.service.model.MSentryPathChange]
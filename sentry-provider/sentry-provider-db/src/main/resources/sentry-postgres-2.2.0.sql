@@ -251,7 +251,8 @@ CREATE TABLE "SENTRY_PERM_CHANGE"
 (
     "CHANGE_ID" bigint NOT NULL,
     "CREATE_TIME_MS" bigint NOT NULL,
-    "PERM_CHANGE" VARCHAR(4000) NOT NULL,
+    "PERM_CHANGE" VARCHAR(4000),
+    "PERM_CHANGE_DATA" bytea,
     CONSTRAINT "SENTRY_PERM_CHANGE_PK" PRIMARY KEY ("CHANGE_ID")
 );
 
@@ -261,7 +262,8 @@ CREATE TABLE "SENTRY_PATH_CHANGE"
     "CHANGE_ID" bigint NOT NULL,
     "NOTIFICATION_HASH" CHAR(40) NOT NULL,
     "CREATE_TIME_MS" bigint NOT NULL,
-    "PATH_CHANGE" text NOT NULL,
+    "PATH_CHANGE" text,
+    "PATH_CHANGE_DATA" bytea,
     CONSTRAINT "SENTRY_PATH_CHANGE_PK" PRIMARY KEY ("CHANGE_ID")
 );
 
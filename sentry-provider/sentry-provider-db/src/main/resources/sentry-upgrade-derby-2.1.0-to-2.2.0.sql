@@ -1,2 +1,8 @@
+-- Path and permission deltas in binary format, the JSON columns are only kept for old deltas
+ALTER TABLE SENTRY_PERM_CHANGE ADD COLUMN PERM_CHANGE_DATA BLOB;
+ALTER TABLE SENTRY_PERM_CHANGE ALTER COLUMN PERM_CHANGE NULL;
+ALTER TABLE SENTRY_PATH_CHANGE ADD COLUMN PATH_CHANGE_DATA BLOB;
+ALTER TABLE SENTRY_PATH_CHANGE ALTER COLUMN PATH_CHANGE NULL;
+
 -- Version update
 UPDATE SENTRY_VERSION SET SCHEMA_VERSION='2.2.0', VERSION_COMMENT='Sentry release version 2.2.0' WHERE VER_ID=1;
\ No newline at end of file
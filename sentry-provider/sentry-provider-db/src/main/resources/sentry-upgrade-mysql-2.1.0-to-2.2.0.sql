@@ -1,5 +1,11 @@
 SELECT 'Upgrading Sentry store schema from 2.1.0 to 2.2.0' AS ' ';
 
+-- Path and permission deltas in binary format, the JSON columns are only kept for old deltas
+ALTER TABLE `SENTRY_PERM_CHANGE` ADD COLUMN `PERM_CHANGE_DATA` longblob;
+ALTER TABLE `SENTRY_PERM_CHANGE` MODIFY `PERM_CHANGE` VARCHAR(4000) CHARACTER SET utf8 COLLATE utf8_bin NULL;
+ALTER TABLE `SENTRY_PATH_CHANGE` ADD COLUMN `PATH_CHANGE_DATA` longblob;
+ALTER TABLE `SENTRY_PATH_CHANGE` MODIFY `PATH_CHANGE` longtext CHARACTER SET utf8 COLLATE utf8_bin NULL;
+
 UPDATE SENTRY_VERSION SET SCHEMA_VERSION='2.2.0', VERSION_COMMENT='Sentry release version 2.2.0' WHERE VER_ID=1;
 
 SELECT 'Finish upgrading Sentry store schema from 2.1.0 to 2.2.0' AS ' ';
\ No newline at end of file
@@ -1,6 +1,12 @@
 SELECT 'Upgrading Sentry store schema from 2.1.0 to 2.2.0' AS Status from dual;
 
 
+-- Path and permission deltas in binary format, the JSON columns are only kept for old deltas
+ALTER TABLE "SENTRY_PERM_CHANGE" ADD ("PERM_CHANGE_DATA" BLOB);
+ALTER TABLE "SENTRY_PERM_CHANGE" MODIFY ("PERM_CHANGE" NULL);
+ALTER TABLE "SENTRY_PATH_CHANGE" ADD ("PATH_CHANGE_DATA" BLOB);
+ALTER TABLE "SENTRY_PATH_CHANGE" MODIFY ("PATH_CHANGE" NULL);
+
 UPDATE SENTRY_VERSION SET SCHEMA_VERSION='2.2.0', VERSION_COMMENT='Sentry release version 2.2.0' WHERE VER_ID=1;
 
 SELECT 'Finished upgrading Sentry store schema from 2.010 to 2.2.0' AS Status from dual;
\ No newline at end of file
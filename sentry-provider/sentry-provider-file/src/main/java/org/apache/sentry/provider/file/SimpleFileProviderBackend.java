@@ -18,16 +18,28 @@ package org.apache.sentry.provider.file;
 
 import static org.apache.sentry.core.common.utils.SentryConstants.ROLE_SPLITTER;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.sentry.core.common.ActiveRoleSet;
@@ -46,6 +58,7 @@ import org.apache.shiro.config.Ini;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.HashBasedTable;
@@ -59,18 +72,42 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.Table.Cell;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Provider backend reading the group-role-privilege mapping from a policy file.
+ * <p>
+ * When <pre>sentry.provider.file.reload.interval.ms</pre> is set to a positive value,
+ * a background thread polls the policy file and the per-db policy files of its
+ * <pre>[databases]</pre> section, and re-parses them once their modification times and
+ * content digest change. The new table is built off the request path and published
+ * with volatile writes, the table last, so readers never block nor see a partly built
+ * table. A policy that fails to parse or validate is logged and ignored; the
+ * previously loaded privileges stay in effect.
+ */
 public class SimpleFileProviderBackend extends CacheProvider implements ProviderBackend {
 
   private static final Logger LOGGER = LoggerFactory
       .getLogger(SimpleFileProviderBackend.class);
 
+  public static final String RELOAD_INTERVAL_MS = "sentry.provider.file.reload.interval.ms";
+  public static final long RELOAD_INTERVAL_MS_DEFAULT = 0L;
+  private static final String RELOAD_THREAD_NAME = "sentry-policy-file-reloader-%d";
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
   private final FileSystem fileSystem;
   private final Path resourcePath;
   private final Configuration conf;
-  private final List<String> configErrors;
-  private final List<String> configWarnings;
+  private final long reloadIntervalMs;
+  private volatile List<String> configErrors;
+  private volatile List<String> configWarnings;
+  private volatile Table<String, String, Set<String>> groupRolePrivilegeTable;
   private TableCache cache;
+  // Version of the policy files backing groupRolePrivilegeTable, only touched
+  // by initialize() and the reload thread.
+  private PolicyFileVersion loadedVersion;
+  private ScheduledExecutorService reloadExecutor;
   /**
    * Each group, role, and privilege in groupRolePrivilegeTable is
    * interned using a weak interner so that we only store each string
@@ -90,8 +127,9 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
     this.resourcePath = resourcePath;
     this.fileSystem = resourcePath.getFileSystem(conf);
     this.conf = conf;
-    this.configErrors = Lists.newArrayList();
-    this.configWarnings = Lists.newArrayList();
+    this.reloadIntervalMs = conf.getLong(RELOAD_INTERVAL_MS, RELOAD_INTERVAL_MS_DEFAULT);
+    this.configErrors = ImmutableList.of();
+    this.configWarnings = ImmutableList.of();
     this.validators = ImmutableList.of();
     this.allowPerDatabaseSection = true;
     this.initialized = false;
@@ -108,15 +146,161 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
     }
     this.validators = context.getValidators();
     this.allowPerDatabaseSection = context.isAllowPerDatabase();
-    final Table<String, String, Set<String>> table = parse();
+    try {
+      loadedVersion = readVersion();
+    } catch (IOException e) {
+      // parse() reports the unreadable file
+      loadedVersion = null;
+    }
+    publish(parse());
     this.cache = new TableCache() {
       @Override
       public Table<String, String, Set<String>> getCache() {
-        return table;
+        return groupRolePrivilegeTable;
       }
     };
     super.initialize(cache);
     this.initialized = true;
+    if (reloadIntervalMs > 0) {
+      startReloader();
+    }
+  }
+
+  private void startReloader() {
+    reloadExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat(RELOAD_THREAD_NAME)
+        .setDaemon(true)
+        .build());
+    reloadExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          reloadIfChanged();
+        } catch (Throwable t) {
+          // Never let an exception cancel the periodic reload
+          LOGGER.error("Error reloading policy file " + resourcePath, t);
+        }
+      }
+    }, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+    LOGGER.info("Reloading policy file {} every {} ms when it changes", resourcePath,
+        reloadIntervalMs);
+  }
+
+  /**
+   * Re-parses the policy file when the modification times, lengths and content digest
+   * of the policy file and of its per-db policy files show that they changed since the
+   * last load. The parsed table replaces the live one only when the files were read and
+   * validated without errors.
+   * @return true if a new policy was published, false otherwise
+   */
+  @VisibleForTesting
+  synchronized boolean reloadIfChanged() throws IOException {
+    if (loadedVersion != null && hasSameStatuses(loadedVersion)) {
+      return false;
+    }
+    PolicyFileVersion version = readVersion();
+    if (loadedVersion != null && Arrays.equals(loadedVersion.digest, version.digest)) {
+      // Touched but not modified
+      loadedVersion = version;
+      return false;
+    }
+    ParsedPolicy policy = parse();
+    // Remember the version even if it is rejected so a bad file is not re-parsed on every poll
+    loadedVersion = version;
+    if (!policy.errors.isEmpty()) {
+      LOGGER.error("Policy file {} has errors, keeping the previously loaded policy: {}",
+          resourcePath, policy.errors);
+      return false;
+    }
+    publish(policy);
+    LOGGER.info("Reloaded policy file {}", resourcePath);
+    return true;
+  }
+
+  private void publish(ParsedPolicy policy) {
+    this.configErrors = policy.errors;
+    this.configWarnings = policy.warnings;
+    // Written last, requests only read the table
+    this.groupRolePrivilegeTable = policy.table;
+  }
+
+  /**
+   * Reads the statuses and contents of the policy file and of the per-db policy files
+   * its [databases] section references. Each status is read before the content, so a
+   * file modified in between is seen as changed by the next poll.
+   */
+  private PolicyFileVersion readVersion() throws IOException {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("Digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+    }
+    Map<Path, FileStatus> statuses = new LinkedHashMap<>();
+    statuses.put(resourcePath, fileSystem.getFileStatus(resourcePath));
+    byte[] content = read(fileSystem, resourcePath);
+    messageDigest.update(content);
+
+    Ini ini = new Ini();
+    try {
+      ini.load(new ByteArrayInputStream(content));
+    } catch (RuntimeException e) {
+      // parse() reports the malformed file
+      return new PolicyFileVersion(statuses, messageDigest.digest());
+    }
+    Ini.Section filesSection = ini.getSection(PolicyFileConstants.DATABASES);
+    if (filesSection != null) {
+      for (String location : filesSection.values()) {
+        Path perDbPolicy = getPerDbPolicyPath(location);
+        FileSystem perDbFileSystem = perDbPolicy.getFileSystem(conf);
+        FileStatus status = getFileStatus(perDbFileSystem, perDbPolicy);
+        statuses.put(perDbPolicy, status);
+        messageDigest.update(perDbPolicy.toString().getBytes(StandardCharsets.UTF_8));
+        // parse() reports a missing per-db policy file, which must be seen once it appears
+        if (status != null) {
+          messageDigest.update(read(perDbFileSystem, perDbPolicy));
+        }
+      }
+    }
+    return new PolicyFileVersion(statuses, messageDigest.digest());
+  }
+
+  /**
+   * @return true if the policy files of the version still have the same modification
+   * times and lengths, and the missing ones are still missing
+   */
+  private boolean hasSameStatuses(PolicyFileVersion version) throws IOException {
+    for (Map.Entry<Path, FileStatus> entry : version.statuses.entrySet()) {
+      Path path = entry.getKey();
+      FileStatus loaded = entry.getValue();
+      FileStatus status = getFileStatus(path.getFileSystem(conf), path);
+      if (loaded == null || status == null) {
+        if (loaded != status) {
+          return false;
+        }
+      } else if (loaded.getModificationTime() != status.getModificationTime() ||
+          loaded.getLen() != status.getLen()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the status of the file, or null if it does not exist
+   */
+  private static FileStatus getFileStatus(FileSystem fs, Path path) throws IOException {
+    try {
+      return fs.getFileStatus(path);
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
+  private static byte[] read(FileSystem fs, Path path) throws IOException {
+    try (InputStream in = fs.open(path)) {
+      return ByteStreams.toByteArray(in);
+    }
   }
 
   @Override
@@ -128,7 +312,12 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
 
   @Override
   public void close() {
-    // SENTRY-847 will use HiveAuthBinding again, so groupRolePrivilegeTable shouldn't clear itself
+    // SENTRY-847 will use HiveAuthBinding again, so groupRolePrivilegeTable shouldn't clear itself.
+    // Only the reloader is stopped; the last loaded policy keeps being served.
+    if (reloadExecutor != null) {
+      reloadExecutor.shutdownNow();
+      reloadExecutor = null;
+    }
   }
 
   @Override
@@ -147,9 +336,9 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
     }
   }
 
-  private Table<String, String, Set<String>> parse() {
-    configErrors.clear();
-    configWarnings.clear();
+  private ParsedPolicy parse() {
+    List<String> configErrors = Lists.newArrayList();
+    List<String> configWarnings = Lists.newArrayList();
     Table<String, String, Set<String>> groupRolePrivilegeTable = HashBasedTable.create();
     Table<String, String, Set<String>> groupRolePrivilegeTableTemp = HashBasedTable.create();
     Ini ini;
@@ -178,7 +367,8 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
           }
         }
       }
-      parseIni(null, ini, validators, resourcePath, groupRolePrivilegeTableTemp);
+      parseIni(null, ini, validators, resourcePath, groupRolePrivilegeTableTemp,
+          configErrors, configWarnings);
       mergeResult(groupRolePrivilegeTable, groupRolePrivilegeTableTemp);
       groupRolePrivilegeTableTemp.clear();
       Ini.Section filesSection = ini.getSection(PolicyFileConstants.DATABASES);
@@ -190,10 +380,7 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
       } else {
         for(Map.Entry<String, String> entry : filesSection.entrySet()) {
           String database = Strings.nullToEmpty(entry.getKey()).trim().toLowerCase();
-          Path perDbPolicy = new Path(Strings.nullToEmpty(entry.getValue()).trim());
-          if(isRelative(perDbPolicy)) {
-            perDbPolicy = new Path(resourcePath.getParent(), perDbPolicy);
-          }
+          Path perDbPolicy = getPerDbPolicyPath(entry.getValue());
           try {
             LOGGER.debug("Parsing " + perDbPolicy);
             Ini perDbIni = PolicyFiles.loadFromPath(perDbPolicy.getFileSystem(conf), perDbPolicy);
@@ -206,7 +393,8 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
                   + " section in " + perDbPolicy);
               throw new SentryConfigurationException("Per-db policy files cannot contain " + PolicyFileConstants.DATABASES + " section");
             }
-            parseIni(database, perDbIni, validators, perDbPolicy, groupRolePrivilegeTableTemp);
+            parseIni(database, perDbIni, validators, perDbPolicy, groupRolePrivilegeTableTemp,
+                configErrors, configWarnings);
             mergeResult(groupRolePrivilegeTable, groupRolePrivilegeTableTemp);
             groupRolePrivilegeTableTemp.clear();
           } catch (Exception e) {
@@ -221,7 +409,19 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
       LOGGER.error("Error processing file, ignoring " + resourcePath, e);
     }
 
-    return groupRolePrivilegeTable;
+    return new ParsedPolicy(groupRolePrivilegeTable, configErrors, configWarnings);
+  }
+
+  /**
+   * @return the path of a per-db policy file, relative paths being relative to the
+   * directory of the policy file
+   */
+  private Path getPerDbPolicyPath(String location) {
+    Path perDbPolicy = new Path(Strings.nullToEmpty(location).trim());
+    if(isRelative(perDbPolicy)) {
+      perDbPolicy = new Path(resourcePath.getParent(), perDbPolicy);
+    }
+    return perDbPolicy;
   }
 
   /**
@@ -249,7 +449,8 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
 
   private void parseIni(String database, Ini ini,
       List<? extends PrivilegeValidator> validators, Path policyPath,
-      Table<String, String, Set<String>> groupRolePrivilegeTable) {
+      Table<String, String, Set<String>> groupRolePrivilegeTable,
+      List<String> configErrors, List<String> configWarnings) {
     Ini.Section privilegesSection = ini.getSection(PolicyFileConstants.ROLES);
     boolean invalidConfiguration = false;
     if (privilegesSection == null) {
@@ -267,13 +468,14 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
     }
     if (!invalidConfiguration) {
       parsePrivileges(database, privilegesSection, groupsSection, validators, policyPath,
-          groupRolePrivilegeTable);
+          groupRolePrivilegeTable, configErrors, configWarnings);
     }
   }
 
   private void parsePrivileges(@Nullable String database, Ini.Section rolesSection,
       Ini.Section groupsSection, List<? extends PrivilegeValidator> validators, Path policyPath,
-      Table<String, String, Set<String>> groupRolePrivilegeTable) {
+      Table<String, String, Set<String>> groupRolePrivilegeTable,
+      List<String> configErrors, List<String> configWarnings) {
     Multimap<String, String> roleNameToPrivilegeMap = HashMultimap
         .create();
     for (Map.Entry<String, String> entry : rolesSection.entrySet()) {
@@ -340,4 +542,35 @@ public class SimpleFileProviderBackend extends CacheProvider implements Provider
   public Table<String, String, Set<String>> getGroupRolePrivilegeTable() {
     return this.cache.getCache();
   }
+
+  /**
+   * Result of parsing the policy file: the table and the messages collected on the way.
+   */
+  private static final class ParsedPolicy {
+    private final Table<String, String, Set<String>> table;
+    private final List<String> errors;
+    private final List<String> warnings;
+
+    private ParsedPolicy(Table<String, String, Set<String>> table, List<String> errors,
+        List<String> warnings) {
+      this.table = table;
+      this.errors = ImmutableList.copyOf(errors);
+      this.warnings = ImmutableList.copyOf(warnings);
+    }
+  }
+
+  /**
+   * Identifies a version of the policy by the statuses of the policy file and of its
+   * per-db policy files, and by the digest of their contents.
+   */
+  private static final class PolicyFileVersion {
+    // Status of each file, the policy file first, null for the missing per-db files
+    private final Map<Path, FileStatus> statuses;
+    private final byte[] digest;
+
+    private PolicyFileVersion(Map<Path, FileStatus> statuses, byte[] digest) {
+      this.statuses = statuses;
+      this.digest = digest;
+    }
+  }
 }
@@ -18,10 +18,13 @@
  */
 package org.apache.sentry.provider.file;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 
 import org.apache.commons.io.FileUtils;
@@ -40,6 +43,11 @@ public class TestSimpleFileProvderBackend {
 
   private static final String resourcePath = "test-authz-provider-local-group-mapping.ini";
 
+  private static final String RELOADED_POLICY = "[groups]\n" +
+      "manager = functions\n" +
+      "[roles]\n" +
+      "functions = server=server1->functions\n";
+
   private SimpleFileProviderBackend backend;
   private ProviderBackendContext context;
   private File baseDir;
@@ -120,4 +128,68 @@ public class TestSimpleFileProvderBackend {
         backend.getPrivileges(Sets.newHashSet("manager"),
             new ActiveRoleSet(Sets.newHashSet("junior_analyst_role", "functions"))));
   }
+
+  @Test
+  public void testReloadUnchangedFile() throws IOException {
+    backend.initialize(context);
+    assertFalse(backend.reloadIfChanged());
+  }
+
+  @Test
+  public void testReloadChangedFile() throws IOException {
+    backend.initialize(context);
+    Files.write(RELOADED_POLICY, new File(baseDir, resourcePath), StandardCharsets.UTF_8);
+    assertTrue(backend.reloadIfChanged());
+    assertEquals(Sets.newHashSet("server=server1->functions"),
+        backend.getPrivileges(Sets.newHashSet("manager"), ActiveRoleSet.ALL));
+    assertFalse(backend.reloadIfChanged());
+  }
+
+  @Test
+  public void testReloadInvalidFileKeepsPrivileges() throws IOException {
+    backend.initialize(context);
+    // No [roles] section
+    Files.write("[groups]\nmanager = functions\n", new File(baseDir, resourcePath),
+        StandardCharsets.UTF_8);
+    assertFalse(backend.reloadIfChanged());
+    assertEquals(Sets.newHashSet("server=server1->db=customers->table=purchases->select",
+        "server=server1->db=analyst1", "server=server1->db=jranalyst1->table=*->select",
+        "server=server1->db=jranalyst1", "server=server1->functions"),
+        backend.getPrivileges(Sets.newHashSet("manager"), ActiveRoleSet.ALL));
+    backend.validatePolicy(true);
+  }
+
+  @Test
+  public void testReloadChangedPerDbFile() throws IOException {
+    File perDbFile = new File(baseDir, "db1.ini");
+    Files.write("[groups]\nmanager = db1_role\n[roles]\ndb1_role = server=server1->db=db1\n",
+        perDbFile, StandardCharsets.UTF_8);
+    Files.write(RELOADED_POLICY + "[databases]\ndb1 = db1.ini\n",
+        new File(baseDir, resourcePath), StandardCharsets.UTF_8);
+    context.setAllowPerDatabase(true);
+    backend.initialize(context);
+    assertEquals(Sets.newHashSet("server=server1->functions", "server=server1->db=db1"),
+        backend.getPrivileges(Sets.newHashSet("manager"), ActiveRoleSet.ALL));
+    assertFalse(backend.reloadIfChanged());
+
+    // Only the per-db file changes, with the same length
+    Files.write("[groups]\nmanager = db1_role\n[roles]\ndb1_role = server=server1->db=db2\n",
+        perDbFile, StandardCharsets.UTF_8);
+    assertTrue(perDbFile.setLastModified(perDbFile.lastModified() + 2000));
+    assertTrue(backend.reloadIfChanged());
+    assertEquals(Sets.newHashSet("server=server1->functions", "server=server1->db=db2"),
+        backend.getPrivileges(Sets.newHashSet("manager"), ActiveRoleSet.ALL));
+    assertFalse(backend.reloadIfChanged());
+
+    // A missing per-db file is an error, and is reloaded once it appears
+    assertTrue(perDbFile.delete());
+    assertFalse(backend.reloadIfChanged());
+    assertEquals(Sets.newHashSet("server=server1->functions", "server=server1->db=db2"),
+        backend.getPrivileges(Sets.newHashSet("manager"), ActiveRoleSet.ALL));
+    Files.write("[groups]\nmanager = db1_role\n[roles]\ndb1_role = server=server1->db=db3\n",
+        perDbFile, StandardCharsets.UTF_8);
+    assertTrue(backend.reloadIfChanged());
+    assertEquals(Sets.newHashSet("server=server1->functions", "server=server1->db=db3"),
+        backend.getPrivileges(Sets.newHashSet("manager"), ActiveRoleSet.ALL));
+  }
 }
@@ -39,6 +39,7 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
   private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("TAlterSentryRoleDeleteGroupsResponse");
 
   private static final org.apache.thrift.protocol.TField STATUS_FIELD_DESC = new org.apache.thrift.protocol.TField("status", org.apache.thrift.protocol.TType.STRUCT, (short)1);
+  private static final org.apache.thrift.protocol.TField PERM_CHANGE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("permChangeId", org.apache.thrift.protocol.TType.I64, (short)2);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -47,10 +48,12 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
   }
 
   private org.apache.sentry.service.thrift.TSentryResponseStatus status; // required
+  private long permChangeId; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
-    STATUS((short)1, "status");
+    STATUS((short)1, "status"),
+    PERM_CHANGE_ID((short)2, "permChangeId");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -67,6 +70,8 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
       switch(fieldId) {
         case 1: // STATUS
           return STATUS;
+        case 2: // PERM_CHANGE_ID
+          return PERM_CHANGE_ID;
         default:
           return null;
       }
@@ -107,11 +112,16 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
   }
 
   // isset id assignments
+  private static final int __PERMCHANGEID_ISSET_ID = 0;
+  private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.PERM_CHANGE_ID};
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
     tmpMap.put(_Fields.STATUS, new org.apache.thrift.meta_data.FieldMetaData("status", org.apache.thrift.TFieldRequirementType.REQUIRED, 
         new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, org.apache.sentry.service.thrift.TSentryResponseStatus.class)));
+    tmpMap.put(_Fields.PERM_CHANGE_ID, new org.apache.thrift.meta_data.FieldMetaData("permChangeId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(TAlterSentryRoleDeleteGroupsResponse.class, metaDataMap);
   }
@@ -130,9 +140,11 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
    * Performs a deep copy on <i>other</i>.
    */
   public TAlterSentryRoleDeleteGroupsResponse(TAlterSentryRoleDeleteGroupsResponse other) {
+    __isset_bitfield = other.__isset_bitfield;
     if (other.isSetStatus()) {
       this.status = new org.apache.sentry.service.thrift.TSentryResponseStatus(other.status);
     }
+    this.permChangeId = other.permChangeId;
   }
 
   public TAlterSentryRoleDeleteGroupsResponse deepCopy() {
@@ -142,6 +154,8 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
   @Override
   public void clear() {
     this.status = null;
+    setPermChangeIdIsSet(false);
+    this.permChangeId = 0;
   }
 
   public org.apache.sentry.service.thrift.TSentryResponseStatus getStatus() {
@@ -167,6 +181,28 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
     }
   }
 
+  public long getPermChangeId() {
+    return this.permChangeId;
+  }
+
+  public void setPermChangeId(long permChangeId) {
+    this.permChangeId = permChangeId;
+    setPermChangeIdIsSet(true);
+  }
+
+  public void unsetPermChangeId() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __PERMCHANGEID_ISSET_ID);
+  }
+
+  /** Returns true if field permChangeId is set (has been assigned a value) and false otherwise */
+  public boolean isSetPermChangeId() {
+    return EncodingUtils.testBit(__isset_bitfield, __PERMCHANGEID_ISSET_ID);
+  }
+
+  public void setPermChangeIdIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __PERMCHANGEID_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case STATUS:
@@ -177,6 +213,14 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
       }
       break;
 
+    case PERM_CHANGE_ID:
+      if (value == null) {
+        unsetPermChangeId();
+      } else {
+        setPermChangeId((Long)value);
+      }
+      break;
+
     }
   }
 
@@ -185,6 +229,9 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
     case STATUS:
       return getStatus();
 
+    case PERM_CHANGE_ID:
+      return getPermChangeId();
+
     }
     throw new IllegalStateException();
   }
@@ -198,6 +245,8 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
     switch (field) {
     case STATUS:
       return isSetStatus();
+    case PERM_CHANGE_ID:
+      return isSetPermChangeId();
     }
     throw new IllegalStateException();
   }
@@ -224,6 +273,15 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
         return false;
     }
 
+    boolean this_present_permChangeId = true && this.isSetPermChangeId();
+    boolean that_present_permChangeId = true && that.isSetPermChangeId();
+    if (this_present_permChangeId || that_present_permChangeId) {
+      if (!(this_present_permChangeId && that_present_permChangeId))
+        return false;
+      if (this.permChangeId != that.permChangeId)
+        return false;
+    }
+
     return true;
   }
 
@@ -236,6 +294,11 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
     if (present_status)
       list.add(status);
 
+    boolean present_permChangeId = true && (isSetPermChangeId());
+    list.add(present_permChangeId);
+    if (present_permChangeId)
+      list.add(permChangeId);
+
     return list.hashCode();
   }
 
@@ -257,6 +320,16 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetPermChangeId()).compareTo(other.isSetPermChangeId());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetPermChangeId()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.permChangeId, other.permChangeId);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -284,6 +357,12 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
       sb.append(this.status);
     }
     first = false;
+    if (isSetPermChangeId()) {
+      if (!first) sb.append(", ");
+      sb.append("permChangeId:");
+      sb.append(this.permChangeId);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -310,6 +389,8 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
 
   private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
     try {
+      // it doesn't seem like you should have to do this, but java serialization is wacky, and doesn't call the default constructor.
+      __isset_bitfield = 0;
       read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
     } catch (org.apache.thrift.TException te) {
       throw new java.io.IOException(te);
@@ -343,6 +424,14 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 2: // PERM_CHANGE_ID
+            if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+              struct.permChangeId = iprot.readI64();
+              struct.setPermChangeIdIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -361,6 +450,11 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
         struct.status.write(oprot);
         oprot.writeFieldEnd();
       }
+      if (struct.isSetPermChangeId()) {
+        oprot.writeFieldBegin(PERM_CHANGE_ID_FIELD_DESC);
+        oprot.writeI64(struct.permChangeId);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -379,6 +473,14 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
     public void write(org.apache.thrift.protocol.TProtocol prot, TAlterSentryRoleDeleteGroupsResponse struct) throws org.apache.thrift.TException {
       TTupleProtocol oprot = (TTupleProtocol) prot;
       struct.status.write(oprot);
+      BitSet optionals = new BitSet();
+      if (struct.isSetPermChangeId()) {
+        optionals.set(0);
+      }
+      oprot.writeBitSet(optionals, 1);
+      if (struct.isSetPermChangeId()) {
+        oprot.writeI64(struct.permChangeId);
+      }
     }
 
     @Override
@@ -387,6 +489,11 @@ public class TAlterSentryRoleDeleteGroupsResponse implements org.apache.thrift.T
       struct.status = new org.apache.sentry.service.thrift.TSentryResponseStatus();
       struct.status.read(iprot);
       struct.setStatusIsSet(true);
+      BitSet incoming = iprot.readBitSet(1);
+      if (incoming.get(0)) {
+        struct.permChangeId = iprot.readI64();
+        struct.setPermChangeIdIsSet(true);
+      }
     }
   }
 
@@ -41,6 +41,7 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
   private static final org.apache.thrift.protocol.TField STATUS_FIELD_DESC = new org.apache.thrift.protocol.TField("status", org.apache.thrift.protocol.TType.STRUCT, (short)1);
   private static final org.apache.thrift.protocol.TField PRIVILEGE_FIELD_DESC = new org.apache.thrift.protocol.TField("privilege", org.apache.thrift.protocol.TType.STRUCT, (short)2);
   private static final org.apache.thrift.protocol.TField PRIVILEGES_FIELD_DESC = new org.apache.thrift.protocol.TField("privileges", org.apache.thrift.protocol.TType.SET, (short)3);
+  private static final org.apache.thrift.protocol.TField PERM_CHANGE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("permChangeId", org.apache.thrift.protocol.TType.I64, (short)4);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -51,12 +52,14 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
   private org.apache.sentry.service.thrift.TSentryResponseStatus status; // required
   private TSentryPrivilege privilege; // optional
   private Set<TSentryPrivilege> privileges; // optional
+  private long permChangeId; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     STATUS((short)1, "status"),
     PRIVILEGE((short)2, "privilege"),
-    PRIVILEGES((short)3, "privileges");
+    PRIVILEGES((short)3, "privileges"),
+    PERM_CHANGE_ID((short)4, "permChangeId");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -77,6 +80,8 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
           return PRIVILEGE;
         case 3: // PRIVILEGES
           return PRIVILEGES;
+        case 4: // PERM_CHANGE_ID
+          return PERM_CHANGE_ID;
         default:
           return null;
       }
@@ -117,7 +122,9 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
   }
 
   // isset id assignments
-  private static final _Fields optionals[] = {_Fields.PRIVILEGE,_Fields.PRIVILEGES};
+  private static final int __PERMCHANGEID_ISSET_ID = 0;
+  private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.PRIVILEGE,_Fields.PRIVILEGES,_Fields.PERM_CHANGE_ID};
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -128,6 +135,8 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
     tmpMap.put(_Fields.PRIVILEGES, new org.apache.thrift.meta_data.FieldMetaData("privileges", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
         new org.apache.thrift.meta_data.SetMetaData(org.apache.thrift.protocol.TType.SET, 
             new org.apache.thrift.meta_data.StructMetaData(org.apache.thrift.protocol.TType.STRUCT, TSentryPrivilege.class))));
+    tmpMap.put(_Fields.PERM_CHANGE_ID, new org.apache.thrift.meta_data.FieldMetaData("permChangeId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(TAlterSentryRoleGrantPrivilegeResponse.class, metaDataMap);
   }
@@ -146,6 +155,7 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
    * Performs a deep copy on <i>other</i>.
    */
   public TAlterSentryRoleGrantPrivilegeResponse(TAlterSentryRoleGrantPrivilegeResponse other) {
+    __isset_bitfield = other.__isset_bitfield;
     if (other.isSetStatus()) {
       this.status = new org.apache.sentry.service.thrift.TSentryResponseStatus(other.status);
     }
@@ -159,6 +169,7 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
       }
       this.privileges = __this__privileges;
     }
+    this.permChangeId = other.permChangeId;
   }
 
   public TAlterSentryRoleGrantPrivilegeResponse deepCopy() {
@@ -170,6 +181,8 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
     this.status = null;
     this.privilege = null;
     this.privileges = null;
+    setPermChangeIdIsSet(false);
+    this.permChangeId = 0;
   }
 
   public org.apache.sentry.service.thrift.TSentryResponseStatus getStatus() {
@@ -256,6 +269,28 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
     }
   }
 
+  public long getPermChangeId() {
+    return this.permChangeId;
+  }
+
+  public void setPermChangeId(long permChangeId) {
+    this.permChangeId = permChangeId;
+    setPermChangeIdIsSet(true);
+  }
+
+  public void unsetPermChangeId() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __PERMCHANGEID_ISSET_ID);
+  }
+
+  /** Returns true if field permChangeId is set (has been assigned a value) and false otherwise */
+  public boolean isSetPermChangeId() {
+    return EncodingUtils.testBit(__isset_bitfield, __PERMCHANGEID_ISSET_ID);
+  }
+
+  public void setPermChangeIdIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __PERMCHANGEID_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case STATUS:
@@ -282,6 +317,14 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
       }
       break;
 
+    case PERM_CHANGE_ID:
+      if (value == null) {
+        unsetPermChangeId();
+      } else {
+        setPermChangeId((Long)value);
+      }
+      break;
+
     }
   }
 
@@ -296,6 +339,9 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
     case PRIVILEGES:
       return getPrivileges();
 
+    case PERM_CHANGE_ID:
+      return getPermChangeId();
+
     }
     throw new IllegalStateException();
   }
@@ -313,6 +359,8 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
       return isSetPrivilege();
     case PRIVILEGES:
       return isSetPrivileges();
+    case PERM_CHANGE_ID:
+      return isSetPermChangeId();
     }
     throw new IllegalStateException();
   }
@@ -357,6 +405,15 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
         return false;
     }
 
+    boolean this_present_permChangeId = true && this.isSetPermChangeId();
+    boolean that_present_permChangeId = true && that.isSetPermChangeId();
+    if (this_present_permChangeId || that_present_permChangeId) {
+      if (!(this_present_permChangeId && that_present_permChangeId))
+        return false;
+      if (this.permChangeId != that.permChangeId)
+        return false;
+    }
+
     return true;
   }
 
@@ -379,6 +436,11 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
     if (present_privileges)
       list.add(privileges);
 
+    boolean present_permChangeId = true && (isSetPermChangeId());
+    list.add(present_permChangeId);
+    if (present_permChangeId)
+      list.add(permChangeId);
+
     return list.hashCode();
   }
 
@@ -420,6 +482,16 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetPermChangeId()).compareTo(other.isSetPermChangeId());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetPermChangeId()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.permChangeId, other.permChangeId);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -467,6 +539,12 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
       }
       first = false;
     }
+    if (isSetPermChangeId()) {
+      if (!first) sb.append(", ");
+      sb.append("permChangeId:");
+      sb.append(this.permChangeId);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -496,6 +574,8 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
 
   private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
     try {
+      // it doesn't seem like you should have to do this, but java serialization is wacky, and doesn't call the default constructor.
+      __isset_bitfield = 0;
       read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
     } catch (org.apache.thrift.TException te) {
       throw new java.io.IOException(te);
@@ -557,6 +637,14 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 4: // PERM_CHANGE_ID
+            if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+              struct.permChangeId = iprot.readI64();
+              struct.setPermChangeIdIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -596,6 +684,11 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
           oprot.writeFieldEnd();
         }
       }
+      if (struct.isSetPermChangeId()) {
+        oprot.writeFieldBegin(PERM_CHANGE_ID_FIELD_DESC);
+        oprot.writeI64(struct.permChangeId);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -621,7 +714,10 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
       if (struct.isSetPrivileges()) {
         optionals.set(1);
       }
-      oprot.writeBitSet(optionals, 2);
+      if (struct.isSetPermChangeId()) {
+        optionals.set(2);
+      }
+      oprot.writeBitSet(optionals, 3);
       if (struct.isSetPrivilege()) {
         struct.privilege.write(oprot);
       }
@@ -634,6 +730,9 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
           }
         }
       }
+      if (struct.isSetPermChangeId()) {
+        oprot.writeI64(struct.permChangeId);
+      }
     }
 
     @Override
@@ -642,7 +741,7 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
       struct.status = new org.apache.sentry.service.thrift.TSentryResponseStatus();
       struct.status.read(iprot);
       struct.setStatusIsSet(true);
-      BitSet incoming = iprot.readBitSet(2);
+      BitSet incoming = iprot.readBitSet(3);
       if (incoming.get(0)) {
         struct.privilege = new TSentryPrivilege();
         struct.privilege.read(iprot);
@@ -662,6 +761,10 @@ public class TAlterSentryRoleGrantPrivilegeResponse implements org.apache.thrift
         }
         struct.setPrivilegesIsSet(true);
       }
+      if (incoming.get(2)) {
+        struct.permChangeId = iprot.readI64();
+        struct.setPermChangeIdIsSet(true);
+      }
     }
   }
 
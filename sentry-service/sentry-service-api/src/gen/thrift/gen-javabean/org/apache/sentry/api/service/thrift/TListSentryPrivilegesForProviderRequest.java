@@ -43,6 +43,7 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
   private static final org.apache.thrift.protocol.TField ROLE_SET_FIELD_DESC = new org.apache.thrift.protocol.TField("roleSet", org.apache.thrift.protocol.TType.STRUCT, (short)3);
   private static final org.apache.thrift.protocol.TField AUTHORIZABLE_HIERARCHY_FIELD_DESC = new org.apache.thrift.protocol.TField("authorizableHierarchy", org.apache.thrift.protocol.TType.STRUCT, (short)4);
   private static final org.apache.thrift.protocol.TField USERS_FIELD_DESC = new org.apache.thrift.protocol.TField("users", org.apache.thrift.protocol.TType.SET, (short)5);
+  private static final org.apache.thrift.protocol.TField MIN_PERM_CHANGE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("minPermChangeId", org.apache.thrift.protocol.TType.I64, (short)6);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -55,6 +56,7 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
   private TSentryActiveRoleSet roleSet; // required
   private TSentryAuthorizable authorizableHierarchy; // optional
   private Set<String> users; // optional
+  private long minPermChangeId; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
@@ -62,7 +64,8 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
     GROUPS((short)2, "groups"),
     ROLE_SET((short)3, "roleSet"),
     AUTHORIZABLE_HIERARCHY((short)4, "authorizableHierarchy"),
-    USERS((short)5, "users");
+    USERS((short)5, "users"),
+    MIN_PERM_CHANGE_ID((short)6, "minPermChangeId");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -87,6 +90,8 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
           return AUTHORIZABLE_HIERARCHY;
         case 5: // USERS
           return USERS;
+        case 6: // MIN_PERM_CHANGE_ID
+          return MIN_PERM_CHANGE_ID;
         default:
           return null;
       }
@@ -128,8 +133,9 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
 
   // isset id assignments
   private static final int __PROTOCOL_VERSION_ISSET_ID = 0;
+  private static final int __MINPERMCHANGEID_ISSET_ID = 1;
   private byte __isset_bitfield = 0;
-  private static final _Fields optionals[] = {_Fields.AUTHORIZABLE_HIERARCHY,_Fields.USERS};
+  private static final _Fields optionals[] = {_Fields.AUTHORIZABLE_HIERARCHY,_Fields.USERS,_Fields.MIN_PERM_CHANGE_ID};
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -145,6 +151,8 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
     tmpMap.put(_Fields.USERS, new org.apache.thrift.meta_data.FieldMetaData("users", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
         new org.apache.thrift.meta_data.SetMetaData(org.apache.thrift.protocol.TType.SET, 
             new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING))));
+    tmpMap.put(_Fields.MIN_PERM_CHANGE_ID, new org.apache.thrift.meta_data.FieldMetaData("minPermChangeId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(TListSentryPrivilegesForProviderRequest.class, metaDataMap);
   }
@@ -186,6 +194,7 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
       Set<String> __this__users = new HashSet<String>(other.users);
       this.users = __this__users;
     }
+    this.minPermChangeId = other.minPermChangeId;
   }
 
   public TListSentryPrivilegesForProviderRequest deepCopy() {
@@ -200,6 +209,8 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
     this.roleSet = null;
     this.authorizableHierarchy = null;
     this.users = null;
+    setMinPermChangeIdIsSet(false);
+    this.minPermChangeId = 0;
   }
 
   public int getProtocol_version() {
@@ -346,6 +357,28 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
     }
   }
 
+  public long getMinPermChangeId() {
+    return this.minPermChangeId;
+  }
+
+  public void setMinPermChangeId(long minPermChangeId) {
+    this.minPermChangeId = minPermChangeId;
+    setMinPermChangeIdIsSet(true);
+  }
+
+  public void unsetMinPermChangeId() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __MINPERMCHANGEID_ISSET_ID);
+  }
+
+  /** Returns true if field minPermChangeId is set (has been assigned a value) and false otherwise */
+  public boolean isSetMinPermChangeId() {
+    return EncodingUtils.testBit(__isset_bitfield, __MINPERMCHANGEID_ISSET_ID);
+  }
+
+  public void setMinPermChangeIdIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __MINPERMCHANGEID_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case PROTOCOL_VERSION:
@@ -388,6 +421,14 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
       }
       break;
 
+    case MIN_PERM_CHANGE_ID:
+      if (value == null) {
+        unsetMinPermChangeId();
+      } else {
+        setMinPermChangeId((Long)value);
+      }
+      break;
+
     }
   }
 
@@ -408,6 +449,9 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
     case USERS:
       return getUsers();
 
+    case MIN_PERM_CHANGE_ID:
+      return getMinPermChangeId();
+
     }
     throw new IllegalStateException();
   }
@@ -429,6 +473,8 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
       return isSetAuthorizableHierarchy();
     case USERS:
       return isSetUsers();
+    case MIN_PERM_CHANGE_ID:
+      return isSetMinPermChangeId();
     }
     throw new IllegalStateException();
   }
@@ -491,6 +537,15 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
         return false;
     }
 
+    boolean this_present_minPermChangeId = true && this.isSetMinPermChangeId();
+    boolean that_present_minPermChangeId = true && that.isSetMinPermChangeId();
+    if (this_present_minPermChangeId || that_present_minPermChangeId) {
+      if (!(this_present_minPermChangeId && that_present_minPermChangeId))
+        return false;
+      if (this.minPermChangeId != that.minPermChangeId)
+        return false;
+    }
+
     return true;
   }
 
@@ -523,6 +578,11 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
     if (present_users)
       list.add(users);
 
+    boolean present_minPermChangeId = true && (isSetMinPermChangeId());
+    list.add(present_minPermChangeId);
+    if (present_minPermChangeId)
+      list.add(minPermChangeId);
+
     return list.hashCode();
   }
 
@@ -584,6 +644,16 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetMinPermChangeId()).compareTo(other.isSetMinPermChangeId());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetMinPermChangeId()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.minPermChangeId, other.minPermChangeId);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -643,6 +713,12 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
       }
       first = false;
     }
+    if (isSetMinPermChangeId()) {
+      if (!first) sb.append(", ");
+      sb.append("minPermChangeId:");
+      sb.append(this.minPermChangeId);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -768,6 +844,14 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 6: // MIN_PERM_CHANGE_ID
+            if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+              struct.minPermChangeId = iprot.readI64();
+              struct.setMinPermChangeIdIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -822,6 +906,11 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
           oprot.writeFieldEnd();
         }
       }
+      if (struct.isSetMinPermChangeId()) {
+        oprot.writeFieldBegin(MIN_PERM_CHANGE_ID_FIELD_DESC);
+        oprot.writeI64(struct.minPermChangeId);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -855,7 +944,10 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
       if (struct.isSetUsers()) {
         optionals.set(1);
       }
-      oprot.writeBitSet(optionals, 2);
+      if (struct.isSetMinPermChangeId()) {
+        optionals.set(2);
+      }
+      oprot.writeBitSet(optionals, 3);
       if (struct.isSetAuthorizableHierarchy()) {
         struct.authorizableHierarchy.write(oprot);
       }
@@ -868,6 +960,9 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
           }
         }
       }
+      if (struct.isSetMinPermChangeId()) {
+        oprot.writeI64(struct.minPermChangeId);
+      }
     }
 
     @Override
@@ -889,7 +984,7 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
       struct.roleSet = new TSentryActiveRoleSet();
       struct.roleSet.read(iprot);
       struct.setRoleSetIsSet(true);
-      BitSet incoming = iprot.readBitSet(2);
+      BitSet incoming = iprot.readBitSet(3);
       if (incoming.get(0)) {
         struct.authorizableHierarchy = new TSentryAuthorizable();
         struct.authorizableHierarchy.read(iprot);
@@ -908,6 +1003,10 @@ public class TListSentryPrivilegesForProviderRequest implements org.apache.thrif
         }
         struct.setUsersIsSet(true);
       }
+      if (incoming.get(2)) {
+        struct.minPermChangeId = iprot.readI64();
+        struct.setMinPermChangeIdIsSet(true);
+      }
     }
   }
 
@@ -28,6 +28,7 @@ import org.apache.sentry.core.common.exception.SentryAccessDeniedException;
 import org.apache.sentry.core.common.exception.SentryAlreadyExistsException;
 import org.apache.sentry.core.common.exception.SentryInvalidInputException;
 import org.apache.sentry.core.common.exception.SentryNoSuchObjectException;
+import org.apache.sentry.core.common.exception.SentryServerBusyException;
 import org.apache.sentry.core.common.exception.SentryThriftAPIMismatchException;
 import org.apache.sentry.service.thrift.TSentryResponseStatus;
 
@@ -42,6 +43,7 @@ public enum Status {
   INVALID_INPUT(ThriftConstants.TSENTRY_STATUS_INVALID_INPUT),
   ACCESS_DENIED(ThriftConstants.TSENTRY_STATUS_ACCESS_DENIED),
   THRIFT_VERSION_MISMATCH(ThriftConstants.TSENTRY_STATUS_THRIFT_VERSION_MISMATCH),
+  SERVER_BUSY(ThriftConstants.TSENTRY_STATUS_SERVER_BUSY),
   UNKNOWN(-1)
   ;
   private int code;
@@ -83,6 +85,9 @@ public enum Status {
   public static TSentryResponseStatus THRIFT_VERSION_MISMATCH(String message, Throwable t) {
     return Create(Status.THRIFT_VERSION_MISMATCH, message, t);
   }
+  public static TSentryResponseStatus ServerBusy(String message) {
+    return Create(Status.SERVER_BUSY, message);
+  }
   public static TSentryResponseStatus Create(Status value, String message, @Nullable Throwable t) {
     TSentryResponseStatus status = new TSentryResponseStatus();
     status.setValue(value.getCode());
@@ -114,6 +119,8 @@ public enum Status {
       throw new SentryAccessDeniedException(serverErrorToString(thriftStatus), thriftStatus.getMessage());
     case THRIFT_VERSION_MISMATCH:
       throw new SentryThriftAPIMismatchException(serverErrorToString(thriftStatus), thriftStatus.getMessage());
+    case SERVER_BUSY:
+      throw new SentryServerBusyException(serverErrorToString(thriftStatus), thriftStatus.getMessage());
     case UNKNOWN:
       throw new AssertionError(serverErrorToString(thriftStatus));
     default:
@@ -182,6 +182,7 @@ public interface SentryGenericServiceClient extends AutoCloseable {
    * @param requestorUserName: The requestor user name.
    * @param authorizablesSet: The set of authorize objects. One authorize object is represented
    *     as a string. e.g resourceType1=resourceName1->resourceType2=resourceName2->resourceType3=resourceName3.
+   *     An empty string stands for all the privileges of the service.
    * @param groups: The requested groups.
    * @param roleSet: The active roles set.
    *
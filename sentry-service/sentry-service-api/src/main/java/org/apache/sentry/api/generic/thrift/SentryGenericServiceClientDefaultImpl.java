@@ -557,4 +557,12 @@ public class SentryGenericServiceClientDefaultImpl
       transport = null;
     }
   }
+
+  @Override
+  public void serverBusy(long busyMs) {
+    if (transport != null) {
+      transportPool.returnBusyTransport(transport, busyMs);
+      transport = null;
+    }
+  }
 }
@@ -19,7 +19,9 @@ package org.apache.sentry.api.generic.thrift;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.sentry.core.common.transport.ConcurrentClientInvocationHandler;
 import org.apache.sentry.core.common.transport.RetryClientInvocationHandler;
+import org.apache.sentry.core.common.transport.SentryClientInvocationHandler;
 import org.apache.sentry.core.common.transport.SentryPolicyClientTransportConfig;
 import org.apache.sentry.core.common.transport.SentryTransportFactory;
 import org.apache.sentry.core.common.transport.SentryTransportPool;
@@ -95,8 +97,17 @@ public final class SentryGenericServiceClientFactory {
     return (SentryGenericServiceClient) Proxy
       .newProxyInstance(SentryGenericServiceClientDefaultImpl.class.getClassLoader(),
         SentryGenericServiceClientDefaultImpl.class.getInterfaces(),
-        new RetryClientInvocationHandler(conf,
-          new SentryGenericServiceClientDefaultImpl(conf, transportPool), transportConfig));
+        createHandler());
+  }
+
+  private SentryClientInvocationHandler createHandler() throws Exception {
+    if (transportConfig.isConcurrentClientEnabled(conf)) {
+      return new ConcurrentClientInvocationHandler(conf,
+        () -> new SentryGenericServiceClientDefaultImpl(conf, transportPool), transportPool,
+        transportConfig);
+    }
+    return new RetryClientInvocationHandler(conf,
+      new SentryGenericServiceClientDefaultImpl(conf, transportPool), transportConfig);
   }
 
   // Should only be used by tests.
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.api.service.thrift;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Tracks the last perm change ID the Sentry servers returned to this process with the
+ * privileges read and the writes made, so that callers can cache what they derive from
+ * the privileges until permissions change, without asking the servers for the ID.
+ * <p>
+ * The ID only advances; a response with a lower ID, e.g. from a server that has not
+ * caught up yet, neither lowers nor confirms it. What is derived from the privileges of a
+ * response must therefore be tagged with the ID of that response, not the last one: the
+ * IDs of the responses a thread receives are tracked between
+ * {@link #beginResponses()} and {@link #endResponses()}.
+ */
+public final class PermChangeIdTracker {
+
+  private static final long UNKNOWN_PERM_CHANGE_ID = -1;
+  private static final long NO_RESPONSE = Long.MAX_VALUE;
+
+  // Lowest perm change ID of the responses the thread received since beginResponses(),
+  // -1 if one of them had none, or NO_RESPONSE
+  private static final ThreadLocal<Long> responsesPermChangeId = new ThreadLocal<>();
+
+  // Guarded by the class
+  private static long lastPermChangeId = UNKNOWN_PERM_CHANGE_ID;
+  private static long lastConfirmedMs;
+
+  private PermChangeIdTracker() {
+  }
+
+  /**
+   * Records a perm change ID returned by a server.
+   */
+  public static void update(long permChangeId) {
+    recordResponse(permChangeId);
+    synchronized (PermChangeIdTracker.class) {
+      if (permChangeId >= lastPermChangeId) {
+        lastPermChangeId = permChangeId;
+        lastConfirmedMs = System.currentTimeMillis();
+      }
+    }
+  }
+
+  /**
+   * Records a response of a server without a perm change ID, so that what the thread
+   * derives from it is not tagged with any ID.
+   */
+  public static void updateUnknown() {
+    recordResponse(UNKNOWN_PERM_CHANGE_ID);
+  }
+
+  private static void recordResponse(long permChangeId) {
+    Long responses = responsesPermChangeId.get();
+    if (responses != null && responses != UNKNOWN_PERM_CHANGE_ID) {
+      responsesPermChangeId.set(Math.min(responses, permChangeId));
+    }
+  }
+
+  /**
+   * Starts tracking the perm change IDs of the responses received by the thread.
+   */
+  public static void beginResponses() {
+    responsesPermChangeId.set(NO_RESPONSE);
+  }
+
+  /**
+   * @return the lowest perm change ID of the responses the thread received since
+   * {@link #beginResponses()}, or -1 if one of them had none or none was received
+   */
+  public static long getResponsesPermChangeId() {
+    Long responses = responsesPermChangeId.get();
+    if (responses == null || responses == NO_RESPONSE) {
+      return UNKNOWN_PERM_CHANGE_ID;
+    }
+    return responses;
+  }
+
+  /**
+   * Stops tracking the perm change IDs of the responses received by the thread.
+   */
+  public static void endResponses() {
+    responsesPermChangeId.remove();
+  }
+
+  /**
+   * @param maxAgeMs how long ago the ID may have last been returned
+   * @return the last perm change ID, or -1 if no server returned it within maxAgeMs
+   */
+  public static synchronized long getLastPermChangeId(long maxAgeMs) {
+    if (lastPermChangeId == UNKNOWN_PERM_CHANGE_ID
+        || System.currentTimeMillis() - lastConfirmedMs > maxAgeMs) {
+      return UNKNOWN_PERM_CHANGE_ID;
+    }
+    return lastPermChangeId;
+  }
+
+  @VisibleForTesting
+  public static synchronized void reset() {
+    lastPermChangeId = UNKNOWN_PERM_CHANGE_ID;
+    lastConfirmedMs = 0;
+  }
+}
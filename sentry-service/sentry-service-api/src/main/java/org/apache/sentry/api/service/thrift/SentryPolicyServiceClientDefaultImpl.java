@@ -51,6 +51,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Client implementation for Policy (HMS) clients.
@@ -66,6 +67,11 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
 
   private static final String THRIFT_EXCEPTION_MESSAGE = "Thrift exception occurred ";
 
+  // Highest perm change ID returned by the writes of this process. The privileges read
+  // from any server include it, so a revoke is seen by the reads that follow it even when
+  // they go to another server. Shared by all the clients, as a client may serve one call.
+  private static final AtomicLong lastWritePermChangeId = new AtomicLong(-1);
+
   /**
    * Initialize the sentry configurations.
    */
@@ -143,6 +149,9 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
     request.setRoleName(roleName);
     try {
       TDropSentryRoleResponse response = client.drop_sentry_role(request);
+      if (response.isSetPermChangeId()) {
+        recordWrite(response.getPermChangeId());
+      }
       Status status = Status.fromCode(response.getStatus().getValue());
       if (ifExists && status == Status.NO_SUCH_OBJECT) {
         return;
@@ -464,6 +473,9 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
       TAlterSentryRoleGrantPrivilegeResponse response =
         client.alter_sentry_role_grant_privilege(request);
       Status.throwIfNotOk(response.getStatus());
+      if (response.isSetPermChangeId()) {
+        recordWrite(response.getPermChangeId());
+      }
       return response.getPrivileges();
     } catch (TException e) {
       throw new SentryUserException(THRIFT_EXCEPTION_MESSAGE, e);
@@ -557,6 +569,9 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
       TAlterSentryRoleRevokePrivilegeResponse response = client.alter_sentry_role_revoke_privilege(
         request);
       Status.throwIfNotOk(response.getStatus());
+      if (response.isSetPermChangeId()) {
+        recordWrite(response.getPermChangeId());
+      }
     } catch (TException e) {
       throw new SentryUserException(THRIFT_EXCEPTION_MESSAGE, e);
     }
@@ -789,15 +804,32 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
     if (users != null) {
       request.setUsers(users);
     }
+    long minPermChangeId = lastWritePermChangeId.get();
+    if (minPermChangeId >= 0) {
+      request.setMinPermChangeId(minPermChangeId);
+    }
     try {
       TListSentryPrivilegesForProviderResponse response = client.list_sentry_privileges_for_provider(request);
       Status.throwIfNotOk(response.getStatus());
+      if (response.isSetPermChangeId()) {
+        PermChangeIdTracker.update(response.getPermChangeId());
+      } else {
+        PermChangeIdTracker.updateUnknown();
+      }
       return response.getPrivileges();
     } catch (TException e) {
       throw new SentryUserException(THRIFT_EXCEPTION_MESSAGE, e);
     }
   }
 
+  private static void recordWrite(long permChangeId) {
+    long last = lastWritePermChangeId.get();
+    while (permChangeId > last && !lastWritePermChangeId.compareAndSet(last, permChangeId)) {
+      last = lastWritePermChangeId.get();
+    }
+    PermChangeIdTracker.update(permChangeId);
+  }
+
   @Override
   public void grantRoleToGroup(String requestorUserName,
                                             String groupName, String roleName)
@@ -822,6 +854,9 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
     try {
       TAlterSentryRoleAddGroupsResponse response = client.alter_sentry_role_add_groups(request);
       Status.throwIfNotOk(response.getStatus());
+      if (response.isSetPermChangeId()) {
+        recordWrite(response.getPermChangeId());
+      }
     } catch (TException e) {
       throw new SentryUserException(THRIFT_EXCEPTION_MESSAGE, e);
     }
@@ -837,6 +872,9 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
     try {
       TAlterSentryRoleDeleteGroupsResponse response = client.alter_sentry_role_delete_groups(request);
       Status.throwIfNotOk(response.getStatus());
+      if (response.isSetPermChangeId()) {
+        recordWrite(response.getPermChangeId());
+      }
     } catch (TException e) {
       throw new SentryUserException(THRIFT_EXCEPTION_MESSAGE, e);
     }
@@ -1154,6 +1192,14 @@ public class SentryPolicyServiceClientDefaultImpl implements SentryPolicyService
     }
   }
 
+  @Override
+  public void serverBusy(long busyMs) {
+    if (transport != null) {
+      transportPool.returnBusyTransport(transport, busyMs);
+      transport = null;
+    }
+  }
+
   public long syncNotifications(long id) throws SentryUserException {
     TSentrySyncIDRequest request =
         new TSentrySyncIDRequest(ThriftConstants.TSENTRY_SERVICE_VERSION_CURRENT, id);
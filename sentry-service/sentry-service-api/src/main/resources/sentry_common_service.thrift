@@ -34,6 +34,8 @@ const i32 TSENTRY_STATUS_RUNTIME_ERROR = 3;
 const i32 TSENTRY_STATUS_INVALID_INPUT = 4;
 const i32 TSENTRY_STATUS_ACCESS_DENIED = 5;
 const i32 TSENTRY_STATUS_THRIFT_VERSION_MISMATCH = 6;
+// The server was too busy to run the request; it was not run and may be retried
+const i32 TSENTRY_STATUS_SERVER_BUSY = 7;
 
 struct TSentryResponseStatus {
 1: required i32 value,
@@ -80,6 +80,8 @@ struct TDropSentryRoleRequest {
 }
 struct TDropSentryRoleResponse {
 1: required sentry_common_service.TSentryResponseStatus status
+# Last permission change ID after the change, set by servers that persist permission changes
+2: optional i64 permChangeId
 }
 
 # GRANT ROLE r1 TO GROUP g1
@@ -92,6 +94,8 @@ struct TAlterSentryRoleAddGroupsRequest {
 
 struct TAlterSentryRoleAddGroupsResponse {
 1: required sentry_common_service.TSentryResponseStatus status
+# Last permission change ID after the change, set by servers that persist permission changes
+2: optional i64 permChangeId
 }
 
 # GRANT ROLE r1 TO USER u1
@@ -115,6 +119,8 @@ struct TAlterSentryRoleDeleteGroupsRequest {
 }
 struct TAlterSentryRoleDeleteGroupsResponse {
 1: required sentry_common_service.TSentryResponseStatus status
+# Last permission change ID after the change, set by servers that persist permission changes
+2: optional i64 permChangeId
 }
 
 # REVOKE ROLE r1 FROM USER u1
@@ -140,6 +146,8 @@ struct TAlterSentryRoleGrantPrivilegeResponse {
 1: required sentry_common_service.TSentryResponseStatus status
 2: optional TSentryPrivilege privilege
 3: optional set<TSentryPrivilege> privileges
+# Last permission change ID after the change, set by servers that persist permission changes
+4: optional i64 permChangeId
 }
 
 # REVOKE ... ON ... FROM ROLE ...
@@ -152,6 +160,8 @@ struct TAlterSentryRoleRevokePrivilegeRequest {
 }
 struct TAlterSentryRoleRevokePrivilegeResponse {
 1: required sentry_common_service.TSentryResponseStatus status
+# Last permission change ID after the change, set by servers that persist permission changes
+2: optional i64 permChangeId
 }
 
 # SHOW ROLE GRANT
@@ -242,11 +252,17 @@ struct TListSentryPrivilegesForProviderRequest {
 2: required set<string> groups,
 3: required TSentryActiveRoleSet roleSet,
 4: optional TSentryAuthorizable authorizableHierarchy,
-5: optional set<string> users
+5: optional set<string> users,
+# Serve the privileges with at least the changes up to this permission change ID,
+# e.g. one returned by a write
+6: optional i64 minPermChangeId
 }
 struct TListSentryPrivilegesForProviderResponse {
 1: required sentry_common_service.TSentryResponseStatus status
 2: required set<string> privileges
+# Last permission change ID the privileges include, set by servers serving them
+# from the policy replica
+3: optional i64 permChangeId
 }
 
 # List role:set<privileges> for the given authorizable
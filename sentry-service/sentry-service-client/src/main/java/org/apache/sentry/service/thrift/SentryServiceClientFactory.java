@@ -19,7 +19,9 @@
 package org.apache.sentry.service.thrift;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.core.common.transport.ConcurrentClientInvocationHandler;
 import org.apache.sentry.core.common.transport.RetryClientInvocationHandler;
+import org.apache.sentry.core.common.transport.SentryClientInvocationHandler;
 import org.apache.sentry.core.common.transport.SentryPolicyClientTransportConfig;
 import org.apache.sentry.core.common.transport.SentryTransportFactory;
 import org.apache.sentry.core.common.transport.SentryTransportPool;
@@ -88,8 +90,17 @@ public final class SentryServiceClientFactory {
     return (SentryPolicyServiceClient) Proxy
       .newProxyInstance(SentryPolicyServiceClientDefaultImpl.class.getClassLoader(),
         SentryPolicyServiceClientDefaultImpl.class.getInterfaces(),
-        new RetryClientInvocationHandler(conf,
-          new SentryPolicyServiceClientDefaultImpl(conf, transportPool), transportConfig));
+        createHandler());
+  }
+
+  private SentryClientInvocationHandler createHandler() throws Exception {
+    if (transportConfig.isConcurrentClientEnabled(conf)) {
+      return new ConcurrentClientInvocationHandler(conf,
+        () -> new SentryPolicyServiceClientDefaultImpl(conf, transportPool), transportPool,
+        transportConfig);
+    }
+    return new RetryClientInvocationHandler(conf,
+      new SentryPolicyServiceClientDefaultImpl(conf, transportPool), transportConfig);
   }
 
   /**
@@ -284,7 +284,8 @@ public class SentryGenericPolicyProcessor implements SentryGenericPolicyService.
 
   private List<? extends Authorizable> toAuthorizables(String privilegeStr) {
     List<Authorizable> authorizables = Lists.newArrayList();
-    if (privilegeStr == null) {
+    // An empty string stands for all the privileges of the service
+    if (privilegeStr == null || privilegeStr.isEmpty()) {
       return authorizables;
     }
 
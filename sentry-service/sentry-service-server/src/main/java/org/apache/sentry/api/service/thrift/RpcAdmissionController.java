@@ -0,0 +1,310 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.api.service.thrift;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_ADMISSION_CONTROL_MAX_CONCURRENT;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_ADMISSION_CONTROL_MAX_QUEUED;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_ADMISSION_CONTROL_MAX_WAIT_MS;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_ADMISSION_CONTROL_PREFIX;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.common.Status;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.TFieldRequirementType;
+import org.apache.thrift.meta_data.EnumMetaData;
+import org.apache.thrift.meta_data.FieldMetaData;
+import org.apache.thrift.meta_data.FieldValueMetaData;
+import org.apache.thrift.meta_data.StructMetaData;
+import org.apache.thrift.protocol.TType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control for the policy service RPCs.
+ * <p>
+ * Each RPC belongs to a class: authorization reads, HMS sync calls that may wait for
+ * HMSFollower, admin changes and bulk reads or imports. Each class runs at most a configured
+ * number of RPCs at once, and queues at most a configured number of RPCs for a configured
+ * time, so that slow calls of one class can not take all the server threads from another.
+ * RPCs that can not be queued, or wait too long, are not run and get a response with the
+ * {@link Status#SERVER_BUSY} status, which clients retry after their retry delay, on
+ * another server if there is one.
+ * <p>
+ * Queued RPCs wait in the thread which read them, so each of them still holds a
+ * {@code TThreadPoolServer} worker thread until it runs or is rejected. The limits only
+ * protect the other classes if the queues of all classes together are well below the
+ * maximum number of server threads.
+ */
+final class RpcAdmissionController implements InvocationHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RpcAdmissionController.class);
+
+  enum RpcClass {
+    AUTHORIZATION("authorization", Integer.MAX_VALUE, 0, 0, ImmutableSet.of(
+        "list_sentry_privileges_for_provider", "list_sentry_roles_by_group",
+        "list_sentry_roles_by_user", "list_sentry_privileges_by_role",
+        "list_sentry_privileges_by_user", "list_sentry_privileges_by_user_and_itsgroups",
+        "list_sentry_privileges_by_authorizable", "get_sentry_config_value")),
+    HMS_SYNC("hms-sync", 100, 100, 10000, ImmutableSet.of(
+        "sentry_sync_notifications", "sentry_notify_hms_event")),
+    ADMIN("admin", 50, 100, 30000, ImmutableSet.<String>of()),
+    BULK("bulk", 2, 10, 60000, ImmutableSet.of(
+        "export_sentry_mapping_data", "import_sentry_mapping_data", "list_roles_privileges",
+        "list_users_privileges"));
+
+    private final String name;
+    private final int defaultMaxConcurrent;
+    private final int defaultMaxQueued;
+    private final long defaultMaxWaitMs;
+    private final Set<String> methods;
+
+    RpcClass(String name, int defaultMaxConcurrent, int defaultMaxQueued, long defaultMaxWaitMs,
+        Set<String> methods) {
+      this.name = name;
+      this.defaultMaxConcurrent = defaultMaxConcurrent;
+      this.defaultMaxQueued = defaultMaxQueued;
+      this.defaultMaxWaitMs = defaultMaxWaitMs;
+      this.methods = methods;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    /**
+     * @return the class of the RPC implemented by the given method, admin if none
+     * lists it
+     */
+    static RpcClass of(String methodName) {
+      for (RpcClass rpcClass : values()) {
+        if (rpcClass.methods.contains(methodName)) {
+          return rpcClass;
+        }
+      }
+      return ADMIN;
+    }
+  }
+
+  private final Object handler;
+  private final Map<RpcClass, Limiter> limiters = new EnumMap<>(RpcClass.class);
+
+  private RpcAdmissionController(Object handler, Configuration conf) {
+    this.handler = handler;
+    SentryMetrics metrics = SentryMetrics.getInstance();
+    for (RpcClass rpcClass : RpcClass.values()) {
+      String prefix = RPC_ADMISSION_CONTROL_PREFIX + rpcClass.getName();
+      Limiter limiter = new Limiter(rpcClass,
+          conf.getInt(prefix + RPC_ADMISSION_CONTROL_MAX_CONCURRENT,
+              rpcClass.defaultMaxConcurrent),
+          conf.getInt(prefix + RPC_ADMISSION_CONTROL_MAX_QUEUED, rpcClass.defaultMaxQueued),
+          conf.getLong(prefix + RPC_ADMISSION_CONTROL_MAX_WAIT_MS, rpcClass.defaultMaxWaitMs));
+      limiters.put(rpcClass, limiter);
+      metrics.addRpcClassGauges(rpcClass.getName(), limiter.getQueuedGauge(),
+          limiter.getActiveGauge());
+    }
+  }
+
+  /**
+   * @return a policy service handler that runs the calls of the given one under
+   * admission control
+   */
+  static SentryPolicyService.Iface wrap(SentryPolicyService.Iface handler,
+      Configuration conf) {
+    return (SentryPolicyService.Iface) Proxy.newProxyInstance(
+        SentryPolicyService.Iface.class.getClassLoader(),
+        new Class<?>[] {SentryPolicyService.Iface.class},
+        new RpcAdmissionController(handler, conf));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(handler, args);
+    }
+    Limiter limiter = limiters.get(RpcClass.of(method.getName()));
+    String rejection;
+    try (RpcPhaseRecorder.Phase phase = RpcPhaseRecorder.time(RpcPhaseRecorder.ADMISSION)) {
+      rejection = limiter.acquire(method.getName());
+    }
+    if (rejection != null) {
+      return newResponse(method.getReturnType(), Status.ServerBusy(rejection));
+    }
+    try {
+      return method.invoke(handler, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      limiter.release();
+    }
+  }
+
+  /**
+   * @return a response of the given type with the given status, and the other required
+   * fields set to empty values, so that it can be sent
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @VisibleForTesting
+  static Object newResponse(Class<?> responseClass, Object status) throws Exception {
+    TBase response = (TBase) responseClass.newInstance();
+    Map<? extends TFieldIdEnum, FieldMetaData> fields =
+        FieldMetaData.getStructMetaDataMap((Class<? extends TBase>) responseClass);
+    for (Map.Entry<? extends TFieldIdEnum, FieldMetaData> field : fields.entrySet()) {
+      if (field.getValue().requirementType != TFieldRequirementType.REQUIRED) {
+        continue;
+      }
+      if ("status".equals(field.getValue().fieldName)) {
+        response.setFieldValue(field.getKey(), status);
+      } else {
+        response.setFieldValue(field.getKey(), newEmptyValue(field.getValue().valueMetaData));
+      }
+    }
+    return response;
+  }
+
+  private static Object newEmptyValue(FieldValueMetaData valueMetaData) throws Exception {
+    switch (valueMetaData.type) {
+      case TType.BOOL:
+        return false;
+      case TType.BYTE:
+        return (byte) 0;
+      case TType.I16:
+        return (short) 0;
+      case TType.I32:
+        return 0;
+      case TType.I64:
+        return 0L;
+      case TType.DOUBLE:
+        return 0.0;
+      case TType.STRING:
+        return valueMetaData.isBinary() ? ByteBuffer.allocate(0) : "";
+      case TType.LIST:
+        return new ArrayList<>();
+      case TType.SET:
+        return new HashSet<>();
+      case TType.MAP:
+        return new HashMap<>();
+      case TType.ENUM:
+        return ((EnumMetaData) valueMetaData).enumClass.getEnumConstants()[0];
+      case TType.STRUCT:
+        return newResponse(((StructMetaData) valueMetaData).structClass, null);
+      default:
+        throw new IllegalArgumentException("Unsupported field type " + valueMetaData.type);
+    }
+  }
+
+  /**
+   * Concurrency limit and bounded queue of an RPC class.
+   */
+  private static final class Limiter {
+    private final RpcClass rpcClass;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    Limiter(RpcClass rpcClass, int maxConcurrent, int maxQueued, long maxWaitMs) {
+      this.rpcClass = rpcClass;
+      this.maxConcurrent = maxConcurrent;
+      this.maxQueued = maxQueued;
+      this.maxWaitMs = maxWaitMs;
+      permits = new Semaphore(maxConcurrent, true);
+      SentryMetrics metrics = SentryMetrics.getInstance();
+      waitTimer = metrics.getTimer(
+          name(SentryPolicyStoreProcessor.class, "rpc-class", rpcClass.getName(), "wait"));
+      rejectedCounter = metrics.getCounter(
+          name(SentryPolicyStoreProcessor.class, "rpc-class", rpcClass.getName(), "rejected"));
+    }
+
+    /**
+     * @return null if the RPC may run, or why it was rejected
+     */
+    String acquire(String methodName) {
+      try {
+        // Unlike tryAcquire(), does not take a permit ahead of the queued RPCs
+        if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+          waitTimer.update(0, TimeUnit.NANOSECONDS);
+          return null;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return reject(methodName, "interrupted");
+      }
+      if (queued.incrementAndGet() > maxQueued) {
+        queued.decrementAndGet();
+        return reject(methodName, "too many queued requests");
+      }
+      long startNs = System.nanoTime();
+      try {
+        if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+          return reject(methodName, "timed out after " + maxWaitMs + " ms in the queue");
+        }
+        return null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return reject(methodName, "interrupted in the queue");
+      } finally {
+        queued.decrementAndGet();
+        waitTimer.update(System.nanoTime() - startNs, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    void release() {
+      permits.release();
+    }
+
+    private String reject(String methodName, String reason) {
+      rejectedCounter.inc();
+      String message = String.format("Rejected %s request %s: %s", rpcClass.getName(),
+          methodName, reason);
+      LOGGER.warn(message);
+      return message;
+    }
+
+    Gauge<Integer> getQueuedGauge() {
+      return queued::get;
+    }
+
+    Gauge<Integer> getActiveGauge() {
+      return () -> maxConcurrent - permits.availablePermits();
+    }
+  }
+}
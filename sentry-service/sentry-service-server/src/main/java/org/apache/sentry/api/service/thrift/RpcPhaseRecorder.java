@@ -0,0 +1,244 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.api.service.thrift;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_SLOW_LOG_SAMPLE_RATE;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_SLOW_LOG_SAMPLE_RATE_DEFAULT;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_SLOW_LOG_THRESHOLD_MS;
+import static org.apache.sentry.service.common.ServiceConstants.ServerConfig.RPC_SLOW_LOG_THRESHOLD_MS_DEFAULT;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how long a policy service RPC spends in each of its phases.
+ * <p>
+ * A recorder is bound to the handler thread for the duration of each RPC of a handler
+ * wrapped with {@link #wrap}. The processor, the store and the transaction manager mark
+ * their phases with {@link #time}, which does nothing on threads without a recorder, such
+ * as the HMS follower. Phases may nest, so the time of a transaction phase is also part of
+ * the store phase that runs it. When the RPC returns, the total time of each phase is added
+ * to a histogram per RPC and phase, in microseconds, and RPCs slower than the configured
+ * threshold are logged with their phases and their principal and result sizes.
+ */
+public final class RpcPhaseRecorder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RpcPhaseRecorder.class);
+
+  public static final String ADMISSION = "admission";
+  public static final String GROUP_RESOLUTION = "group-resolution";
+  public static final String ROLE_RESOLUTION = "role-resolution";
+  public static final String PRIVILEGE_QUERY = "privilege-query";
+  public static final String CONVERSION = "conversion";
+  public static final String REPLICA_READ = "replica-read";
+  public static final String TRANSACTION_BEGIN = "transaction-begin";
+  public static final String TRANSACTION_EXECUTE = "transaction-execute";
+  public static final String TRANSACTION_COMMIT = "transaction-commit";
+  public static final String TRANSACTION_RETRY_BACKOFF = "transaction-retry-backoff";
+  static final String TOTAL = "total";
+
+  private static final ThreadLocal<RpcPhaseRecorder> CURRENT = new ThreadLocal<>();
+
+  /**
+   * A running phase, ended by {@link #close()}. Ending a phase more than once has no effect.
+   */
+  public interface Phase extends AutoCloseable {
+    @Override
+    void close();
+
+    /**
+     * Ends this phase and starts the given one.
+     */
+    Phase next(String phase);
+  }
+
+  private static final Phase NO_PHASE = new Phase() {
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public Phase next(String phase) {
+      return time(phase);
+    }
+  };
+
+  private final String rpc;
+  private final long startNs = System.nanoTime();
+  // Phase name to its total time in nanoseconds and the number of times it ran
+  private final Map<String, long[]> phases = new LinkedHashMap<>();
+  private int principals = -1;
+  private int results = -1;
+
+  private RpcPhaseRecorder(String rpc) {
+    this.rpc = rpc;
+  }
+
+  /**
+   * Starts the given phase of the RPC running on this thread, if any.
+   */
+  public static Phase time(final String phase) {
+    final RpcPhaseRecorder recorder = CURRENT.get();
+    if (recorder == null) {
+      return NO_PHASE;
+    }
+    final long phaseStartNs = System.nanoTime();
+    return new Phase() {
+      private boolean closed;
+
+      @Override
+      public void close() {
+        if (!closed) {
+          closed = true;
+          recorder.add(phase, System.nanoTime() - phaseStartNs);
+        }
+      }
+
+      @Override
+      public Phase next(String nextPhase) {
+        close();
+        return time(nextPhase);
+      }
+    };
+  }
+
+  /**
+   * Sets the number of principals, such as groups and users, the RPC running on this
+   * thread is for.
+   */
+  public static void setPrincipals(int count) {
+    RpcPhaseRecorder recorder = CURRENT.get();
+    if (recorder != null) {
+      recorder.principals = count;
+    }
+  }
+
+  /**
+   * Sets the number of results, such as privileges, of the RPC running on this thread.
+   */
+  public static void setResults(int count) {
+    RpcPhaseRecorder recorder = CURRENT.get();
+    if (recorder != null) {
+      recorder.results = count;
+    }
+  }
+
+  /**
+   * @return a policy service handler that records the phases of the calls of the given one
+   */
+  static SentryPolicyService.Iface wrap(SentryPolicyService.Iface handler,
+      Configuration conf) {
+    return (SentryPolicyService.Iface) Proxy.newProxyInstance(
+        SentryPolicyService.Iface.class.getClassLoader(),
+        new Class<?>[] {SentryPolicyService.Iface.class},
+        new Handler(handler, conf));
+  }
+
+  private void add(String phase, long nanos) {
+    long[] phaseTime = phases.get(phase);
+    if (phaseTime == null) {
+      phaseTime = new long[2];
+      phases.put(phase, phaseTime);
+    }
+    phaseTime[0] += nanos;
+    phaseTime[1]++;
+  }
+
+  /**
+   * Exports the phases of the finished RPC, and logs them if it was slow.
+   */
+  private void finish(long slowThresholdMs, float slowSampleRate) {
+    long totalNs = System.nanoTime() - startNs;
+    SentryMetrics metrics = SentryMetrics.getInstance();
+    metrics.getHistogram(name(SentryPolicyStoreProcessor.class, "rpc", rpc, "phase", TOTAL))
+        .update(TimeUnit.NANOSECONDS.toMicros(totalNs));
+    for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+      metrics.getHistogram(
+          name(SentryPolicyStoreProcessor.class, "rpc", rpc, "phase", phase.getKey()))
+          .update(TimeUnit.NANOSECONDS.toMicros(phase.getValue()[0]));
+    }
+    if (slowThresholdMs > 0 && totalNs >= TimeUnit.MILLISECONDS.toNanos(slowThresholdMs)
+        && ThreadLocalRandom.current().nextFloat() < slowSampleRate) {
+      LOGGER.warn("Slow RPC {}: {}", rpc, describe(totalNs));
+    }
+  }
+
+  private String describe(long totalNs) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(TOTAL).append('=').append(toMillis(totalNs)).append(" ms");
+    sb.append(", principals=").append(principals);
+    sb.append(", results=").append(results);
+    for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+      sb.append(", ").append(phase.getKey()).append('=')
+          .append(toMillis(phase.getValue()[0])).append(" ms");
+      if (phase.getValue()[1] > 1) {
+        sb.append(" (").append(phase.getValue()[1]).append(" times)");
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String toMillis(long nanos) {
+    return String.format("%.3f", nanos / 1000000.0);
+  }
+
+  /**
+   * Binds a recorder to the handler thread for each call.
+   */
+  private static final class Handler implements InvocationHandler {
+    private final Object handler;
+    private final long slowThresholdMs;
+    private final float slowSampleRate;
+
+    Handler(Object handler, Configuration conf) {
+      this.handler = handler;
+      slowThresholdMs = conf.getLong(RPC_SLOW_LOG_THRESHOLD_MS,
+          RPC_SLOW_LOG_THRESHOLD_MS_DEFAULT);
+      slowSampleRate = conf.getFloat(RPC_SLOW_LOG_SAMPLE_RATE,
+          RPC_SLOW_LOG_SAMPLE_RATE_DEFAULT);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getDeclaringClass() == Object.class) {
+        return method.invoke(handler, args);
+      }
+      RpcPhaseRecorder recorder = new RpcPhaseRecorder(method.getName());
+      CURRENT.set(recorder);
+      try {
+        return method.invoke(handler, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      } finally {
+        CURRENT.remove();
+        recorder.finish(slowThresholdMs, slowSampleRate);
+      }
+    }
+  }
+}
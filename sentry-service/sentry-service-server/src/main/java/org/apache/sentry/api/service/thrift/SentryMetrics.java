@@ -199,6 +199,29 @@ public final class SentryMetrics {
     }
   }
 
+  /**
+   * Add the queue depth and active requests gauges of an RPC class, replacing the gauges
+   * of a previous admission controller.
+   */
+  void addRpcClassGauges(String rpcClass, Gauge<Integer> queued, Gauge<Integer> active) {
+    String queuedName = name(SentryPolicyStoreProcessor.class, "rpc-class", rpcClass, "queued");
+    String activeName = name(SentryPolicyStoreProcessor.class, "rpc-class", rpcClass, "active");
+    METRIC_REGISTRY.remove(queuedName);
+    METRIC_REGISTRY.register(queuedName, queued);
+    METRIC_REGISTRY.remove(activeName);
+    METRIC_REGISTRY.register(activeName, active);
+  }
+
+  /**
+   * Add the queue depth gauge of the asynchronous audit log, replacing the gauge of a
+   * previous audit logger.
+   */
+  public void addAuditLogQueueGauge(Class<?> klass, Gauge<Integer> queued) {
+    String queuedName = name(klass, "queued");
+    METRIC_REGISTRY.remove(queuedName);
+    METRIC_REGISTRY.register(queuedName, queued);
+  }
+
   /**
    * Initialize reporters. Only initializes once.<p>
    *
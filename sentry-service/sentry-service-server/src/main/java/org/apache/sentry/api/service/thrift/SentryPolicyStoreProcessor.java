@@ -23,6 +23,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -53,6 +54,7 @@ import org.apache.sentry.provider.db.SentryPolicyStorePlugin.SentryPluginExcepti
 import org.apache.sentry.core.common.exception.SentryThriftAPIMismatchException;
 import org.apache.sentry.provider.db.audit.SentryAuditLogger;
 import org.apache.sentry.provider.db.log.util.Constants;
+import org.apache.sentry.provider.db.service.persistent.SentryPolicyReplica;
 import org.apache.sentry.provider.db.service.persistent.SentryStoreInterface;
 import org.apache.sentry.core.common.utils.PolicyStoreConstants.PolicyStoreServerConfig;
 import org.apache.sentry.api.service.thrift.validator.GrantPrivilegeRequestValidator;
@@ -71,6 +73,7 @@ import org.apache.log4j.Logger;
 
 import com.codahale.metrics.Timer;
 import static com.codahale.metrics.MetricRegistry.name;
+import static org.apache.sentry.core.common.utils.SentryConstants.EMPTY_CHANGE_ID;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -105,6 +108,10 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
           SentryMetrics.getInstance().
                   getTimer(name(SentryPolicyStoreProcessor.class, "hms", "wait"));
   private final SentryAuditLogger audit;
+  // Serves reads without querying the store when enabled, null otherwise
+  private final SentryPolicyReplica replica;
+  // Whether the writes leaving no perm delta persist a marker for the replicas
+  private final boolean replicaMarkers;
 
   private List<SentryPolicyStorePlugin> sentryPlugins = new LinkedList<SentryPolicyStorePlugin>();
 
@@ -117,6 +124,9 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     this.notificationHandlerInvoker = new NotificationHandlerInvoker(conf,
         createHandlers(conf));
     this.audit = new SentryAuditLogger(conf);
+    this.replica = createReplica(conf, store);
+    this.replicaMarkers = conf.getBoolean(ServerConfig.SENTRY_POLICY_REPLICA_ENABLED,
+        ServerConfig.SENTRY_POLICY_REPLICA_ENABLED_DEFAULT) && store.isPersistUpdateDeltas();
     adminGroups = ImmutableSet.copyOf(toTrimedLower(Sets.newHashSet(conf.getStrings(
         ServerConfig.ADMIN_GROUPS, new String[]{}))));
     Iterable<String> pluginClasses = ConfUtilties.CLASS_SPLITTER
@@ -143,9 +153,86 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
   }
 
   public void stop() {
+    if (replica != null) {
+      replica.close();
+    }
+    audit.close();
     sentryStore.stop();
   }
 
+  private static SentryPolicyReplica createReplica(Configuration conf,
+      SentryStoreInterface store) {
+    if (!conf.getBoolean(ServerConfig.SENTRY_POLICY_REPLICA_ENABLED,
+        ServerConfig.SENTRY_POLICY_REPLICA_ENABLED_DEFAULT)) {
+      return null;
+    }
+    if (!store.isPersistUpdateDeltas()) {
+      LOGGER.warn("The policy replica needs HDFS sync to tail the perm deltas, " +
+          "reads are served by the store");
+      return null;
+    }
+    SentryPolicyReplica replica = new SentryPolicyReplica(store, conf);
+    replica.start();
+    return replica;
+  }
+
+  /**
+   * Makes a write of this server visible to the reads it serves from the replica.
+   */
+  private void syncReplica(String roleName) {
+    syncReplica(Collections.singleton(roleName), Collections.<String>emptySet());
+  }
+
+  private void syncReplica(SentryPrincipalType principalType, String principalName) {
+    if (principalType == SentryPrincipalType.ROLE) {
+      syncReplica(principalName);
+    } else {
+      syncReplica(Collections.<String>emptySet(), Collections.singleton(principalName));
+    }
+  }
+
+  private void syncReplica(Set<String> roleNames, Set<String> userNames) {
+    if (replica != null) {
+      replica.reload(roleNames, userNames);
+    }
+  }
+
+  /**
+   * Adds a marker naming the role to a write of privileges if some of them, e.g. on URIs
+   * or columns, leave no perm delta, so that the replicas of the other servers see it.
+   */
+  private void addReplicaMarker(String roleName, Set<TSentryPrivilege> privileges,
+      Map<TSentryPrivilege, Update> privilegesUpdateMap) {
+    if (!replicaMarkers) {
+      return;
+    }
+    for (TSentryPrivilege privilege : privileges) {
+      if (!privilegesUpdateMap.containsKey(privilege)) {
+        privilegesUpdateMap.put(privilege, SentryPolicyReplica.newMarker(
+            Collections.singleton(roleName), Collections.<String>emptySet()));
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return a marker naming the role for the replicas of the other servers, or null if
+   * they are not enabled
+   */
+  private Update getReplicaMarker(String roleName) {
+    return replicaMarkers ? SentryPolicyReplica.newMarker(Collections.singleton(roleName),
+        Collections.<String>emptySet()) : null;
+  }
+
+  /**
+   * @return the last perm change ID, which a client passes to the reads of any server
+   * so that they include its write, or null if perm changes are not persisted
+   */
+  private Long getPermChangeIdAfterWrite() throws Exception {
+    return sentryStore.isPersistUpdateDeltas() ? sentryStore.getLastProcessedPermChangeID()
+        : null;
+  }
+
   public void registerPlugin(SentryPolicyStorePlugin plugin) throws SentryPluginException {
     plugin.initialize(conf, sentryStore);
     sentryPlugins.add(plugin);
@@ -218,6 +305,7 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
       authorize(request.getRequestorUserName(),
           getRequestorGroups(request.getRequestorUserName()));
       sentryStore.createSentryRole(request.getRoleName());
+      syncReplica(request.getRoleName());
       response.setStatus(Status.OK());
       notificationHandlerInvoker.create_sentry_role(request, response);
     } catch (SentryAlreadyExistsException e) {
@@ -328,6 +416,7 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
       for (SentryPolicyStorePlugin plugin : sentryPlugins) {
         plugin.onAlterSentryRoleGrantPrivilege(request.getRoleName(), request.getPrivileges(), privilegesUpdateMap);
       }
+      addReplicaMarker(request.getRoleName(), request.getPrivileges(), privilegesUpdateMap);
 
       if (!privilegesUpdateMap.isEmpty()) {
         sentryStore.alterSentryRoleGrantPrivileges(request.getRoleName(),
@@ -336,6 +425,11 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
         sentryStore.alterSentryRoleGrantPrivileges(request.getRoleName(),
           request.getPrivileges());
       }
+      syncReplica(request.getRoleName());
+      Long permChangeId = getPermChangeIdAfterWrite();
+      if (permChangeId != null) {
+        response.setPermChangeId(permChangeId);
+      }
       GrantPrivilegeRequestValidator.validate(request);
       response.setStatus(Status.OK());
       response.setPrivileges(request.getPrivileges());
@@ -399,6 +493,7 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
       for (SentryPolicyStorePlugin plugin : sentryPlugins) {
         plugin.onAlterSentryRoleRevokePrivilege(request.getRoleName(), request.getPrivileges(), privilegesUpdateMap);
       }
+      addReplicaMarker(request.getRoleName(), request.getPrivileges(), privilegesUpdateMap);
 
       if (!privilegesUpdateMap.isEmpty()) {
         sentryStore.alterSentryRoleRevokePrivileges(request.getRoleName(),
@@ -407,6 +502,11 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
         sentryStore.alterSentryRoleRevokePrivileges(request.getRoleName(),
           request.getPrivileges());
       }
+      syncReplica(request.getRoleName());
+      Long permChangeId = getPermChangeIdAfterWrite();
+      if (permChangeId != null) {
+        response.setPermChangeId(permChangeId);
+      }
       RevokePrivilegeRequestValidator.validate(request);
       response.setStatus(Status.OK());
       notificationHandlerInvoker.alter_sentry_role_revoke_privilege(request,
@@ -479,6 +579,11 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
       } else {
         sentryStore.dropSentryRole(request.getRoleName());
       }
+      syncReplica(request.getRoleName());
+      Long permChangeId = getPermChangeIdAfterWrite();
+      if (permChangeId != null) {
+        response.setPermChangeId(permChangeId);
+      }
       response.setStatus(Status.OK());
       notificationHandlerInvoker.drop_sentry_role(request, response);
     } catch (SentryNoSuchObjectException e) {
@@ -530,6 +635,11 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
         sentryStore.alterSentryRoleAddGroups(request.getRequestorUserName(),
             request.getRoleName(), request.getGroups());
       }
+      syncReplica(request.getRoleName());
+      Long permChangeId = getPermChangeIdAfterWrite();
+      if (permChangeId != null) {
+        response.setPermChangeId(permChangeId);
+      }
       response.setStatus(Status.OK());
       notificationHandlerInvoker.alter_sentry_role_add_groups(request,
           response);
@@ -566,7 +676,13 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     try {
       validateClientVersion(request.getProtocol_version());
       authorize(request.getRequestorUserName(), getRequestorGroups(request.getRequestorUserName()));
-      sentryStore.alterSentryRoleAddUsers(request.getRoleName(), request.getUsers());
+      Update marker = getReplicaMarker(request.getRoleName());
+      if (marker != null) {
+        sentryStore.alterSentryRoleAddUsers(request.getRoleName(), request.getUsers(), marker);
+      } else {
+        sentryStore.alterSentryRoleAddUsers(request.getRoleName(), request.getUsers());
+      }
+      syncReplica(request.getRoleName());
       response.setStatus(Status.OK());
       notificationHandlerInvoker.alter_sentry_role_add_users(request, response);
     } catch (SentryNoSuchObjectException e) {
@@ -602,8 +718,14 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     try {
       validateClientVersion(request.getProtocol_version());
       authorize(request.getRequestorUserName(), getRequestorGroups(request.getRequestorUserName()));
-      sentryStore.alterSentryRoleDeleteUsers(request.getRoleName(),
-              request.getUsers());
+      Update marker = getReplicaMarker(request.getRoleName());
+      if (marker != null) {
+        sentryStore.alterSentryRoleDeleteUsers(request.getRoleName(), request.getUsers(),
+            marker);
+      } else {
+        sentryStore.alterSentryRoleDeleteUsers(request.getRoleName(), request.getUsers());
+      }
+      syncReplica(request.getRoleName());
       response.setStatus(Status.OK());
       notificationHandlerInvoker.alter_sentry_role_delete_users(request, response);
     } catch (SentryNoSuchObjectException e) {
@@ -656,6 +778,11 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
         sentryStore.alterSentryRoleDeleteGroups(request.getRoleName(),
           request.getGroups());
       }
+      syncReplica(request.getRoleName());
+      Long permChangeId = getPermChangeIdAfterWrite();
+      if (permChangeId != null) {
+        response.setPermChangeId(permChangeId);
+      }
       response.setStatus(Status.OK());
       notificationHandlerInvoker.alter_sentry_role_delete_groups(request,
           response);
@@ -710,7 +837,10 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
           groups.add(request.getGroupName());
         }
       }
-      roleSet = sentryStore.getTSentryRolesByGroupName(groups, checkAllGroups);
+      Set<TSentryRole> replicaRoles = replica != null && replica.isReady() ?
+          replica.getTSentryRolesByGroupName(groups, checkAllGroups) : null;
+      roleSet = replicaRoles != null ? replicaRoles :
+          sentryStore.getTSentryRolesByGroupName(groups, checkAllGroups);
       response.setRoles(roleSet);
       response.setStatus(Status.OK());
     } catch (SentryNoSuchObjectException e) {
@@ -1021,6 +1151,20 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     response.setPrivileges(new HashSet<String>());
     try {
       validateClientVersion(request.getProtocol_version());
+      RpcPhaseRecorder.setPrincipals(sizeOf(request.getGroups()) + sizeOf(request.getUsers()));
+      // Read first, the privileges include at least the changes up to it
+      long permChangeId = replica != null ? replica.getPermChangeId() : getStorePermChangeId();
+      if (replica != null && replica.isReady()) {
+        boolean served;
+        try (RpcPhaseRecorder.Phase phase =
+            RpcPhaseRecorder.time(RpcPhaseRecorder.REPLICA_READ)) {
+          served = listPrivilegesForProviderFromReplica(request, response);
+        }
+        if (served) {
+          RpcPhaseRecorder.setResults(response.getPrivileges().size());
+          return response;
+        }
+      }
       Set<String> privilegesForProvider =
           sentryStore.listSentryPrivilegesForProvider(request.getGroups(), request.getUsers(),
               request.getRoleSet(), request.getAuthorizableHierarchy());
@@ -1040,6 +1184,11 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
         HashSet<String> serverPriv = Sets.newHashSet("server=+");
         response.setPrivileges(serverPriv);
       }
+      if (permChangeId != EMPTY_CHANGE_ID) {
+        // Lets clients cache authorization decisions until permissions change
+        response.setPermChangeId(permChangeId);
+      }
+      RpcPhaseRecorder.setResults(response.getPrivileges().size());
       response.setStatus(Status.OK());
     } catch (SentryThriftAPIMismatchException e) {
       LOGGER.error(e.getMessage(), e);
@@ -1054,6 +1203,76 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     return response;
   }
 
+  /**
+   * @return the last perm change ID of the store, or EMPTY_CHANGE_ID if perm changes are
+   * not persisted. Without the replica, this costs a transaction per provider read.
+   */
+  private long getStorePermChangeId() throws Exception {
+    if (!sentryStore.isPersistUpdateDeltas()) {
+      return EMPTY_CHANGE_ID;
+    }
+    Long permChangeId = sentryStore.getLastProcessedPermChangeID();
+    return permChangeId != null ? permChangeId : EMPTY_CHANGE_ID;
+  }
+
+  /**
+   * @return the roles whose groups, users or privileges an import sets
+   */
+  private static Set<String> getImportedRoles(TSentryMappingData mappingData) {
+    Set<String> roleNames = new HashSet<>();
+    if (mappingData.getRolePrivilegesMap() != null) {
+      roleNames.addAll(mappingData.getRolePrivilegesMap().keySet());
+    }
+    for (Map<String, Set<String>> memberRoles : Arrays.asList(
+        mappingData.getGroupRolesMap(), mappingData.getUserRolesMap())) {
+      if (memberRoles != null) {
+        for (Set<String> roles : memberRoles.values()) {
+          roleNames.addAll(roles);
+        }
+      }
+    }
+    return roleNames;
+  }
+
+  private static int sizeOf(Set<String> names) {
+    return names == null ? 0 : names.size();
+  }
+
+  /**
+   * @return false if the replica cannot serve the request, and the store must be read
+   */
+  private boolean listPrivilegesForProviderFromReplica(
+      TListSentryPrivilegesForProviderRequest request,
+      TListSentryPrivilegesForProviderResponse response) {
+    if (request.isSetMinPermChangeId() && !replica.catchUpTo(request.getMinPermChangeId())) {
+      return false;
+    }
+    // Read first, the privileges include at least the changes up to it
+    long permChangeId = replica.getPermChangeId();
+    Set<String> privilegesForProvider =
+        replica.listSentryPrivilegesForProvider(request.getGroups(), request.getUsers(),
+            request.getRoleSet(), request.getAuthorizableHierarchy());
+    if (privilegesForProvider == null) {
+      return false;
+    }
+    if (privilegesForProvider.isEmpty() && request.getAuthorizableHierarchy() != null) {
+      Boolean hasServerPrivileges = replica.hasAnyServerPrivileges(request.getGroups(),
+          request.getUsers(), request.getRoleSet(),
+          request.getAuthorizableHierarchy().getServer());
+      if (hasServerPrivileges == null) {
+        return false;
+      }
+      if (hasServerPrivileges) {
+        // Same as for the store, see list_sentry_privileges_for_provider
+        privilegesForProvider = Sets.newHashSet("server=+");
+      }
+    }
+    response.setPrivileges(privilegesForProvider);
+    response.setPermChangeId(permChangeId);
+    response.setStatus(Status.OK());
+    return true;
+  }
+
   // retrieve the group mapping for the given user name
   private Set<String> getRequestorGroups(String userName)
       throws SentryUserException {
@@ -1090,7 +1309,10 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     } catch (InvocationTargetException e) {
       throw new SentryUserException("Unable to instantiate group mapping", e);
     }
-    return groupMappingService.getGroups(userName);
+    try (RpcPhaseRecorder.Phase phase =
+        RpcPhaseRecorder.time(RpcPhaseRecorder.GROUP_RESOLUTION)) {
+      return groupMappingService.getGroups(userName);
+    }
   }
 
   @Override
@@ -1114,6 +1336,8 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
       } else {
         sentryStore.dropPrivilege(request.getAuthorizable());
       }
+      // The privileges are dropped from roles and users found by the perm delta
+      syncReplica(Collections.<String>emptySet(), Collections.<String>emptySet());
       response.setStatus(Status.OK());
     } catch (SentryAccessDeniedException e) {
       LOGGER.error(e.getMessage(), e);
@@ -1158,6 +1382,7 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
         sentryStore.renamePrivilege(request.getOldAuthorizable(),
             request.getNewAuthorizable());
       }
+      syncReplica(Collections.<String>emptySet(), Collections.<String>emptySet());
       response.setStatus(Status.OK());
     } catch (SentryAccessDeniedException e) {
       LOGGER.error(e.getMessage(), e);
@@ -1390,6 +1615,14 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
             + " for import the metadata of sentry.");
       }
       sentryStore.importSentryMetaData(request.getMappingData(), request.isOverwriteRole());
+      if (replicaMarkers) {
+        // The import is made in several transactions without perm deltas
+        sentryStore.persistUpdate(SentryPolicyReplica.newMarker(
+            getImportedRoles(request.getMappingData()), Collections.<String>emptySet()));
+      }
+      if (replica != null) {
+        replica.invalidate();
+      }
       response.setStatus(Status.OK());
     } catch (SentryAccessDeniedException e) {
       LOGGER.error(e.getMessage(), e);
@@ -1606,6 +1839,7 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     try {
       sentryStore.alterSentryGrantOwnerPrivilege(request.getOwnerName(), principalType,
               ownerPrivilege, privilegesUpdateMap.get(ownerPrivilege));
+      syncReplica(principalType, request.getOwnerName());
 
       audit.onGrantOwnerPrivilege(Status.OK(), request.getRequestorUserName(),
         request.getOwnerType(), request.getOwnerName(), request.getAuthorizable());
@@ -1677,6 +1911,8 @@ public class SentryPolicyStoreProcessor implements SentryPolicyService.Iface {
     try {
       sentryStore.updateOwnerPrivilege(request.getAuthorizable(), request.getOwnerName(),
         principalType, updateList);
+      // Old owners are found by the perm deltas
+      syncReplica(principalType, request.getOwnerName());
 
       audit.onTransferOwnerPrivilege(Status.OK(), request.getRequestorUserName(),
         request.getOwnerType(), request.getOwnerName(), request.getAuthorizable());
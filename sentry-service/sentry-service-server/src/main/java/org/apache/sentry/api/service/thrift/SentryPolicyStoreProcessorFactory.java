@@ -20,6 +20,7 @@ package org.apache.sentry.api.service.thrift;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.sentry.api.common.ApiConstants.SentryPolicyServiceConstants;
 import org.apache.sentry.provider.db.service.persistent.SentryStoreInterface;
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
 import org.apache.sentry.service.thrift.ProcessorFactory;
 import org.apache.thrift.TMultiplexedProcessor;
 import org.apache.thrift.TProcessor;
@@ -34,8 +35,17 @@ public class SentryPolicyStoreProcessorFactory extends ProcessorFactory {
     SentryPolicyStoreProcessor sentryServiceHandler =
         new SentryPolicyStoreProcessor(SentryPolicyServiceConstants.SENTRY_POLICY_SERVICE_NAME,
             conf, sentryStore);
+    SentryPolicyService.Iface handler = sentryServiceHandler;
+    if (conf.getBoolean(ServerConfig.RPC_ADMISSION_CONTROL_ENABLED,
+        ServerConfig.RPC_ADMISSION_CONTROL_ENABLED_DEFAULT)) {
+      handler = RpcAdmissionController.wrap(sentryServiceHandler, conf);
+    }
+    if (conf.getBoolean(ServerConfig.RPC_PHASE_TIMING_ENABLED,
+        ServerConfig.RPC_PHASE_TIMING_ENABLED_DEFAULT)) {
+      handler = RpcPhaseRecorder.wrap(handler, conf);
+    }
     TProcessor processor =
-      new SentryProcessorWrapper<SentryPolicyService.Iface>(sentryServiceHandler);
+      new SentryProcessorWrapper<SentryPolicyService.Iface>(handler);
     multiplexedProcessor.registerProcessor(
       SentryPolicyServiceConstants.SENTRY_POLICY_SERVICE_NAME, processor);
     return true;
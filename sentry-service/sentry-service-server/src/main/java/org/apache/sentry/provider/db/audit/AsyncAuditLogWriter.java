@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.provider.db.audit;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Appender;
+import org.apache.sentry.api.service.thrift.SentryMetrics;
+import org.apache.sentry.provider.db.log.entity.JsonLogEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.google.common.annotations.VisibleForTesting;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Writes audit log entries from a single background thread, so that the RPC threads only
+ * hand them over through a bounded queue.
+ * <p>
+ * The writer thread serializes the entries, which then reuses the buffers of the JSON
+ * factory, and logs them in batches of at most batchSize entries. After each batch it
+ * flushes the {@link Flushable} appenders of the audit logger, such as
+ * {@link org.apache.sentry.provider.db.log.appender.RollingFileWithoutDeleteAppender},
+ * so they can be configured without immediate flush.
+ * <p>
+ * When the queue is full, an entry either waits for room or is dropped, as configured.
+ * The queue depth and the number of dropped entries are reported as metrics.
+ */
+class AsyncAuditLogWriter implements Runnable, AutoCloseable {
+
+  /**
+   * What to do with an entry when the queue is full.
+   */
+  enum QueueFullPolicy {
+    BLOCK,
+    DROP
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAuditLogWriter.class);
+  private static final String AUDIT_LOG_WRITER_THREAD_NAME = "sentry-audit-log-writer";
+  // How often the writer thread checks if it is closed while the queue is empty
+  private static final long POLL_INTERVAL_MS = 1000;
+
+  private final Logger auditLogger;
+  private final BlockingQueue<JsonLogEntity> queue;
+  private final QueueFullPolicy queueFullPolicy;
+  private final int batchSize;
+  private final Counter droppedEntries;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  /**
+   * Creates the writer and starts its thread.
+   *
+   * @param auditLogger the logger to write the entries to
+   * @param queueSize maximum number of entries waiting to be written
+   * @param queueFullPolicy what to do with an entry when the queue is full
+   * @param batchSize maximum number of entries written between flushes
+   */
+  AsyncAuditLogWriter(Logger auditLogger, int queueSize, QueueFullPolicy queueFullPolicy,
+      int batchSize) {
+    this.auditLogger = auditLogger;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.queueFullPolicy = queueFullPolicy;
+    this.batchSize = Math.max(1, batchSize);
+    SentryMetrics sentryMetrics = SentryMetrics.getInstance();
+    this.droppedEntries = sentryMetrics.getCounter(name(AsyncAuditLogWriter.class, "dropped"));
+    sentryMetrics.addAuditLogQueueGauge(AsyncAuditLogWriter.class, new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return queue.size();
+      }
+    });
+    writer = new Thread(this, AUDIT_LOG_WRITER_THREAD_NAME);
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Queues an entry to be written. Once the writer is closed, entries are written by the
+   * calling thread.
+   */
+  void add(JsonLogEntity entity) {
+    if (closed) {
+      write(entity);
+      return;
+    }
+    if (queueFullPolicy == QueueFullPolicy.BLOCK) {
+      try {
+        queue.put(entity);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        drop(entity);
+      }
+    } else if (!queue.offer(entity)) {
+      drop(entity);
+    }
+    if (closed) {
+      // The writer thread may have stopped before the entry was queued
+      writeQueued();
+    }
+  }
+
+  @VisibleForTesting
+  long getDroppedCount() {
+    return droppedEntries.getCount();
+  }
+
+  @Override
+  public void run() {
+    List<JsonLogEntity> batch = new ArrayList<>(batchSize);
+    while (!closed || !queue.isEmpty()) {
+      JsonLogEntity entity;
+      try {
+        entity = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        // Closed, write the remaining entries
+        continue;
+      }
+      if (entity == null) {
+        continue;
+      }
+      batch.add(entity);
+      queue.drainTo(batch, batchSize - 1);
+      for (JsonLogEntity entity : batch) {
+        write(entity);
+      }
+      batch.clear();
+      flush();
+    }
+  }
+
+  /**
+   * Writes the queued entries and stops the writer thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    writer.interrupt();
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drop(JsonLogEntity entity) {
+    droppedEntries.inc();
+    LOGGER.debug("Audit log queue is full, dropped an entry");
+  }
+
+  private void writeQueued() {
+    JsonLogEntity entity;
+    while ((entity = queue.poll()) != null) {
+      write(entity);
+    }
+    flush();
+  }
+
+  private void write(JsonLogEntity entity) {
+    try {
+      auditLogger.info(entity.toJsonFormatLog());
+    } catch (Exception e) {
+      LOGGER.error("Cannot write an audit log entry: " + e.getMessage(), e);
+    }
+  }
+
+  private void flush() {
+    Enumeration<?> appenders =
+        org.apache.log4j.Logger.getLogger(auditLogger.getName()).getAllAppenders();
+    while (appenders.hasMoreElements()) {
+      Appender appender = (Appender) appenders.nextElement();
+      if (appender instanceof Flushable) {
+        try {
+          ((Flushable) appender).flush();
+        } catch (IOException e) {
+          LOGGER.error("Cannot flush the audit log appender " + appender.getName(), e);
+        }
+      }
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.sentry.provider.db.log.appender;
 
 import java.io.File;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.Writer;
@@ -30,7 +31,7 @@ import org.apache.log4j.helpers.LogLog;
 import org.apache.log4j.helpers.OptionConverter;
 import org.apache.log4j.spi.LoggingEvent;
 
-public class RollingFileWithoutDeleteAppender extends FileAppender {
+public class RollingFileWithoutDeleteAppender extends FileAppender implements Flushable {
   /**
    * The default maximum file size is 10MB.
    */
@@ -150,6 +151,17 @@ public class RollingFileWithoutDeleteAppender extends FileAppender {
     maxFileSize = OptionConverter.toFileSize(value, maxFileSize + 1);
   }
 
+  /**
+   * Flushes the entries appended so far. Used when the appender is configured without
+   * immediate flush and its entries are written in batches.
+   */
+  @Override
+  public synchronized void flush() {
+    if (qw != null) {
+      qw.flush();
+    }
+  }
+
   protected void setQWForFiles(Writer writer) {
     this.qw = new CountingQuietWriter(writer, errorHandler);
   }
@@ -18,16 +18,24 @@
 
 package org.apache.sentry.provider.db.service.model;
 
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.sentry.hdfs.DeltaSerializer;
 import org.apache.sentry.hdfs.PathsUpdate;
 import org.apache.thrift.TException;
 
 import javax.jdo.annotations.PersistenceCapable;
 import javax.jdo.annotations.PrimaryKey;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Database backend store for HMS path delta change. Each record contains
- * change ID, HMS notification ID, JSON format of a single
- * &lt Hive Obj, HDFS Path &gt change, and timestamp.
+ * change ID, HMS notification ID, a single &lt Hive Obj, HDFS Path &gt
+ * change, and timestamp.
+ * <p>
+ * The change is stored in the binary format of {@link DeltaSerializer}.
+ * Records written by older versions keep the change in JSON format instead,
+ * {@link #getPathsUpdate()} reads both.
  * <p>
  * e.g. for add paths change in JSON format.
  * <pre>
@@ -63,16 +71,41 @@ public class MSentryPathChange implements MSentryChange {
   //This value is auto incremented by JDO
   private long changeID;
 
-  // Path change in JSON format.
+  // Path change in JSON format, only set for records written by older versions.
   private String pathChange;
+  // Path change in the binary delta format.
+  private byte[] pathChangeData;
   private long createTimeMs;
   private String notificationHash;
 
-  public MSentryPathChange(long changeID, String notificationHash, PathsUpdate pathChange) throws TException {
+  public MSentryPathChange(long changeID, String notificationHash, PathsUpdate pathChange)
+      throws IOException {
+    this(changeID, notificationHash, pathChange, false);
+  }
+
+  /**
+   * @param compress whether to compress the serialized path change
+   */
+  public MSentryPathChange(long changeID, String notificationHash, PathsUpdate pathChange,
+      boolean compress) throws IOException {
     // Each PathsUpdate maps to a MSentryPathChange object.
     // The PathsUpdate is generated from a HMS notification log,
     // the notification ID is stored as seqNum and
-    // the notification update is serialized as JSON string.
+    // the notification update is serialized in the binary delta format.
+    this(changeID, notificationHash);
+    this.pathChangeData = DeltaSerializer.serialize(pathChange, compress);
+  }
+
+  /**
+   * Creates a record with the path change in the legacy JSON format.
+   */
+  @VisibleForTesting
+  MSentryPathChange(long changeID, String notificationHash, String pathChangeJson) {
+    this(changeID, notificationHash);
+    this.pathChange = pathChangeJson;
+  }
+
+  private MSentryPathChange(long changeID, String notificationHash) {
     this.changeID = changeID;
 
     /*
@@ -83,8 +116,6 @@ public class MSentryPathChange implements MSentryChange {
      * TODO: This is a temporary fix until HIVE-16886 fixes the issue with duplicated IDs
      */
     this.notificationHash = notificationHash;
-
-    this.pathChange = pathChange.JSONSerialize();
     this.createTimeMs = System.currentTimeMillis();
   }
 
@@ -92,10 +123,44 @@ public class MSentryPathChange implements MSentryChange {
     return createTimeMs;
   }
 
+  /**
+   * @return the path change in JSON format, or null if it is stored in the
+   * binary delta format
+   */
   public String getPathChange() {
     return pathChange;
   }
 
+  /**
+   * @return the path change in the binary delta format, or null if it is
+   * stored in JSON format
+   */
+  public byte[] getPathChangeData() {
+    return pathChangeData;
+  }
+
+  /**
+   * Deserializes the path change, regardless of the format it is stored in.
+   */
+  public PathsUpdate getPathsUpdate() throws IOException, TException {
+    PathsUpdate pathsUpdate = new PathsUpdate();
+    if (pathChangeData != null) {
+      DeltaSerializer.deserialize(pathsUpdate, pathChangeData);
+    } else {
+      pathsUpdate.JSONDeserialize(pathChange);
+    }
+    return pathsUpdate;
+  }
+
+  /**
+   * @return an estimate of the size of the path change in bytes once deserialized
+   * and sent over Thrift, without deserializing it
+   */
+  public long getPathChangeSize() throws IOException {
+    return pathChangeData != null ?
+        DeltaSerializer.getSerializedSize(pathChangeData) : pathChange.length();
+  }
+
   public long getChangeID() {
     return changeID;
   }
@@ -108,6 +173,7 @@ public class MSentryPathChange implements MSentryChange {
   public String toString() {
     return "MSentryChange [changeID=" + changeID + " , notificationHash= "
         + notificationHash +" , pathChange= " + pathChange +
+        " , pathChangeData= " + (pathChangeData == null ? 0 : pathChangeData.length) + " bytes" +
         ", createTime=" + createTimeMs +  "]";
   }
 
@@ -118,6 +184,7 @@ public class MSentryPathChange implements MSentryChange {
     result = prime * result + Long.valueOf(changeID).hashCode();
     result = prime * result + notificationHash.hashCode();
     result = prime * result + ((pathChange == null) ? 0 : pathChange.hashCode());
+    result = prime * result + Arrays.hashCode(pathChangeData);
     return result;
   }
 
@@ -148,6 +215,10 @@ public class MSentryPathChange implements MSentryChange {
       return false;
     }
 
+    if (!Arrays.equals(pathChangeData, other.pathChangeData)) {
+      return false;
+    }
+
     if (pathChange == null) {
       return other.pathChange == null;
     }
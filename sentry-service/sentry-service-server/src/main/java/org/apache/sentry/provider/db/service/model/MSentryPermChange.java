@@ -18,17 +18,24 @@
 
 package org.apache.sentry.provider.db.service.model;
 
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.sentry.hdfs.DeltaSerializer;
 import org.apache.sentry.hdfs.PermissionsUpdate;
 import org.apache.thrift.TException;
 
 import javax.jdo.annotations.PersistenceCapable;
 import javax.jdo.annotations.PrimaryKey;
+import java.io.IOException;
+import java.util.Arrays;
 
 
 /**
  * Database backend store for Sentry permission delta change. Each record
- * contains change ID, JSON format of a single Sentry permission change,
- * and timestamp.
+ * contains change ID, a single Sentry permission change, and timestamp.
+ * <p>
+ * The change is stored in the binary format of {@link DeltaSerializer}.
+ * Records written by older versions keep the change in JSON format instead,
+ * {@link #getPermissionsUpdate()} reads both.
  * <p>
  * e.g. for rename privileges change in JSON format.
  * <pre>
@@ -61,13 +68,33 @@ public class MSentryPermChange implements MSentryChange {
   //This value is auto incremented by JDO
   private long changeID;
 
-  // Permission change in JSON format.
+  // Permission change in JSON format, only set for records written by older versions.
   private String permChange;
+  // Permission change in the binary delta format.
+  private byte[] permChangeData;
   private long createTimeMs;
 
-  public MSentryPermChange(long changeID, PermissionsUpdate permChange) throws TException {
+  public MSentryPermChange(long changeID, PermissionsUpdate permChange) throws IOException {
+    this(changeID, permChange, false);
+  }
+
+  /**
+   * @param compress whether to compress the serialized permission change
+   */
+  public MSentryPermChange(long changeID, PermissionsUpdate permChange, boolean compress)
+      throws IOException {
     this.changeID = changeID;
-    this.permChange = permChange.JSONSerialize();
+    this.permChangeData = DeltaSerializer.serialize(permChange, compress);
+    this.createTimeMs = System.currentTimeMillis();
+  }
+
+  /**
+   * Creates a record with the permission change in the legacy JSON format.
+   */
+  @VisibleForTesting
+  MSentryPermChange(long changeID, String permChangeJson) {
+    this.changeID = changeID;
+    this.permChange = permChangeJson;
     this.createTimeMs = System.currentTimeMillis();
   }
 
@@ -75,10 +102,44 @@ public class MSentryPermChange implements MSentryChange {
     return createTimeMs;
   }
 
+  /**
+   * @return the permission change in JSON format, or null if it is stored in the
+   * binary delta format
+   */
   public String getPermChange() {
     return permChange;
   }
 
+  /**
+   * @return the permission change in the binary delta format, or null if it is
+   * stored in JSON format
+   */
+  public byte[] getPermChangeData() {
+    return permChangeData;
+  }
+
+  /**
+   * Deserializes the permission change, regardless of the format it is stored in.
+   */
+  public PermissionsUpdate getPermissionsUpdate() throws IOException, TException {
+    PermissionsUpdate permsUpdate = new PermissionsUpdate();
+    if (permChangeData != null) {
+      DeltaSerializer.deserialize(permsUpdate, permChangeData);
+    } else {
+      permsUpdate.JSONDeserialize(permChange);
+    }
+    return permsUpdate;
+  }
+
+  /**
+   * @return an estimate of the size of the permission change in bytes once
+   * deserialized and sent over Thrift, without deserializing it
+   */
+  public long getPermChangeSize() throws IOException {
+    return permChangeData != null ?
+        DeltaSerializer.getSerializedSize(permChangeData) : permChange.length();
+  }
+
   public long getChangeID() {
     return changeID;
   }
@@ -86,6 +147,7 @@ public class MSentryPermChange implements MSentryChange {
   @Override
   public String toString() {
     return "MSentryPermChange [changeID=" + changeID + ", permChange= " + permChange +
+        ", permChangeData= " + (permChangeData == null ? 0 : permChangeData.length) + " bytes" +
         ", createTimeMs=" + createTimeMs +  "]";
   }
 
@@ -95,6 +157,7 @@ public class MSentryPermChange implements MSentryChange {
     int result = 1;
     result = prime * result + Long.valueOf(changeID).hashCode();
     result = prime * result + ((permChange == null) ? 0 : permChange.hashCode());
+    result = prime * result + Arrays.hashCode(permChangeData);
     return result;
   }
 
@@ -121,6 +184,10 @@ public class MSentryPermChange implements MSentryChange {
       return false;
     }
 
+    if (!Arrays.equals(permChangeData, other.permChangeData)) {
+      return false;
+    }
+
     if (permChange == null) {
       return other.permChange == null;
     }
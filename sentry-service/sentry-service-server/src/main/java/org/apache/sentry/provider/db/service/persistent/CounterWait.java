@@ -149,6 +149,24 @@ public class CounterWait {
     wakeup(newValue);
   }
 
+  /**
+   * Increment the counter value by one and wake up all threads waiting for
+   * the new value or any value below it.
+   *
+   * @return the new counter value
+   */
+  public synchronized long increment() {
+    update(currentId.get() + 1);
+    return currentId.get();
+  }
+
+  /**
+   * @return the current counter value
+   */
+  public long getCurrentValue() {
+    return currentId.get();
+  }
+
   /**
    * Explicitly reset the counter value to a new value, but allow setting to a
    * smaller value.
@@ -186,6 +204,23 @@ public class CounterWait {
    * wait was not successfull within the timeout value specified at the construction time.
    */
   public long waitFor(long value) throws InterruptedException, TimeoutException {
+    return waitFor(value, waitTimeout, waitTimeUnit);
+  }
+
+  /**
+   * Wait for specified counter value using the given timeout instead of the
+   * one specified at the construction time.
+   *
+   * @param value requested counter value
+   * @param timeout maximum time to wait, 0 means wait forever
+   * @param timeUnit time units for timeout
+   * @return current counter value that should be no smaller then the requested
+   * value
+   * @throws InterruptedException if the wait was interrupted, TimeoutException if
+   * wait was not successfull within the specified timeout.
+   */
+  public long waitFor(long value, long timeout, TimeUnit timeUnit)
+          throws InterruptedException, TimeoutException {
     // Fast path - counter value already reached, no need to block
     if (value <= currentId.get()) {
       LOGGER.debug("Value {} reached", value);
@@ -212,7 +247,13 @@ public class CounterWait {
     // will not block, so it is safe to wake up before the wait.
     // So sit tight and wait patiently.
     LOGGER.debug("Blocked, waiting for value {}", value);
-    eid.waitFor();
+    try {
+      eid.waitFor(timeout, timeUnit);
+    } catch (TimeoutException e) {
+      // Do not leave the expired waiter in the queue
+      waiters.remove(eid);
+      throw e;
+    }
     return currentId.get();
   }
 
@@ -292,12 +333,12 @@ public class CounterWait {
     }
 
     /** Wait until signaled or interrupted. May return immediately if already signalled. */
-    void waitFor() throws InterruptedException, TimeoutException {
-      if (waitTimeout == 0) {
+    void waitFor(long timeout, TimeUnit timeUnit) throws InterruptedException, TimeoutException {
+      if (timeout == 0) {
         semaphore.acquire();
         return;
       }
-      if (!semaphore.tryAcquire(waitTimeout, waitTimeUnit)) {
+      if (!semaphore.tryAcquire(timeout, timeUnit)) {
         throw new TimeoutException();
       }
     }
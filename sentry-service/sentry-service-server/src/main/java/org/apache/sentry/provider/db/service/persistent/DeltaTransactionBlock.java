@@ -39,14 +39,24 @@ import javax.jdo.PersistenceManager;
  * NullPointerException would be thrown if update is null.
  * {@link SentryInvalidInputException} would be thrown when update is
  * neither type of PathsUpdate nor PermissionsUpdate, also in the case
- * update contains a full image. TException would be thrown if Update
- * cannot be successfully serialized to JSON string.
+ * update contains a full image. IOException would be thrown if Update
+ * cannot be successfully serialized.
  */
 public class DeltaTransactionBlock implements TransactionBlock<Object> {
   private final Update update;
+  private final boolean compress;
 
   public DeltaTransactionBlock(Update update) {
+    this(update, false);
+  }
+
+  /**
+   * @param update the delta update to persist
+   * @param compress whether to compress the persisted update
+   */
+  public DeltaTransactionBlock(Update update, boolean compress) {
     this.update = update;
+    this.compress = compress;
   }
 
   @Override
@@ -63,8 +73,7 @@ public class DeltaTransactionBlock implements TransactionBlock<Object> {
    * {@link SentryInvalidInputException} would be thrown when update is
    * neither type of PathsUpdate nor PermissionsUpdate. Also in the case
    * update contains a full image.
-   * TException would be thrown if Update cannot be successfully serialized
-   * to JSON string.
+   * IOException would be thrown if Update cannot be successfully serialized.
    *
    * @param pm PersistenceManager
    * @param update update
@@ -87,11 +96,13 @@ public class DeltaTransactionBlock implements TransactionBlock<Object> {
     // fail.
     if (update instanceof PermissionsUpdate) {
       long lastChangeID = SentryStore.getLastProcessedChangeIDCore(pm, MSentryPermChange.class);
-      pm.makePersistent(new MSentryPermChange(lastChangeID + 1, (PermissionsUpdate) update));
+      pm.makePersistent(new MSentryPermChange(lastChangeID + 1, (PermissionsUpdate) update,
+          compress));
     } else if (update instanceof UniquePathsUpdate) {
       long lastChangeID = SentryStore.getLastProcessedChangeIDCore(pm, MSentryPathChange.class);
       String eventHash = ((UniquePathsUpdate) update).getEventHash();
-      pm.makePersistent(new MSentryPathChange(lastChangeID + 1, eventHash, (PathsUpdate) update));
+      pm.makePersistent(new MSentryPathChange(lastChangeID + 1, eventHash, (PathsUpdate) update,
+          compress));
       // Notification id from PATH_UPDATE entry is made persistent in
       // SENTRY_LAST_NOTIFICATION_ID table.
       pm.makePersistent(new MSentryHmsNotification(update.getSeqNum()));
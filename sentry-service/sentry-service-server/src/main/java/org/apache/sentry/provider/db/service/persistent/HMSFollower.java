@@ -72,6 +72,10 @@ public class HMSFollower implements Runnable, AutoCloseable, PubSub.Subscriber {
    * Default value is -1 which means it gets till the max
    */
   private int sentryHMSFetchSize;
+  private final boolean differentialSnapshot;
+  // Whether the next full snapshot was requested through the full update topic, in which
+  // case it is persisted as a full image
+  private boolean fullSnapshotForced;
   /**
    * Current generation of HMS snapshots. HMSFollower is single-threaded, so no need
    * to protect against concurrent modification.
@@ -124,6 +128,8 @@ public class HMSFollower implements Runnable, AutoCloseable, PubSub.Subscriber {
     }
 
     sentryHMSFetchSize = conf.getInt(ServerConfig.SENTRY_HMS_FETCH_SIZE, ServerConfig.SENTRY_HMS_FETCH_SIZE_DEFAULT);
+    differentialSnapshot = conf.getBoolean(ServerConfig.SENTRY_HDFS_SYNC_DIFFERENTIAL_SNAPSHOT,
+        ServerConfig.SENTRY_HDFS_SYNC_DIFFERENTIAL_SNAPSHOT_DEFAULT);
     if(sentryHMSFetchSize < 0) {
       LOGGER.info("Sentry will fetch from HMS max depth");
     } else {
@@ -317,6 +323,7 @@ public class HMSFollower implements Runnable, AutoCloseable, PubSub.Subscriber {
       String logMessage = FULL_UPDATE_TRIGGER + "initiating full HMS snapshot request";
       LOGGER.info(logMessage);
       System.out.println(SentryServiceUtil.getCurrentTimeStampWithMessage(logMessage));
+      fullSnapshotForced = true;
       return true;
     }
     return false;
@@ -422,7 +429,9 @@ public class HMSFollower implements Runnable, AutoCloseable, PubSub.Subscriber {
           String logMessage = String.format("Persisting full snapshot for notification Id = %d. Number of authorization objects = %d", snapshotInfo.getId(), snapshotInfo.getPathImage().size());
           LOGGER.info(logMessage);
           System.out.println(SentryServiceUtil.getCurrentTimeStampWithMessage(logMessage));
-          sentryStore.persistFullPathsImage(snapshotInfo.getPathImage(), snapshotInfo.getId());
+          if (!persistDifferentialSnapshot(snapshotInfo)) {
+            sentryStore.persistFullPathsImage(snapshotInfo.getPathImage(), snapshotInfo.getId());
+          }
         } else {
           // We need to persist latest notificationID for next poll
           LOGGER.info("HDFSSync is disabled. Not Persisting full snapshot, "
@@ -446,11 +455,30 @@ public class HMSFollower implements Runnable, AutoCloseable, PubSub.Subscriber {
       LOGGER.error("Received exception while creating HMS path full snapshot ");
       throw failure;
     } finally {
+      fullSnapshotForced = false;
       SentryStateBank
           .disableState(SentryServiceState.COMPONENT, SentryServiceState.FULL_UPDATE_RUNNING);
     }
   }
 
+  /**
+   * Persists the snapshot as a difference against the current one, if enabled and the
+   * snapshot was not forced through the full update topic.
+   *
+   * @return true if the snapshot was persisted, false if it must be persisted as a full image
+   */
+  private boolean persistDifferentialSnapshot(PathsImage snapshotInfo) throws Exception {
+    if (!differentialSnapshot || fullSnapshotForced) {
+      return false;
+    }
+    if (sentryStore.persistDifferentialPathsImage(snapshotInfo.getPathImage(),
+        snapshotInfo.getId())) {
+      return true;
+    }
+    LOGGER.info("No current snapshot to take a difference against, persisting a full snapshot");
+    return false;
+  }
+
   /**
    * Process the collection of notifications and wake up any waiting clients.
    * Also, persists the notification ID regardless of processing result.
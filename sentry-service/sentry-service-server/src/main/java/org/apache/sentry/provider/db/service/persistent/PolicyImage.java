@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.provider.db.service.persistent;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A container for the policy of a set of roles and users, as read by
+ * {@link SentryPolicyReplica}.
+ * <p>
+ * It is composed by role to groups, role to users and role to privileges mappings, and
+ * a user to privileges mapping. It also has the change ID of the latest perm delta that
+ * the policy includes.
+ */
+public class PolicyImage {
+
+  private final Map<String, Set<String>> roleGroups;
+  private final Map<String, Set<String>> roleUsers;
+  private final Map<String, Set<Privilege>> rolePrivileges;
+  private final Map<String, Set<Privilege>> userPrivileges;
+  private final long curSeqNum;
+
+  public PolicyImage(Map<String, Set<String>> roleGroups, Map<String, Set<String>> roleUsers,
+                     Map<String, Set<Privilege>> rolePrivileges,
+                     Map<String, Set<Privilege>> userPrivileges, long curSeqNum) {
+    this.roleGroups = roleGroups;
+    this.roleUsers = roleUsers;
+    this.rolePrivileges = rolePrivileges;
+    this.userPrivileges = userPrivileges;
+    this.curSeqNum = curSeqNum;
+  }
+
+  public long getCurSeqNum() {
+    return curSeqNum;
+  }
+
+  /**
+   * @return the groups of each role, all the roles read are keys
+   */
+  public Map<String, Set<String>> getRoleGroups() {
+    return roleGroups;
+  }
+
+  public Map<String, Set<String>> getRoleUsers() {
+    return roleUsers;
+  }
+
+  public Map<String, Set<Privilege>> getRolePrivileges() {
+    return rolePrivileges;
+  }
+
+  /**
+   * @return the privileges of each user having any
+   */
+  public Map<String, Set<Privilege>> getUserPrivileges() {
+    return userPrivileges;
+  }
+
+  /**
+   * The scope of a privilege, with the null columns as stored, and its provider string.
+   */
+  public static final class Privilege {
+    private final String serverName;
+    private final String dbName;
+    private final String tableName;
+    private final String columnName;
+    private final String uri;
+    private final String authorizable;
+
+    public Privilege(String serverName, String dbName, String tableName, String columnName,
+                     String uri, String authorizable) {
+      this.serverName = serverName;
+      this.dbName = dbName;
+      this.tableName = tableName;
+      this.columnName = columnName;
+      this.uri = uri;
+      this.authorizable = authorizable;
+    }
+
+    public String getServerName() {
+      return serverName;
+    }
+
+    public String getDbName() {
+      return dbName;
+    }
+
+    public String getTableName() {
+      return tableName;
+    }
+
+    public String getColumnName() {
+      return columnName;
+    }
+
+    public String getURI() {
+      return uri;
+    }
+
+    /**
+     * @return the privilege as returned to providers, which identifies it
+     */
+    public String getAuthorizable() {
+      return authorizable;
+    }
+
+    @Override
+    public int hashCode() {
+      return authorizable.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Privilege && authorizable.equals(((Privilege) obj).authorizable);
+    }
+
+    @Override
+    public String toString() {
+      return authorizable;
+    }
+  }
+}
@@ -0,0 +1,724 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.provider.db.service.persistent;
+
+import static org.apache.sentry.core.common.utils.SentryConstants.EMPTY_CHANGE_ID;
+import static org.apache.sentry.core.common.utils.SentryUtils.isNULL;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.service.thrift.TSentryActiveRoleSet;
+import org.apache.sentry.api.service.thrift.TSentryAuthorizable;
+import org.apache.sentry.api.service.thrift.TSentryGroup;
+import org.apache.sentry.api.service.thrift.TSentryRole;
+import org.apache.sentry.core.model.db.AccessConstants;
+import org.apache.sentry.hdfs.PermissionsUpdate;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.hdfs.service.thrift.TRoleChanges;
+import org.apache.sentry.provider.db.service.model.MSentryPermChange;
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * SentryPolicyReplica keeps an in-memory replica of the roles, their groups, users and
+ * privileges, and of the privileges of users, so that a server answers provider and role
+ * listing reads without querying the backing database.
+ * <p>
+ * The replica is loaded in full at start, and then tails the perm deltas persisted in
+ * {@link MSentryPermChange} by change ID: the roles and users a delta touches are read
+ * again and replaced in place, which costs the size of those roles and users, not of the
+ * whole policy. Writes made through this server reload the roles and users they touch
+ * before they return, so the reads of this server see them. A client that read a change
+ * ID from a write can make a read of any server include it with {@link #catchUpTo(long)}.
+ * <p>
+ * Some changes leave no perm delta for the NameNodes: privileges on columns, URIs and
+ * servers, and the roles granted to users. When the replica is enabled, the servers
+ * persist a marker delta naming the roles and users of such changes, see
+ * {@link #newMarker}, so the replicas of the other servers follow them too. All the
+ * servers sharing a database must have the same replica setting. The periodic full
+ * reload picks up anything else, e.g. writes made by servers of an older version.
+ * <p>
+ * The full reload reads the store without holding the monitor, so catching up and the
+ * writes of this server only wait for the deltas persisted meanwhile to be applied.
+ * <p>
+ * Until the replica is loaded, and after it fails to apply changes, {@link #isReady()}
+ * is false and reads must be served by the store.
+ */
+public class SentryPolicyReplica implements Runnable, AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SentryPolicyReplica.class);
+
+  private static final String SENTRY_POLICY_REPLICA_THREAD_NAME = "sentry-policy-replica";
+  private static final String EMPTY_GRANTOR_PRINCIPAL = "--";
+  // Perm deltas read at once while catching up
+  private static final int MAX_CHANGES_PER_READ = 1000;
+  // Full reads of the policy before a reload is given up, when the deltas persisted
+  // meanwhile keep needing a full reload
+  private static final int MAX_RELOAD_ATTEMPTS = 3;
+
+  private final SentryStoreInterface sentryStore;
+  private final long pollIntervalMs;
+  private final long fullReloadIntervalMs;
+  private ScheduledExecutorService executor;
+  // Replaced by full reloads, and updated in place by the thread holding the monitor
+  private volatile Image image;
+  // Guarded by this
+  private long lastFullReloadMs;
+
+  public SentryPolicyReplica(SentryStoreInterface sentryStore, Configuration conf) {
+    this.sentryStore = sentryStore;
+    this.pollIntervalMs = conf.getLong(ServerConfig.SENTRY_POLICY_REPLICA_POLL_INTERVAL_MS,
+        ServerConfig.SENTRY_POLICY_REPLICA_POLL_INTERVAL_MS_DEFAULT);
+    this.fullReloadIntervalMs = conf.getLong(
+        ServerConfig.SENTRY_POLICY_REPLICA_FULL_RELOAD_INTERVAL_MS,
+        ServerConfig.SENTRY_POLICY_REPLICA_FULL_RELOAD_INTERVAL_MS_DEFAULT);
+  }
+
+  /**
+   * @return a perm delta naming roles and users whose policy changed in a way the other
+   * perm deltas do not describe, which the replicas read again. The NameNodes ignore it,
+   * as no one has privileges on {@link PermissionsUpdate#POLICY_MARKER}.
+   */
+  public static PermissionsUpdate newMarker(Collection<String> roleNames,
+      Collection<String> userNames) {
+    PermissionsUpdate update = new PermissionsUpdate();
+    TPrivilegeChanges privChanges = update.addPrivilegeUpdate(PermissionsUpdate.POLICY_MARKER);
+    for (String roleName : roleNames) {
+      privChanges.putToDelPrivileges(
+          new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName), "");
+    }
+    for (String userName : userNames) {
+      privChanges.putToDelPrivileges(
+          new TPrivilegePrincipal(TPrivilegePrincipalType.USER, userName), "");
+    }
+    return update;
+  }
+
+  /**
+   * Loads the replica and starts keeping it current. A failed load is retried by the
+   * background thread.
+   */
+  public void start() {
+    run();
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat(SENTRY_POLICY_REPLICA_THREAD_NAME)
+        .setDaemon(true)
+        .build());
+    executor.scheduleWithFixedDelay(this, pollIntervalMs, pollIntervalMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      boolean fullReload;
+      synchronized (this) {
+        fullReload = image == null
+            || System.currentTimeMillis() - lastFullReloadMs >= fullReloadIntervalMs
+            || !catchUp(image);
+      }
+      if (fullReload) {
+        reloadAll();
+      }
+    } catch (Exception e) {
+      LOGGER.warn("Failed to refresh the policy replica, will retry in [{}]ms",
+          pollIntervalMs, e);
+    }
+  }
+
+  /**
+   * @return true if reads can be served by the replica
+   */
+  public boolean isReady() {
+    return image != null;
+  }
+
+  /**
+   * @return the change ID of the latest perm delta the replica includes
+   */
+  public long getPermChangeId() {
+    Image current = image;
+    return current == null ? EMPTY_CHANGE_ID : current.changeId;
+  }
+
+  /**
+   * Applies the perm deltas persisted so far if the replica does not include the given
+   * change ID yet.
+   *
+   * @return true if the replica includes the change ID, false if reads must be served by
+   * the store
+   */
+  public boolean catchUpTo(long changeId) {
+    if (getPermChangeId() >= changeId) {
+      return true;
+    }
+    reload(Collections.<String>emptySet(), Collections.<String>emptySet());
+    return getPermChangeId() >= changeId;
+  }
+
+  /**
+   * Makes a write visible to the reads served by the replica: applies the perm deltas
+   * persisted so far and reads the given roles and users again. If this fails the replica
+   * is no longer ready until it is reloaded.
+   *
+   * @param roleNames roles touched by the write
+   * @param userNames users touched by the write
+   */
+  public void reload(Set<String> roleNames, Set<String> userNames) {
+    try {
+      synchronized (this) {
+        Image current = image;
+        if (current == null) {
+          return;
+        }
+        if (catchUp(current)) {
+          if (!roleNames.isEmpty() || !userNames.isEmpty()) {
+            current.merge(sentryStore.retrievePolicyImage(toTrimmedLower(roleNames),
+                userNames), roleNames, userNames, current.changeId);
+          }
+          return;
+        }
+      }
+      // The full image is read after the write, so it includes it
+      reloadAll();
+    } catch (Exception e) {
+      LOGGER.warn("Failed to reload roles {} and users {} in the policy replica, " +
+          "reads are served by the store until it is reloaded", roleNames, userNames, e);
+      invalidate();
+    }
+  }
+
+  /**
+   * Reads the whole policy again on the next refresh, e.g. after importing it.
+   */
+  public synchronized void invalidate() {
+    image = null;
+  }
+
+  /**
+   * Reads the whole policy and replaces the replica with it, once it includes the perm
+   * deltas persisted while it was read.
+   */
+  @VisibleForTesting
+  void reloadAll() throws Exception {
+    for (int attempt = 1; ; attempt++) {
+      PolicyImage policy = sentryStore.retrievePolicyImage(null, null);
+      Image loaded = new Image(policy.getRoleGroups(), policy.getRoleUsers(),
+          policy.getRolePrivileges(), policy.getUserPrivileges(), policy.getCurSeqNum());
+      synchronized (this) {
+        if (catchUp(loaded)) {
+          image = loaded;
+          lastFullReloadMs = System.currentTimeMillis();
+          LOGGER.info("Loaded policy replica with {} roles at perm change ID {}",
+              policy.getRoleGroups().size(), loaded.changeId);
+          return;
+        }
+      }
+      if (attempt == MAX_RELOAD_ATTEMPTS) {
+        throw new IllegalStateException("Perm deltas persisted while loading the policy " +
+            "replica need another full reload, giving up after " + attempt + " attempts");
+      }
+    }
+  }
+
+  /**
+   * Applies the perm deltas persisted after the ones the replica includes.
+   *
+   * @return false if a full reload is needed
+   */
+  @VisibleForTesting
+  synchronized boolean catchUp() throws Exception {
+    return image != null && catchUp(image);
+  }
+
+  /**
+   * Applies the perm deltas persisted after the ones an image includes, by reading the
+   * roles and users they touch again. The caller holds the monitor.
+   *
+   * @return false if a delta is missing or touches all the roles, so a full reload is
+   * needed
+   */
+  private boolean catchUp(Image current) throws Exception {
+    long lastChangeId = sentryStore.getLastProcessedPermChangeID();
+    while (current.changeId < lastChangeId) {
+      List<MSentryPermChange> changes =
+          sentryStore.getMSentryPermChanges(current.changeId + 1, MAX_CHANGES_PER_READ);
+      if (changes.isEmpty()) {
+        LOGGER.info("Perm deltas after change ID {} are missing, reloading the policy replica",
+            current.changeId);
+        return false;
+      }
+      Set<String> roleNames = new HashSet<>();
+      Set<String> userNames = new HashSet<>();
+      long changeId = current.changeId;
+      for (MSentryPermChange change : changes) {
+        if (!addTouchedPrincipals(change.getPermissionsUpdate(), current, roleNames,
+            userNames)) {
+          return false;
+        }
+        changeId = change.getChangeID();
+      }
+      // The roles and users are read as they are now, which may include later deltas.
+      // Those are applied again by the next pass, reading them again is harmless.
+      current.merge(roleNames.isEmpty() && userNames.isEmpty() ? null :
+          sentryStore.retrievePolicyImage(roleNames, userNames), roleNames, userNames,
+          changeId);
+    }
+    return true;
+  }
+
+  /**
+   * Adds the roles and users whose policy a perm delta changes.
+   *
+   * @return false if the delta touches all the roles, so a full reload is needed
+   */
+  private static boolean addTouchedPrincipals(PermissionsUpdate update, Image current,
+      Set<String> roleNames, Set<String> userNames) {
+    if (update.hasFullImage()) {
+      return false;
+    }
+    for (TPrivilegeChanges privChanges : update.getPrivilegeUpdates()) {
+      Set<TPrivilegePrincipal> principals = new HashSet<>();
+      if (privChanges.getAddPrivileges() != null) {
+        principals.addAll(privChanges.getAddPrivileges().keySet());
+      }
+      if (privChanges.getDelPrivileges() != null) {
+        principals.addAll(privChanges.getDelPrivileges().keySet());
+      }
+      for (TPrivilegePrincipal principal : principals) {
+        switch (principal.getType()) {
+        case ROLE:
+          if (PermissionsUpdate.ALL_PRIVS.equals(principal.getValue())
+              || PermissionsUpdate.ALL_ROLES.equals(principal.getValue())) {
+            // All the privileges on the authz object were dropped
+            current.addPrincipalsOn(privChanges.getAuthzObj(), roleNames, userNames);
+          } else {
+            roleNames.add(principal.getValue().trim().toLowerCase());
+          }
+          break;
+        case USER:
+          userNames.add(principal.getValue().trim());
+          break;
+        case AUTHZ_OBJ:
+          // The privileges on the authz object were renamed
+          current.addPrincipalsOn(principal.getValue(), roleNames, userNames);
+          break;
+        default:
+          return false;
+        }
+      }
+    }
+    for (TRoleChanges roleChanges : update.getRoleUpdates()) {
+      if (PermissionsUpdate.ALL_ROLES.equals(roleChanges.getRole())) {
+        return false;
+      }
+      roleNames.add(roleChanges.getRole().trim().toLowerCase());
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link SentryStore#listSentryPrivilegesForProvider}.
+   *
+   * @return the privileges, or null if the replica is not loaded, and the store must be
+   * read instead
+   */
+  public Set<String> listSentryPrivilegesForProvider(Set<String> groups, Set<String> users,
+      TSentryActiveRoleSet roleSet, TSentryAuthorizable authHierarchy) {
+    Image current = image;
+    if (current == null) {
+      return null;
+    }
+    Set<String> roleNames = current.getRolesToQuery(groups, users, roleSet);
+    Scope scope = Scope.of(authHierarchy);
+    Set<String> result = new HashSet<>();
+    for (String roleName : roleNames) {
+      addPrivileges(current.rolePrivileges.get(roleName), scope, result);
+    }
+    if (users != null) {
+      for (String userName : users) {
+        addPrivileges(current.userPrivileges.get(userName.trim()), scope, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link SentryStore#hasAnyServerPrivileges(Set, Set, TSentryActiveRoleSet, String)}.
+   *
+   * @return whether there are privileges, or null if the replica is not loaded, and the
+   * store must be read instead
+   */
+  public Boolean hasAnyServerPrivileges(Set<String> groups, Set<String> users,
+      TSentryActiveRoleSet roleSet, String server) {
+    Image current = image;
+    if (current == null) {
+      return null;
+    }
+    Set<String> roleNames = current.getRolesToQuery(groups, users, roleSet);
+    String serverName = SentryStore.toNULLCol(SentryStore.safeTrimLower(server));
+    for (String roleName : roleNames) {
+      if (hasServerPrivileges(current.rolePrivileges.get(roleName), serverName)) {
+        return true;
+      }
+    }
+    if (users != null) {
+      for (String userName : users) {
+        if (hasServerPrivileges(current.userPrivileges.get(userName.trim()), serverName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Same as {@link SentryStore#getTSentryRolesByGroupName(Set, boolean)}, but returns
+   * null instead of raising an error for a group without roles when checkAllGroups is
+   * not set, as the replica does not know if the group exists, and when the replica is
+   * not loaded.
+   */
+  public Set<TSentryRole> getTSentryRolesByGroupName(Set<String> groupNames,
+      boolean checkAllGroups) {
+    if (groupNames.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Image current = image;
+    if (current == null) {
+      return null;
+    }
+    Set<String> roleNames = new HashSet<>();
+    for (String group : groupNames) {
+      if (group == null) {
+        // Special case - return all roles
+        roleNames = new HashSet<>(current.roleGroups.keySet());
+        break;
+      }
+      Set<String> groupRoles = current.groupRoles.get(group.trim());
+      if (groupRoles != null) {
+        roleNames.addAll(groupRoles);
+      } else if (!checkAllGroups) {
+        return null;
+      }
+    }
+    Set<TSentryRole> result = new HashSet<>(roleNames.size());
+    for (String roleName : roleNames) {
+      Set<String> groups = current.roleGroups.get(roleName);
+      if (groups == null) {
+        // Dropped since
+        continue;
+      }
+      Set<TSentryGroup> sentryGroups = new HashSet<>(groups.size());
+      for (String group : groups) {
+        sentryGroups.add(new TSentryGroup(group));
+      }
+      result.add(new TSentryRole(roleName, sentryGroups, EMPTY_GRANTOR_PRINCIPAL));
+    }
+    return result;
+  }
+
+  private static void addPrivileges(Set<PolicyImage.Privilege> privileges, Scope scope,
+      Set<String> result) {
+    if (privileges == null) {
+      return;
+    }
+    for (PolicyImage.Privilege privilege : privileges) {
+      if (scope == null || scope.matches(privilege)) {
+        result.add(privilege.getAuthorizable());
+      }
+    }
+  }
+
+  private static boolean hasServerPrivileges(Set<PolicyImage.Privilege> privileges,
+      String serverName) {
+    if (privileges == null) {
+      return false;
+    }
+    for (PolicyImage.Privilege privilege : privileges) {
+      if (serverName.equals(privilege.getServerName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> toTrimmedLower(Set<String> values) {
+    Set<String> result = new HashSet<>(values.size());
+    for (String value : values) {
+      result.add(value.trim().toLowerCase());
+    }
+    return result;
+  }
+
+  /**
+   * The filter on privileges applied by the store for an authorizable hierarchy, with
+   * the names normalized as the store does.
+   */
+  private static final class Scope {
+    private final String server;
+    private final String db;
+    private final String table;
+    private final String column;
+    private final String uri;
+
+    private Scope(TSentryAuthorizable authHierarchy) {
+      server = normalize(authHierarchy.getServer());
+      db = authHierarchy.getDb() == null ? null : normalize(authHierarchy.getDb());
+      String authTable = authHierarchy.getTable();
+      if (db == null || authTable == null || AccessConstants.ALL.equalsIgnoreCase(authTable)) {
+        table = null;
+        column = null;
+      } else {
+        // Matches any table, but the column still applies
+        table = AccessConstants.SOME.equalsIgnoreCase(authTable) ? null : normalize(authTable);
+        String authColumn = authHierarchy.getColumn();
+        column = authColumn == null || AccessConstants.ALL.equalsIgnoreCase(authColumn)
+            || AccessConstants.SOME.equalsIgnoreCase(authColumn) ? null : normalize(authColumn);
+      }
+      uri = authHierarchy.getUri();
+    }
+
+    /**
+     * @return the scope of the hierarchy, or null if it matches all privileges
+     */
+    static Scope of(TSentryAuthorizable authHierarchy) {
+      return authHierarchy == null || authHierarchy.getServer() == null ? null :
+          new Scope(authHierarchy);
+    }
+
+    boolean matches(PolicyImage.Privilege privilege) {
+      if (!server.equals(privilege.getServerName())) {
+        return false;
+      }
+      if (db != null) {
+        if (!isNULL(privilege.getURI()) || !matches(db, privilege.getDbName())
+            || !matches(table, privilege.getTableName())
+            || !matches(column, privilege.getColumnName())) {
+          return false;
+        }
+      }
+      if (uri != null) {
+        if (!isNULL(privilege.getDbName())) {
+          return false;
+        }
+        return isNULL(privilege.getURI()) || uri.startsWith(privilege.getURI());
+      }
+      return true;
+    }
+
+    // A privilege on all the names of a level matches any name
+    private static boolean matches(String name, String privilegeName) {
+      return name == null || isNULL(privilegeName) || name.equals(privilegeName);
+    }
+
+    private static String normalize(String name) {
+      return SentryStore.toNULLCol(SentryStore.safeTrimLower(name));
+    }
+  }
+
+  /**
+   * The replicated policy, with the group and user indexes. It is changed in place by
+   * the thread holding the replica monitor, one role or user at a time: the sets in the
+   * maps are never modified, only replaced, so readers see each role and user either
+   * before or after a change. The change ID is set last, the changes up to it are seen
+   * by whoever read it.
+   */
+  private static final class Image {
+    private final Map<String, Set<String>> roleGroups;
+    private final Map<String, Set<String>> roleUsers;
+    private final Map<String, Set<PolicyImage.Privilege>> rolePrivileges;
+    private final Map<String, Set<PolicyImage.Privilege>> userPrivileges;
+    private final Map<String, Set<String>> groupRoles;
+    private final Map<String, Set<String>> userRoles;
+    private volatile long changeId;
+
+    Image(Map<String, Set<String>> roleGroups, Map<String, Set<String>> roleUsers,
+        Map<String, Set<PolicyImage.Privilege>> rolePrivileges,
+        Map<String, Set<PolicyImage.Privilege>> userPrivileges, long changeId) {
+      this.roleGroups = new ConcurrentHashMap<>(roleGroups);
+      this.roleUsers = new ConcurrentHashMap<>(roleUsers);
+      this.rolePrivileges = new ConcurrentHashMap<>(rolePrivileges);
+      this.userPrivileges = new ConcurrentHashMap<>(userPrivileges);
+      this.groupRoles = invert(roleGroups);
+      this.userRoles = invert(roleUsers);
+      this.changeId = changeId;
+    }
+
+    private static Map<String, Set<String>> invert(Map<String, Set<String>> roleMembers) {
+      Map<String, Set<String>> memberRoles = new ConcurrentHashMap<>();
+      for (Map.Entry<String, Set<String>> entry : roleMembers.entrySet()) {
+        for (String member : entry.getValue()) {
+          Set<String> roles = memberRoles.get(member);
+          if (roles == null) {
+            roles = new HashSet<>();
+            memberRoles.put(member, roles);
+          }
+          roles.add(entry.getKey());
+        }
+      }
+      return memberRoles;
+    }
+
+    /**
+     * Replaces the given roles and users with the ones read, if any. Roles and users
+     * not read back no longer exist, or no longer have privileges.
+     */
+    void merge(PolicyImage policy, Set<String> roleNames, Set<String> userNames,
+        long newChangeId) {
+      for (String roleName : toTrimmedLower(roleNames)) {
+        Set<String> groups = policy == null ? null : policy.getRoleGroups().get(roleName);
+        replaceMembers(roleGroups, groupRoles, roleName, groups);
+        Set<String> users = policy == null ? null : policy.getRoleUsers().get(roleName);
+        replaceMembers(roleUsers, userRoles, roleName, users);
+        replace(rolePrivileges, roleName,
+            policy == null ? null : policy.getRolePrivileges().get(roleName));
+      }
+      for (String userName : userNames) {
+        replace(userPrivileges, userName,
+            policy == null ? null : policy.getUserPrivileges().get(userName));
+      }
+      if (newChangeId > changeId) {
+        changeId = newChangeId;
+      }
+    }
+
+    private static <V> void replace(Map<String, V> map, String key, V value) {
+      if (value == null) {
+        map.remove(key);
+      } else {
+        map.put(key, value);
+      }
+    }
+
+    /**
+     * Replaces the members of a role, and updates the roles of the members added or
+     * removed.
+     */
+    private static void replaceMembers(Map<String, Set<String>> roleMembers,
+        Map<String, Set<String>> memberRoles, String roleName, Set<String> members) {
+      Set<String> oldMembers = roleMembers.get(roleName);
+      replace(roleMembers, roleName, members);
+      if (oldMembers != null) {
+        for (String member : oldMembers) {
+          if (members == null || !members.contains(member)) {
+            Set<String> roles = new HashSet<>(memberRoles.get(member));
+            roles.remove(roleName);
+            replace(memberRoles, member, roles.isEmpty() ? null : roles);
+          }
+        }
+      }
+      if (members != null) {
+        for (String member : members) {
+          if (oldMembers == null || !oldMembers.contains(member)) {
+            Set<String> oldRoles = memberRoles.get(member);
+            Set<String> roles = oldRoles == null ? new HashSet<String>() :
+                new HashSet<>(oldRoles);
+            roles.add(roleName);
+            memberRoles.put(member, roles);
+          }
+        }
+      }
+    }
+
+    /**
+     * Same as the roles queried by the store for a provider.
+     */
+    Set<String> getRolesToQuery(Set<String> groups, Set<String> users,
+        TSentryActiveRoleSet roleSet) {
+      Set<String> roleNames = new HashSet<>();
+      addRoles(groupRoles, groups, roleNames);
+      addRoles(userRoles, users, roleNames);
+      if (roleSet.isAll()) {
+        return roleNames;
+      }
+      roleNames.retainAll(SentryStore.toTrimedLower(roleSet.getRoles()));
+      return roleNames;
+    }
+
+    private static void addRoles(Map<String, Set<String>> memberRoles,
+        Collection<String> members, Set<String> roleNames) {
+      if (members == null) {
+        return;
+      }
+      for (String member : members) {
+        Set<String> roles = memberRoles.get(member);
+        if (roles != null) {
+          roleNames.addAll(roles);
+        }
+      }
+    }
+
+    /**
+     * Adds the roles and users with privileges on an authz object, which is a database
+     * or a database and a table, or under it.
+     */
+    void addPrincipalsOn(String authzObj, Set<String> roleNames, Set<String> userNames) {
+      String authz = authzObj.trim().toLowerCase();
+      int dot = authz.indexOf('.');
+      String db = dot < 0 ? authz : authz.substring(0, dot);
+      String table = dot < 0 ? null : authz.substring(dot + 1);
+      for (Map.Entry<String, Set<PolicyImage.Privilege>> entry : rolePrivileges.entrySet()) {
+        if (hasPrivilegesOn(entry.getValue(), db, table)) {
+          roleNames.add(entry.getKey());
+        }
+      }
+      for (Map.Entry<String, Set<PolicyImage.Privilege>> entry : userPrivileges.entrySet()) {
+        if (hasPrivilegesOn(entry.getValue(), db, table)) {
+          userNames.add(entry.getKey());
+        }
+      }
+    }
+
+    private static boolean hasPrivilegesOn(Set<PolicyImage.Privilege> privileges, String db,
+        String table) {
+      for (PolicyImage.Privilege privilege : privileges) {
+        if (db.equals(privilege.getDbName())
+            && (table == null || table.equals(privilege.getTableName()))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -33,6 +33,7 @@ import static org.apache.sentry.core.common.utils.SentryConstants.KV_JOINER;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -65,6 +66,7 @@ import org.apache.sentry.core.model.db.DBModelAuthorizable.AuthorizableType;
 import org.apache.sentry.hdfs.PathsUpdate;
 import org.apache.sentry.hdfs.UniquePathsUpdate;
 import org.apache.sentry.hdfs.UpdateableAuthzPaths;
+import org.apache.sentry.hdfs.service.thrift.TPathChanges;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
 import org.apache.sentry.provider.db.service.model.MAuthzPathsMapping;
 import org.apache.sentry.provider.db.service.model.MAuthzPathsSnapshotId;
@@ -82,6 +84,7 @@ import org.apache.sentry.provider.db.service.model.MSentryUtil;
 import org.apache.sentry.provider.db.service.model.MPath;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
 import org.apache.sentry.api.common.ApiConstants.PrivilegeScope;
+import org.apache.sentry.api.service.thrift.RpcPhaseRecorder;
 import org.apache.sentry.api.service.thrift.TSentryActiveRoleSet;
 import org.apache.sentry.api.service.thrift.TSentryAuthorizable;
 import org.apache.sentry.api.service.thrift.TSentryGrantOption;
@@ -104,6 +107,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -169,6 +173,7 @@ public class SentryStore implements SentryStoreInterface {
   // Datanucleus property controlling whether query results are loaded at commit time
   // to make query usable post-commit
   private static final String LOAD_RESULTS_AT_COMMIT = "datanucleus.query.loadResultsAtCommit";
+  private static final String RESULT_CACHE_TYPE = "datanucleus.query.resultCacheType";
 
   private final PersistenceManagerFactory pmf;
   private Configuration conf;
@@ -177,6 +182,8 @@ public class SentryStore implements SentryStoreInterface {
   // When it is true, execute DeltaTransactionBlock to persist delta changes.
   // When it is false, do not execute DeltaTransactionBlock
   private boolean persistUpdateDeltas;
+  // Whether to compress the persisted delta changes
+  private final boolean compressUpdateDeltas;
 
   /**
    * counterWait is used to synchronize notifications between Thrift and HMSFollower.
@@ -189,6 +196,13 @@ public class SentryStore implements SentryStoreInterface {
    */
   private final CounterWait counterWait;
 
+  /**
+   * deltaChangeWait counts the perm and path changes committed through this store,
+   * so NameNode requests for authz updates can wait for new changes instead of polling
+   * the database. Changes committed by other Sentry servers are not counted.
+   */
+  private final CounterWait deltaChangeWait = new CounterWait();
+
   // 5 min interval
   private final long printSnapshotPersistTimeInterval = 300000;
 
@@ -284,6 +298,8 @@ public class SentryStore implements SentryStoreInterface {
     long notificationTimeout = conf.getInt(ServerConfig.SENTRY_NOTIFICATION_SYNC_TIMEOUT_MS,
             ServerConfig.SENTRY_NOTIFICATION_SYNC_TIMEOUT_DEFAULT);
     counterWait = new CounterWait(notificationTimeout, TimeUnit.MILLISECONDS);
+    compressUpdateDeltas = conf.getBoolean(ServerConfig.SENTRY_STORE_DELTA_COMPRESSION,
+        ServerConfig.SENTRY_STORE_DELTA_COMPRESSION_DEFAULT);
 
     ownerPrivilegeWithGrant = SentryOwnerPrivilegeType.ALL_WITH_GRANT.isConfSet(conf);
   }
@@ -292,6 +308,10 @@ public class SentryStore implements SentryStoreInterface {
     this.persistUpdateDeltas = persistUpdateDeltas;
   }
 
+  public boolean isPersistUpdateDeltas() {
+    return persistUpdateDeltas;
+  }
+
 
   public TransactionManager getTransactionManager() {
     return tm;
@@ -301,6 +321,10 @@ public class SentryStore implements SentryStoreInterface {
     return counterWait;
   }
 
+  public CounterWait getDeltaChangeWait() {
+    return deltaChangeWait;
+  }
+
   // ensure that the backend DB schema is set
   void verifySentryStoreSchema(boolean checkVersion) throws Exception {
     if (!checkVersion) {
@@ -828,6 +852,20 @@ public class SentryStore implements SentryStoreInterface {
      SentryPrincipalType type,
      String entityName, TSentryPrivilege privilege)
       throws SentryNoSuchObjectException, SentryInvalidInputException {
+    return alterSentryGrantPrivilegeCore(pm, type, entityName, privilege, null);
+  }
+
+  /**
+   * @param resolvedPrivileges if not null, the existing privileges that may match the
+   *                           granted one by {@link #privilegeLookupKey}, which are looked
+   *                           up there instead of in the database. A privilege created by
+   *                           the grant is added to it.
+   */
+  private MSentryPrivilege alterSentryGrantPrivilegeCore(PersistenceManager pm,
+     SentryPrincipalType type,
+     String entityName, TSentryPrivilege privilege,
+     Map<String, MSentryPrivilege> resolvedPrivileges)
+      throws SentryNoSuchObjectException, SentryInvalidInputException {
     MSentryPrivilege mPrivilege = null;
 
     entityName = entityName.trim();
@@ -877,9 +915,20 @@ public class SentryStore implements SentryStoreInterface {
       }
     }
 
-    mPrivilege = getMSentryPrivilege(privilege, pm);
-    if (mPrivilege == null) {
-      mPrivilege = convertToMSentryPrivilege(privilege);
+    if (resolvedPrivileges == null) {
+      mPrivilege = getMSentryPrivilege(privilege, pm);
+      if (mPrivilege == null) {
+        mPrivilege = convertToMSentryPrivilege(privilege);
+      }
+    } else {
+      MSentryPrivilege converted = convertToMSentryPrivilege(privilege);
+      String key = privilegeLookupKey(converted);
+      mPrivilege = resolvedPrivileges.get(key);
+      // Dropped if an earlier grant of ALL took it from its last principal
+      if (mPrivilege == null || JDOHelper.isDeleted(mPrivilege)) {
+        mPrivilege = converted;
+        resolvedPrivileges.put(key, mPrivilege);
+      }
     }
     mPrivilege.appendPrincipal(mEntity);
     pm.makePersistent(mPrivilege);
@@ -1675,6 +1724,16 @@ public class SentryStore implements SentryStoreInterface {
             });
   }
 
+  @Override
+  public synchronized void alterSentryRoleAddUsers(final String roleName,
+      final Set<String> userNames, final Update update) throws Exception {
+    execute(update, pm -> {
+      pm.setDetachAllOnCommit(false); // No need to detach objects
+      alterSentryRoleAddUsersCore(pm, roleName, userNames);
+      return null;
+    });
+  }
+
   private void alterSentryRoleAddUsersCore(PersistenceManager pm, String roleName,
       Set<String> userNames) throws SentryNoSuchObjectException {
     String trimmedRoleName = trimAndLower(roleName);
@@ -1703,37 +1762,51 @@ public class SentryStore implements SentryStoreInterface {
     tm.executeTransactionWithRetry(
             pm -> {
               pm.setDetachAllOnCommit(false); // No need to detach objects
-              String trimmedRoleName = trimAndLower(roleName);
-              MSentryRole role = getRole(pm, trimmedRoleName);
-              if (role == null) {
-                throw noSuchRole(trimmedRoleName);
-              } else {
-                Query query = pm.newQuery(MSentryUser.class);
-                query.setFilter("this.userName == :userName");
-                query.setUnique(true);
-                List<MSentryUser> usersToSave = Lists.newArrayList();
-                List<MSentryUser> usersToDelete = Lists.newArrayList();
-                for (String userName : userNames) {
-                  userName = userName.trim();
-                  MSentryUser user = (MSentryUser) query.execute(userName);
-                  if (user != null) {
-                    user.removeRole(role);
-
-                    if (isUserStale(user)) {
-                      usersToDelete.add(user);
-                    } else {
-                      usersToSave.add(user);
-                    }
-                  }
-                }
-
-                pm.deletePersistentAll(usersToDelete);
-                pm.makePersistentAll(usersToSave);
-              }
+              alterSentryRoleDeleteUsersCore(pm, roleName, userNames);
               return null;
             });
   }
 
+  @Override
+  public synchronized void alterSentryRoleDeleteUsers(final String roleName,
+      final Set<String> userNames, final Update update) throws Exception {
+    execute(update, pm -> {
+      pm.setDetachAllOnCommit(false); // No need to detach objects
+      alterSentryRoleDeleteUsersCore(pm, roleName, userNames);
+      return null;
+    });
+  }
+
+  private void alterSentryRoleDeleteUsersCore(PersistenceManager pm, String roleName,
+      Set<String> userNames) throws SentryNoSuchObjectException {
+    String trimmedRoleName = trimAndLower(roleName);
+    MSentryRole role = getRole(pm, trimmedRoleName);
+    if (role == null) {
+      throw noSuchRole(trimmedRoleName);
+    }
+    Query query = pm.newQuery(MSentryUser.class);
+    query.setFilter("this.userName == :userName");
+    query.setUnique(true);
+    List<MSentryUser> usersToSave = Lists.newArrayList();
+    List<MSentryUser> usersToDelete = Lists.newArrayList();
+    for (String userName : userNames) {
+      userName = userName.trim();
+      MSentryUser user = (MSentryUser) query.execute(userName);
+      if (user != null) {
+        user.removeRole(role);
+
+        if (isUserStale(user)) {
+          usersToDelete.add(user);
+        } else {
+          usersToSave.add(user);
+        }
+      }
+    }
+
+    pm.deletePersistentAll(usersToDelete);
+    pm.makePersistentAll(usersToSave);
+  }
+
   /**
    * Revoke a given role to a set of groups.
    *
@@ -1941,11 +2014,14 @@ public class SentryStore implements SentryStoreInterface {
           }
 
           query.setFilter(paramBuilder.toString());
-          @SuppressWarnings("unchecked")
-          List<MSentryPrivilege> result =
-              (List<MSentryPrivilege>)
-                  query.executeWithMap(paramBuilder.getArguments());
-          return result;
+          try (RpcPhaseRecorder.Phase phase =
+              RpcPhaseRecorder.time(RpcPhaseRecorder.PRIVILEGE_QUERY)) {
+            @SuppressWarnings("unchecked")
+            List<MSentryPrivilege> result =
+                (List<MSentryPrivilege>)
+                    query.executeWithMap(paramBuilder.getArguments());
+            return result;
+          }
         });
   }
 
@@ -2415,8 +2491,10 @@ public class SentryStore implements SentryStoreInterface {
     Set<String> result = Sets.newHashSet();
     Set<MSentryPrivilege> mSentryPrivileges = listSentryPrivilegesForProviderCore(
         groups, users, roleSet, authHierarchy);
-    for (MSentryPrivilege priv : mSentryPrivileges) {
-      result.add(toAuthorizable(priv));
+    try (RpcPhaseRecorder.Phase phase = RpcPhaseRecorder.time(RpcPhaseRecorder.CONVERSION)) {
+      for (MSentryPrivilege priv : mSentryPrivileges) {
+        result.add(toAuthorizable(priv));
+      }
     }
     return result;
   }
@@ -2462,6 +2540,8 @@ public class SentryStore implements SentryStoreInterface {
 
   private Set<String> getRolesToQuery(final Set<String> groups, final Set<String> users,
       final TSentryActiveRoleSet roleSet) throws Exception {
+    try (RpcPhaseRecorder.Phase phase =
+        RpcPhaseRecorder.time(RpcPhaseRecorder.ROLE_RESOLUTION)) {
       return tm.executeTransaction(
               pm -> {
                 pm.setDetachAllOnCommit(false); // No need to detach objects
@@ -2473,6 +2553,7 @@ public class SentryStore implements SentryStoreInterface {
                 return roleSet.isAll() ? roleNames : Sets.intersection(activeRoleNames,
                     roleNames);
               });
+    }
   }
 
   @VisibleForTesting
@@ -3093,9 +3174,115 @@ public class SentryStore implements SentryStoreInterface {
             });
   }
 
+  /**
+   * Retrieves roles with their groups, users and privileges, and the privileges of users,
+   * for {@link SentryPolicyReplica}.
+   * <p>
+   * The change ID of the latest perm delta is read first, so the policy includes at least
+   * the changes up to it.
+   *
+   * @param roleNames the roles to retrieve, all of them if null
+   * @param userNames the users whose privileges to retrieve, all of them if null
+   * @return a {@link PolicyImage} with the roles and users that exist
+   * @throws Exception
+   */
+  public PolicyImage retrievePolicyImage(final Set<String> roleNames,
+                                         final Set<String> userNames) throws Exception {
+    return tm.executeTransaction(
+            pm -> {
+              pm.setDetachAllOnCommit(false); // No need to detach objects
+              long curChangeID = getLastProcessedChangeIDCore(pm, MSentryPermChange.class);
+              // Privileges are shared by roles and users, convert each once
+              Map<MSentryPrivilege, PolicyImage.Privilege> converted = new HashMap<>();
+
+              Map<String, Set<String>> roleGroups = new HashMap<>();
+              Map<String, Set<String>> roleUsers = new HashMap<>();
+              Map<String, Set<PolicyImage.Privilege>> rolePrivileges = new HashMap<>();
+              for (MSentryRole mRole : retrievePolicyRoles(pm, roleNames)) {
+                String roleName = mRole.getRoleName();
+                Set<String> groups = new HashSet<>(mRole.getGroups().size());
+                for (MSentryGroup mGroup : mRole.getGroups()) {
+                  groups.add(mGroup.getGroupName());
+                }
+                Set<String> users = new HashSet<>(mRole.getUsers().size());
+                for (MSentryUser mUser : mRole.getUsers()) {
+                  users.add(mUser.getUserName());
+                }
+                roleGroups.put(roleName, groups);
+                roleUsers.put(roleName, users);
+                rolePrivileges.put(roleName, toPolicyPrivileges(mRole.getPrivileges(), converted));
+              }
+
+              Map<String, Set<PolicyImage.Privilege>> userPrivileges = new HashMap<>();
+              for (MSentryUser mUser : retrievePolicyUsers(pm, userNames)) {
+                if (!mUser.getPrivileges().isEmpty()) {
+                  userPrivileges.put(mUser.getUserName(),
+                      toPolicyPrivileges(mUser.getPrivileges(), converted));
+                }
+              }
+              return new PolicyImage(roleGroups, roleUsers, rolePrivileges, userPrivileges,
+                  curChangeID);
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private Collection<MSentryRole> retrievePolicyRoles(PersistenceManager pm,
+                                                      Set<String> roleNames) {
+    if (roleNames != null && roleNames.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Query query = pm.newQuery(MSentryRole.class);
+    query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
+    FetchGroup grp = pm.getFetchGroup(MSentryRole.class, "fetchPolicy");
+    grp.addMember("groups").addMember("users").addMember("privileges");
+    pm.getFetchPlan().addGroup("fetchPolicy");
+    if (roleNames == null) {
+      return (List<MSentryRole>) query.execute();
+    }
+    query.setFilter(":p1.contains(this.roleName)");
+    return (List<MSentryRole>) query.execute(roleNames.toArray());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Collection<MSentryUser> retrievePolicyUsers(PersistenceManager pm,
+                                                      Set<String> userNames) {
+    if (userNames != null && userNames.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Query query = pm.newQuery(MSentryUser.class);
+    query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
+    FetchGroup grp = pm.getFetchGroup(MSentryUser.class, "fetchPrivileges");
+    grp.addMember("privileges");
+    pm.getFetchPlan().addGroup("fetchPrivileges");
+    if (userNames == null) {
+      return (List<MSentryUser>) query.execute();
+    }
+    query.setFilter(":p1.contains(this.userName)");
+    return (List<MSentryUser>) query.execute(userNames.toArray());
+  }
+
+  private static Set<PolicyImage.Privilege> toPolicyPrivileges(
+      Collection<MSentryPrivilege> mPrivileges,
+      Map<MSentryPrivilege, PolicyImage.Privilege> converted) {
+    Set<PolicyImage.Privilege> privileges = new HashSet<>(mPrivileges.size());
+    for (MSentryPrivilege mPriv : mPrivileges) {
+      PolicyImage.Privilege privilege = converted.get(mPriv);
+      if (privilege == null) {
+        privilege = new PolicyImage.Privilege(mPriv.getServerName(), mPriv.getDbName(),
+            mPriv.getTableName(), mPriv.getColumnName(), mPriv.getURI(), toAuthorizable(mPriv));
+        converted.put(mPriv, privilege);
+      }
+      privileges.add(privilege);
+    }
+    return privileges;
+  }
+
   /**
    * Retrieves an up-to-date sentry privileges snapshot from {@code MSentryPrivilege} table.
    * The snapshot is represented by mapping of hiveObj to role privileges.
+   * <p>
+   * Only the needed columns of the privileges and the names of their roles and users are
+   * read, streamed from the database, without materializing the persistent objects.
    *
    * @param pm PersistenceManager
    * @return a mapping of hiveObj to &lt role, privileges &gt
@@ -3106,65 +3293,90 @@ public class SentryStore implements SentryStoreInterface {
      pm.setDetachAllOnCommit(false); // No need to detach objects
 
     Map<String, Map<TPrivilegePrincipal, String>> retVal = new HashMap<>();
+    addFullPrivilegeImageEntries(pm, MSentryRole.class, "roles", "roleName",
+        TPrivilegePrincipalType.ROLE, retVal);
+    addFullPrivilegeImageEntries(pm, MSentryUser.class, "users", "userName",
+        TPrivilegePrincipalType.USER, retVal);
+    return retVal;
+  }
+
+  /**
+   * Adds the privileges of the roles or the users to a privileges snapshot.
+   *
+   * @param principalClass {@link MSentryRole} or {@link MSentryUser}
+   * @param principalsField the field of {@link MSentryPrivilege} with the principals
+   * @param nameField the field of the principal with its name
+   */
+  private void addFullPrivilegeImageEntries(PersistenceManager pm, Class<?> principalClass,
+      String principalsField, String nameField, TPrivilegePrincipalType principalType,
+      Map<String, Map<TPrivilegePrincipal, String>> retVal) {
     Query query = pm.newQuery(MSentryPrivilege.class);
-    query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
+    streamFullImageResults(query);
+    query.declareVariables(principalClass.getName() + " principal");
 
     QueryParamBuilder paramBuilder = QueryParamBuilder.newQueryParamBuilder();
     paramBuilder.addNotNull(SERVER_NAME)
                 .addNotNull(DB_NAME)
-                .addNull(URI);
+                .addNull(URI)
+                .addString(principalsField + ".contains(principal)");
 
     query.setFilter(paramBuilder.toString());
-    query.setOrdering("serverName ascending, dbName ascending, tableName ascending");
-
-    FetchGroup grp = pm.getFetchGroup(MSentryPrivilege.class, "fetchRolesUsers");
-    grp.addMember("roles").addMember("users");
-    pm.getFetchPlan().addGroup("fetchRolesUsers");
-
-    @SuppressWarnings("unchecked")
-    List<MSentryPrivilege> privileges =
-            (List<MSentryPrivilege>) query.executeWithMap(paramBuilder.getArguments());
-    for (MSentryPrivilege mPriv : privileges) {
-      String authzObj = mPriv.getDbName();
-      if (!isNULL(mPriv.getTableName())) {
-        authzObj = authzObj + "." + mPriv.getTableName();
-      }
-      Map<TPrivilegePrincipal, String> pUpdate = retVal.get(authzObj);
-      if (pUpdate == null) {
-        pUpdate = new HashMap<>();
-        retVal.put(authzObj, pUpdate);
-      }
-      for (MSentryRole mRole : mPriv.getRoles()) {
-        pUpdate = addPrivilegeEntry (mPriv, TPrivilegePrincipalType.ROLE, mRole.getRoleName(), pUpdate);
-      }
-      for (MSentryUser mUser : mPriv.getUsers()) {
-        pUpdate = addPrivilegeEntry (mPriv, TPrivilegePrincipalType.USER, mUser.getUserName(), pUpdate);
+    query.setResult("dbName, tableName, action, principal." + nameField);
+    try {
+      @SuppressWarnings("unchecked")
+      List<Object[]> rows = (List<Object[]>) query.executeWithMap(paramBuilder.getArguments());
+      // Equal object names and principal names share a single copy
+      Map<String, String> names = new HashMap<>();
+      for (Object[] row : rows) {
+        String dbName = (String) row[0];
+        String tableName = (String) row[1];
+        String action = ((String) row[2]).toUpperCase();
+        String principalName = (String) row[3];
+        String authzObj = isNULL(tableName) ? dbName : dbName + "." + tableName;
+        authzObj = intern(names, authzObj);
+
+        Map<TPrivilegePrincipal, String> pUpdate = retVal.get(authzObj);
+        if (pUpdate == null) {
+          pUpdate = new HashMap<>();
+          retVal.put(authzObj, pUpdate);
+        }
+        if (action.equals(AccessConstants.OWNER)) {
+          // Translate owner privilege to actual privilege.
+          action = AccessConstants.ACTION_ALL;
+        }
+        TPrivilegePrincipal principal =
+            new TPrivilegePrincipal(principalType, intern(names, principalName));
+        String existingAction = pUpdate.get(principal);
+        pUpdate.put(principal, existingAction == null ? action : existingAction + "," + action);
       }
+    } finally {
+      query.closeAll();
     }
-    query.closeAll();
-    return retVal;
   }
 
-  private static Map<TPrivilegePrincipal, String> addPrivilegeEntry(MSentryPrivilege mPriv, TPrivilegePrincipalType tEntityType,
-    String principal, Map<TPrivilegePrincipal, String> update) {
-    String action;
-    String newAction;
-    String existingPriv = update.get(principal);
-    action = mPriv.getAction().toUpperCase();
-    newAction = mPriv.getAction().toUpperCase();
-    if(action.equals(AccessConstants.OWNER)) {
-      // Translate owner privilege to actual privilege.
-      newAction = AccessConstants.ACTION_ALL;
+  /**
+   * Sets up a projection query over a full image to stream its rows: they are fetched
+   * from the database in batches of {@link ServerConfig#SENTRY_STORE_FULL_IMAGE_FETCH_SIZE}
+   * while iterating, and not kept once iterated.
+   */
+  @VisibleForTesting
+  void streamFullImageResults(Query query) {
+    query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
+    query.addExtension(RESULT_CACHE_TYPE, "none");
+    int fetchSize = conf.getInt(ServerConfig.SENTRY_STORE_FULL_IMAGE_FETCH_SIZE,
+        ServerConfig.SENTRY_STORE_FULL_IMAGE_FETCH_SIZE_DEFAULT);
+    if (fetchSize > 0) {
+      query.getFetchPlan().setFetchSize(fetchSize);
     }
+  }
 
-    if (existingPriv == null) {
-      update.put(new TPrivilegePrincipal(tEntityType, principal),
-              newAction);
-    } else {
-      update.put(new TPrivilegePrincipal(tEntityType, principal), existingPriv + "," +
-              newAction);
+  private static String intern(Map<String, String> names, String name) {
+    String existing = names.get(name);
+    if (existing != null) {
+      return existing;
     }
-    return update;
+    names.put(name, name);
+    return name;
   }
 
   /**
@@ -3239,6 +3451,10 @@ public class SentryStore implements SentryStoreInterface {
 
   /**
    * Extract all paths and convert them into HMSPaths obect
+   * <p>
+   * Only the object names and the path strings are read, streamed from the database,
+   * without materializing the persistent objects.
+   *
    * @param pm Persistence manager
    * @param currentSnapshotID Image ID we are interested in
    * @param pathUpdate Destination for result
@@ -3246,28 +3462,28 @@ public class SentryStore implements SentryStoreInterface {
   private void retrieveFullPathsImageCore(PersistenceManager pm,
                                           long currentSnapshotID,
                                           UpdateableAuthzPaths pathUpdate) {
-    // Query for all MAuthzPathsMapping objects matching the given image ID
+    // Query for the paths of all MAuthzPathsMapping objects matching the given image ID
     Query query = pm.newQuery(MAuthzPathsMapping.class);
-    query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
-    query.setFilter("this.authzSnapshotID == currentSnapshotID");
+    streamFullImageResults(query);
+    query.declareVariables(MPath.class.getName() + " mPath");
+    query.setFilter("this.authzSnapshotID == currentSnapshotID && pathsPersisted.contains(mPath)");
     query.declareParameters("long currentSnapshotID");
-
-    // Get path in batch to improve performance. The fectch groups are defined in package.jdo
-    pm.getFetchPlan().addGroup("includingPaths");
-    Collection<MAuthzPathsMapping> authzToPathsMappings =
-        (Collection<MAuthzPathsMapping>) query.execute(currentSnapshotID);
-
-    // Walk each MAuthzPathsMapping object, get set of paths and push them all
-    // into HMSPaths object contained in UpdateableAuthzPaths.
-    for (MAuthzPathsMapping authzToPaths : authzToPathsMappings) {
-      String  objName = authzToPaths.getAuthzObjName();
-      // Convert path strings to list of components
-      for (String path: authzToPaths.getPathStrings()) {
-        String[] pathComponents = PathUtils.splitPath(path);
+    query.setResult("this.authzObjName, mPath.path");
+    try {
+      @SuppressWarnings("unchecked")
+      List<Object[]> rows = (List<Object[]>) query.execute(currentSnapshotID);
+      // Walk each (object, path) pair and push them all into HMSPaths object
+      // contained in UpdateableAuthzPaths.
+      for (Object[] row : rows) {
+        String objName = (String) row[0];
+        // Convert path strings to list of components
+        String[] pathComponents = PathUtils.splitPath((String) row[1]);
         List<String> paths = new ArrayList<>(pathComponents.length);
         Collections.addAll(paths, pathComponents);
         pathUpdate.applyAddChanges(objName, Collections.singletonList(paths));
       }
+    } finally {
+      query.closeAll();
     }
   }
 
@@ -3345,6 +3561,140 @@ public class SentryStore implements SentryStoreInterface {
               }
               return null;
             });
+    deltaChangeWait.increment();
+  }
+
+  /**
+   * Persist an up-to-date HMS snapshot as a difference against the current snapshot, in a
+   * single transaction with its latest notification ID.
+   * <p>
+   * Only the authz objects whose paths changed are written to the current snapshot, and the
+   * difference is persisted as regular {@link MSentryPathChange} deltas, so that NameNodes
+   * keep applying incremental updates instead of reloading a full image.
+   *
+   * @param authzPaths paths to be be persisted
+   * @param notificationID the latest notificationID associated with the snapshot
+   * @return false, with nothing persisted, if there is no current snapshot or delta updates
+   *         are not persisted; the snapshot must then be persisted as a full image
+   * @throws Exception
+   */
+  public boolean persistDifferentialPathsImage(final Map<String, Collection<String>> authzPaths,
+      final long notificationID) throws Exception {
+    if (!persistUpdateDeltas) {
+      return false;
+    }
+    boolean persisted = tm.executeTransactionWithRetry(
+            pm -> {
+              pm.setDetachAllOnCommit(false); // No need to detach objects
+              long snapshotID = getCurrentAuthzPathsSnapshotID(pm);
+              if (snapshotID <= EMPTY_PATHS_SNAPSHOT_ID) {
+                return false;
+              }
+
+              Query query = pm.newQuery(MAuthzPathsMapping.class);
+              query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
+              query.setFilter("this.authzSnapshotID == currentSnapshotID");
+              query.declareParameters("long currentSnapshotID");
+              pm.getFetchPlan().addGroup("includingPaths");
+              Map<String, MAuthzPathsMapping> currentMappings = new HashMap<>();
+              for (MAuthzPathsMapping mapping :
+                  (Collection<MAuthzPathsMapping>) query.execute(snapshotID)) {
+                currentMappings.put(mapping.getAuthzObjName(), mapping);
+              }
+
+              deleteNotificationsSince(pm, notificationID + 1);
+              PathsUpdate diff = new PathsUpdate(notificationID, false);
+              long nextObjectId = getNextAuthzObjectID(pm);
+              int changedObjects = 0;
+              for (Map.Entry<String, Collection<String>> authzPath : authzPaths.entrySet()) {
+                String authzObj = authzPath.getKey();
+                MAuthzPathsMapping mapping = currentMappings.remove(authzObj);
+                if (mapping == null) {
+                  new MAuthzPathsMapping(snapshotID, nextObjectId++, authzObj,
+                      authzPath.getValue()).makePersistent(pm);
+                  addPathChanges(diff.newPathChange(authzObj), authzPath.getValue(), true);
+                  changedObjects++;
+                  continue;
+                }
+                Set<String> newPaths = new HashSet<>(authzPath.getValue());
+                Set<String> oldPaths = new HashSet<>(mapping.getPathStrings());
+                Set<String> addedPaths = Sets.difference(newPaths, oldPaths);
+                Set<String> deletedPaths = Sets.difference(oldPaths, newPaths);
+                if (addedPaths.isEmpty() && deletedPaths.isEmpty()) {
+                  continue;
+                }
+                TPathChanges pathChanges = diff.newPathChange(authzObj);
+                if (!deletedPaths.isEmpty()) {
+                  mapping.deletePersistent(pm, deletedPaths);
+                  addPathChanges(pathChanges, deletedPaths, false);
+                }
+                if (!addedPaths.isEmpty()) {
+                  mapping.addPathToPersist(addedPaths);
+                  mapping.makePersistent(pm);
+                  addPathChanges(pathChanges, addedPaths, true);
+                }
+                changedObjects++;
+              }
+              // The authz objects left are no longer in HMS
+              for (MAuthzPathsMapping mapping : currentMappings.values()) {
+                pm.deletePersistent(mapping);
+                diff.newPathChange(mapping.getAuthzObjName())
+                    .addToDelPaths(Collections.singletonList(PathsUpdate.ALL_PATHS));
+                changedObjects++;
+              }
+
+              LOGGER.info("Persisting HMS snapshot for notification ID = {} as a difference of "
+                  + "{} authz objects against snapshot ID = {}", notificationID, changedObjects,
+                  snapshotID);
+              for (PathsUpdate update : splitPathsDiff(diff)) {
+                long changeID = getLastProcessedChangeIDCore(pm, MSentryPathChange.class) + 1;
+                UniquePathsUpdate uniqueUpdate = new UniquePathsUpdate(
+                    UniquePathsUpdate.sha1("snapshot-diff:" + notificationID + ":" + changeID),
+                    notificationID, false);
+                uniqueUpdate.toThrift().setPathChanges(update.toThrift().getPathChanges());
+                new DeltaTransactionBlock(uniqueUpdate, compressUpdateDeltas).execute(pm);
+                // Makes the change visible to the query for the next change ID
+                pm.flush();
+              }
+              return true;
+            });
+    if (persisted) {
+      deltaChangeWait.increment();
+    }
+    return persisted;
+  }
+
+  private static void addPathChanges(TPathChanges pathChanges, Collection<String> paths,
+      boolean add) {
+    for (String path : paths) {
+      List<String> pathElements = new ArrayList<>();
+      Collections.addAll(pathElements, PathUtils.splitPath(path));
+      if (add) {
+        pathChanges.addToAddPaths(pathElements);
+      } else {
+        pathChanges.addToDelPaths(pathElements);
+      }
+    }
+  }
+
+  /**
+   * Splits a snapshot difference that the NameNode would apply as a rename, that is, two
+   * path changes of different authz objects, one adding and the other deleting a single path,
+   * into one update per path change. An empty difference still results in one update, which
+   * persists the notification ID.
+   */
+  private static List<PathsUpdate> splitPathsDiff(PathsUpdate diff) {
+    List<TPathChanges> pathChanges = diff.toThrift().getPathChanges();
+    if (pathChanges.size() != 2) {
+      return Collections.singletonList(diff);
+    }
+    List<PathsUpdate> updates = new ArrayList<>(2);
+    for (TPathChanges changes : pathChanges) {
+      PathsUpdate update = new PathsUpdate(diff.getSeqNum(), false);
+      update.toThrift().addToPathChanges(changes);
+      updates.add(update);
+    }
+    return updates;
   }
 
   public void logPersistingFullSnapshotState(int totalNumberOfObjectsToPersist,
@@ -4092,6 +4442,11 @@ public class SentryStore implements SentryStoreInterface {
             });
   }
 
+  @Override
+  public synchronized void persistUpdate(final Update update) throws Exception {
+    execute(update, pm -> null);
+  }
+
   /**
    * Import the sentry mapping data.
    *
@@ -4130,6 +4485,12 @@ public class SentryStore implements SentryStoreInterface {
    */
   public void importSentryMetaData(final TSentryMappingData tSentryMappingData,
       final boolean isOverwriteForRole) throws Exception {
+    int chunkSize = conf.getInt(ServerConfig.SENTRY_STORE_IMPORT_CHUNK_SIZE,
+        ServerConfig.SENTRY_STORE_IMPORT_CHUNK_SIZE_DEFAULT);
+    if (chunkSize > 0) {
+      importSentryMetaDataInChunks(tSentryMappingData, isOverwriteForRole, chunkSize);
+      return;
+    }
     tm.executeTransaction(
             pm -> {
               pm.setDetachAllOnCommit(false); // No need to detach objects
@@ -4164,6 +4525,239 @@ public class SentryStore implements SentryStoreInterface {
             });
   }
 
+  /**
+   * Imports the mapping data in transactions of at most chunkSize grants or role memberships.
+   * <p>
+   * A first transaction drops the duplicated roles when overwriting, creates the missing
+   * roles and loads the privileges, groups and users the imported roles already have. Only
+   * the missing grants and memberships are imported afterwards, chunk by chunk. As every
+   * chunk is committed on its own, an import that failed part way can be run again in merge
+   * mode to import what is left. The existing privileges a chunk of grants may share are
+   * read with one query per chunk, rather than one per grant.
+   * <p>
+   * The chunks are imported one after the other. Running them in parallel is not safe:
+   * granting ALL drops the SELECT and INSERT privileges the role has on the object, and
+   * granting SELECT or INSERT does nothing if it has ALL, so two chunks granting to the
+   * same role read and write the same privilege set. Privileges and groups are also shared
+   * by roles, so two chunks could both create the same one. The transactions would not
+   * detect either conflict at the isolation level the store uses.
+   */
+  private void importSentryMetaDataInChunks(final TSentryMappingData tSentryMappingData,
+      final boolean isOverwriteForRole, final int chunkSize) throws Exception {
+    TSentryMappingData mappingData = lowercaseRoleName(tSentryMappingData);
+    final Map<String, Set<TSentryGroup>> importedRoleGroupsMap =
+        covertToRoleNameTGroupsMap(mappingData.getGroupRolesMap());
+    Map<String, Set<String>> importedRoleUsersMap =
+        covertToRoleUsersMap(mappingData.getUserRolesMap());
+    Map<String, Set<TSentryPrivilege>> importedRolePrivilegesMap =
+        mappingData.getRolePrivilegesMap() != null ?
+            mappingData.getRolePrivilegesMap() : Collections.emptyMap();
+    final Set<String> importedRoleNames = new HashSet<>();
+    for (String roleName : Iterables.concat(importedRoleGroupsMap.keySet(),
+        importedRoleUsersMap.keySet(), importedRolePrivilegesMap.keySet())) {
+      importedRoleNames.add(trimAndLower(roleName));
+    }
+
+    // What the imported roles already have
+    final Map<String, Set<String>> existingPrivileges = new HashMap<>();
+    final Map<String, Set<String>> existingGroups = new HashMap<>();
+    final Map<String, Set<String>> existingUsers = new HashMap<>();
+    tm.executeTransactionWithRetry(
+            pm -> {
+              pm.setDetachAllOnCommit(false); // No need to detach objects
+              existingPrivileges.clear();
+              existingGroups.clear();
+              existingUsers.clear();
+              if (isOverwriteForRole) {
+                dropDuplicatedRoleForImport(pm, getAllRoleNamesCore(pm),
+                    importedRoleGroupsMap.keySet());
+              }
+              for (String roleName : importedRoleNames) {
+                MSentryRole role = getRole(pm, roleName);
+                if (role == null) {
+                  pm.makePersistent(new MSentryRole(roleName));
+                  continue;
+                }
+                Set<String> privileges = new HashSet<>();
+                for (MSentryPrivilege privilege : role.getPrivileges()) {
+                  privileges.add(importPrivilegeKey(privilege));
+                }
+                existingPrivileges.put(roleName, privileges);
+                Set<String> groups = new HashSet<>();
+                for (MSentryGroup group : role.getGroups()) {
+                  groups.add(group.getGroupName());
+                }
+                existingGroups.put(roleName, groups);
+                Set<String> users = new HashSet<>();
+                for (MSentryUser user : role.getUsers()) {
+                  users.add(user.getUserName());
+                }
+                existingUsers.put(roleName, users);
+              }
+              return null;
+            });
+    LOGGER.info("Importing the mapping data of {} roles in chunks of {}",
+        importedRoleNames.size(), chunkSize);
+
+    List<Map.Entry<String, TSentryPrivilege>> grants = new ArrayList<>();
+    for (Map.Entry<String, Set<TSentryPrivilege>> entry : importedRolePrivilegesMap.entrySet()) {
+      String roleName = trimAndLower(entry.getKey());
+      Set<String> privileges = existingPrivileges.get(roleName);
+      for (TSentryPrivilege privilege : entry.getValue()) {
+        if (privileges == null ||
+            !privileges.contains(importPrivilegeKey(convertToMSentryPrivilege(privilege)))) {
+          grants.add(Maps.immutableEntry(roleName, privilege));
+        }
+      }
+    }
+    importInChunks("privilege grants", grants, chunkSize, (pm, chunk) -> {
+      List<TSentryPrivilege> privileges = new ArrayList<>(chunk.size());
+      for (Map.Entry<String, TSentryPrivilege> grant : chunk) {
+        privileges.add(grant.getValue());
+      }
+      Map<String, MSentryPrivilege> resolvedPrivileges = resolvePrivileges(pm, privileges);
+      for (Map.Entry<String, TSentryPrivilege> grant : chunk) {
+        alterSentryGrantPrivilegeCore(pm, SentryPrincipalType.ROLE, grant.getKey(),
+            grant.getValue(), resolvedPrivileges);
+      }
+    });
+
+    List<Map.Entry<String, String>> groupMemberships = new ArrayList<>();
+    for (Map.Entry<String, Set<TSentryGroup>> entry : importedRoleGroupsMap.entrySet()) {
+      String roleName = trimAndLower(entry.getKey());
+      Set<String> groups = existingGroups.get(roleName);
+      for (TSentryGroup group : entry.getValue()) {
+        String groupName = group.getGroupName().trim();
+        if (groups == null || !groups.contains(groupName)) {
+          groupMemberships.add(Maps.immutableEntry(roleName, groupName));
+        }
+      }
+    }
+    importInChunks("group memberships", groupMemberships, chunkSize, (pm, chunk) -> {
+      Map<String, Set<TSentryGroup>> roleGroups = new HashMap<>();
+      for (Map.Entry<String, String> membership : chunk) {
+        addToMapSet(roleGroups, membership.getKey(), new TSentryGroup(membership.getValue()));
+      }
+      for (Map.Entry<String, Set<TSentryGroup>> entry : roleGroups.entrySet()) {
+        alterSentryRoleAddGroupsCore(pm, entry.getKey(), entry.getValue());
+      }
+    });
+
+    List<Map.Entry<String, String>> userMemberships = new ArrayList<>();
+    for (Map.Entry<String, Set<String>> entry : importedRoleUsersMap.entrySet()) {
+      String roleName = trimAndLower(entry.getKey());
+      Set<String> users = existingUsers.get(roleName);
+      for (String userName : entry.getValue()) {
+        if (users == null || !users.contains(userName.trim())) {
+          userMemberships.add(Maps.immutableEntry(roleName, userName.trim()));
+        }
+      }
+    }
+    importInChunks("user memberships", userMemberships, chunkSize, (pm, chunk) -> {
+      Map<String, Set<String>> roleUsers = new HashMap<>();
+      for (Map.Entry<String, String> membership : chunk) {
+        addToMapSet(roleUsers, membership.getKey(), membership.getValue());
+      }
+      for (Map.Entry<String, Set<String>> entry : roleUsers.entrySet()) {
+        alterSentryRoleAddUsersCore(pm, entry.getKey(), entry.getValue());
+      }
+    });
+  }
+
+  /**
+   * Imports a chunk of the mapping data within a transaction.
+   */
+  private interface ImportChunk<T> {
+    void importChunk(PersistenceManager pm, List<T> chunk) throws Exception;
+  }
+
+  private <T> void importInChunks(String description, List<T> items, int chunkSize,
+      ImportChunk<T> importChunk) throws Exception {
+    for (int start = 0; start < items.size(); start += chunkSize) {
+      final List<T> chunk = items.subList(start, Math.min(start + chunkSize, items.size()));
+      tm.executeTransactionWithRetry(
+              pm -> {
+                pm.setDetachAllOnCommit(false); // No need to detach objects
+                importChunk.importChunk(pm, chunk);
+                return null;
+              });
+      LOGGER.info("Imported {} of {} {}", start + chunk.size(), items.size(), description);
+    }
+  }
+
+  private static <K, V> void addToMapSet(Map<K, Set<V>> map, K key, V value) {
+    Set<V> values = map.get(key);
+    if (values == null) {
+      values = new HashSet<>();
+      map.put(key, values);
+    }
+    values.add(value);
+  }
+
+  /**
+   * Reads the existing privileges that may be the same as the given ones with a single
+   * query, which matches every field of a privilege against the values the given ones
+   * have for it.
+   *
+   * @return the privileges read, by {@link #privilegeLookupKey}
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, MSentryPrivilege> resolvePrivileges(PersistenceManager pm,
+      Collection<TSentryPrivilege> privileges) throws SentryInvalidInputException {
+    Set<String> serverNames = new HashSet<>();
+    Set<String> dbNames = new HashSet<>();
+    Set<String> tableNames = new HashSet<>();
+    Set<String> columnNames = new HashSet<>();
+    Set<String> uris = new HashSet<>();
+    Set<String> actions = new HashSet<>();
+    for (TSentryPrivilege privilege : privileges) {
+      MSentryPrivilege converted = convertToMSentryPrivilege(privilege);
+      serverNames.add(converted.getServerName());
+      dbNames.add(converted.getDbName());
+      tableNames.add(converted.getTableName());
+      columnNames.add(converted.getColumnName());
+      uris.add(converted.getURI());
+      actions.add(converted.getAction());
+    }
+    Map<String, Object> params = new HashMap<>();
+    params.put("serverNames", serverNames.toArray());
+    params.put("dbNames", dbNames.toArray());
+    params.put("tableNames", tableNames.toArray());
+    params.put("columnNames", columnNames.toArray());
+    params.put("uris", uris.toArray());
+    params.put("actions", actions.toArray());
+    Query query = pm.newQuery(MSentryPrivilege.class);
+    query.setFilter(":serverNames.contains(this.serverName) && :dbNames.contains(this.dbName)"
+        + " && :tableNames.contains(this.tableName) && :columnNames.contains(this.columnName)"
+        + " && :uris.contains(this.URI) && :actions.contains(this.action)");
+    Map<String, MSentryPrivilege> resolvedPrivileges = new HashMap<>();
+    for (MSentryPrivilege privilege :
+        (List<MSentryPrivilege>) query.executeWithMap(params)) {
+      resolvedPrivileges.put(privilegeLookupKey(privilege), privilege);
+    }
+    return resolvedPrivileges;
+  }
+
+  /**
+   * @return a key that is equal for two privileges if {@link #getMSentryPrivilege} finds
+   * one for the other
+   */
+  private static String privilegeLookupKey(MSentryPrivilege privilege) {
+    return Arrays.asList(privilege.getServerName(), privilege.getDbName(),
+        privilege.getTableName(), privilege.getColumnName(), privilege.getURI(),
+        privilege.getAction(), privilege.getGrantOption()).toString();
+  }
+
+  /**
+   * @return a key that is equal for two privileges if they are equal, used to find the
+   * imported privileges that a role already has
+   */
+  private static String importPrivilegeKey(MSentryPrivilege privilege) {
+    return Arrays.asList(privilege.getPrivilegeScope(), privilege.getServerName(),
+        privilege.getDbName(), privilege.getTableName(), privilege.getColumnName(),
+        privilege.getURI(), privilege.getAction(), privilege.getGrantOption()).toString();
+  }
+
   // covert the Map[group->roles] to Map[role->groups]
   private Map<String, Set<TSentryGroup>> covertToRoleNameTGroupsMap(
       Map<String, Set<String>> groupRolesMap) {
@@ -4615,16 +5209,20 @@ public class SentryStore implements SentryStoreInterface {
    * Gets a list of MSentryChange objects greater than or equal to the given changeID.
    *
    * @param changeID
+   * @param maxChanges maximum number of changes to return, all of them if not positive
    * @return a list of MSentryChange objects. It can returns an empty list.
    * @throws Exception
    */
   @SuppressWarnings("unchecked")
   private <T extends MSentryChange> List<T> getMSentryChangesCore(PersistenceManager pm,
-      Class<T> changeCls, final long changeID) throws Exception {
+      Class<T> changeCls, final long changeID, final int maxChanges) throws Exception {
     Query query = pm.newQuery(changeCls);
     query.setFilter("this.changeID >= t");
     query.declareParameters("long t");
     query.setOrdering("this.changeID ascending");
+    if (maxChanges > 0) {
+      query.setRange(0, maxChanges);
+    }
     return (List<T>) query.execute(changeID);
   }
 
@@ -4638,10 +5236,25 @@ public class SentryStore implements SentryStoreInterface {
    */
   public List<MSentryPathChange> getMSentryPathChanges(final long changeID)
           throws Exception {
+    return getMSentryPathChanges(changeID, 0);
+  }
+
+  /**
+   * Gets a list of at most maxChanges MSentryPathChange objects greater than or equal to
+   * the given changeID.
+   * If there is any path delta missing in {@link MSentryPathChange} table, an empty list is returned.
+   *
+   * @param changeID  Requested changeID
+   * @param maxChanges maximum number of changes to return, all of them if not positive
+   * @return a list of MSentryPathChange objects. May be empty.
+   * @throws Exception
+   */
+  public List<MSentryPathChange> getMSentryPathChanges(final long changeID, final int maxChanges)
+          throws Exception {
     return tm.executeTransaction(pm -> {
-      // 1. We first rextrieve the entire list of latest delta changes since the changeID
+      // 1. We first rextrieve the list of latest delta changes since the changeID
       List<MSentryPathChange> pathChanges =
-              getMSentryChangesCore(pm, MSentryPathChange.class, changeID);
+              getMSentryChangesCore(pm, MSentryPathChange.class, changeID, maxChanges);
       // 2. We then check for consistency issues with delta changes
       if (validateDeltaChanges(changeID, pathChanges)) {
         // If everything is in order, return the delta changes
@@ -4663,10 +5276,25 @@ public class SentryStore implements SentryStoreInterface {
    */
   public List<MSentryPermChange> getMSentryPermChanges(final long changeID)
       throws Exception {
+    return getMSentryPermChanges(changeID, 0);
+  }
+
+  /**
+   * Gets a list of at most maxChanges MSentryPermChange objects greater than or equal to
+   * the given ChangeID.
+   * If there is any perm delta missing in {@link MSentryPermChange} table, an empty list is returned.
+   *
+   * @param changeID Requested changeID
+   * @param maxChanges maximum number of changes to return, all of them if not positive
+   * @return a list of MSentryPermChange objects. May be empty.
+   * @throws Exception
+   */
+  public List<MSentryPermChange> getMSentryPermChanges(final long changeID, final int maxChanges)
+      throws Exception {
     return tm.executeTransaction(pm -> {
-      // 1. We first retrieve the entire list of latest delta changes since the changeID
+      // 1. We first retrieve the list of latest delta changes since the changeID
       List<MSentryPermChange> permChanges =
-          getMSentryChangesCore(pm, MSentryPermChange.class, changeID);
+          getMSentryChangesCore(pm, MSentryPermChange.class, changeID, maxChanges);
       // 2. We then check for consistency issues with delta changes
       if (validateDeltaChanges(changeID, permChanges)) {
         // If everything is in order, return the delta changes
@@ -4752,13 +5380,18 @@ public class SentryStore implements SentryStoreInterface {
     // revoking/granting owner privilege and one TransactionBlock to perform actual permission change.
     // Default size of tbs is picked accordingly.
     List<TransactionBlock<Object>> tbs = new ArrayList<>(3);
-    if (persistUpdateDeltas && updates != null && updates.size() > 0) {
+    boolean hasDeltas = persistUpdateDeltas && updates != null && updates.size() > 0;
+    if (hasDeltas) {
       for (Update update : updates) {
-        tbs.add(new DeltaTransactionBlock(update));
+        tbs.add(new DeltaTransactionBlock(update, compressUpdateDeltas));
       }
     }
     tbs.add(transactionBlock);
     tm.executeTransactionBlocksWithRetry(tbs);
+    if (hasDeltas) {
+      // Wake up NameNode requests waiting for new perm or path changes
+      deltaChangeWait.increment();
+    }
   }
 
   /**
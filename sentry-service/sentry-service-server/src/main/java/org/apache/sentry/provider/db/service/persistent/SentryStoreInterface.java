@@ -355,6 +355,15 @@ public interface SentryStoreInterface {
   void importSentryMetaData(final TSentryMappingData tSentryMappingData,
                             final boolean isOverwriteForRole) throws Exception;
 
+  /**
+   * Persist a permission change to MSentryPermChange table on its own, e.g. after a
+   * write made in several transactions.
+   *
+   * @param update the permission delta update
+   * @throws Exception
+   */
+  void persistUpdate(final Update update) throws Exception;
+
   /**
    * Removes all the information related to HMS Objects from sentry store.
    */
@@ -408,6 +417,12 @@ public interface SentryStoreInterface {
    */
   void setPersistUpdateDeltas(boolean persistUpdateDeltas);
 
+  /**
+   * @return true if permission and path changes are persisted as deltas, so that
+   * the last perm change ID advances on every permission change
+   */
+  boolean isPersistUpdateDeltas();
+
   /**
    * Purge delta change tables, {@link MSentryPermChange} and {@link MSentryPathChange}.
    * The number of deltas to keep is configurable
@@ -427,6 +442,12 @@ public interface SentryStoreInterface {
    */
   CounterWait getCounterWait();
 
+  /**
+   * Return the counter of perm and path changes committed through this store
+   * @return
+   */
+  CounterWait getDeltaChangeWait();
+
   // Metrics
 
   /**
@@ -512,6 +533,32 @@ public interface SentryStoreInterface {
                                    final Set<TSentryGroup> groupNames,
                                    final Update update) throws Exception;
 
+  /**
+   * Assign a given role to a set of users. As well as persist the corresponding
+   * permission change to MSentryPermChange table in a single transaction.
+   *
+   * @param roleName the role to be assigned to the users.
+   * @param userNames the list of users to be added to the role,
+   * @param update the corresponding permission delta update
+   * @throws Exception
+   */
+  void alterSentryRoleAddUsers(final String roleName,
+                               final Set<String> userNames,
+                               final Update update) throws Exception;
+
+  /**
+   * Revoke a given role from a set of users. As well as persist the corresponding
+   * permission change to MSentryPermChange table in a single transaction.
+   *
+   * @param roleName the role to be revoked from the users.
+   * @param userNames the list of users to be revoked from the role,
+   * @param update the corresponding permission delta update
+   * @throws Exception
+   */
+  void alterSentryRoleDeleteUsers(final String roleName,
+                                  final Set<String> userNames,
+                                  final Update update) throws Exception;
+
   /**
    * Alter a given sentry role to grant a set of privileges, as well as persist the
    * corresponding permission change to MSentryPermChange table in a single transaction.
@@ -582,6 +629,18 @@ public interface SentryStoreInterface {
    */
   PermissionsImage retrieveFullPermssionsImage() throws Exception;
 
+  /**
+   * Retrieves roles with their groups, users and privileges, and the privileges of users,
+   * for {@link SentryPolicyReplica}.
+   *
+   * @param roleNames the roles to retrieve, all of them if null
+   * @param userNames the users whose privileges to retrieve, all of them if null
+   * @return a {@link PolicyImage} with the roles and users that exist
+   * @throws Exception
+   */
+  PolicyImage retrievePolicyImage(Set<String> roleNames, Set<String> userNames)
+      throws Exception;
+
   /**
    * Retrieves an up-to-date hive paths snapshot.
    * The image only contains PathsDump in it.
@@ -625,6 +684,19 @@ public interface SentryStoreInterface {
    */
   List<MSentryPermChange> getMSentryPermChanges(final long changeID) throws Exception;
 
+  /**
+   * Gets a list of at most maxChanges MSentryPermChange objects greater than or equal to
+   * the given ChangeID.
+   * If there is any perm delta missing in {@link MSentryPermChange} table, an empty list is returned.
+   *
+   * @param changeID Requested changeID
+   * @param maxChanges maximum number of changes to return, all of them if not positive
+   * @return a list of MSentryPermChange objects. May be empty.
+   * @throws Exception
+   */
+  List<MSentryPermChange> getMSentryPermChanges(final long changeID, final int maxChanges)
+      throws Exception;
+
   /**
    * Checks if any MSentryPermChange object exists with the given changeID.
    *
@@ -650,6 +722,19 @@ public interface SentryStoreInterface {
    */
   List<MSentryPathChange> getMSentryPathChanges(final long changeID) throws Exception;
 
+  /**
+   * Gets a list of at most maxChanges MSentryPathChange objects greater than or equal to
+   * the given changeID.
+   * If there is any path delta missing in {@link MSentryPathChange} table, an empty list is returned.
+   *
+   * @param changeID  Requested changeID
+   * @param maxChanges maximum number of changes to return, all of them if not positive
+   * @return a list of MSentryPathChange objects. May be empty.
+   * @throws Exception
+   */
+  List<MSentryPathChange> getMSentryPathChanges(final long changeID, final int maxChanges)
+      throws Exception;
+
   /**
    * Checks if any MSentryPathChange object exists with the given changeID.
    *
@@ -677,6 +762,19 @@ public interface SentryStoreInterface {
   void persistFullPathsImage(final Map<String, Collection<String>> authzPaths,
                              final long notificationID) throws Exception;
 
+  /**
+   * Persist an up-to-date HMS snapshot as a difference against the current snapshot, in a
+   * single transaction with its latest notification ID. The difference is persisted as
+   * path deltas.
+   *
+   * @param authzPaths paths to be be persisted
+   * @param notificationID the latest notificationID associated with the snapshot
+   * @return false, with nothing persisted, if the snapshot must be persisted as a full image
+   * @throws Exception
+   */
+  boolean persistDifferentialPathsImage(final Map<String, Collection<String>> authzPaths,
+                                        final long notificationID) throws Exception;
+
   /**
    * Adds the authzObj and with a set of paths into the authzObj -> [Paths] mapping.
    * As well as persist the corresponding delta path change to MSentryPathChange
@@ -33,6 +33,7 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Transaction;
 
+import org.apache.sentry.api.service.thrift.RpcPhaseRecorder;
 import org.apache.sentry.api.service.thrift.SentryMetrics;
 
 import java.util.Random;
@@ -58,6 +59,10 @@ import java.util.concurrent.Callable;
  *     <li>Counter for failed transactions</li>
  *     <li>Counter for each exception thrown by transaction</li>
  * </ul>
+ *
+ * Within policy service RPCs, the time to begin, execute and commit each transaction,
+ * including detaching the results on commit, and the backoff before retries are
+ * recorded as phases of the RPC by {@link RpcPhaseRecorder}.
  */
 @SuppressWarnings("NestedTryStatement")
 public final class TransactionManager {
@@ -115,12 +120,15 @@ public final class TransactionManager {
    * @return Object with the result of tb.execute()
    */
   public <T> T executeTransaction(TransactionBlock<T> tb) throws Exception {
+    RpcPhaseRecorder.Phase phase = RpcPhaseRecorder.time(RpcPhaseRecorder.TRANSACTION_BEGIN);
     try (Context context = transactionTimer.time();
          PersistenceManager pm = pmf.getPersistenceManager()) {
       Transaction transaction = pm.currentTransaction();
       transaction.begin();
       try {
+        phase = phase.next(RpcPhaseRecorder.TRANSACTION_EXECUTE);
         T result = tb.execute(pm);
+        phase = phase.next(RpcPhaseRecorder.TRANSACTION_COMMIT);
         transaction.commit();
         return result;
       } catch (Exception e) {
@@ -136,6 +144,8 @@ public final class TransactionManager {
           transaction.rollback();
         }
       }
+    } finally {
+      phase.close();
     }
   }
 
@@ -149,15 +159,18 @@ public final class TransactionManager {
    * @return the result of the last result of tb.execute()
    */
   private <T> T executeTransaction(Iterable<TransactionBlock<T>> tbs) throws Exception {
+    RpcPhaseRecorder.Phase phase = RpcPhaseRecorder.time(RpcPhaseRecorder.TRANSACTION_BEGIN);
     try (Context context = transactionTimer.time();
          PersistenceManager pm = pmf.getPersistenceManager()) {
       Transaction transaction = pm.currentTransaction();
       transaction.begin();
       try {
+        phase = phase.next(RpcPhaseRecorder.TRANSACTION_EXECUTE);
         T result = null;
         for (TransactionBlock<T> tb : tbs) {
           result = tb.execute(pm);
         }
+        phase = phase.next(RpcPhaseRecorder.TRANSACTION_COMMIT);
         transaction.commit();
         return result;
       } catch (Exception e) {
@@ -173,6 +186,8 @@ public final class TransactionManager {
           transaction.rollback();
         }
       }
+    } finally {
+      phase.close();
     }
   }
 
@@ -243,7 +258,10 @@ public final class TransactionManager {
                   retryNum, transactionRetryMax);
           // Introduce some randomness in the backoff time.
           LOGGER.warn("Sleeping for {} milliseconds before retrying", sleepTime);
-          Thread.sleep(sleepTime);
+          try (RpcPhaseRecorder.Phase phase =
+              RpcPhaseRecorder.time(RpcPhaseRecorder.TRANSACTION_RETRY_BACKOFF)) {
+            Thread.sleep(sleepTime);
+          }
           int fuzz = random.nextInt((int)sleepTime / 2);
           sleepTime *= 3;
           sleepTime /= 2;
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.service.thrift;
+
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.hdfs.ServiceConstants.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.apache.sentry.service.thrift.FullUpdateInitializer.pathFromURI;
+import static org.apache.sentry.service.thrift.FullUpdateInitializer.safeIntern;
+
+/**
+ * Reads the full HMS snapshot directly from the database backing the Hive Metastore.
+ * <p>
+ * {@link FullUpdateInitializer} fetches the Thrift objects of all tables and partitions
+ * from HMS, with their schemas and parameters, only to read their locations. This reader
+ * streams just the locations with three queries on the metastore schema: databases,
+ * tables, and partitions ordered by table. The result has the same format as the
+ * snapshot of {@link FullUpdateInitializer}.
+ * <p>
+ * The queries read the DBS, TBLS, SDS and PARTITIONS tables of the metastore schema,
+ * which are the same for all supported databases and Hive versions. Since Hive 3 the
+ * databases belong to catalogs, and only the ones of the configured catalog are read,
+ * as HMS only notifies the changes of that catalog.
+ */
+final class HMSDirectSqlSnapshotReader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HMSDirectSqlSnapshotReader.class);
+  private static final String CTLG_NAME = "CTLG_NAME";
+
+  private final String url;
+  private final String driver;
+  private final String user;
+  private final String password;
+  private final int fetchSize;
+  private final String catalog;
+
+  HMSDirectSqlSnapshotReader(Configuration conf) throws IOException {
+    url = Preconditions.checkNotNull(
+        conf.get(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_URL),
+        ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_URL + " is required");
+    driver = conf.get(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_DRIVER);
+    user = conf.get(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_USER);
+    char[] passwordChars =
+        conf.getPassword(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_PASSWORD);
+    password = (passwordChars != null) ? new String(passwordChars) : null;
+    fetchSize = conf.getInt(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_FETCH_SIZE,
+        ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_FETCH_SIZE_DEFAULT);
+    catalog = conf.get(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_CATALOG,
+        ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_CATALOG_DEFAULT);
+  }
+
+  /**
+   * Get Full HMS snapshot.
+   * @return Full snapshot of HMS objects.
+   * @throws ClassNotFoundException if the JDBC driver is not found
+   * @throws SQLException if the metastore database could not be read
+   */
+  Map<String, Collection<String>> getFullHMSSnapshot()
+      throws ClassNotFoundException, SQLException {
+    if (driver != null) {
+      Class.forName(driver);
+    }
+    try (Connection connection = DriverManager.getConnection(url, user, password)) {
+      // Some drivers only stream results within a transaction
+      connection.setAutoCommit(false);
+      String quote = getIdentifierQuote(connection);
+      boolean hasCatalogs = hasCatalogs(connection, quote);
+      Map<String, Collection<String>> snapshot = new HashMap<>();
+      int dbCount = readDatabases(connection, quote, hasCatalogs, snapshot);
+      Map<Long, String> tables = readTables(connection, quote, hasCatalogs, snapshot);
+      int partitionCount = readPartitions(connection, quote, hasCatalogs, tables, snapshot);
+      connection.commit();
+      LOGGER.info("Read {} databases, {} tables and {} partitions from the metastore database",
+          dbCount, tables.size(), partitionCount);
+      return snapshot;
+    }
+  }
+
+  /**
+   * MySQL only accepts double quoted identifiers in ANSI mode
+   */
+  private static String getIdentifierQuote(Connection connection) throws SQLException {
+    String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+    return (product.contains("mysql") || product.contains("mariadb")) ? "`" : "\"";
+  }
+
+  /**
+   * @return true if the databases belong to catalogs, which the DBS table of the
+   *         metastore schema has a CTLG_NAME column for since Hive 3
+   */
+  private static boolean hasCatalogs(Connection connection, String q) throws SQLException {
+    String query = String.format("SELECT * FROM %1$sDBS%1$s WHERE 1 = 0", q);
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery(query)) {
+      ResultSetMetaData metaData = rs.getMetaData();
+      for (int i = 1; i <= metaData.getColumnCount(); i++) {
+        if (CTLG_NAME.equalsIgnoreCase(metaData.getColumnName(i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private int readDatabases(Connection connection, String q, boolean hasCatalogs,
+      Map<String, Collection<String>> snapshot) throws SQLException {
+    String query = String.format("SELECT D.%1$sNAME%1$s, D.%1$sDB_LOCATION_URI%1$s "
+        + "FROM %1$sDBS%1$s D", q) + getCatalogFilter(q, hasCatalogs);
+    int count = 0;
+    try (PreparedStatement statement = prepareStatement(connection, query, hasCatalogs);
+         ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        count++;
+        // Database names are case insensitive
+        String dbName = safeIntern(rs.getString(1).toLowerCase());
+        String dbPath = safeIntern(pathFromURI(rs.getString(2)));
+        if (dbPath != null) {
+          getPaths(snapshot, dbName).add(dbPath);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return map of table ids to their authz objects
+   */
+  private Map<Long, String> readTables(Connection connection, String q, boolean hasCatalogs,
+      Map<String, Collection<String>> snapshot) throws SQLException {
+    String query = String.format("SELECT T.%1$sTBL_ID%1$s, D.%1$sNAME%1$s, T.%1$sTBL_NAME%1$s, "
+        + "S.%1$sLOCATION%1$s FROM %1$sTBLS%1$s T "
+        + "INNER JOIN %1$sDBS%1$s D ON T.%1$sDB_ID%1$s = D.%1$sDB_ID%1$s "
+        + "LEFT OUTER JOIN %1$sSDS%1$s S ON T.%1$sSD_ID%1$s = S.%1$sSD_ID%1$s", q)
+        + getCatalogFilter(q, hasCatalogs);
+    Map<Long, String> tables = new HashMap<>();
+    try (PreparedStatement statement = prepareStatement(connection, query, hasCatalogs);
+         ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        // Table names are case insensitive
+        String authzObject = (rs.getString(2) + "." + rs.getString(3)).toLowerCase().intern();
+        tables.put(rs.getLong(1), authzObject);
+        String tblPath = safeIntern(pathFromURI(rs.getString(4)));
+        if (tblPath != null) {
+          getPaths(snapshot, authzObject).add(tblPath);
+        }
+      }
+    }
+    return tables;
+  }
+
+  private int readPartitions(Connection connection, String q, boolean hasCatalogs,
+      Map<Long, String> tables, Map<String, Collection<String>> snapshot) throws SQLException {
+    String query = String.format("SELECT P.%1$sTBL_ID%1$s, S.%1$sLOCATION%1$s "
+        + "FROM %1$sPARTITIONS%1$s P "
+        + "INNER JOIN %1$sSDS%1$s S ON P.%1$sSD_ID%1$s = S.%1$sSD_ID%1$s", q);
+    if (hasCatalogs) {
+      query += String.format(" INNER JOIN %1$sTBLS%1$s T ON P.%1$sTBL_ID%1$s = T.%1$sTBL_ID%1$s "
+          + "INNER JOIN %1$sDBS%1$s D ON T.%1$sDB_ID%1$s = D.%1$sDB_ID%1$s", q)
+          + getCatalogFilter(q, true);
+    }
+    query += String.format(" ORDER BY P.%1$sTBL_ID%1$s", q);
+    int count = 0;
+    long tblId = -1;
+    Collection<String> paths = null;
+    try (PreparedStatement statement = prepareStatement(connection, query, hasCatalogs);
+         ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        count++;
+        String partPath = pathFromURI(rs.getString(2));
+        if (partPath == null) {
+          continue;
+        }
+        // Partitions of a table are consecutive
+        if (paths == null || rs.getLong(1) != tblId) {
+          tblId = rs.getLong(1);
+          String authzObject = tables.get(tblId);
+          if (authzObject == null) {
+            // Table added after the tables were read
+            LOGGER.debug("Ignoring partition {} of unknown table {}", partPath, tblId);
+            paths = null;
+            continue;
+          }
+          paths = getPaths(snapshot, authzObject);
+        }
+        paths.add(partPath.intern());
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the condition on the catalog of the databases D, if they belong to catalogs
+   */
+  private static String getCatalogFilter(String q, boolean hasCatalogs) {
+    return hasCatalogs ? String.format(" WHERE D.%1$s%2$s%1$s = ?", q, CTLG_NAME) : "";
+  }
+
+  private PreparedStatement prepareStatement(Connection connection, String query,
+      boolean hasCatalogs) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(query,
+        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    statement.setFetchSize(fetchSize);
+    if (hasCatalogs) {
+      statement.setString(1, catalog);
+    }
+    return statement;
+  }
+
+  private static Collection<String> getPaths(Map<String, Collection<String>> snapshot,
+      String authzObject) {
+    Collection<String> paths = snapshot.get(authzObject);
+    if (paths == null) {
+      paths = new HashSet<>(1);
+      snapshot.put(authzObject, paths);
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.service.thrift;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.server.ServerContext;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TServerEventHandler;
+import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Thrift server which only uses a worker thread while a request is processed.
+ * <p>
+ * {@link org.apache.thrift.server.TThreadPoolServer} dedicates a worker thread to
+ * every connection for its whole lifetime, so idle connections, like the ones kept
+ * by client transport pools, exhaust the worker threads. This server parks the
+ * connections on a selector between requests instead, and hands a connection to
+ * a bounded pool of workers when its next request arrives. When all workers are
+ * busy and the request queue is full, the connection is closed, and the client
+ * fails over to another server.
+ * <p>
+ * Unlike the non-blocking Thrift servers, this keeps the blocking transports, so
+ * the SASL handshake and the wire format are unchanged, and the existing clients
+ * work without framing. It relies on the clients being synchronous, i.e. not
+ * sending a request before they received the response to the previous one, which
+ * holds for all Sentry clients.
+ */
+public class SelectorThreadPoolServer extends TServer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SelectorThreadPoolServer.class);
+
+  public static class Args extends AbstractServerArgs<Args> {
+    private int workerThreads = 500;
+    private int maxQueuedRequests = 1000;
+    private int stopTimeoutSec = 60;
+
+    public Args(TServerSocket transport) {
+      super(transport);
+    }
+
+    public Args workerThreads(int n) {
+      workerThreads = n;
+      return this;
+    }
+
+    public Args maxQueuedRequests(int n) {
+      maxQueuedRequests = n;
+      return this;
+    }
+
+    public Args stopTimeoutSec(int n) {
+      stopTimeoutSec = n;
+      return this;
+    }
+  }
+
+  private final ThreadPoolExecutor workers;
+  private final int stopTimeoutSec;
+  private final SelectorThread selectorThread;
+  private volatile boolean stopped;
+
+  public SelectorThreadPoolServer(Args args) throws IOException {
+    super(args);
+    stopTimeoutSec = args.stopTimeoutSec;
+    workers = new ThreadPoolExecutor(args.workerThreads, args.workerThreads,
+        60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(args.maxQueuedRequests),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sentry-rpc-worker-%d").build());
+    workers.allowCoreThreadTimeOut(true);
+    selectorThread = new SelectorThread();
+  }
+
+  /**
+   * Create a server socket for this server. The connections accepted by it must have
+   * a channel, so they can be parked on the selector.
+   * @param address address to listen on
+   * @return bound server socket
+   * @throws IOException if the socket can not be bound
+   */
+  public static TServerSocket createServerSocket(InetSocketAddress address)
+      throws IOException, TTransportException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    channel.socket().setReuseAddress(true);
+    channel.socket().bind(address);
+    return new TServerSocket(channel.socket());
+  }
+
+  @Override
+  public void serve() {
+    try {
+      serverTransport_.listen();
+    } catch (TTransportException e) {
+      LOGGER.error("Error occurred during listening.", e);
+      return;
+    }
+    if (getEventHandler() != null) {
+      getEventHandler().preServe();
+    }
+    stopped = false;
+    selectorThread.start();
+    setServing(true);
+
+    while (!stopped) {
+      TTransport client;
+      try {
+        client = serverTransport_.accept();
+      } catch (TTransportException e) {
+        if (!stopped) {
+          LOGGER.warn("Transport error occurred during acceptance of message.", e);
+        }
+        continue;
+      }
+      dispatch(new Connection((TSocket) client));
+    }
+
+    selectorThread.wakeup();
+    workers.shutdown();
+    try {
+      selectorThread.join(TimeUnit.SECONDS.toMillis(stopTimeoutSec));
+      workers.awaitTermination(stopTimeoutSec, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    setServing(false);
+  }
+
+  @Override
+  public void stop() {
+    stopped = true;
+    serverTransport_.interrupt();
+  }
+
+  /**
+   * Run the connection on a worker, or close it if the request queue is full
+   */
+  private void dispatch(Connection connection) {
+    try {
+      workers.execute(connection);
+    } catch (RejectedExecutionException e) {
+      if (!stopped) {
+        LOGGER.warn("Request queue is full, closing connection from {}", connection);
+      }
+      connection.close();
+    }
+  }
+
+  /**
+   * Connection of a client. Each run opens it if needed, and then processes requests
+   * until no more are buffered, and parks it on the selector.
+   */
+  private final class Connection implements Runnable {
+    private final TSocket socket;
+    private final SocketChannel channel;
+    private TProcessor processor;
+    private TTransport inputTransport;
+    private TTransport outputTransport;
+    private TProtocol inputProtocol;
+    private TProtocol outputProtocol;
+    private ServerContext context;
+
+    private Connection(TSocket socket) {
+      this.socket = socket;
+      this.channel = socket.getSocket().getChannel();
+    }
+
+    @Override
+    public void run() {
+      TServerEventHandler eventHandler = getEventHandler();
+      try {
+        if (processor == null) {
+          processor = processorFactory_.getProcessor(socket);
+          // The SASL handshake happens here
+          inputTransport = inputTransportFactory_.getTransport(socket);
+          outputTransport = outputTransportFactory_.getTransport(socket);
+          inputProtocol = inputProtocolFactory_.getProtocol(inputTransport);
+          outputProtocol = outputProtocolFactory_.getProtocol(outputTransport);
+          if (eventHandler != null) {
+            context = eventHandler.createContext(inputProtocol, outputProtocol);
+          }
+        }
+        do {
+          if (eventHandler != null) {
+            eventHandler.processContext(context, inputTransport, outputTransport);
+          }
+          if (stopped || !processor.process(inputProtocol, outputProtocol)) {
+            close();
+            return;
+          }
+        } while (inputTransport.getBytesRemainingInBuffer() > 0);
+      } catch (TTransportException e) {
+        // Assume the client died or closed an idle connection
+        LOGGER.debug("Closing connection from {}", this, e);
+        close();
+        return;
+      } catch (TException e) {
+        LOGGER.error("Thrift error occurred during processing of message.", e);
+        close();
+        return;
+      } catch (Exception e) {
+        LOGGER.error("Error occurred during processing of message.", e);
+        close();
+        return;
+      }
+      selectorThread.park(this);
+    }
+
+    private void close() {
+      TServerEventHandler eventHandler = getEventHandler();
+      if (eventHandler != null && context != null) {
+        eventHandler.deleteContext(context, inputProtocol, outputProtocol);
+      }
+      if (inputTransport != null) {
+        inputTransport.close();
+      }
+      if (outputTransport != null) {
+        outputTransport.close();
+      }
+      socket.close();
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(socket.getSocket().getRemoteSocketAddress());
+    }
+  }
+
+  /**
+   * Waits for the next request of parked connections. The channels of parked
+   * connections are non-blocking and registered with the selector, and are switched
+   * back to blocking mode before a worker runs the connection.
+   */
+  private final class SelectorThread extends Thread {
+    private final Selector selector;
+    private final Queue<Connection> parked = new ConcurrentLinkedQueue<>();
+
+    private SelectorThread() throws IOException {
+      super("sentry-rpc-selector");
+      setDaemon(true);
+      selector = Selector.open();
+    }
+
+    void park(Connection connection) {
+      if (stopped) {
+        connection.close();
+        return;
+      }
+      parked.add(connection);
+      selector.wakeup();
+    }
+
+    void wakeup() {
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!stopped) {
+          selector.select();
+          register();
+          List<Connection> ready = new ArrayList<>();
+          while (takeReady(ready)) {
+            // Deregister the cancelled keys, so that the channels may block again
+            selector.selectNow();
+            for (Connection connection : ready) {
+              try {
+                connection.channel.configureBlocking(true);
+              } catch (IOException e) {
+                LOGGER.debug("Closing connection from {}", connection, e);
+                connection.close();
+                continue;
+              }
+              dispatch(connection);
+            }
+            ready.clear();
+          }
+        }
+      } catch (IOException e) {
+        LOGGER.error("Selector failed", e);
+      } finally {
+        closeAll();
+      }
+    }
+
+    private void register() {
+      Connection connection;
+      while ((connection = parked.poll()) != null) {
+        try {
+          connection.channel.configureBlocking(false);
+          connection.channel.register(selector, SelectionKey.OP_READ, connection);
+        } catch (IOException e) {
+          LOGGER.debug("Closing connection from {}", connection, e);
+          connection.close();
+        }
+      }
+    }
+
+    private boolean takeReady(List<Connection> ready) {
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        key.cancel();
+        ready.add((Connection) key.attachment());
+      }
+      return !ready.isEmpty();
+    }
+
+    private void closeAll() {
+      for (SelectionKey key : selector.keys()) {
+        ((Connection) key.attachment()).close();
+      }
+      Connection connection;
+      while ((connection = parked.poll()) != null) {
+        connection.close();
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        LOGGER.debug("Failed to close selector", e);
+      }
+    }
+  }
+}
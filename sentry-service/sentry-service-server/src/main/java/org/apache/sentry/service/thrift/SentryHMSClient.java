@@ -33,6 +33,7 @@ import org.apache.hadoop.hive.metastore.messaging.MessageDeserializer;
 import org.apache.sentry.api.common.SentryServiceUtil;
 import org.apache.sentry.binding.metastore.messaging.json.SentryJSONMessageDeserializer;
 import org.apache.sentry.core.common.utils.SentryConstants;
+import org.apache.sentry.hdfs.ServiceConstants.ServerConfig;
 import org.apache.sentry.provider.db.service.persistent.PathsImage;
 import org.apache.sentry.api.service.thrift.SentryMetrics;
 import org.apache.thrift.TException;
@@ -247,11 +248,19 @@ public class SentryHMSClient implements AutoCloseable {
     LOGGER.info(logMessage);
     System.out.println(SentryServiceUtil.getCurrentTimeStampWithMessage(logMessage));
 
-    try (FullUpdateInitializer updateInitializer =
-             new FullUpdateInitializer(hiveConnectionFactory, conf);
-         Context context = updateTimer.time()) {
+    try (Context context = updateTimer.time()) {
       SentryStateBank.enableState(FullUpdateInitializerState.COMPONENT,FullUpdateInitializerState.FULL_SNAPSHOT_INPROGRESS);
-      Map<String, Collection<String>> pathsUpdate = updateInitializer.getFullHMSSnapshot();
+      Map<String, Collection<String>> pathsUpdate = null;
+      if (conf.getBoolean(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL,
+          ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_DEFAULT)) {
+        pathsUpdate = fetchFullUpdateWithDirectSql();
+      }
+      if (pathsUpdate == null) {
+        try (FullUpdateInitializer updateInitializer =
+                 new FullUpdateInitializer(hiveConnectionFactory, conf)) {
+          pathsUpdate = updateInitializer.getFullHMSSnapshot();
+        }
+      }
       logMessage = "Obtained full HMS snapshot";
       LOGGER.info(logMessage);
       System.out.println(SentryServiceUtil.getCurrentTimeStampWithMessage(logMessage));
@@ -264,4 +273,19 @@ public class SentryHMSClient implements AutoCloseable {
       SentryStateBank.disableState(FullUpdateInitializerState.COMPONENT,FullUpdateInitializerState.FULL_SNAPSHOT_INPROGRESS);
     }
   }
+
+  /**
+   * Retrieve a Hive full snapshot from the database backing HMS.
+   *
+   * @return HMS snapshot, or null if it could not be read from the database
+   */
+  private Map<String, Collection<String>> fetchFullUpdateWithDirectSql() {
+    try {
+      return new HMSDirectSqlSnapshotReader(conf).getFullHMSSnapshot();
+    } catch (Exception e) {
+      LOGGER.warn("Failed to read full HMS snapshot from the metastore database, "
+          + "falling back to HMS calls", e);
+      return null;
+    }
+  }
 }
@@ -272,7 +272,6 @@ public class SentryService implements Callable, SigUtils.SigListener {
           "Failed to register any processors from " + processorFactories);
     }
     addSentryServiceGauge();
-    TServerTransport serverTransport = new TServerSocket(address);
     TTransportFactory transportFactory = null;
     if (kerberos) {
       TSaslServerTransport.Factory saslTransportFactory = new TSaslServerTransport.Factory();
@@ -283,12 +282,28 @@ public class SentryService implements Callable, SigUtils.SigListener {
     } else {
       transportFactory = new TTransportFactory();
     }
-    TThreadPoolServer.Args args = new TThreadPoolServer.Args(
-        serverTransport).processor(processor)
-        .transportFactory(transportFactory)
-        .protocolFactory(new TBinaryProtocol.Factory(true, true, maxMessageSize, maxMessageSize))
-        .minWorkerThreads(minThreads).maxWorkerThreads(maxThreads);
-    thriftServer = new TThreadPoolServer(args);
+    String serverType = conf.get(ServerConfig.RPC_SERVER_TYPE,
+        ServerConfig.RPC_SERVER_TYPE_DEFAULT).trim();
+    if (ServerConfig.RPC_SERVER_TYPE_SELECTOR.equalsIgnoreCase(serverType)) {
+      int workerThreads = conf.getInt(ServerConfig.RPC_SELECTOR_WORKER_THREADS, maxThreads);
+      LOGGER.info("Using selector server with {} worker threads", workerThreads);
+      SelectorThreadPoolServer.Args args = new SelectorThreadPoolServer.Args(
+          SelectorThreadPoolServer.createServerSocket(address)).processor(processor)
+          .transportFactory(transportFactory)
+          .protocolFactory(new TBinaryProtocol.Factory(true, true, maxMessageSize, maxMessageSize))
+          .workerThreads(workerThreads)
+          .maxQueuedRequests(conf.getInt(ServerConfig.RPC_SELECTOR_MAX_QUEUED_REQUESTS,
+              ServerConfig.RPC_SELECTOR_MAX_QUEUED_REQUESTS_DEFAULT));
+      thriftServer = new SelectorThreadPoolServer(args);
+    } else {
+      TServerTransport serverTransport = new TServerSocket(address);
+      TThreadPoolServer.Args args = new TThreadPoolServer.Args(
+          serverTransport).processor(processor)
+          .transportFactory(transportFactory)
+          .protocolFactory(new TBinaryProtocol.Factory(true, true, maxMessageSize, maxMessageSize))
+          .minWorkerThreads(minThreads).maxWorkerThreads(maxThreads);
+      thriftServer = new TThreadPoolServer(args);
+    }
     LOGGER.info("Serving on {}", address);
     startSentryWebServer();
 
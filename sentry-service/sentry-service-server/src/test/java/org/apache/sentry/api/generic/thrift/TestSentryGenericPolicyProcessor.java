@@ -344,6 +344,16 @@ public class TestSentryGenericPolicyProcessor extends org.junit.Assert {
     TListSentryPrivilegesByAuthResponse response5 = processor.list_sentry_privileges_by_authorizable(request5);
     assertEquals(Status.OK, fromTSentryStatus(response5.getStatus()));
     assertEquals(1, response5.getPrivilegesMapByAuth().size());
+
+    // An empty authorizable requests all the privileges of the service.
+    TListSentryPrivilegesByAuthRequest request6 = new TListSentryPrivilegesByAuthRequest();
+    request6.setRequestorUserName(ADMIN_USER);
+    request6.setAuthorizablesSet(Sets.newHashSet(""));
+
+    TListSentryPrivilegesByAuthResponse response6 = processor.list_sentry_privileges_by_authorizable(request6);
+    assertEquals(Status.OK, fromTSentryStatus(response6.getStatus()));
+    assertEquals(Sets.newHashSet(""), response6.getPrivilegesMapByAuth().keySet());
+    assertEquals(1, response6.getPrivilegesMapByAuth().get("").getPrivilegeMap().get(roleName).size());
   }
 
   @Test(expected=SentrySiteConfigurationException.class)
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.api.service.thrift;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.apache.sentry.service.thrift.SentryServiceClientFactory;
+import org.apache.sentry.service.thrift.SentryServiceIntegrationBase;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Benchmark of a server holding many idle client connections while other clients
+ * send requests, as with the connection pools of many HiveServer2 and Impala
+ * instances. It is not run with the tests, run it from the top directory with
+ * <pre>
+ *   ulimit -n 20000
+ *   mvn test -pl sentry-service/sentry-service-server -Dtest=SelectorServerBenchmark
+ *     [-Dsentry.benchmark.idle-connections=5000]
+ *     [-Dsentry.benchmark.active-connections=500] [-Dsentry.benchmark.duration.msec=60000]
+ *     [-Dsentry.benchmark.server-type=selector|thread-pool]
+ *     [-Dsentry.benchmark.worker-threads=500]
+ * </pre>
+ * Client and server share the JVM, so it needs a limit of open files of more than
+ * twice the number of connections. The thread-pool server needs as many worker
+ * threads as connections, e.g. -Dsentry.benchmark.worker-threads=5500 with the default
+ * connection counts. The throughput and latencies of the requests are logged, run it
+ * once with each server type to compare them.
+ */
+public class SelectorServerBenchmark extends SentryServiceIntegrationBase {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SelectorServerBenchmark.class);
+
+  private static final int IDLE_CONNECTIONS =
+      Integer.getInteger("sentry.benchmark.idle-connections", 5000);
+  private static final int ACTIVE_CONNECTIONS =
+      Integer.getInteger("sentry.benchmark.active-connections", 500);
+  private static final long DURATION_MS = Long.getLong("sentry.benchmark.duration.msec", 60000);
+  private static final String SERVER_TYPE = System.getProperty("sentry.benchmark.server-type",
+      ServerConfig.RPC_SERVER_TYPE_SELECTOR);
+  private static final int WORKER_THREADS = Integer.getInteger("sentry.benchmark.worker-threads",
+      ServerConfig.RPC_MAX_THREADS_DEFAULT);
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    kerberos = false;
+    beforeSetup();
+    setupConf();
+    conf.set(ServerConfig.RPC_SERVER_TYPE, SERVER_TYPE);
+    conf.setInt(ServerConfig.RPC_SELECTOR_WORKER_THREADS, WORKER_THREADS);
+    conf.setInt(ServerConfig.RPC_MAX_THREADS, WORKER_THREADS);
+    startSentryService();
+    afterSetup();
+  }
+
+  @Test
+  public void testIdleAndActiveConnections() throws Exception {
+    setLocalGroupMapping(ADMIN_USER, Sets.newHashSet(ADMIN_GROUP));
+    writePolicyFile();
+    client.createRole(ADMIN_USER, "benchmark_r");
+
+    List<SentryPolicyServiceClient> idleClients = new ArrayList<>(IDLE_CONNECTIONS);
+    ExecutorService executor = Executors.newFixedThreadPool(ACTIVE_CONNECTIONS);
+    try {
+      long startMs = System.currentTimeMillis();
+      for (int i = 0; i < IDLE_CONNECTIONS; i++) {
+        SentryPolicyServiceClient idleClient = SentryServiceClientFactory.create(conf);
+        idleClients.add(idleClient);
+        // Connect, then leave the connection open
+        idleClient.listAllRoles(ADMIN_USER);
+      }
+      LOGGER.info("Opened {} idle connections in {} ms", IDLE_CONNECTIONS,
+          System.currentTimeMillis() - startMs);
+
+      final CountDownLatch connected = new CountDownLatch(ACTIVE_CONNECTIONS);
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<List<Long>>> results = new ArrayList<>(ACTIVE_CONNECTIONS);
+      for (int i = 0; i < ACTIVE_CONNECTIONS; i++) {
+        results.add(executor.submit(() -> {
+          SentryPolicyServiceClient activeClient = SentryServiceClientFactory.create(conf);
+          try {
+            activeClient.listAllRoles(ADMIN_USER);
+            connected.countDown();
+            start.await();
+            List<Long> latenciesNs = new ArrayList<>();
+            long deadlineMs = System.currentTimeMillis() + DURATION_MS;
+            while (System.currentTimeMillis() < deadlineMs) {
+              long callStartNs = System.nanoTime();
+              activeClient.listAllRoles(ADMIN_USER);
+              latenciesNs.add(System.nanoTime() - callStartNs);
+            }
+            return latenciesNs;
+          } finally {
+            activeClient.close();
+          }
+        }));
+      }
+      connected.await();
+      start.countDown();
+
+      List<Long> latenciesNs = new ArrayList<>();
+      int failed = 0;
+      for (Future<List<Long>> result : results) {
+        try {
+          latenciesNs.addAll(result.get());
+        } catch (Exception e) {
+          LOGGER.error("Active client failed", e);
+          failed++;
+        }
+      }
+      Collections.sort(latenciesNs);
+      LOGGER.info("{} server, {} idle and {} active connections: {} requests/s, " +
+          "latency p50 {} ms, p99 {} ms, max {} ms, {} failed clients", SERVER_TYPE,
+          IDLE_CONNECTIONS, ACTIVE_CONNECTIONS, latenciesNs.size() * 1000 / DURATION_MS,
+          percentileMs(latenciesNs, 50), percentileMs(latenciesNs, 99),
+          percentileMs(latenciesNs, 100), failed);
+      assertEquals(0, failed);
+
+      // The idle connections still work
+      for (SentryPolicyServiceClient idleClient : idleClients) {
+        assertEquals(1, idleClient.listAllRoles(ADMIN_USER).size());
+      }
+    } finally {
+      executor.shutdownNow();
+      for (SentryPolicyServiceClient idleClient : idleClients) {
+        idleClient.close();
+      }
+    }
+  }
+
+  private static double percentileMs(List<Long> sortedLatenciesNs, int percentile) {
+    if (sortedLatenciesNs.isEmpty()) {
+      return 0;
+    }
+    int index = (int) Math.ceil(sortedLatenciesNs.size() * percentile / 100.0) - 1;
+    return TimeUnit.NANOSECONDS.toMicros(sortedLatenciesNs.get(Math.max(index, 0))) / 1000.0;
+  }
+}
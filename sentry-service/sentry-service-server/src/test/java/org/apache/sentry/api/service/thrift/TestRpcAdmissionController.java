@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.api.service.thrift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.common.Status;
+import org.apache.sentry.api.service.thrift.RpcAdmissionController.RpcClass;
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.apache.sentry.service.thrift.TSentryResponseStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestRpcAdmissionController {
+
+  private static final String BULK_PREFIX =
+      ServerConfig.RPC_ADMISSION_CONTROL_PREFIX + RpcClass.BULK.getName();
+
+  private final CountDownLatch exportStarted = new CountDownLatch(1);
+  private final CountDownLatch exportDone = new CountDownLatch(1);
+  private final TSentryExportMappingDataResponse exportResponse =
+      new TSentryExportMappingDataResponse();
+  private final TListSentryPrivilegesForProviderResponse providerResponse =
+      new TListSentryPrivilegesForProviderResponse();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private Configuration conf;
+  private SentryPolicyService.Iface handler;
+
+  @Before
+  public void setup() throws Exception {
+    conf = new Configuration(false);
+    conf.setInt(BULK_PREFIX + ServerConfig.RPC_ADMISSION_CONTROL_MAX_CONCURRENT, 1);
+    handler = Mockito.mock(SentryPolicyService.Iface.class);
+    Mockito.when(handler.export_sentry_mapping_data(Mockito.any(
+        TSentryExportMappingDataRequest.class))).thenAnswer(
+        new Answer<TSentryExportMappingDataResponse>() {
+          @Override
+          public TSentryExportMappingDataResponse answer(InvocationOnMock invocation)
+              throws Throwable {
+            exportStarted.countDown();
+            exportDone.await();
+            return exportResponse;
+          }
+        });
+    Mockito.when(handler.list_sentry_privileges_for_provider(Mockito.any(
+        TListSentryPrivilegesForProviderRequest.class))).thenReturn(providerResponse);
+  }
+
+  @After
+  public void teardown() {
+    exportDone.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testRpcClasses() {
+    assertEquals(RpcClass.AUTHORIZATION, RpcClass.of("list_sentry_privileges_for_provider"));
+    assertEquals(RpcClass.HMS_SYNC, RpcClass.of("sentry_notify_hms_event"));
+    assertEquals(RpcClass.BULK, RpcClass.of("export_sentry_mapping_data"));
+    assertEquals(RpcClass.ADMIN, RpcClass.of("create_sentry_role"));
+  }
+
+  @Test
+  public void testFullQueueRejects() throws Exception {
+    conf.setInt(BULK_PREFIX + ServerConfig.RPC_ADMISSION_CONTROL_MAX_QUEUED, 0);
+    final SentryPolicyService.Iface controlled = RpcAdmissionController.wrap(handler, conf);
+    Future<TSentryExportMappingDataResponse> export = startExport(controlled);
+
+    assertBusy(controlled.export_sentry_mapping_data(
+        new TSentryExportMappingDataRequest()).getStatus());
+    // Other classes are not limited by the running export
+    assertSame(providerResponse, controlled.list_sentry_privileges_for_provider(
+        new TListSentryPrivilegesForProviderRequest()));
+
+    exportDone.countDown();
+    assertSame(exportResponse, export.get(10, TimeUnit.SECONDS));
+    assertSame(exportResponse,
+        controlled.export_sentry_mapping_data(new TSentryExportMappingDataRequest()));
+  }
+
+  @Test
+  public void testQueueWaitTimesOut() throws Exception {
+    conf.setInt(BULK_PREFIX + ServerConfig.RPC_ADMISSION_CONTROL_MAX_QUEUED, 1);
+    conf.setLong(BULK_PREFIX + ServerConfig.RPC_ADMISSION_CONTROL_MAX_WAIT_MS, 50);
+    final SentryPolicyService.Iface controlled = RpcAdmissionController.wrap(handler, conf);
+    startExport(controlled);
+
+    long startMs = System.currentTimeMillis();
+    assertBusy(controlled.export_sentry_mapping_data(
+        new TSentryExportMappingDataRequest()).getStatus());
+    assertTrue(System.currentTimeMillis() - startMs >= 50);
+  }
+
+  @Test
+  public void testBusyResponsesCanBeSent() throws Exception {
+    TSentryResponseStatus status = Status.ServerBusy("busy");
+    TSentryExportMappingDataResponse export = (TSentryExportMappingDataResponse)
+        RpcAdmissionController.newResponse(TSentryExportMappingDataResponse.class, status);
+    assertSame(status, export.getStatus());
+    export.validate();
+    TListSentryPrivilegesForProviderResponse provider =
+        (TListSentryPrivilegesForProviderResponse) RpcAdmissionController.newResponse(
+            TListSentryPrivilegesForProviderResponse.class, status);
+    assertSame(status, provider.getStatus());
+    assertTrue(provider.getPrivileges().isEmpty());
+    provider.validate();
+    TSentrySyncIDResponse syncId = (TSentrySyncIDResponse)
+        RpcAdmissionController.newResponse(TSentrySyncIDResponse.class, status);
+    syncId.validate();
+  }
+
+  private static void assertBusy(TSentryResponseStatus status) {
+    assertEquals(Status.SERVER_BUSY.getCode(), status.getValue());
+  }
+
+  private Future<TSentryExportMappingDataResponse> startExport(
+      final SentryPolicyService.Iface controlled) throws InterruptedException {
+    Future<TSentryExportMappingDataResponse> export = executor.submit(
+        () -> controlled.export_sentry_mapping_data(new TSentryExportMappingDataRequest()));
+    assertTrue(exportStarted.await(10, TimeUnit.SECONDS));
+    return export;
+  }
+}
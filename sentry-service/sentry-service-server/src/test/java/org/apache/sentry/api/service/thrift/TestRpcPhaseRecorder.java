@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.api.service.thrift;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.codahale.metrics.Histogram;
+import java.io.StringWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.apache.thrift.TException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestRpcPhaseRecorder {
+
+  private static final String PROVIDER_RPC = "list_sentry_privileges_for_provider";
+  private static final String EXPORT_RPC = "export_sentry_mapping_data";
+
+  private final TListSentryPrivilegesForProviderResponse providerResponse =
+      new TListSentryPrivilegesForProviderResponse();
+  private SentryPolicyService.Iface handler;
+
+  @Before
+  public void setup() throws Exception {
+    handler = Mockito.mock(SentryPolicyService.Iface.class);
+    Mockito.when(handler.list_sentry_privileges_for_provider(Mockito.any(
+        TListSentryPrivilegesForProviderRequest.class))).thenAnswer(
+        new Answer<TListSentryPrivilegesForProviderResponse>() {
+          @Override
+          public TListSentryPrivilegesForProviderResponse answer(InvocationOnMock invocation) {
+            RpcPhaseRecorder.setPrincipals(2);
+            try (RpcPhaseRecorder.Phase phase =
+                RpcPhaseRecorder.time(RpcPhaseRecorder.ROLE_RESOLUTION)) {
+              // resolve roles
+            }
+            RpcPhaseRecorder.Phase phase =
+                RpcPhaseRecorder.time(RpcPhaseRecorder.TRANSACTION_BEGIN);
+            phase = phase.next(RpcPhaseRecorder.TRANSACTION_COMMIT);
+            phase.close();
+            RpcPhaseRecorder.setResults(0);
+            return providerResponse;
+          }
+        });
+    Mockito.when(handler.export_sentry_mapping_data(Mockito.any(
+        TSentryExportMappingDataRequest.class))).thenAnswer(
+        new Answer<TSentryExportMappingDataResponse>() {
+          @Override
+          public TSentryExportMappingDataResponse answer(InvocationOnMock invocation)
+              throws Exception {
+            RpcPhaseRecorder.setPrincipals(3);
+            for (int i = 0; i < 2; i++) {
+              try (RpcPhaseRecorder.Phase phase =
+                  RpcPhaseRecorder.time(RpcPhaseRecorder.PRIVILEGE_QUERY)) {
+                // Slower than the slow RPC threshold of the test
+                Thread.sleep(2);
+              }
+            }
+            RpcPhaseRecorder.setResults(5);
+            throw new TException("export failed");
+          }
+        });
+  }
+
+  @Test
+  public void testPhasesAreExported() throws Exception {
+    Configuration conf = new Configuration(false);
+    SentryPolicyService.Iface recorded = RpcPhaseRecorder.wrap(handler, conf);
+    long total = histogram(PROVIDER_RPC, RpcPhaseRecorder.TOTAL).getCount();
+    long roles = histogram(PROVIDER_RPC, RpcPhaseRecorder.ROLE_RESOLUTION).getCount();
+    long begin = histogram(PROVIDER_RPC, RpcPhaseRecorder.TRANSACTION_BEGIN).getCount();
+    long commit = histogram(PROVIDER_RPC, RpcPhaseRecorder.TRANSACTION_COMMIT).getCount();
+
+    assertSame(providerResponse, recorded.list_sentry_privileges_for_provider(
+        new TListSentryPrivilegesForProviderRequest()));
+    assertEquals(total + 1, histogram(PROVIDER_RPC, RpcPhaseRecorder.TOTAL).getCount());
+    assertEquals(roles + 1,
+        histogram(PROVIDER_RPC, RpcPhaseRecorder.ROLE_RESOLUTION).getCount());
+    assertEquals(begin + 1,
+        histogram(PROVIDER_RPC, RpcPhaseRecorder.TRANSACTION_BEGIN).getCount());
+    assertEquals(commit + 1,
+        histogram(PROVIDER_RPC, RpcPhaseRecorder.TRANSACTION_COMMIT).getCount());
+
+    // Phases outside of RPCs are not recorded
+    long rolesOutside = histogram(PROVIDER_RPC, RpcPhaseRecorder.ROLE_RESOLUTION).getCount();
+    RpcPhaseRecorder.time(RpcPhaseRecorder.ROLE_RESOLUTION).close();
+    assertEquals(rolesOutside,
+        histogram(PROVIDER_RPC, RpcPhaseRecorder.ROLE_RESOLUTION).getCount());
+  }
+
+  @Test
+  public void testFailedCallsAreExported() throws Exception {
+    Configuration conf = new Configuration(false);
+    // Log every call as slow
+    conf.setLong(ServerConfig.RPC_SLOW_LOG_THRESHOLD_MS, 1);
+    SentryPolicyService.Iface recorded = RpcPhaseRecorder.wrap(handler, conf);
+    long total = histogram(EXPORT_RPC, RpcPhaseRecorder.TOTAL).getCount();
+    long query = histogram(EXPORT_RPC, RpcPhaseRecorder.PRIVILEGE_QUERY).getCount();
+
+    StringWriter log = new StringWriter();
+    WriterAppender appender = new WriterAppender(new PatternLayout("%m%n"), log);
+    Logger logger = Logger.getLogger(RpcPhaseRecorder.class);
+    logger.addAppender(appender);
+    try {
+      recorded.export_sentry_mapping_data(new TSentryExportMappingDataRequest());
+      fail("Expected the export to fail");
+    } catch (TException e) {
+      assertEquals("export failed", e.getMessage());
+    } finally {
+      logger.removeAppender(appender);
+    }
+    assertEquals(total + 1, histogram(EXPORT_RPC, RpcPhaseRecorder.TOTAL).getCount());
+    assertEquals(query + 1,
+        histogram(EXPORT_RPC, RpcPhaseRecorder.PRIVILEGE_QUERY).getCount());
+
+    // The slow failed call is logged with its phases and sizes
+    String logged = log.toString();
+    assertTrue(logged, logged.matches("Slow RPC " + EXPORT_RPC + ": " +
+        RpcPhaseRecorder.TOTAL + "=[0-9.,]+ ms, principals=3, results=5, " +
+        RpcPhaseRecorder.PRIVILEGE_QUERY + "=[0-9.,]+ ms \\(2 times\\)\\s*"));
+  }
+
+  private static Histogram histogram(String rpc, String phase) {
+    return SentryMetrics.getInstance().getHistogram(
+        name(SentryPolicyStoreProcessor.class, "rpc", rpc, "phase", phase));
+  }
+}
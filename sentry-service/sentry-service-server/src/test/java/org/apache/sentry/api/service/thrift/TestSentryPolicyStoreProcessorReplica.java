@@ -0,0 +1,281 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.api.service.thrift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.common.ApiConstants.PrivilegeScope;
+import org.apache.sentry.api.common.Status;
+import org.apache.sentry.api.common.ThriftConstants;
+import org.apache.sentry.hdfs.PermissionsUpdate;
+import org.apache.sentry.hdfs.Updateable.Update;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.provider.db.SentryPolicyStorePlugin;
+import org.apache.sentry.provider.db.service.persistent.SentryStore;
+import org.apache.sentry.provider.db.service.persistent.SentryStoreInterface;
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * Two servers on one database, each reading the privileges from its policy replica: the
+ * reads of a server must see the revokes made through the other one.
+ */
+public class TestSentryPolicyStoreProcessorReplica {
+
+  private static final String ADMIN_USER = "admin_user";
+  private static final String ADMIN_GROUP = "admin_group";
+  private static final int VERSION = ThriftConstants.TSENTRY_SERVICE_VERSION_CURRENT;
+
+  private File dataDir;
+  private SentryPolicyStoreProcessor serverA;
+  private SentryPolicyStoreProcessor serverB;
+
+  /**
+   * Persists the perm deltas HDFS sync does for grants and revokes, which leave none
+   * for columns.
+   */
+  public static class DeltaPlugin implements SentryPolicyStorePlugin {
+    @Override
+    public void initialize(Configuration conf, SentryStoreInterface sentryStore) {
+    }
+
+    @Override
+    public Update onAlterSentryRoleAddGroups(TAlterSentryRoleAddGroupsRequest tRequest) {
+      PermissionsUpdate update = new PermissionsUpdate();
+      for (TSentryGroup group : tRequest.getGroups()) {
+        update.addRoleUpdate(tRequest.getRoleName()).addToAddGroups(group.getGroupName());
+      }
+      return update;
+    }
+
+    @Override
+    public Update onAlterSentryRoleDeleteGroups(TAlterSentryRoleDeleteGroupsRequest tRequest) {
+      PermissionsUpdate update = new PermissionsUpdate();
+      for (TSentryGroup group : tRequest.getGroups()) {
+        update.addRoleUpdate(tRequest.getRoleName()).addToDelGroups(group.getGroupName());
+      }
+      return update;
+    }
+
+    @Override
+    public void onAlterSentryRoleGrantPrivilege(String roleName,
+        Set<TSentryPrivilege> privileges, Map<TSentryPrivilege, Update> privilegesUpdateMap) {
+      for (TSentryPrivilege privilege : privileges) {
+        if (!PrivilegeScope.COLUMN.name().equalsIgnoreCase(privilege.getPrivilegeScope())) {
+          PermissionsUpdate update = new PermissionsUpdate();
+          update.addPrivilegeUpdate(toAuthzObj(privilege)).putToAddPrivileges(
+              new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName),
+              privilege.getAction());
+          privilegesUpdateMap.put(privilege, update);
+        }
+      }
+    }
+
+    @Override
+    public void onAlterSentryRoleRevokePrivilege(String roleName,
+        Set<TSentryPrivilege> privileges, Map<TSentryPrivilege, Update> privilegesUpdateMap) {
+      for (TSentryPrivilege privilege : privileges) {
+        if (!PrivilegeScope.COLUMN.name().equalsIgnoreCase(privilege.getPrivilegeScope())) {
+          PermissionsUpdate update = new PermissionsUpdate();
+          update.addPrivilegeUpdate(toAuthzObj(privilege)).putToDelPrivileges(
+              new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName),
+              privilege.getAction());
+          privilegesUpdateMap.put(privilege, update);
+        }
+      }
+    }
+
+    @Override
+    public void onAlterSentryUserGrantPrivilege(String userName,
+        Set<TSentryPrivilege> privileges, Map<TSentryPrivilege, Update> privilegesUpdateMap) {
+    }
+
+    @Override
+    public void onAlterSentryUserRevokePrivilege(String userName,
+        Set<TSentryPrivilege> privileges, Map<TSentryPrivilege, Update> privilegesUpdateMap) {
+    }
+
+    @Override
+    public Update onDropSentryRole(TDropSentryRoleRequest tRequest) {
+      return null;
+    }
+
+    @Override
+    public Update onRenameSentryPrivilege(TRenamePrivilegesRequest request) {
+      return null;
+    }
+
+    @Override
+    public Update onDropSentryPrivilege(TDropPrivilegesRequest request) {
+      return null;
+    }
+
+    private static String toAuthzObj(TSentryPrivilege privilege) {
+      return privilege.getDbName() + "." + privilege.getTableName();
+    }
+  }
+
+  @Before
+  public void setup() throws Exception {
+    dataDir = new File(Files.createTempDir(), "sentry_policy_db");
+    serverA = createServer();
+  }
+
+  @After
+  public void teardown() {
+    if (serverB != null) {
+      serverB.stop();
+    }
+    if (serverA != null) {
+      serverA.stop();
+    }
+    FileUtils.deleteQuietly(dataDir);
+  }
+
+  private SentryPolicyStoreProcessor createServer() throws Exception {
+    Configuration conf = new Configuration(true);
+    conf.set(ServerConfig.SENTRY_VERIFY_SCHEM_VERSION, "false");
+    conf.set(ServerConfig.SENTRY_STORE_JDBC_URL, "jdbc:derby:;databaseName=" + dataDir.getPath()
+        + ";create=true");
+    conf.set(ServerConfig.SENTRY_STORE_JDBC_PASS, "sentry");
+    conf.set(ServerConfig.ADMIN_GROUPS, ADMIN_GROUP);
+    conf.set(ServerConfig.SENTRY_STORE_GROUP_MAPPING,
+        TestSentryPolicyStoreProcessor.MockGroupMapping.class.getName());
+    conf.set(ServerConfig.SENTRY_POLICY_STORE_PLUGINS, DeltaPlugin.class.getName());
+    conf.setBoolean(ServerConfig.SENTRY_POLICY_REPLICA_ENABLED, true);
+    // Neither polling nor full reloads run during the test
+    conf.setLong(ServerConfig.SENTRY_POLICY_REPLICA_POLL_INTERVAL_MS, 3600000L);
+    conf.setLong(ServerConfig.SENTRY_POLICY_REPLICA_FULL_RELOAD_INTERVAL_MS, Long.MAX_VALUE);
+    SentryStore sentryStore = new SentryStore(conf);
+    sentryStore.setPersistUpdateDeltas(true);
+    return new SentryPolicyStoreProcessor("test", conf, sentryStore);
+  }
+
+  @Test
+  public void testRevokesThroughAnotherServer() throws Exception {
+    TSentryPrivilege tbl1 = toTSentryPrivilege(PrivilegeScope.TABLE, "tbl1", null);
+    TSentryPrivilege col1 = toTSentryPrivilege(PrivilegeScope.COLUMN, "tbl2", "col1");
+    TSentryPrivilege tbl3 = toTSentryPrivilege(PrivilegeScope.TABLE, "tbl3", null);
+    TSentryPrivilege tbl4 = toTSentryPrivilege(PrivilegeScope.TABLE, "tbl4", null);
+    createRole("r1", "g1");
+    grant("r1", tbl1);
+    grant("r1", col1);
+    createRole("r2", "g2");
+    grant("r2", tbl3);
+    createRole("r3", null);
+    grant("r3", tbl4);
+    assertOk(serverA.alter_sentry_role_add_users(new TAlterSentryRoleAddUsersRequest(VERSION,
+        ADMIN_USER, "r3", Sets.newHashSet("u1"))).getStatus());
+
+    // Loads all the policy, including the changes left without perm deltas
+    serverB = createServer();
+    assertEquals(Sets.newHashSet("server=server1->db=db1->table=tbl1->action=select",
+        "server=server1->db=db1->table=tbl2->column=col1->action=select"),
+        listPrivileges(serverB, "g1", null, null));
+    assertEquals(Sets.newHashSet("server=server1->db=db1->table=tbl3->action=select"),
+        listPrivileges(serverB, "g2", null, null));
+    assertEquals(Sets.newHashSet("server=server1->db=db1->table=tbl4->action=select"),
+        listPrivileges(serverB, null, "u1", null));
+
+    // A column revoke leaves no perm delta
+    revoke("r1", col1);
+    assertEquals(Sets.newHashSet("server=server1->db=db1->table=tbl1->action=select"),
+        listPrivileges(serverB, "g1", null, null));
+
+    // A revoke is seen before the next poll when its change ID is passed
+    long permChangeId = revoke("r2", tbl3);
+    assertTrue(permChangeId > 0);
+    assertEquals(Collections.<String>emptySet(),
+        listPrivileges(serverB, "g2", null, permChangeId));
+
+    // Revoking a role from a user leaves no perm delta
+    assertOk(serverA.alter_sentry_role_delete_users(new TAlterSentryRoleDeleteUsersRequest(
+        VERSION, ADMIN_USER, "r3", Sets.newHashSet("u1"))).getStatus());
+    assertEquals(Collections.<String>emptySet(), listPrivileges(serverB, null, "u1", null));
+  }
+
+  private static TSentryPrivilege toTSentryPrivilege(PrivilegeScope scope, String table,
+      String column) {
+    TSentryPrivilege privilege = new TSentryPrivilege(scope.name(), "server1", "select");
+    privilege.setDbName("db1");
+    privilege.setTableName(table);
+    if (column != null) {
+      privilege.setColumnName(column);
+    }
+    return privilege;
+  }
+
+  private void createRole(String roleName, String groupName) throws Exception {
+    assertOk(serverA.create_sentry_role(new TCreateSentryRoleRequest(VERSION, ADMIN_USER,
+        roleName)).getStatus());
+    if (groupName != null) {
+      assertOk(serverA.alter_sentry_role_add_groups(new TAlterSentryRoleAddGroupsRequest(VERSION,
+          ADMIN_USER, roleName, Sets.newHashSet(new TSentryGroup(groupName)))).getStatus());
+    }
+  }
+
+  private void grant(String roleName, TSentryPrivilege privilege) throws Exception {
+    TAlterSentryRoleGrantPrivilegeRequest request =
+        new TAlterSentryRoleGrantPrivilegeRequest(VERSION, ADMIN_USER, roleName);
+    request.setPrivileges(Sets.newHashSet(privilege));
+    assertOk(serverA.alter_sentry_role_grant_privilege(request).getStatus());
+  }
+
+  private long revoke(String roleName, TSentryPrivilege privilege) throws Exception {
+    TAlterSentryRoleRevokePrivilegeRequest request =
+        new TAlterSentryRoleRevokePrivilegeRequest(VERSION, ADMIN_USER, roleName);
+    request.setPrivileges(Sets.newHashSet(privilege));
+    TAlterSentryRoleRevokePrivilegeResponse response =
+        serverA.alter_sentry_role_revoke_privilege(request);
+    assertOk(response.getStatus());
+    return response.getPermChangeId();
+  }
+
+  private static Set<String> listPrivileges(SentryPolicyStoreProcessor server, String group,
+      String user, Long minPermChangeId) throws Exception {
+    TListSentryPrivilegesForProviderRequest request = new TListSentryPrivilegesForProviderRequest(
+        VERSION, group == null ? Collections.<String>emptySet() : Sets.newHashSet(group),
+        new TSentryActiveRoleSet(true, Collections.<String>emptySet()));
+    request.setUsers(user == null ? Collections.<String>emptySet() : Sets.newHashSet(user));
+    if (minPermChangeId != null) {
+      request.setMinPermChangeId(minPermChangeId);
+    }
+    TListSentryPrivilegesForProviderResponse response =
+        server.list_sentry_privileges_for_provider(request);
+    assertOk(response.getStatus());
+    return response.getPrivileges();
+  }
+
+  private static void assertOk(TSentryResponseStatus status) {
+    assertEquals(status.getMessage(), Status.OK.getCode(), status.getValue());
+  }
+}
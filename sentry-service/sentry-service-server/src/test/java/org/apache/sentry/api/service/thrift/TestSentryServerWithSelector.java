@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.api.service.thrift;
+
+import static org.junit.Assert.assertEquals;
+
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.sentry.service.common.ServiceConstants.ServerConfig;
+import org.apache.sentry.service.thrift.SentryServiceClientFactory;
+import org.apache.sentry.service.thrift.SentryServiceIntegrationBase;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Test the selector server with fewer worker threads than connected clients
+ */
+public class TestSentryServerWithSelector extends SentryServiceIntegrationBase {
+
+  protected static final int WORKER_THREADS = 2;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    kerberos = false;
+    beforeSetup();
+    setupConf();
+    conf.set(ServerConfig.RPC_SERVER_TYPE, ServerConfig.RPC_SERVER_TYPE_SELECTOR);
+    conf.setInt(ServerConfig.RPC_SELECTOR_WORKER_THREADS, WORKER_THREADS);
+    startSentryService();
+    afterSetup();
+  }
+
+  @Test
+  public void testIdleConnectionsDoNotUseWorkers() throws Exception {
+    String requestorUserName = ADMIN_USER;
+    Set<String> requestorUserGroupNames = Sets.newHashSet(ADMIN_GROUP);
+    setLocalGroupMapping(requestorUserName, requestorUserGroupNames);
+    writePolicyFile();
+    client.dropRoleIfExists(requestorUserName, "admin_r");
+    client.createRole(requestorUserName, "admin_r");
+
+    // Each client keeps its connection open between calls
+    List<SentryPolicyServiceClient> clients = new ArrayList<>();
+    try {
+      for (int i = 0; i < 5 * WORKER_THREADS; i++) {
+        SentryPolicyServiceClient idleClient = newClient();
+        clients.add(idleClient);
+        assertEquals(1, idleClient.listAllRoles(requestorUserName).size());
+      }
+      for (SentryPolicyServiceClient idleClient : clients) {
+        assertEquals(1, idleClient.listAllRoles(requestorUserName).size());
+      }
+    } finally {
+      for (SentryPolicyServiceClient idleClient : clients) {
+        idleClient.close();
+      }
+    }
+    client.dropRole(requestorUserName, "admin_r");
+  }
+
+  private SentryPolicyServiceClient newClient() throws Exception {
+    if (!kerberos) {
+      return SentryServiceClientFactory.create(conf);
+    }
+    return clientUgi.doAs(new PrivilegedExceptionAction<SentryPolicyServiceClient>() {
+      @Override
+      public SentryPolicyServiceClient run() throws Exception {
+        return SentryServiceClientFactory.create(conf);
+      }
+    });
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.provider.db.audit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.sentry.provider.db.audit.AsyncAuditLogWriter.QueueFullPolicy;
+import org.apache.sentry.provider.db.log.appender.RollingFileWithoutDeleteAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.Files;
+
+public class TestAsyncAuditLogWriter {
+  private static final String LOGGER_NAME = "sentry.test.async.audit";
+  private Logger auditLogger = Logger.getLogger(LOGGER_NAME);
+  private File dataDir;
+
+  @Before
+  public void init() {
+    dataDir = Files.createTempDir();
+  }
+
+  @After
+  public void destroy() {
+    auditLogger.removeAllAppenders();
+    FileUtils.deleteQuietly(dataDir);
+  }
+
+  @Test
+  public void testEntriesWrittenInOrder() throws Exception {
+    RollingFileWithoutDeleteAppender appender = new RollingFileWithoutDeleteAppender(
+        new PatternLayout("%m%n"), dataDir.getPath() + "/auditLog.log");
+    appender.setImmediateFlush(false);
+    auditLogger.addAppender(appender);
+
+    AsyncAuditLogWriter writer = new AsyncAuditLogWriter(LoggerFactory.getLogger(LOGGER_NAME),
+        100, QueueFullPolicy.BLOCK, 10);
+    for (int i = 0; i < 50; i++) {
+      final String entry = "entry-" + i;
+      writer.add(() -> entry);
+    }
+    writer.close();
+
+    File[] files = dataDir.listFiles();
+    assertEquals(1, files.length);
+    List<String> lines = FileUtils.readLines(files[0], StandardCharsets.UTF_8);
+    assertEquals(50, lines.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals("entry-" + i, lines.get(i));
+    }
+  }
+
+  @Test
+  public void testEntriesDroppedWhenQueueIsFull() throws Exception {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    AsyncAuditLogWriter writer = new AsyncAuditLogWriter(LoggerFactory.getLogger(LOGGER_NAME),
+        1, QueueFullPolicy.DROP, 10);
+    long dropped = writer.getDroppedCount();
+
+    // Stall the writer thread on the first entry
+    writer.add(() -> {
+      writing.countDown();
+      release.await();
+      return "entry-0";
+    });
+    writing.await();
+    writer.add(() -> "entry-1");
+    writer.add(() -> "entry-2");
+    assertEquals(dropped + 1, writer.getDroppedCount());
+
+    release.countDown();
+    writer.close();
+    assertEquals(dropped + 1, writer.getDroppedCount());
+  }
+}
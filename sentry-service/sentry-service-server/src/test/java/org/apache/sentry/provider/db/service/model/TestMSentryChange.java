@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.provider.db.service.model;
+
+import org.apache.sentry.hdfs.PathsUpdate;
+import org.apache.sentry.hdfs.PermissionsUpdate;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestMSentryChange {
+
+  private static PathsUpdate createPathsUpdate() {
+    PathsUpdate update = new PathsUpdate(1, false);
+    update.newPathChange("db1.tbl1").addToAddPaths(Lists.newArrayList("db1", "tbl1"));
+    return update;
+  }
+
+  private static PermissionsUpdate createPermissionsUpdate() {
+    PermissionsUpdate update = new PermissionsUpdate(1, false);
+    update.addPrivilegeUpdate("db1.tbl1").putToAddPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role1"), "SELECT");
+    return update;
+  }
+
+  @Test
+  public void testPathChangeInBinaryFormat() throws Exception {
+    PathsUpdate update = createPathsUpdate();
+    for (boolean compress : new boolean[] {false, true}) {
+      MSentryPathChange change = new MSentryPathChange(1, "u1", update, compress);
+      assertNull(change.getPathChange());
+      assertNotNull(change.getPathChangeData());
+      assertEquals(update.serialize().length, change.getPathChangeSize());
+      assertEquals(update, change.getPathsUpdate());
+    }
+  }
+
+  @Test
+  public void testPathChangeInLegacyJsonFormat() throws Exception {
+    PathsUpdate update = createPathsUpdate();
+    String json = update.JSONSerialize();
+    MSentryPathChange change = new MSentryPathChange(1, "u1", json);
+    assertNull(change.getPathChangeData());
+    assertEquals(json.length(), change.getPathChangeSize());
+    assertEquals(update, change.getPathsUpdate());
+  }
+
+  @Test
+  public void testPermChangeInBinaryFormat() throws Exception {
+    PermissionsUpdate update = createPermissionsUpdate();
+    for (boolean compress : new boolean[] {false, true}) {
+      MSentryPermChange change = new MSentryPermChange(1, update, compress);
+      assertNull(change.getPermChange());
+      assertNotNull(change.getPermChangeData());
+      assertEquals(update.serialize().length, change.getPermChangeSize());
+      assertEquals(update, change.getPermissionsUpdate());
+    }
+  }
+
+  @Test
+  public void testPermChangeInLegacyJsonFormat() throws Exception {
+    PermissionsUpdate update = createPermissionsUpdate();
+    String json = update.JSONSerialize();
+    MSentryPermChange change = new MSentryPermChange(1, json);
+    assertNull(change.getPermChangeData());
+    assertEquals(json.length(), change.getPermChangeSize());
+    assertEquals(update, change.getPermissionsUpdate());
+  }
+}
@@ -60,6 +60,7 @@ import org.apache.sentry.service.common.ServiceConstants;
 import org.apache.sentry.service.thrift.HMSClient;
 import org.apache.sentry.api.service.thrift.TSentryAuthorizable;
 import static org.apache.sentry.hdfs.ServiceConstants.ServerConfig.SENTRY_SERVICE_FULL_UPDATE_PUBSUB;
+import static org.apache.sentry.hdfs.ServiceConstants.ServerConfig.SENTRY_HDFS_SYNC_DIFFERENTIAL_SNAPSHOT;
 
 import org.junit.Before;
 import org.junit.After;
@@ -538,6 +539,80 @@ public class TestHMSFollower {
     verify(sentryStore, times(0)).persistLastProcessedNotificationID(Mockito.anyLong());
   }
 
+  @Test
+  public void testPersistADifferentialSnapshotUnlessForced() throws Exception {
+    /*
+     * TEST CASE
+     *
+     * Simulates (by using mocks) that differential snapshots are enabled and that Sentry is
+     * out-of-sync with HMS, as in the test above. The full HMS snapshot should be persisted
+     * as a difference against the current one, unless it was forced through the full update
+     * trigger, or there is no current snapshot to take a difference against.
+     */
+
+    final long SENTRY_PROCESSED_EVENT_ID = 5L;
+    final long HMS_PROCESSED_EVENT_ID = 1L;
+
+    // Mock that returns a full snapshot
+    Map<String, Collection<String>> snapshotObjects = new HashMap<>();
+    snapshotObjects.put("db", Sets.newHashSet("/db"));
+    snapshotObjects.put("db.table", Sets.newHashSet("/db/table"));
+    PathsImage fullSnapshot = new PathsImage(snapshotObjects, HMS_PROCESSED_EVENT_ID, 1);
+
+    // Mock that returns the current HMS notification ID
+    when(hmsClientMock.getCurrentNotificationEventId())
+        .thenReturn(new CurrentNotificationEventId(fullSnapshot.getId()));
+
+    SentryHMSClient sentryHmsClient = Mockito.mock(SentryHMSClient.class);
+    when(sentryHmsClient.getFullSnapshot()).thenReturn(fullSnapshot);
+
+    Configuration conf = new Configuration(configuration);
+    conf.setBoolean(SENTRY_HDFS_SYNC_DIFFERENTIAL_SNAPSHOT, true);
+    HMSFollower hmsFollower = new HMSFollower(conf, sentryStore, null,
+        hmsConnectionMock, hiveInstance);
+    hmsFollower.setSentryHmsClient(sentryHmsClient);
+
+    // 1st run should persist the out-of-sync snapshot as a difference
+    when(sentryStore.getLastProcessedNotificationID()).thenReturn(SENTRY_PROCESSED_EVENT_ID);
+    when(sentryStore.isAuthzPathsMappingEmpty()).thenReturn(false);
+    when(sentryStore.persistDifferentialPathsImage(Mockito.anyMap(), Mockito.anyLong()))
+        .thenReturn(true);
+    hmsFollower.run();
+    verify(sentryStore, times(1)).persistDifferentialPathsImage(
+        fullSnapshot.getPathImage(), fullSnapshot.getId());
+    verify(sentryStore, times(0)).persistFullPathsImage(Mockito.anyMap(), Mockito.anyLong());
+    verify(sentryStore, times(0)).persistLastProcessedNotificationID(Mockito.anyLong());
+
+    reset(sentryStore);
+
+    // 2nd run is in sync, but the full update trigger forces a snapshot persisted as a
+    // full image
+    PubSub.getInstance().publish(PubSub.Topic.HDFS_SYNC_HMS, "message");
+    when(sentryStore.getLastProcessedNotificationID()).thenReturn(fullSnapshot.getId());
+    when(sentryStore.isAuthzPathsMappingEmpty()).thenReturn(false);
+    when(sentryStore.persistDifferentialPathsImage(Mockito.anyMap(), Mockito.anyLong()))
+        .thenReturn(true);
+    hmsFollower.run();
+    verify(sentryStore, times(0)).persistDifferentialPathsImage(
+        Mockito.anyMap(), Mockito.anyLong());
+    verify(sentryStore, times(1)).persistFullPathsImage(
+        fullSnapshot.getPathImage(), fullSnapshot.getId());
+
+    reset(sentryStore);
+
+    // 3rd run is out-of-sync again, and persists a difference, as the trigger only
+    // works once. There is no current snapshot, so it is persisted as a full image.
+    when(sentryStore.getLastProcessedNotificationID()).thenReturn(SENTRY_PROCESSED_EVENT_ID);
+    when(sentryStore.isAuthzPathsMappingEmpty()).thenReturn(false);
+    when(sentryStore.persistDifferentialPathsImage(Mockito.anyMap(), Mockito.anyLong()))
+        .thenReturn(false);
+    hmsFollower.run();
+    verify(sentryStore, times(1)).persistDifferentialPathsImage(
+        fullSnapshot.getPathImage(), fullSnapshot.getId());
+    verify(sentryStore, times(1)).persistFullPathsImage(
+        fullSnapshot.getPathImage(), fullSnapshot.getId());
+  }
+
   @Test
   public void testPersistAFullSnapshotWhenNextExpectedEventIsNotAvailable() throws Exception {
     /*
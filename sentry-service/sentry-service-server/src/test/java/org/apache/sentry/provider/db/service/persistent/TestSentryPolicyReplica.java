@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sentry.provider.db.service.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.sentry.api.service.thrift.TSentryActiveRoleSet;
+import org.apache.sentry.api.service.thrift.TSentryRole;
+import org.apache.sentry.hdfs.PermissionsUpdate;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipal;
+import org.apache.sentry.hdfs.service.thrift.TPrivilegePrincipalType;
+import org.apache.sentry.provider.db.service.model.MSentryPermChange;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests how {@link SentryPolicyReplica} applies the perm deltas, with a mocked store.
+ */
+public class TestSentryPolicyReplica {
+
+  private static final TSentryActiveRoleSet ALL_ROLES =
+      new TSentryActiveRoleSet(true, new HashSet<String>());
+  private static final Set<String> NO_NAMES = Collections.emptySet();
+
+  private SentryStoreInterface sentryStore;
+  private SentryPolicyReplica replica;
+
+  @Before
+  public void setup() throws Exception {
+    sentryStore = Mockito.mock(SentryStoreInterface.class);
+    replica = new SentryPolicyReplica(sentryStore, new Configuration(false));
+
+    // role1 is granted to group1 and group2, role2 to group2
+    PolicyImage policy = new PolicyImage(
+        map("role1", Sets.newHashSet("group1", "group2"), "role2", Sets.newHashSet("group2")),
+        new HashMap<String, Set<String>>(),
+        map("role1", Sets.newHashSet(privilege("db1", "tbl1")),
+            "role2", Sets.newHashSet(privilege("db1", "tbl2"))),
+        new HashMap<String, Set<PolicyImage.Privilege>>(), 1);
+    Mockito.when(sentryStore.retrievePolicyImage(null, null)).thenReturn(policy);
+    Mockito.when(sentryStore.getLastProcessedPermChangeID()).thenReturn(1L);
+    replica.reloadAll();
+    assertEquals(1, replica.getPermChangeId());
+  }
+
+  @Test
+  public void testCatchUpReplacesTheTouchedRoles() throws Exception {
+    // A marker for role1, now granted to group2 and group3 with another privilege
+    persistDeltas(new MSentryPermChange(2, SentryPolicyReplica.newMarker(
+        Collections.singleton("role1"), NO_NAMES)));
+    Mockito.when(sentryStore.retrievePolicyImage(Collections.singleton("role1"), NO_NAMES))
+        .thenReturn(new PolicyImage(
+            map("role1", Sets.newHashSet("group2", "group3")),
+            new HashMap<String, Set<String>>(),
+            map("role1", Sets.newHashSet(privilege("db1", "tbl3"))),
+            new HashMap<String, Set<PolicyImage.Privilege>>(), 2));
+
+    assertTrue(replica.catchUp());
+    assertEquals(2, replica.getPermChangeId());
+    assertNull(replica.getTSentryRolesByGroupName(Sets.newHashSet("group1"), false));
+    assertEquals(Sets.newHashSet("role1"),
+        getRoleNames(replica.getTSentryRolesByGroupName(Sets.newHashSet("group3"), false)));
+    assertEquals(Sets.newHashSet("role1", "role2"),
+        getRoleNames(replica.getTSentryRolesByGroupName(Sets.newHashSet("group2"), false)));
+    assertEquals(Sets.newHashSet(authorizable("db1", "tbl2"), authorizable("db1", "tbl3")),
+        replica.listSentryPrivilegesForProvider(Sets.newHashSet("group2"), NO_NAMES,
+            ALL_ROLES, null));
+    // Only role1 was read again
+    Mockito.verify(sentryStore, Mockito.times(1)).retrievePolicyImage(null, null);
+  }
+
+  @Test
+  public void testCatchUpRemovesTheRolesNotReadBack() throws Exception {
+    PermissionsUpdate drop = new PermissionsUpdate(0, false);
+    drop.addPrivilegeUpdate(PermissionsUpdate.ALL_AUTHZ_OBJ).putToDelPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, "role2"), "");
+    persistDeltas(new MSentryPermChange(2, drop));
+    Mockito.when(sentryStore.retrievePolicyImage(Collections.singleton("role2"), NO_NAMES))
+        .thenReturn(emptyPolicy(2));
+
+    assertTrue(replica.catchUp());
+    assertEquals(Sets.newHashSet("role1"),
+        getRoleNames(replica.getTSentryRolesByGroupName(Sets.newHashSet("group2"), false)));
+    assertEquals(Sets.newHashSet(authorizable("db1", "tbl1")),
+        replica.listSentryPrivilegesForProvider(Sets.newHashSet("group2"), NO_NAMES,
+            ALL_ROLES, null));
+  }
+
+  @Test
+  public void testUsersGrantedRolesAreFollowedThroughMarkers() throws Exception {
+    Set<String> users = Sets.newHashSet("user1");
+    assertTrue(replica.listSentryPrivilegesForProvider(NO_NAMES, users, ALL_ROLES, null)
+        .isEmpty());
+
+    persistDeltas(new MSentryPermChange(2, SentryPolicyReplica.newMarker(
+        Collections.singleton("role2"), NO_NAMES)));
+    Mockito.when(sentryStore.retrievePolicyImage(Collections.singleton("role2"), NO_NAMES))
+        .thenReturn(new PolicyImage(
+            map("role2", Sets.newHashSet("group2")),
+            map("role2", users),
+            map("role2", Sets.newHashSet(privilege("db1", "tbl2"))),
+            new HashMap<String, Set<PolicyImage.Privilege>>(), 2));
+
+    assertTrue(replica.catchUp());
+    assertEquals(Sets.newHashSet(authorizable("db1", "tbl2")),
+        replica.listSentryPrivilegesForProvider(NO_NAMES, users, ALL_ROLES, null));
+    assertTrue(replica.hasAnyServerPrivileges(NO_NAMES, users, ALL_ROLES, "server1"));
+  }
+
+  @Test
+  public void testMissingDeltasNeedAFullReload() throws Exception {
+    Mockito.when(sentryStore.getLastProcessedPermChangeID()).thenReturn(3L);
+    Mockito.when(sentryStore.getMSentryPermChanges(Mockito.eq(2L), Mockito.anyInt()))
+        .thenReturn(Lists.<MSentryPermChange>newArrayList());
+    assertFalse(replica.catchUp());
+
+    // The image read again includes the missing deltas
+    Mockito.when(sentryStore.retrievePolicyImage(null, null)).thenReturn(emptyPolicy(3));
+    replica.run();
+    assertEquals(3, replica.getPermChangeId());
+    assertTrue(replica.listSentryPrivilegesForProvider(Sets.newHashSet("group1"), NO_NAMES,
+        ALL_ROLES, null).isEmpty());
+    Mockito.verify(sentryStore, Mockito.times(2)).retrievePolicyImage(null, null);
+  }
+
+  @Test
+  public void testFullReloadAppliesTheDeltasPersistedMeanwhile() throws Exception {
+    // The deltas up to 2 were persisted after the policy at 1 was read
+    persistDeltas(new MSentryPermChange(2, SentryPolicyReplica.newMarker(
+        Collections.singleton("role1"), NO_NAMES)));
+    Mockito.when(sentryStore.retrievePolicyImage(Collections.singleton("role1"), NO_NAMES))
+        .thenReturn(emptyPolicy(2));
+
+    replica.reloadAll();
+    assertEquals(2, replica.getPermChangeId());
+    assertNull(replica.getTSentryRolesByGroupName(Sets.newHashSet("group1"), false));
+  }
+
+  @Test
+  public void testNotLoadedReplicaServesNothing() throws Exception {
+    replica.invalidate();
+    assertFalse(replica.isReady());
+    assertNull(replica.listSentryPrivilegesForProvider(Sets.newHashSet("group1"), NO_NAMES,
+        ALL_ROLES, null));
+    assertNull(replica.hasAnyServerPrivileges(Sets.newHashSet("group1"), NO_NAMES,
+        ALL_ROLES, "server1"));
+    assertNull(replica.getTSentryRolesByGroupName(Sets.newHashSet("group1"), true));
+  }
+
+  private void persistDeltas(MSentryPermChange... changes) throws Exception {
+    Mockito.when(sentryStore.getLastProcessedPermChangeID())
+        .thenReturn(changes[changes.length - 1].getChangeID());
+    Mockito.when(sentryStore.getMSentryPermChanges(Mockito.eq(changes[0].getChangeID()),
+        Mockito.anyInt())).thenReturn(Lists.newArrayList(changes));
+  }
+
+  private static PolicyImage emptyPolicy(long curSeqNum) {
+    return new PolicyImage(new HashMap<String, Set<String>>(),
+        new HashMap<String, Set<String>>(),
+        new HashMap<String, Set<PolicyImage.Privilege>>(),
+        new HashMap<String, Set<PolicyImage.Privilege>>(), curSeqNum);
+  }
+
+  private static <V> Map<String, V> map(String key, V value) {
+    Map<String, V> map = new HashMap<>();
+    map.put(key, value);
+    return map;
+  }
+
+  private static <V> Map<String, V> map(String key1, V value1, String key2, V value2) {
+    Map<String, V> map = map(key1, value1);
+    map.put(key2, value2);
+    return map;
+  }
+
+  private static PolicyImage.Privilege privilege(String dbName, String tableName) {
+    return new PolicyImage.Privilege("server1", dbName, tableName, SentryStore.toNULLCol(null),
+        SentryStore.toNULLCol(null), authorizable(dbName, tableName));
+  }
+
+  private static String authorizable(String dbName, String tableName) {
+    return "server=server1->db=" + dbName + "->table=" + tableName + "->action=select";
+  }
+
+  private static Set<String> getRoleNames(Set<TSentryRole> roles) {
+    Set<String> roleNames = new HashSet<>();
+    for (TSentryRole role : roles) {
+      roleNames.add(role.getRoleName());
+    }
+    return roleNames;
+  }
+}
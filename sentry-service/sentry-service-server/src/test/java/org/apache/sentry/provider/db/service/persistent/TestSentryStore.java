@@ -59,6 +59,7 @@ import org.apache.sentry.hdfs.PermissionsUpdate;
 import org.apache.sentry.hdfs.UniquePathsUpdate;
 import org.apache.sentry.hdfs.Updateable;
 import org.apache.sentry.hdfs.service.thrift.TPathEntry;
+import org.apache.sentry.hdfs.service.thrift.TPathChanges;
 import org.apache.sentry.hdfs.service.thrift.TPathsDump;
 import org.apache.sentry.hdfs.service.thrift.TPathsUpdate;
 import org.apache.sentry.hdfs.service.thrift.TPrivilegeChanges;
@@ -87,6 +88,8 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -98,6 +101,7 @@ import org.slf4j.LoggerFactory;
 import static org.apache.sentry.provider.db.service.persistent.QueryParamBuilder.newQueryParamBuilder;
 
 import javax.jdo.JDODataStoreException;
+import javax.jdo.Query;
 
 public class TestSentryStore extends org.junit.Assert {
 
@@ -2425,6 +2429,64 @@ public class TestSentryStore extends org.junit.Assert {
     assertEquals("ALL", privs.get("db3.tbl1").get(new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName1)));
     assertEquals("ALL", privs.get("db3.tbl1").get(new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName2)));
 
+    // All the actions of a role on an object are included
+    TSentryPrivilege privilege4 = toTSentryPrivilege("INSERT", "TABLE", "server1", "db1", "tbl1");
+    sentryStore.alterSentryGrantPrivileges(SentryPrincipalType.ROLE, roleName1, Sets.newHashSet(privilege4), null);
+    privs = sentryStore.retrieveFullPermssionsImage().getPrivilegeImage();
+    assertEquals(Sets.newHashSet("SELECT", "INSERT"), Sets.newHashSet(privs.get("db1.tbl1")
+        .get(new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName1)).split(",")));
+  }
+
+  @Test
+  public void testFullImagesAreReadInBatchesOfTheFetchSize() throws Exception {
+    String roleName = "fetch-r1";
+    sentryStore.createSentryRole(roleName);
+    for (String tableName : new String[] {"tbl1", "tbl2", "tbl3"}) {
+      sentryStore.alterSentryGrantPrivileges(SentryPrincipalType.ROLE, roleName,
+          Sets.newHashSet(toTSentryPrivilege("SELECT", "TABLE", "server1", "db1", tableName)),
+          null);
+    }
+    Map<String, Collection<String>> authzPaths = new HashMap<>();
+    authzPaths.put("db1.tbl1", Sets.newHashSet("/user/hive/warehouse/db1.db/tbl1/p=1",
+        "/user/hive/warehouse/db1.db/tbl1/p=2"));
+    authzPaths.put("db1.tbl2", Sets.newHashSet("/user/hive/warehouse/db1.db/tbl2"));
+    sentryStore.persistFullPathsImage(authzPaths, 1);
+
+    // Fewer rows per batch than the images have
+    conf.setInt(ServerConfig.SENTRY_STORE_FULL_IMAGE_FETCH_SIZE, 2);
+    try {
+      SentryStore spyStore = Mockito.spy(sentryStore);
+      Map<String, Map<TPrivilegePrincipal, String>> privs =
+          spyStore.retrieveFullPermssionsImage().getPrivilegeImage();
+      PathsUpdate pathsUpdate = spyStore.retrieveFullPathsImageUpdate(
+          new String[] {"/user/hive/warehouse"});
+
+      // The queries of the role privileges, the user privileges and the paths
+      ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+      Mockito.verify(spyStore, Mockito.times(3)).streamFullImageResults(queries.capture());
+      for (Query query : queries.getAllValues()) {
+        assertEquals(2, query.getFetchPlan().getFetchSize());
+      }
+
+      // All the rows are read
+      TPrivilegePrincipal principal =
+          new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName);
+      assertEquals(3, privs.size());
+      for (String tableName : new String[] {"tbl1", "tbl2", "tbl3"}) {
+        assertEquals("SELECT", privs.get("db1." + tableName).get(principal));
+      }
+      TPathsDump pathDump = pathsUpdate.toThrift().getPathsDump();
+      Map<String, Collection<String>> pathImage = new HashMap<>();
+      buildPathsImageMap(pathDump.getNodeMap(), pathDump.getNodeMap().get(pathDump.getRootId()),
+          "", pathImage, true);
+      assertEquals(authzPaths.keySet(), pathImage.keySet());
+      for (Map.Entry<String, Collection<String>> entry : authzPaths.entrySet()) {
+        assertTrue(CollectionUtils.isEqualCollection(entry.getValue(),
+            pathImage.get(entry.getKey())));
+      }
+    } finally {
+      conf.unset(ServerConfig.SENTRY_STORE_FULL_IMAGE_FETCH_SIZE);
+    }
   }
 
   /**
@@ -2479,6 +2541,101 @@ public class TestSentryStore extends org.junit.Assert {
     assertEquals(notificationID, savedNotificationID);
   }
 
+  /**
+   * Verifies that a snapshot persisted as a difference against the current one updates
+   * only the changed authz objects, keeps the snapshot ID and persists the difference
+   * as path deltas.
+   */
+  @Test
+  public void testPersistDifferentialPathsImage() throws Exception {
+    String[] prefixes = {"/user/hive/warehouse"};
+    Map<String, Collection<String>> authzPaths = new HashMap<>();
+    // No current snapshot to take a difference against
+    assertFalse(sentryStore.persistDifferentialPathsImage(authzPaths, 1));
+
+    authzPaths.put("db1.table1", Sets.newHashSet("/user/hive/warehouse/db1.db/table1"));
+    authzPaths.put("db1.table2", Sets.newHashSet("/user/hive/warehouse/db1.db/table2",
+        "/user/hive/warehouse/db1.db/table2/p=1"));
+    authzPaths.put("db1.table3", Sets.newHashSet("/user/hive/warehouse/db1.db/table3"));
+    sentryStore.persistFullPathsImage(authzPaths, 10);
+
+    authzPaths.remove("db1.table1");
+    authzPaths.put("db1.table2", Sets.newHashSet("/user/hive/warehouse/db1.db/table2",
+        "/user/hive/warehouse/db1.db/table2/p=2"));
+    authzPaths.put("db1.table4", Sets.newHashSet("/user/hive/warehouse/db1.db/table4"));
+    assertTrue(sentryStore.persistDifferentialPathsImage(authzPaths, 20));
+
+    assertEquals(20, sentryStore.getLastProcessedNotificationID().longValue());
+    PathsUpdate pathsUpdate = sentryStore.retrieveFullPathsImageUpdate(prefixes);
+    assertEquals(1, pathsUpdate.getImgNum());
+    TPathsDump pathDump = pathsUpdate.toThrift().getPathsDump();
+    Map<String, Collection<String>> pathImage = new HashMap<>();
+    buildPathsImageMap(pathDump.getNodeMap(), pathDump.getNodeMap().get(pathDump.getRootId()),
+        "", pathImage, true);
+    assertEquals(authzPaths.keySet(), pathImage.keySet());
+    for (Map.Entry<String, Collection<String>> entry : authzPaths.entrySet()) {
+      assertTrue(CollectionUtils.isEqualCollection(entry.getValue(),
+          pathImage.get(entry.getKey())));
+    }
+
+    List<MSentryPathChange> pathsChanges = sentryStore.getMSentryPathChanges();
+    assertEquals(1, pathsChanges.size());
+    Map<String, TPathChanges> changes = new HashMap<>();
+    for (TPathChanges pathChanges :
+        pathsChanges.get(0).getPathsUpdate().toThrift().getPathChanges()) {
+      changes.put(pathChanges.getAuthzObj(), pathChanges);
+    }
+    assertEquals(Sets.newHashSet("db1.table1", "db1.table2", "db1.table4"), changes.keySet());
+    assertEquals(Collections.singletonList(Collections.singletonList(PathsUpdate.ALL_PATHS)),
+        changes.get("db1.table1").getDelPaths());
+    assertEquals(Collections.singletonList(
+        Arrays.asList("user", "hive", "warehouse", "db1.db", "table2", "p=1")),
+        changes.get("db1.table2").getDelPaths());
+    assertEquals(Collections.singletonList(
+        Arrays.asList("user", "hive", "warehouse", "db1.db", "table2", "p=2")),
+        changes.get("db1.table2").getAddPaths());
+    assertEquals(Collections.singletonList(
+        Arrays.asList("user", "hive", "warehouse", "db1.db", "table4")),
+        changes.get("db1.table4").getAddPaths());
+  }
+
+  /**
+   * Verifies that a difference the NameNode would apply as a rename, one authz object
+   * removed and another one added with a single path, is persisted as one delta per
+   * authz object.
+   */
+  @Test
+  public void testPersistDifferentialPathsImageSplitsRenames() throws Exception {
+    Map<String, Collection<String>> authzPaths = new HashMap<>();
+    authzPaths.put("db1.table1", Sets.newHashSet("/user/hive/warehouse/db1.db/table1"));
+    sentryStore.persistFullPathsImage(authzPaths, 10);
+
+    authzPaths.clear();
+    authzPaths.put("db1.table2", Sets.newHashSet("/user/hive/warehouse/db1.db/table2"));
+    assertTrue(sentryStore.persistDifferentialPathsImage(authzPaths, 20));
+
+    List<MSentryPathChange> pathsChanges = sentryStore.getMSentryPathChanges();
+    assertEquals(2, pathsChanges.size());
+    Map<String, TPathChanges> changes = new HashMap<>();
+    Set<Long> changeIDs = new HashSet<>();
+    for (MSentryPathChange pathsChange : pathsChanges) {
+      List<TPathChanges> pathChanges = pathsChange.getPathsUpdate().toThrift().getPathChanges();
+      assertEquals(1, pathChanges.size());
+      changes.put(pathChanges.get(0).getAuthzObj(), pathChanges.get(0));
+      changeIDs.add(pathsChange.getChangeID());
+    }
+    assertEquals(Sets.newHashSet(1L, 2L), changeIDs);
+    assertEquals(Sets.newHashSet("db1.table1", "db1.table2"), changes.keySet());
+    assertEquals(Collections.singletonList(Collections.singletonList(PathsUpdate.ALL_PATHS)),
+        changes.get("db1.table1").getDelPaths());
+    assertTrue(changes.get("db1.table1").getAddPaths().isEmpty());
+    assertEquals(Collections.singletonList(
+        Arrays.asList("user", "hive", "warehouse", "db1.db", "table2")),
+        changes.get("db1.table2").getAddPaths());
+    assertTrue(changes.get("db1.table2").getDelPaths().isEmpty());
+    assertEquals(20, sentryStore.getLastProcessedNotificationID().longValue());
+  }
+
   @Test
   public void testAddAuthzPathsMapping() throws Exception {
     Set<MPath> paths;
@@ -2559,9 +2716,9 @@ public class TestSentryStore extends org.junit.Assert {
     List<MSentryPathChange> pathsChanges = sentryStore.getMSentryPathChanges();
     assertEquals(2, pathsChanges.size());
     assertEquals(1, pathsChanges.get(0).getChangeID()); // changeID = 1
-    assertTrue(pathsChanges.get(0).getPathChange().contains("/hive/db1"));
+    assertTrue(pathsChanges.get(0).getPathsUpdate().JSONSerialize().contains("/hive/db1"));
     assertEquals(2, pathsChanges.get(1).getChangeID()); // changeID = 2
-    assertTrue(pathsChanges.get(1).getPathChange().contains("/hive/db2"));
+    assertTrue(pathsChanges.get(1).getPathsUpdate().JSONSerialize().contains("/hive/db2"));
 
     // Check that the SHA1 hash calculated for unique notifications is correct
     assertEquals("u1", pathsChanges.get(0).getNotificationHash());
@@ -2637,7 +2794,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPathChangeID();
     MSentryPathChange addPathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(addUpdate.JSONSerialize(), addPathChange.getPathChange());
+    assertEquals(addUpdate.toThrift(), addPathChange.getPathsUpdate().toThrift());
     lastNotificationId = sentryStore.getLastProcessedNotificationID();
     assertEquals(1, lastNotificationId.longValue());
 
@@ -2662,7 +2819,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     lastChangeID = sentryStore.getLastProcessedPathChangeID();
     MSentryPathChange delPathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(delUpdate.JSONSerialize(), delPathChange.getPathChange());
+    assertEquals(delUpdate.toThrift(), delPathChange.getPathsUpdate().toThrift());
     lastNotificationId = sentryStore.getLastProcessedNotificationID();
     assertEquals(2, lastNotificationId.longValue());
 
@@ -2687,7 +2844,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     lastChangeID = sentryStore.getLastProcessedPathChangeID();
     MSentryPathChange delAllPathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(delAllupdate.JSONSerialize(), delAllPathChange.getPathChange());
+    assertEquals(delAllupdate.toThrift(), delAllPathChange.getPathsUpdate().toThrift());
 
     lastNotificationId = sentryStore.getLastProcessedNotificationID();
     assertEquals(3, lastNotificationId.longValue());
@@ -2777,7 +2934,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPathChangeID();
     MSentryPathChange renamePathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(renameUpdate.JSONSerialize(), renamePathChange.getPathChange());
+    assertEquals(renameUpdate.toThrift(), renamePathChange.getPathsUpdate().toThrift());
     lastNotificationId = sentryStore.getLastProcessedNotificationID();
     assertEquals(1, lastNotificationId.longValue());
     // Rename 'db1.table1' to "db1.table2" but did not change its location.
@@ -2808,7 +2965,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     lastChangeID = sentryStore.getLastProcessedPathChangeID();
     renamePathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(renameUpdate.JSONSerialize(), renamePathChange.getPathChange());
+    assertEquals(renameUpdate.toThrift(), renamePathChange.getPathsUpdate().toThrift());
 
     // Update path of 'db1.newTable2' from 'db1.newTable1' to 'db1.newTable2'
     UniquePathsUpdate update = new UniquePathsUpdate("u3",3, false);
@@ -2839,7 +2996,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     lastChangeID = sentryStore.getLastProcessedPathChangeID();
     MSentryPathChange updatePathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(update.JSONSerialize(), updatePathChange.getPathChange());
+    assertEquals(update.toThrift(), updatePathChange.getPathsUpdate().toThrift());
     lastNotificationId = sentryStore.getLastProcessedNotificationID();
     assertEquals(3, lastNotificationId.longValue());
   }
@@ -3147,7 +3304,7 @@ public class TestSentryStore extends org.junit.Assert {
     long lastChangeID = sentryStore.getLastProcessedPermChangeID();
     long initialID = lastChangeID;
     MSentryPermChange addPermChange = sentryStore.getMSentryPermChangeByID(lastChangeID);
-    assertEquals(addUpdate.JSONSerialize(), addPermChange.getPermChange());
+    assertEquals(addUpdate, addPermChange.getPermissionsUpdate());
 
     // Generate the permission delete update authzObj "db1.tbl1"
     PermissionsUpdate delUpdate = new PermissionsUpdate(0, false);
@@ -3167,7 +3324,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted perm change and ensure it equals to the original one
     lastChangeID = sentryStore.getLastProcessedPermChangeID();
     MSentryPermChange delPermChange = sentryStore.getMSentryPermChangeByID(lastChangeID);
-    assertEquals(delUpdate.JSONSerialize(), delPermChange.getPermChange());
+    assertEquals(delUpdate, delPermChange.getPermissionsUpdate());
 
     // Verify getMSentryPermChanges will return all MSentryPermChanges up
     // to the given changeID.
@@ -3207,7 +3364,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted perm change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPermChangeID();
     MSentryPermChange addPermChange = sentryStore.getMSentryPermChangeByID(lastChangeID);
-    assertEquals(addUpdate.JSONSerialize(), addPermChange.getPermChange());
+    assertEquals(addUpdate, addPermChange.getPermissionsUpdate());
 
     // Generate the permission add update for role "test-groups"
     PermissionsUpdate delUpdate = new PermissionsUpdate(0, false);
@@ -3223,7 +3380,7 @@ public class TestSentryStore extends org.junit.Assert {
 
     // Query the persisted perm change and ensure it equals to the original one
     MSentryPermChange delPermChange = sentryStore.getMSentryPermChangeByID(lastChangeID + 1);
-    assertEquals(delUpdate.JSONSerialize(), delPermChange.getPermChange());
+    assertEquals(delUpdate, delPermChange.getPermissionsUpdate());
   }
 
   @Test
@@ -3245,7 +3402,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted perm change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPermChangeID();
     MSentryPermChange delPermChange = sentryStore.getMSentryPermChangeByID(lastChangeID);
-    assertEquals(delUpdate.JSONSerialize(), delPermChange.getPermChange());
+    assertEquals(delUpdate, delPermChange.getPermissionsUpdate());
   }
 
   @Test
@@ -3279,7 +3436,103 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted perm change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPermChangeID();
     MSentryPermChange dropPermChange = sentryStore.getMSentryPermChangeByID(lastChangeID);
-    assertEquals(dropUpdate.JSONSerialize(), dropPermChange.getPermChange());
+    assertEquals(dropUpdate, dropPermChange.getPermissionsUpdate());
+  }
+
+  @Test
+  public void testPolicyReplica() throws Exception {
+    String roleName1 = "replica-r1", roleName2 = "replica-r2";
+    String group1 = "replica-g1";
+    createRole(roleName1);
+    createRole(roleName2);
+    sentryStore.alterSentryRoleAddGroups("g1", roleName1,
+        Sets.newHashSet(new TSentryGroup(group1)));
+
+    TSentryPrivilege privilege_tbl1 = toTSentryPrivilege("SELECT", "TABLE", "server1", "db1", "tbl1");
+    PermissionsUpdate addUpdate = new PermissionsUpdate(0, false);
+    addUpdate.addPrivilegeUpdate("db1.tbl1").putToAddPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName1), "SELECT");
+    sentryStore.alterSentryRoleGrantPrivileges(roleName1, Sets.newHashSet(privilege_tbl1),
+        Collections.<TSentryPrivilege, Updateable.Update>singletonMap(privilege_tbl1, addUpdate));
+
+    SentryPolicyReplica replica = new SentryPolicyReplica(sentryStore, conf);
+    assertFalse(replica.isReady());
+    replica.reloadAll();
+    assertTrue(replica.isReady());
+    assertEquals(sentryStore.getLastProcessedPermChangeID(), replica.getPermChangeId());
+
+    Set<String> groups = Sets.newHashSet(group1);
+    Set<String> users = Sets.newHashSet("replica-u1");
+    TSentryActiveRoleSet allRoles = new TSentryActiveRoleSet(true, new HashSet<String>());
+    TSentryAuthorizable tbl1 = toTSentryAuthorizable(privilege_tbl1);
+    assertEquals(Sets.newHashSet("server=server1->db=db1->table=tbl1->action=select"),
+        replica.listSentryPrivilegesForProvider(groups, users, allRoles, null));
+    assertEquals(sentryStore.listSentryPrivilegesForProvider(groups, users, allRoles, tbl1),
+        replica.listSentryPrivilegesForProvider(groups, users, allRoles, tbl1));
+
+    // Catch up with a grant made through the store
+    TSentryPrivilege privilege_tbl2 = toTSentryPrivilege("INSERT", "TABLE", "server1", "db1", "tbl2");
+    addUpdate = new PermissionsUpdate(0, false);
+    addUpdate.addPrivilegeUpdate("db1.tbl2").putToAddPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, roleName1), "INSERT");
+    sentryStore.alterSentryRoleGrantPrivileges(roleName1, Sets.newHashSet(privilege_tbl2),
+        Collections.<TSentryPrivilege, Updateable.Update>singletonMap(privilege_tbl2, addUpdate));
+    replica.catchUp();
+    assertEquals(sentryStore.getLastProcessedPermChangeID(), replica.getPermChangeId());
+    assertEquals(sentryStore.listSentryPrivilegesForProvider(groups, users, allRoles, null),
+        replica.listSentryPrivilegesForProvider(groups, users, allRoles, null));
+    assertEquals(2, replica.listSentryPrivilegesForProvider(groups, users, allRoles, null).size());
+    assertTrue(replica.hasAnyServerPrivileges(groups, users, allRoles, "server1"));
+    assertFalse(replica.hasAnyServerPrivileges(groups, users, allRoles, "server2"));
+
+    // Catch up with a dropped privilege
+    PermissionsUpdate dropUpdate = new PermissionsUpdate(0, false);
+    dropUpdate.addPrivilegeUpdate("db1.tbl1").putToDelPrivileges(
+        new TPrivilegePrincipal(TPrivilegePrincipalType.ROLE, PermissionsUpdate.ALL_ROLES),
+        PermissionsUpdate.ALL_ROLES);
+    sentryStore.dropPrivilege(tbl1, dropUpdate);
+    replica.catchUp();
+    assertEquals(Sets.newHashSet("server=server1->db=db1->table=tbl2->action=insert"),
+        replica.listSentryPrivilegesForProvider(groups, users, allRoles, null));
+
+    assertEquals(sentryStore.getTSentryRolesByGroupName(groups, false),
+        replica.getTSentryRolesByGroupName(groups, false));
+    assertNull(replica.getTSentryRolesByGroupName(Sets.newHashSet("replica-g2"), false));
+
+    // A change already included needs no catching up
+    assertTrue(replica.catchUpTo(sentryStore.getLastProcessedPermChangeID()));
+    assertFalse(replica.catchUpTo(sentryStore.getLastProcessedPermChangeID() + 1));
+    assertTrue(replica.isReady());
+
+    // Privileges leaving no perm delta are followed through the markers
+    TSentryPrivilege privilege_uri = new TSentryPrivilege("URI", "server1", "ALL");
+    privilege_uri.setURI("file:///tmp/replica");
+    Updateable.Update marker = SentryPolicyReplica.newMarker(
+        Collections.singleton(roleName1), Collections.<String>emptySet());
+    sentryStore.alterSentryRoleGrantPrivileges(roleName1, Sets.newHashSet(privilege_uri),
+        Collections.singletonMap(privilege_uri, marker));
+    assertTrue(replica.catchUp());
+    assertEquals(sentryStore.listSentryPrivilegesForProvider(groups, users, allRoles, null),
+        replica.listSentryPrivilegesForProvider(groups, users, allRoles, null));
+    assertEquals(2, replica.listSentryPrivilegesForProvider(groups, users, allRoles, null).size());
+    sentryStore.alterSentryRoleRevokePrivileges(roleName1, Sets.newHashSet(privilege_uri),
+        Collections.singletonMap(privilege_uri, marker));
+    assertTrue(replica.catchUp());
+    assertEquals(1, replica.listSentryPrivilegesForProvider(groups, users, allRoles, null).size());
+
+    // So are the roles granted to users
+    TSentryPrivilege privilege_tbl3 = toTSentryPrivilege("SELECT", "TABLE", "server1", "db1", "tbl3");
+    sentryStore.alterSentryRoleGrantPrivileges(roleName2, Sets.newHashSet(privilege_tbl3));
+    sentryStore.alterSentryRoleAddUsers(roleName2, users, SentryPolicyReplica.newMarker(
+        Collections.singleton(roleName2), Collections.<String>emptySet()));
+    assertTrue(replica.catchUp());
+    Set<String> noGroups = Collections.emptySet();
+    assertEquals(sentryStore.listSentryPrivilegesForProvider(noGroups, users, allRoles, null),
+        replica.listSentryPrivilegesForProvider(noGroups, users, allRoles, null));
+    assertEquals(1, replica.listSentryPrivilegesForProvider(noGroups, users, allRoles, null).size());
+
+    replica.invalidate();
+    assertFalse(replica.isReady());
   }
 
   @Test
@@ -3322,7 +3575,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted perm change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPermChangeID();
     MSentryPermChange renamePermChange = sentryStore.getMSentryPermChangeByID(lastChangeID);
-    assertEquals(renameUpdate.JSONSerialize(), renamePermChange.getPermChange());
+    assertEquals(renameUpdate, renamePermChange.getPermissionsUpdate());
   }
 
   protected static void addGroupsToUser(String user, String... groupNames) {
@@ -3519,7 +3772,7 @@ public class TestSentryStore extends org.junit.Assert {
     // Query the persisted path change and ensure it equals to the original one
     long lastChangeID = sentryStore.getLastProcessedPathChangeID();
     MSentryPathChange renamePathChange = sentryStore.getMSentryPathChangeByID(lastChangeID);
-    assertEquals(renameUpdate.JSONSerialize(), renamePathChange.getPathChange());
+    assertEquals(renameUpdate.toThrift(), renamePathChange.getPathsUpdate().toThrift());
     Long savedLastNotificationId = sentryStore.getLastProcessedNotificationID();
     assertEquals(lastNotificationId.longValue(), savedLastNotificationId.longValue());
 
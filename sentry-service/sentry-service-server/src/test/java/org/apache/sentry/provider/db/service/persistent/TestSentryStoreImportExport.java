@@ -60,6 +60,7 @@ public class TestSentryStoreImportExport {
   private static String[] adminGroups = { "adminGroup1" };
   private static PolicyFile policyFile;
   private static File policyFilePath;
+  private static Configuration conf;
   private static SentryStore sentryStore;
   private TSentryPrivilege tSentryPrivilege1;
   private TSentryPrivilege tSentryPrivilege2;
@@ -74,7 +75,7 @@ public class TestSentryStoreImportExport {
   @BeforeClass
   public static void setupEnv() throws Exception {
     dataDir = new File(Files.createTempDir(), "sentry_policy_db");
-    Configuration conf = new Configuration(true);
+    conf = new Configuration(true);
     conf.set(ServerConfig.SENTRY_VERIFY_SCHEM_VERSION, "false");
     conf.set(ServerConfig.SENTRY_STORE_JDBC_URL, "jdbc:derby:;databaseName=" + dataDir.getPath()
         + ";create=true");
@@ -978,6 +979,205 @@ public class TestSentryStoreImportExport {
     verifyRolePrivilegesMap(actualRolePrivilegesMap, exceptedRolePrivilegesMap);
   }
 
+  // import in chunks of 3 grants or role memberships, twice, the second import overlapping
+  // with the first one:
+  // The data for 1st import:
+  // group1=role1,role2
+  // user1=role1
+  // role1=privilege1,privilege2,privilege3,privilege4
+  // role2=privilege5,privilege6
+  // The data for 2nd import:
+  // group1=role1,role2
+  // group2=role2
+  // user1=role1,role2
+  // role1=privilege3,privilege4,privilege5
+  // role2=privilege5,privilege6,privilege7,privilege8
+  @Test
+  public void testImportInChunks() throws Exception {
+    Configuration chunkedConf = new Configuration(conf);
+    chunkedConf.setInt(ServerConfig.SENTRY_STORE_IMPORT_CHUNK_SIZE, 3);
+    SentryStore chunkedStore = new SentryStore(chunkedConf);
+    try {
+      TSentryMappingData tSentryMappingData = new TSentryMappingData();
+      Map<String, Set<String>> groupRolesMap = Maps.newHashMap();
+      Map<String, Set<String>> userRolesMap = Maps.newHashMap();
+      Map<String, Set<TSentryPrivilege>> sentryRolePrivilegesMap = Maps.newHashMap();
+      groupRolesMap.put("group1", Sets.newHashSet("Role1", "role2"));
+      userRolesMap.put("user1", Sets.newHashSet("Role1"));
+      sentryRolePrivilegesMap.put("Role1", Sets.newHashSet(tSentryPrivilege1, tSentryPrivilege2,
+          tSentryPrivilege3, tSentryPrivilege4));
+      sentryRolePrivilegesMap.put("role2", Sets.newHashSet(tSentryPrivilege5, tSentryPrivilege6));
+      tSentryMappingData.setGroupRolesMap(groupRolesMap);
+      tSentryMappingData.setRolePrivilegesMap(sentryRolePrivilegesMap);
+      tSentryMappingData.setUserRolesMap(userRolesMap);
+      chunkedStore.importSentryMetaData(tSentryMappingData, false);
+
+      tSentryMappingData = new TSentryMappingData();
+      groupRolesMap = Maps.newHashMap();
+      userRolesMap = Maps.newHashMap();
+      sentryRolePrivilegesMap = Maps.newHashMap();
+      groupRolesMap.put("group1", Sets.newHashSet("role1", "role2"));
+      groupRolesMap.put("group2", Sets.newHashSet("role2"));
+      userRolesMap.put("user1", Sets.newHashSet("role1", "role2"));
+      sentryRolePrivilegesMap.put("role1", Sets.newHashSet(tSentryPrivilege3, tSentryPrivilege4,
+          tSentryPrivilege5));
+      sentryRolePrivilegesMap.put("role2", Sets.newHashSet(tSentryPrivilege5, tSentryPrivilege6,
+          tSentryPrivilege7, tSentryPrivilege8));
+      tSentryMappingData.setGroupRolesMap(groupRolesMap);
+      tSentryMappingData.setRolePrivilegesMap(sentryRolePrivilegesMap);
+      tSentryMappingData.setUserRolesMap(userRolesMap);
+      chunkedStore.importSentryMetaData(tSentryMappingData, false);
+    } finally {
+      chunkedStore.stop();
+    }
+
+    verifyRoles(sentryStore.getRolesMap(), Sets.newHashSet("role1", "role2"));
+    verifyGroups(sentryStore.getGroupNameToGroupMap(), Sets.newHashSet("group1", "group2"));
+    verifyUsers(sentryStore.getUserNameToUserMap(), Sets.newHashSet("user1"));
+    verifyPrivileges(sentryStore.getPrivilegesList(), Sets.newHashSet(tSentryPrivilege1,
+        tSentryPrivilege2, tSentryPrivilege3, tSentryPrivilege4, tSentryPrivilege5,
+        tSentryPrivilege6, tSentryPrivilege7, tSentryPrivilege8));
+
+    List<Map<String, Set<String>>> mapList = sentryStore.getGroupUserRoleMapList(null);
+    Map<String, Set<String>> exceptedGroupRolesMap = Maps.newHashMap();
+    exceptedGroupRolesMap.put("group1", Sets.newHashSet("role1", "role2"));
+    exceptedGroupRolesMap.put("group2", Sets.newHashSet("role2"));
+    verifyUserGroupRolesMap(mapList.get(SentryConstants.INDEX_GROUP_ROLES_MAP),
+        exceptedGroupRolesMap);
+    Map<String, Set<String>> exceptedUserRolesMap = Maps.newHashMap();
+    exceptedUserRolesMap.put("user1", Sets.newHashSet("role1", "role2"));
+    verifyUserGroupRolesMap(mapList.get(SentryConstants.INDEX_USER_ROLES_MAP),
+        exceptedUserRolesMap);
+
+    Map<String, Set<TSentryPrivilege>> exceptedRolePrivilegesMap = Maps.newHashMap();
+    exceptedRolePrivilegesMap.put("role1", Sets.newHashSet(tSentryPrivilege1, tSentryPrivilege2,
+        tSentryPrivilege3, tSentryPrivilege4, tSentryPrivilege5));
+    exceptedRolePrivilegesMap.put("role2", Sets.newHashSet(tSentryPrivilege5, tSentryPrivilege6,
+        tSentryPrivilege7, tSentryPrivilege8));
+    verifyRolePrivilegesMap(sentryStore.getRoleNameTPrivilegesMap(), exceptedRolePrivilegesMap);
+  }
+
+  // import in chunks of 2 grants or role memberships, twice, with the overwrite mode:
+  // The data for 1st import:
+  // group1=role1,role2
+  // group2=role2
+  // user1=role1,role2
+  // role1=privilege1,privilege2,privilege3,privilege4,privilege5
+  // role2=privilege5,privilege6
+  // The data for 2nd import:
+  // group2=role2
+  // group3=role2
+  // user2=role2
+  // role2=privilege6,privilege7,privilege8
+  @Test
+  public void testImportInChunksWithOverwrite() throws Exception {
+    Configuration chunkedConf = new Configuration(conf);
+    chunkedConf.setInt(ServerConfig.SENTRY_STORE_IMPORT_CHUNK_SIZE, 2);
+    SentryStore chunkedStore = new SentryStore(chunkedConf);
+    try {
+      TSentryMappingData tSentryMappingData = new TSentryMappingData();
+      Map<String, Set<String>> groupRolesMap = Maps.newHashMap();
+      Map<String, Set<String>> userRolesMap = Maps.newHashMap();
+      Map<String, Set<TSentryPrivilege>> sentryRolePrivilegesMap = Maps.newHashMap();
+      groupRolesMap.put("group1", Sets.newHashSet("role1", "role2"));
+      groupRolesMap.put("group2", Sets.newHashSet("role2"));
+      userRolesMap.put("user1", Sets.newHashSet("role1", "role2"));
+      sentryRolePrivilegesMap.put("role1", Sets.newHashSet(tSentryPrivilege1, tSentryPrivilege2,
+          tSentryPrivilege3, tSentryPrivilege4, tSentryPrivilege5));
+      sentryRolePrivilegesMap.put("role2", Sets.newHashSet(tSentryPrivilege5, tSentryPrivilege6));
+      tSentryMappingData.setGroupRolesMap(groupRolesMap);
+      tSentryMappingData.setRolePrivilegesMap(sentryRolePrivilegesMap);
+      tSentryMappingData.setUserRolesMap(userRolesMap);
+      chunkedStore.importSentryMetaData(tSentryMappingData, true);
+
+      tSentryMappingData = new TSentryMappingData();
+      groupRolesMap = Maps.newHashMap();
+      userRolesMap = Maps.newHashMap();
+      sentryRolePrivilegesMap = Maps.newHashMap();
+      groupRolesMap.put("group2", Sets.newHashSet("role2"));
+      groupRolesMap.put("group3", Sets.newHashSet("role2"));
+      userRolesMap.put("user2", Sets.newHashSet("role2"));
+      sentryRolePrivilegesMap.put("role2", Sets.newHashSet(tSentryPrivilege6, tSentryPrivilege7,
+          tSentryPrivilege8));
+      tSentryMappingData.setGroupRolesMap(groupRolesMap);
+      tSentryMappingData.setRolePrivilegesMap(sentryRolePrivilegesMap);
+      tSentryMappingData.setUserRolesMap(userRolesMap);
+      chunkedStore.importSentryMetaData(tSentryMappingData, true);
+    } finally {
+      chunkedStore.stop();
+    }
+
+    verifyRoles(sentryStore.getRolesMap(), Sets.newHashSet("role1", "role2"));
+    verifyGroups(sentryStore.getGroupNameToGroupMap(),
+        Sets.newHashSet("group1", "group2", "group3"));
+    verifyUsers(sentryStore.getUserNameToUserMap(), Sets.newHashSet("user1", "user2"));
+    verifyPrivileges(sentryStore.getPrivilegesList(), Sets.newHashSet(tSentryPrivilege1,
+        tSentryPrivilege2, tSentryPrivilege3, tSentryPrivilege4, tSentryPrivilege5,
+        tSentryPrivilege6, tSentryPrivilege7, tSentryPrivilege8));
+
+    // role2 should be overwritten, with the groups and users of the 1st import dropped
+    List<Map<String, Set<String>>> mapList = sentryStore.getGroupUserRoleMapList(null);
+    Map<String, Set<String>> exceptedGroupRolesMap = Maps.newHashMap();
+    exceptedGroupRolesMap.put("group1", Sets.newHashSet("role1"));
+    exceptedGroupRolesMap.put("group2", Sets.newHashSet("role2"));
+    exceptedGroupRolesMap.put("group3", Sets.newHashSet("role2"));
+    verifyUserGroupRolesMap(mapList.get(SentryConstants.INDEX_GROUP_ROLES_MAP),
+        exceptedGroupRolesMap);
+    Map<String, Set<String>> exceptedUserRolesMap = Maps.newHashMap();
+    exceptedUserRolesMap.put("user1", Sets.newHashSet("role1"));
+    exceptedUserRolesMap.put("user2", Sets.newHashSet("role2"));
+    verifyUserGroupRolesMap(mapList.get(SentryConstants.INDEX_USER_ROLES_MAP),
+        exceptedUserRolesMap);
+
+    Map<String, Set<TSentryPrivilege>> exceptedRolePrivilegesMap = Maps.newHashMap();
+    exceptedRolePrivilegesMap.put("role1", Sets.newHashSet(tSentryPrivilege1, tSentryPrivilege2,
+        tSentryPrivilege3, tSentryPrivilege4, tSentryPrivilege5));
+    exceptedRolePrivilegesMap.put("role2", Sets.newHashSet(tSentryPrivilege6, tSentryPrivilege7,
+        tSentryPrivilege8));
+    verifyRolePrivilegesMap(sentryStore.getRoleNameTPrivilegesMap(), exceptedRolePrivilegesMap);
+  }
+
+  // import in one chunk a grant of ALL to a role with SELECT on the same table, which drops
+  // the SELECT privilege, and a grant of SELECT on that table to another role:
+  // The data for 1st import:
+  // role1=select on tbl1
+  // The data for 2nd import:
+  // role1=all on tbl1
+  // role2=select on tbl1
+  @Test
+  public void testImportInChunksGrantsOfAllAndSelect() throws Exception {
+    TSentryPrivilege selectTbl1 = createTSentryPrivilege(PrivilegeScope.TABLE.name(), "server1",
+        "db1", "tbl1", "", "", AccessConstants.SELECT, TSentryGrantOption.UNSET);
+    TSentryPrivilege allTbl1 = createTSentryPrivilege(PrivilegeScope.TABLE.name(), "server1",
+        "db1", "tbl1", "", "", AccessConstants.ALL, TSentryGrantOption.UNSET);
+    Configuration chunkedConf = new Configuration(conf);
+    chunkedConf.setInt(ServerConfig.SENTRY_STORE_IMPORT_CHUNK_SIZE, 10);
+    SentryStore chunkedStore = new SentryStore(chunkedConf);
+    try {
+      TSentryMappingData tSentryMappingData = new TSentryMappingData();
+      Map<String, Set<TSentryPrivilege>> sentryRolePrivilegesMap = Maps.newHashMap();
+      sentryRolePrivilegesMap.put("role1", Sets.newHashSet(selectTbl1));
+      tSentryMappingData.setRolePrivilegesMap(sentryRolePrivilegesMap);
+      chunkedStore.importSentryMetaData(tSentryMappingData, false);
+
+      tSentryMappingData = new TSentryMappingData();
+      sentryRolePrivilegesMap = Maps.newHashMap();
+      sentryRolePrivilegesMap.put("role1", Sets.newHashSet(allTbl1));
+      sentryRolePrivilegesMap.put("role2", Sets.newHashSet(selectTbl1));
+      tSentryMappingData.setRolePrivilegesMap(sentryRolePrivilegesMap);
+      chunkedStore.importSentryMetaData(tSentryMappingData, false);
+    } finally {
+      chunkedStore.stop();
+    }
+
+    verifyRoles(sentryStore.getRolesMap(), Sets.newHashSet("role1", "role2"));
+    verifyPrivileges(sentryStore.getPrivilegesList(), Sets.newHashSet(selectTbl1, allTbl1));
+    Map<String, Set<TSentryPrivilege>> exceptedRolePrivilegesMap = Maps.newHashMap();
+    exceptedRolePrivilegesMap.put("role1", Sets.newHashSet(allTbl1));
+    exceptedRolePrivilegesMap.put("role2", Sets.newHashSet(selectTbl1));
+    verifyRolePrivilegesMap(sentryStore.getRoleNameTPrivilegesMap(), exceptedRolePrivilegesMap);
+  }
+
   private void verifyRoles(Map<String, MSentryRole> actualRoleMap, Set<String> expectedRoleNameSet) {
     assertEquals(expectedRoleNameSet.size(), actualRoleMap.keySet().size());
     for (String roleName : actualRoleMap.keySet()) {
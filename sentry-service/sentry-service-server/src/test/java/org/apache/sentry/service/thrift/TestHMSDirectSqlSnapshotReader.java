@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sentry.service.thrift;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.ObjectStore;
+import org.apache.hadoop.hive.metastore.TableType;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.Order;
+import org.apache.hadoop.hive.metastore.api.Partition;
+import org.apache.hadoop.hive.metastore.api.SerDeInfo;
+import org.apache.hadoop.hive.metastore.api.StorageDescriptor;
+import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.sentry.hdfs.ServiceConstants.ServerConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test reading full snapshots from a Derby database with the metastore schema, which
+ * {@link ObjectStore} creates from the JDO mapping shipped with HMS and fills like HMS.
+ */
+public class TestHMSDirectSqlSnapshotReader {
+
+  private final Configuration conf = new Configuration(false);
+  private File dataDir;
+  private String dbUrl;
+  private ObjectStore objectStore;
+
+  @Before
+  public void setUp() throws Exception {
+    dataDir = Files.createTempDir();
+    dbUrl = "jdbc:derby:;databaseName=" + dataDir.getPath() + "/metastore_db";
+    HiveConf hiveConf = new HiveConf();
+    hiveConf.set("javax.jdo.option.ConnectionURL", dbUrl + ";create=true");
+    hiveConf.set("javax.jdo.option.ConnectionDriverName", "org.apache.derby.jdbc.EmbeddedDriver");
+    hiveConf.set("datanucleus.schema.autoCreateAll", "true");
+    hiveConf.set("datanucleus.connectionPoolingType", "None");
+    hiveConf.setBoolVar(HiveConf.ConfVars.METASTORE_SCHEMA_VERIFICATION, false);
+    objectStore = new ObjectStore();
+    objectStore.setConf(hiveConf);
+
+    conf.set(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_JDBC_URL, dbUrl);
+    conf.setInt(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_FETCH_SIZE, 2);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    objectStore.shutdown();
+    try {
+      DriverManager.getConnection(dbUrl + ";shutdown=true");
+    } catch (SQLException e) {
+      // Shutting down a database always reports an exception
+    }
+    FileUtils.deleteQuietly(dataDir);
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    addDb("db1", "hdfs:///db1");
+    addDb("DB2", "hdfs:///db2");
+    addTable("db1", "tab11", "hdfs:///db1/tab11");
+    addTable("db2", "Tab21", "hdfs:///db2/tab21");
+    // Views have no location
+    addTable("db2", "view22", null);
+    addPartition("db2", "tab21", "1");
+    addPartition("db1", "tab11", "1");
+    addPartition("db2", "tab21", "2");
+    addPartition("db2", "tab21", "3");
+
+    Map<String, Collection<String>> snapshot =
+        new HMSDirectSqlSnapshotReader(conf).getFullHMSSnapshot();
+    Assert.assertEquals(4, snapshot.size());
+    Assert.assertEquals(Sets.newHashSet("db1"), snapshot.get("db1"));
+    Assert.assertEquals(Sets.newHashSet("db2"), snapshot.get("db2"));
+    Assert.assertEquals(Sets.newHashSet("db1/tab11", "db1/tab11/p=1"), snapshot.get("db1.tab11"));
+    Assert.assertEquals(Sets.newHashSet("db2/tab21", "db2/tab21/p=1", "db2/tab21/p=2",
+        "db2/tab21/p=3"), snapshot.get("db2.tab21"));
+  }
+
+  @Test
+  public void testEmptyMetastore() throws Exception {
+    Assert.assertTrue(new HMSDirectSqlSnapshotReader(conf).getFullHMSSnapshot().isEmpty());
+  }
+
+  @Test
+  public void testOnlyTheDefaultCatalogIsRead() throws Exception {
+    addDb("db1", "hdfs:///db1");
+    addTable("db1", "tab11", "hdfs:///db1/tab11");
+    addPartition("db1", "tab11", "1");
+    addDb("db2", "hdfs:///spark/db2");
+    addTable("db2", "tab21", "hdfs:///spark/db2/tab21");
+    addPartition("db2", "tab21", "1");
+
+    // The databases of Hive 3 belong to catalogs, db2 to the one of Spark
+    try (Connection connection = DriverManager.getConnection(dbUrl);
+         Statement statement = connection.createStatement()) {
+      statement.execute("ALTER TABLE \"DBS\" ADD COLUMN \"CTLG_NAME\" VARCHAR(256) "
+          + "NOT NULL DEFAULT 'hive'");
+      statement.execute("UPDATE \"DBS\" SET \"CTLG_NAME\" = 'spark' WHERE \"NAME\" = 'db2'");
+    }
+
+    Map<String, Collection<String>> snapshot =
+        new HMSDirectSqlSnapshotReader(conf).getFullHMSSnapshot();
+    Assert.assertEquals(2, snapshot.size());
+    Assert.assertEquals(Sets.newHashSet("db1"), snapshot.get("db1"));
+    Assert.assertEquals(Sets.newHashSet("db1/tab11", "db1/tab11/p=1"), snapshot.get("db1.tab11"));
+
+    conf.set(ServerConfig.SENTRY_HDFS_SYNC_METASTORE_DIRECT_SQL_CATALOG, "spark");
+    snapshot = new HMSDirectSqlSnapshotReader(conf).getFullHMSSnapshot();
+    Assert.assertEquals(2, snapshot.size());
+    Assert.assertEquals(Sets.newHashSet("spark/db2"), snapshot.get("db2"));
+    Assert.assertEquals(Sets.newHashSet("spark/db2/tab21", "spark/db2/tab21/p=1"),
+        snapshot.get("db2.tab21"));
+  }
+
+  private void addDb(String name, String location) throws Exception {
+    objectStore.createDatabase(new Database(name, "", location, null));
+  }
+
+  private void addTable(String dbName, String name, String location) throws Exception {
+    List<FieldSchema> partitionKeys = (location == null) ? Collections.<FieldSchema>emptyList() :
+        Lists.newArrayList(new FieldSchema("p", "string", null));
+    Table table = new Table(name, dbName, "hive", 0, 0, 0, newSd(location), partitionKeys,
+        new HashMap<String, String>(), null, null,
+        (location == null) ? TableType.VIRTUAL_VIEW.name() : TableType.MANAGED_TABLE.name());
+    objectStore.createTable(table);
+  }
+
+  private void addPartition(String dbName, String tableName, String value) throws Exception {
+    Table table = objectStore.getTable(dbName, tableName);
+    String location = table.getSd().getLocation() + "/p=" + value;
+    objectStore.addPartition(new Partition(Lists.newArrayList(value), dbName, tableName, 0, 0,
+        newSd(location), new HashMap<String, String>()));
+  }
+
+  private static StorageDescriptor newSd(String location) {
+    return new StorageDescriptor(Lists.newArrayList(new FieldSchema("c", "string", null)),
+        location, null, null, false, -1,
+        new SerDeInfo(null, null, new HashMap<String, String>()),
+        Collections.<String>emptyList(), Collections.<Order>emptyList(),
+        new HashMap<String, String>());
+  }
+}